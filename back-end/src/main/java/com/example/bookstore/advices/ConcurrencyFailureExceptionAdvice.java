@@ -0,0 +1,30 @@
+package com.example.bookstore.advices;
+
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Stale versions, lock timeouts and deadlocks alike: the request lost to a concurrent one and may be sent again.
+ */
+@RestControllerAdvice
+public class ConcurrencyFailureExceptionAdvice {
+
+    @ExceptionHandler(ConcurrencyFailureException.class)
+    public ResponseEntity<Map<String, Object>> handleConcurrencyFailureException(ConcurrencyFailureException ex) {
+        // Create the custom response structure
+        Map<String, Object> response = new HashMap<>();
+        response.put("timestamp", LocalDateTime.now().toString());
+        response.put("status", HttpStatus.CONFLICT.value());
+        response.put("error", "The resource was modified concurrently, please retry");
+
+        return new ResponseEntity<>(response, HttpStatus.CONFLICT);
+    }
+
+}
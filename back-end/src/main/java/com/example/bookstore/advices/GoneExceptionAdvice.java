@@ -0,0 +1,27 @@
+package com.example.bookstore.advices;
+
+import com.example.bookstore.exceptions.GoneException;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Map;
+
+@RestControllerAdvice
+public class GoneExceptionAdvice {
+
+    @ExceptionHandler(GoneException.class)
+    public ResponseEntity<Map<String, Object>> handleGoneException(GoneException ex) {
+        // Create the custom response structure
+        Map<String, Object> response = new HashMap<>();
+        response.put("timestamp", LocalDateTime.now().toString());
+        response.put("status", HttpStatus.GONE.value());
+        response.put("error", ex.getMessage());
+
+        return new ResponseEntity<>(response, HttpStatus.GONE);
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.example.bookstore.changes;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.Objects;
+import java.util.TreeSet;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands out the catalog change sequence numbers stored in {@code BOOKS.CHANGE_SEQ} and {@code BOOK_TOMBSTONES}.
+ * <p>
+ * The numbers are allocated in memory, without a round trip, from the highest one stored at startup: like the
+ * caches and the indexes, this assumes a single application node writes the catalog.
+ * <p>
+ * A number is taken when a book is written but only visible once its transaction commits, so transactions
+ * may commit out of order. The ranges reserved by open transactions are tracked: {@link #stable()} is the
+ * highest number below all of them, the high-water mark up to which a reader cannot miss a change anymore.
+ * <p>
+ * The tombstones are kept for the last {@code books.changes.tombstone-retention} numbers only, and pruned every
+ * {@code books.changes.prune-interval}: a reader behind the {@link #horizon()} may have missed deletions.
+ */
+@Component
+@Slf4j
+public class BookChangeLog {
+
+    private static final String MAX_SEQ = "select greatest("
+            + "(select coalesce(max(CHANGE_SEQ), 0) from BOOKS), "
+            + "(select coalesce(max(CHANGE_SEQ), 0) from BOOK_TOMBSTONES))";
+
+    private static final String INSERT_TOMBSTONE = "insert into BOOK_TOMBSTONES (BOOK_ID, CHANGE_SEQ) values (?, ?)";
+
+    private static final String INSERT_TOMBSTONES = "insert into BOOK_TOMBSTONES (BOOK_ID, CHANGE_SEQ)"
+            + " select ID, :changeSeqBase + row_number() over (order by ID) from BOOKS where ID in (:ids)";
+
+    private static final String DELETE_TOMBSTONES = "delete from BOOK_TOMBSTONES where CHANGE_SEQ <= ?";
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "book-tombstones");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final NavigableSet<Long> open = new TreeSet<>();
+
+    private JdbcTemplate jdbcTemplate;
+
+    private NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
+    private final long retention;
+
+    /**
+     * The last number handed out, read from the database on first use.
+     */
+    private Long last;
+
+    @Autowired
+    public BookChangeLog(JdbcTemplate jdbcTemplate,
+                         @Value("${books.changes.tombstone-retention}") long retention,
+                         @Value("${books.changes.prune-interval}") Duration pruneInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.namedParameterJdbcTemplate = new NamedParameterJdbcTemplate(jdbcTemplate);
+        this.retention = retention;
+
+        long interval = pruneInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::pruneQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Reserves {@code count} consecutive numbers and returns the first one. Inside a transaction the range
+     * holds {@link #stable()} back until the transaction completes.
+     */
+    public long reserve(long count) {
+        long first;
+        synchronized (this) {
+            first = last() + 1;
+            last = first + count - 1;
+            if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+                // auto-committed right away, nothing to wait for
+                return first;
+            }
+            open.add(first);
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                release(first);
+            }
+        });
+        return first;
+    }
+
+    /**
+     * The highest number up to which every change is either committed or rolled back.
+     */
+    public synchronized long stable() {
+        return open.isEmpty() ? last() : open.first() - 1;
+    }
+
+    /**
+     * The oldest position a reader can resume from: the tombstones up to it may be pruned already. Zero, the
+     * start of a full sync, is always fine since deletions only matter to a reader holding the deleted books.
+     */
+    public long horizon() {
+        return Math.max(0, stable() - retention);
+    }
+
+    /**
+     * Like {@link #reserve(long)}, one number per id: the number of a book is the returned base plus its rank by id
+     * among the books, which a single statement can compute for all of them.
+     */
+    public long reserveBase(Collection<Integer> bookIds) {
+        return reserve(bookIds.size()) - 1;
+    }
+
+    /**
+     * Records the deletion of a book, on the connection of the current transaction.
+     */
+    public void tombstone(Integer bookId, long changeSeq) {
+        jdbcTemplate.update(INSERT_TOMBSTONE, bookId, changeSeq);
+    }
+
+    /**
+     * Records the coming deletion of the existing books among the ids, numbered from {@code changeSeqBase + 1} by id.
+     * To be run before the books are deleted, on the connection of the current transaction.
+     */
+    public int tombstoneAll(Collection<Integer> bookIds, long changeSeqBase) {
+        return namedParameterJdbcTemplate.update(INSERT_TOMBSTONES,
+                Map.of("ids", bookIds, "changeSeqBase", changeSeqBase));
+    }
+
+    /**
+     * Deletes the tombstones behind the {@link #horizon()}, a range of the change sequence index.
+     */
+    public int prune() {
+        long horizon = horizon();
+        int pruned = jdbcTemplate.update(DELETE_TOMBSTONES, horizon);
+        log.info("prune() - {} tombstones up to {} deleted", pruned, horizon);
+        return pruned;
+    }
+
+    private void pruneQuietly() {
+        try {
+            prune();
+        } catch (RuntimeException e) {
+            log.error("pruneQuietly() - the tombstones could not be pruned", e);
+        }
+    }
+
+    private synchronized void release(long first) {
+        open.remove(first);
+    }
+
+    private long last() {
+        if (Objects.isNull(last)) {
+            last = jdbcTemplate.queryForObject(MAX_SEQ, Long.class);
+            log.info("last() - change log resumed at {}", last);
+        }
+        return last;
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.bookstore.changes;
+
+import com.example.bookstore.dtos.BookChangeDto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The latest book changes, in a fixed size ring: appending past the capacity overwrites the oldest change.
+ * <p>
+ * Each change gets the next sequence number, the feed event id. Numbering starts from a value given at
+ * construction (the startup time), so that an id handed out before a restart is never taken for a recent one.
+ * <p>
+ * Thread-safe: every method holds the ring lock, appends and reads are short.
+ */
+public class BookChangeRing {
+
+    private final BookChangeDto[] changes;
+
+    private final long first;
+
+    private long last;
+
+    public BookChangeRing(int capacity, long start) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        this.changes = new BookChangeDto[capacity];
+        this.first = start + 1;
+        this.last = start;
+    }
+
+    /**
+     * Numbers the change, stores it and returns it.
+     */
+    public synchronized BookChangeDto append(BookChangeDto change) {
+        change.setSequence(++last);
+        changes[index(last)] = change;
+        return change;
+    }
+
+    /**
+     * The sequence of the latest change, the start when there is none yet.
+     */
+    public synchronized long last() {
+        return last;
+    }
+
+    /**
+     * The changes following the given sequence, oldest first, or null when that sequence is unknown or some of
+     * the changes after it were already overwritten.
+     */
+    public synchronized List<BookChangeDto> after(long sequence) {
+        long oldest = Math.max(first, last - changes.length + 1);
+        if (sequence > last || sequence < oldest - 1) {
+            return null;
+        }
+
+        List<BookChangeDto> result = new ArrayList<>((int) (last - sequence));
+        for (long next = sequence + 1; next <= last; next++) {
+            result.add(changes[index(next)]);
+        }
+        return result;
+    }
+
+    private int index(long sequence) {
+        return (int) Math.floorMod(sequence, (long) changes.length);
+    }
+}
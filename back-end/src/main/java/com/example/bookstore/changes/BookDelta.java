@@ -0,0 +1,26 @@
+package com.example.bookstore.changes;
+
+import com.example.bookstore.entities.BookEntity;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * The books written and the ids of the books deleted after a change sequence, up to {@code until}: the position
+ * to ask the next delta from. {@code hasMore} tells whether the changes were cut by the size limit.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class BookDelta {
+
+    private List<BookEntity> changed;
+
+    private List<Integer> deleted;
+
+    private long until;
+
+    private boolean hasMore;
+}
@@ -0,0 +1,17 @@
+package com.example.bookstore.configs;
+
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * The caches themselves (Caffeine, bounded by size and TTL, with statistics recorded for actuator)
+ * are declared through the {@code spring.cache.*} properties.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    public static final String BOOKS_CACHE = "books";
+
+    public static final String BOOK_VERSIONS_CACHE = "book-versions";
+}
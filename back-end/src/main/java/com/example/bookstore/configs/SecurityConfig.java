@@ -34,6 +34,7 @@ public class SecurityConfig {
                         // api
                         .requestMatchers(HttpMethod.GET, "/api/v1/ping").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/v1/books/**").permitAll() // permitting all only the GET endpoints for books
+                        .requestMatchers(HttpMethod.POST, "/api/v1/books/lookup").permitAll() // a read, in a POST for the long lists of ids
                         .requestMatchers("/api/v1/users/register", "/api/v1/users/login").permitAll()
                         // administration
                         .requestMatchers("/swagger-ui/**", "/v3/api-docs/**", "/swagger-ui.html").permitAll() // make swagger endpoints public, however ...
@@ -0,0 +1,77 @@
+package com.example.bookstore.controllers;
+
+import com.example.bookstore.changes.BookDelta;
+import com.example.bookstore.dtos.BookDeltaDto;
+import com.example.bookstore.mappers.BookMapper;
+import com.example.bookstore.services.IBookChangeFeedService;
+import com.example.bookstore.services.IBookService;
+import jakarta.validation.constraints.Min;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.util.Objects;
+
+@RestController
+@RequestMapping("/api/v1/books")
+@Slf4j
+public class BookChangeController {
+
+    private static final String LAST_EVENT_ID = "Last-Event-ID";
+
+    private IBookChangeFeedService feedService;
+
+    private IBookService bookService;
+
+    private BookMapper mapper;
+
+    @Value("${books.pagination.default-size}")
+    private int defaultPageSize;
+
+    @Value("${books.pagination.max-size}")
+    private int maxPageSize;
+
+    @Autowired
+    public BookChangeController(IBookChangeFeedService feedService, IBookService bookService, BookMapper mapper) {
+        this.feedService = feedService;
+        this.bookService = bookService;
+        this.mapper = mapper;
+    }
+
+    /**
+     * Streams the book changes as they are committed: one {@code created}, {@code updated} or {@code deleted}
+     * event per book, with the change sequence as event id. Reconnecting with {@code Last-Event-ID} resumes after
+     * that change, or gets a {@code reset} event when it is too old to be replayed.
+     */
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter getChanges(@RequestHeader(name = LAST_EVENT_ID, required = false) Long lastEventId) {
+        log.info("getChanges({})", lastEventId);
+        return feedService.subscribe(lastEventId);
+    }
+
+    /**
+     * The books written and deleted since a change sequence, for the clients keeping a copy of the catalog:
+     * start with {@code since=0}, then send back {@code until} each time. More changes than {@code size} are
+     * returned over several calls, {@code hasMore} telling to call again right away.
+     */
+    @GetMapping(value = "/changes", params = "since", produces = MediaType.APPLICATION_JSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    public BookDeltaDto getDelta(@RequestParam(name = "since") @Min(0) Long since,
+                                 @RequestParam(name = "size", required = false) @Min(1) Integer size) {
+        log.info("getDelta({}, {})", since, size);
+
+        int pageSize = Objects.isNull(size) ? defaultPageSize : Math.min(size, maxPageSize);
+        BookDelta delta = bookService.getBookChanges(since, pageSize);
+
+        return BookDeltaDto.builder()
+                .changed(mapper.toDtoList(delta.getChanged()))
+                .deleted(delta.getDeleted())
+                .until(delta.getUntil())
+                .hasMore(delta.isHasMore())
+                .build();
+    }
+}
@@ -1,44 +1,258 @@
 package com.example.bookstore.controllers;
 
+import com.example.bookstore.cursors.BookCursor;
+import com.example.bookstore.dtos.BookBulkDeleteDto;
+import com.example.bookstore.dtos.BookBulkResultDto;
+import com.example.bookstore.dtos.BookBulkUpdateDto;
 import com.example.bookstore.dtos.BookDto;
+import com.example.bookstore.dtos.BookFilterDto;
+import com.example.bookstore.dtos.BookIdsDto;
+import com.example.bookstore.dtos.BookLookupDto;
+import com.example.bookstore.dtos.BookPageDto;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.exceptions.BadRequestException;
 import com.example.bookstore.mappers.BookMapper;
 import com.example.bookstore.services.IBookService;
+import com.example.bookstore.services.IBookSnapshotService;
+import com.example.bookstore.snapshots.BookSnapshot;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.PositiveOrZero;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
 
 @RestController
 @RequestMapping("/api/v1/books")
 @Slf4j
 public class BookController {
 
+    private static final int EXPORT_FLUSH_INTERVAL = 500;
+
+    private static final Set<String> SORT_PROPERTIES = Set.of("id", "title", "author", "price");
+
+    /**
+     * Tomcat sendfile request attributes.
+     */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
     private IBookService service;
 
+    private IBookSnapshotService snapshotService;
+
     private BookMapper mapper;
 
+    private ObjectMapper objectMapper;
+
+    @Value("${books.pagination.default-size}")
+    private int defaultPageSize;
+
+    @Value("${books.pagination.max-size}")
+    private int maxPageSize;
+
+    /**
+     * When enabled, a request without any parameter returns the whole catalog as a plain list.
+     */
+    @Value("${books.pagination.unpaged}")
+    private boolean unpaged;
+
+    @Value("${books.lookup.max-ids}")
+    private int maxLookupIds;
+
     @Autowired
-    public BookController(IBookService service, BookMapper mapper) {
+    public BookController(IBookService service, IBookSnapshotService snapshotService, BookMapper mapper,
+                          ObjectMapper objectMapper) {
         this.service = service;
+        this.snapshotService = snapshotService;
         this.mapper = mapper;
+        this.objectMapper = objectMapper;
     }
 
+    /**
+     * Tagged with the catalog version, taken before loading the books: a change committed meanwhile can only
+     * make the next request miss, never tag changed books with an old version.
+     * <p>
+     * The filters are AND-ed and case-sensitive. {@code sort} is {@code title}, {@code author}, {@code price}
+     * or {@code id}, optionally followed by {@code ,desc}; the id breaks the ties. A cursor only goes with the
+     * sort it was issued for.
+     * <p>
+     * The unpaged listing is sent from the catalog snapshot when it is up to date, gzipped if the client accepts
+     * it, and straight from the file by the connector when it supports it.
+     */
     @GetMapping
-    @ResponseStatus(HttpStatus.OK)
-    public List<BookDto> getBooks() {
-        log.info("getBooks()");
-        return mapper.toDtoList(service.getBooks());
+    public ResponseEntity<?> getBooks(@RequestParam(name = "after", required = false) String after,
+                                      @RequestParam(name = "size", required = false) @Min(1) Integer size,
+                                      @RequestParam(name = "author", required = false) String author,
+                                      @RequestParam(name = "authorPrefix", required = false) String authorPrefix,
+                                      @RequestParam(name = "titlePrefix", required = false) String titlePrefix,
+                                      @RequestParam(name = "minPrice", required = false) @PositiveOrZero BigDecimal minPrice,
+                                      @RequestParam(name = "maxPrice", required = false) @PositiveOrZero BigDecimal maxPrice,
+                                      @RequestParam(name = "sort", required = false) String sort,
+                                      WebRequest webRequest,
+                                      HttpServletRequest request,
+                                      HttpServletResponse response) throws IOException {
+        BookFilterDto filter = BookFilterDto.builder()
+                .author(author)
+                .authorPrefix(authorPrefix)
+                .titlePrefix(titlePrefix)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .build();
+        log.info("getBooks({}, {}, {}, {})", after, size, filter, sort);
+
+        long catalogVersion = service.getCatalogVersion();
+        if (unpaged && webRequest.getParameterMap().isEmpty()) {
+            return getCatalog(catalogVersion, webRequest, request, response);
+        }
+
+        String etag = "\"books-" + catalogVersion + "\"";
+        if (webRequest.checkNotModified(etag)) {
+            log.debug("getBooks({}, {}, {}, {}) - not modified", after, size, filter, sort);
+            return null;
+        }
+
+        Sort order = sort(sort);
+        KeysetScrollPosition position = BookCursor.decode(after, order);
+
+        int pageSize = Objects.isNull(size) ? defaultPageSize : Math.min(size, maxPageSize);
+        Window<BookDto> window = service.getBookDtos(filter, position, order, pageSize);
+
+        return ResponseEntity.ok().eTag(etag).body(BookPageDto.builder()
+                .items(window.getContent())
+                .size(window.size())
+                .nextCursor(window.hasNext() ? BookCursor.encode(window.positionAt(window.size() - 1), order) : null)
+                .build());
+    }
+
+    /**
+     * Streams the whole catalog, row by row, as NDJSON (when asked with {@code Accept: application/x-ndjson})
+     * or as a chunked JSON array, without ever holding the catalog in memory.
+     */
+    @GetMapping(value = "/export", produces = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    public ResponseEntity<StreamingResponseBody> exportBooks(
+            @RequestHeader(name = HttpHeaders.ACCEPT, required = false) String accept) {
+        log.info("exportBooks({})", accept);
+
+        List<MediaType> accepted = MediaType.parseMediaTypes(accept);
+        boolean ndjson = accepted.stream().anyMatch(MediaType.APPLICATION_NDJSON::equalsTypeAndSubtype);
+
+        StreamingResponseBody body = outputStream -> {
+            JsonGenerator generator = objectMapper.getFactory().createGenerator(outputStream);
+            AtomicLong count = new AtomicLong();
+
+            if (ndjson) {
+                generator.setRootValueSeparator(null); // one object per line, no separator in front of it
+            } else {
+                generator.writeStartArray();
+            }
+
+            service.streamBooks(book -> {
+                try {
+                    generator.writeObject(mapper.toDto(book));
+                    if (ndjson) {
+                        generator.writeRaw('\n');
+                    }
+
+                    // flushing the first row right away, then every EXPORT_FLUSH_INTERVAL rows
+                    if (count.incrementAndGet() % EXPORT_FLUSH_INTERVAL == 1) {
+                        generator.flush();
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+
+            if (!ndjson) {
+                generator.writeEndArray();
+            }
+            generator.flush();
+        };
+
+        return ResponseEntity.ok()
+                .contentType(ndjson ? MediaType.APPLICATION_NDJSON : MediaType.APPLICATION_JSON)
+                .body(body);
     }
 
+    /**
+     * Tagged with the book version. A conditional request is answered from the version alone, the book is
+     * only loaded when it has to be sent.
+     */
     @GetMapping("/{id}")
-    @ResponseStatus(HttpStatus.OK)
-    public BookDto getBook(@PathVariable("id") Integer id) {
+    public ResponseEntity<BookDto> getBook(@PathVariable("id") Integer id, WebRequest webRequest) {
         log.info("getBook({})", id);
-        return mapper.toDto(service.getBook(id));
+
+        if (Objects.nonNull(webRequest.getHeader(HttpHeaders.IF_NONE_MATCH))
+                && webRequest.checkNotModified(bookETag(id, service.getBookVersion(id)))) {
+            log.debug("getBook({}) - not modified", id);
+            return null;
+        }
+
+        BookEntity entity = service.getBook(id);
+        return ResponseEntity.ok()
+                .eTag(bookETag(id, entity.getVersion()))
+                .body(mapper.toDto(entity));
+    }
+
+    /**
+     * Many books at once, by id: {@code ?ids=1,2,3}. The cached books are served from the cache, the others
+     * loaded with a single query.
+     */
+    @GetMapping(params = "ids")
+    @ResponseStatus(HttpStatus.OK)
+    public BookLookupDto getBooksByIds(@RequestParam(name = "ids") @NotEmpty List<@NotNull Integer> ids) {
+        log.info("getBooksByIds({})", ids);
+        return lookup(ids);
+    }
+
+    /**
+     * Same as {@code GET ?ids=}, for the lists of ids too long for a URL.
+     */
+    @PostMapping("/lookup")
+    @ResponseStatus(HttpStatus.OK)
+    public BookLookupDto lookupBooks(@Valid @RequestBody BookIdsDto lookup) {
+        log.info("lookupBooks() - {}", lookup);
+        return lookup(lookup.getIds());
     }
 
     @PostMapping
@@ -65,4 +279,153 @@ public class BookController {
         service.deleteBook(id);
     }
 
+    /**
+     * Deletes the books selected by ids or by author in one statement, removing them from the carts as well.
+     */
+    @PostMapping("/bulk/delete")
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseStatus(HttpStatus.OK)
+    public BookBulkResultDto deleteBooks(@Valid @RequestBody BookBulkDeleteDto bulk) {
+        log.info("deleteBooks() - {}", bulk);
+        return BookBulkResultDto.builder()
+                .affected(service.deleteBooks(bulk.getIds(), bulk.getAuthor()))
+                .build();
+    }
+
+    /**
+     * Sets or scales the price of the books selected by ids or by author in one statement.
+     */
+    @PostMapping("/bulk/update")
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseStatus(HttpStatus.OK)
+    public BookBulkResultDto updateBooks(@Valid @RequestBody BookBulkUpdateDto bulk) {
+        log.info("updateBooks() - {}", bulk);
+        return BookBulkResultDto.builder()
+                .affected(service.updateBooksPrice(bulk.getIds(), bulk.getAuthor(), bulk.getPrice(), bulk.getPriceFactor()))
+                .build();
+    }
+
+    private BookLookupDto lookup(List<Integer> ids) {
+        if (ids.size() > maxLookupIds) {
+            throw new BadRequestException("Too many ids, at most " + maxLookupIds + " are allowed");
+        }
+
+        List<BookEntity> books = service.getBooksByIds(ids);
+        Set<Integer> found = books.stream().map(BookEntity::getId).collect(Collectors.toSet());
+
+        return BookLookupDto.builder()
+                .items(mapper.toDtoList(books))
+                .missing(ids.stream().distinct().filter(id -> !found.contains(id)).toList())
+                .build();
+    }
+
+    /**
+     * {@code property} or {@code property,direction}, then the id in the same direction, so that the order
+     * matches the {@code (column, ID)} indexes read forward or backward.
+     */
+    private static Sort sort(String sort) {
+        if (Objects.isNull(sort) || sort.isBlank()) {
+            return Sort.by("id");
+        }
+
+        String[] parts = sort.split(",", 2);
+        String property = parts[0].trim();
+        if (!SORT_PROPERTIES.contains(property)) {
+            throw new BadRequestException("Invalid sort: " + sort);
+        }
+
+        Sort.Direction direction = parts.length == 1 ? Sort.Direction.ASC
+                : Sort.Direction.fromOptionalString(parts[1].trim())
+                        .orElseThrow(() -> new BadRequestException("Invalid sort: " + sort));
+
+        Sort byId = Sort.by(direction, "id");
+        return "id".equals(property) ? byId : Sort.by(direction, property).and(byId);
+    }
+
+    /**
+     * Plain or gzipped following {@code Accept-Encoding}, each with its own ETag, hence the {@code Vary} on every
+     * answer. A file handed over to the connector is kept by the grace period of the retired snapshots.
+     */
+    private ResponseEntity<?> getCatalog(long catalogVersion, WebRequest webRequest, HttpServletRequest request,
+                                         HttpServletResponse response) throws IOException {
+        Optional<BookSnapshot> snapshot = snapshotService.getSnapshot(catalogVersion);
+        try {
+            boolean gzip = snapshot.isPresent() && acceptsGzip(request.getHeader(HttpHeaders.ACCEPT_ENCODING));
+            String etag = "\"books-" + catalogVersion + (gzip ? "-gz" : "") + "\"";
+            response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+            if (webRequest.checkNotModified(etag)) {
+                log.debug("getCatalog({}) - not modified", catalogVersion);
+                return null;
+            }
+
+            if (snapshot.isEmpty()) {
+                return ResponseEntity.ok().eTag(etag).body(service.getBookDtos());
+            }
+            sendSnapshot(snapshot.get(), gzip, etag, request, response);
+            return null;
+        } finally {
+            snapshot.ifPresent(snapshotService::release);
+        }
+    }
+
+    private static void sendSnapshot(BookSnapshot snapshot, boolean gzip, String etag, HttpServletRequest request,
+                                     HttpServletResponse response) throws IOException {
+        Path file = gzip ? snapshot.getGzip() : snapshot.getJson();
+        long length = gzip ? snapshot.getGzipLength() : snapshot.getJsonLength();
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setHeader(HttpHeaders.ETAG, etag);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLengthLong(length);
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, 0L);
+            request.setAttribute(SENDFILE_END, length);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            WritableByteChannel target = Channels.newChannel(response.getOutputStream());
+            long position = 0;
+            while (position < length) {
+                position += channel.transferTo(position, length - position, target);
+            }
+        }
+    }
+
+    /**
+     * Whether {@code Accept-Encoding} gives {@code gzip}, or else {@code *}, a non-zero quality.
+     */
+    static boolean acceptsGzip(String acceptEncoding) {
+        if (Objects.isNull(acceptEncoding)) {
+            return false;
+        }
+
+        Map<String, Double> qualities = new HashMap<>();
+        for (String coding : acceptEncoding.split(",")) {
+            String[] parts = coding.split(";");
+            double quality = 1;
+            for (int i = 1; i < parts.length; i++) {
+                String parameter = parts[i].trim();
+                if (parameter.startsWith("q=")) {
+                    try {
+                        quality = Double.parseDouble(parameter.substring(2));
+                    } catch (NumberFormatException e) {
+                        quality = 0;
+                    }
+                }
+            }
+            qualities.put(parts[0].trim().toLowerCase(Locale.ROOT), quality);
+        }
+
+        return qualities.getOrDefault("gzip", qualities.getOrDefault("*", 0.0)) > 0;
+    }
+
+    private static String bookETag(Integer id, long version) {
+        return "\"book-" + id + "-" + version + "\"";
+    }
 }
@@ -0,0 +1,79 @@
+package com.example.bookstore.controllers;
+
+import com.example.bookstore.dtos.BookFacetCountDto;
+import com.example.bookstore.dtos.BookFacetsDto;
+import com.example.bookstore.dtos.BookFilterDto;
+import com.example.bookstore.dtos.BookPriceBucketDto;
+import com.example.bookstore.facets.BookFacets;
+import com.example.bookstore.services.IBookFacetService;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.PositiveOrZero;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+@RestController
+@RequestMapping("/api/v1/books")
+@Slf4j
+public class BookFacetController {
+
+    private IBookFacetService service;
+
+    @Value("${books.facets.default-authors}")
+    private int defaultAuthors;
+
+    @Value("${books.facets.max-authors}")
+    private int maxAuthors;
+
+    @Autowired
+    public BookFacetController(IBookFacetService service) {
+        this.service = service;
+    }
+
+    /**
+     * The book counts per author and per price range, of the whole catalog or of the books matching the same
+     * filters as the listing.
+     */
+    @GetMapping("/facets")
+    @ResponseStatus(HttpStatus.OK)
+    public BookFacetsDto getFacets(@RequestParam(name = "author", required = false) String author,
+                                   @RequestParam(name = "authorPrefix", required = false) String authorPrefix,
+                                   @RequestParam(name = "titlePrefix", required = false) String titlePrefix,
+                                   @RequestParam(name = "minPrice", required = false) @PositiveOrZero BigDecimal minPrice,
+                                   @RequestParam(name = "maxPrice", required = false) @PositiveOrZero BigDecimal maxPrice,
+                                   @RequestParam(name = "authors", required = false) @Min(1) Integer authors) {
+        BookFilterDto filter = BookFilterDto.builder()
+                .author(author)
+                .authorPrefix(authorPrefix)
+                .titlePrefix(titlePrefix)
+                .minPrice(minPrice)
+                .maxPrice(maxPrice)
+                .build();
+        log.info("getFacets({}, {})", filter, authors);
+
+        int authorsSize = Objects.isNull(authors) ? defaultAuthors : Math.min(authors, maxAuthors);
+        BookFacets facets = service.getFacets(filter, authorsSize);
+
+        return BookFacetsDto.builder()
+                .total(facets.getTotal())
+                .authors(facets.getAuthors().stream()
+                        .map(count -> BookFacetCountDto.builder()
+                                .value(count.getValue())
+                                .count(count.getCount())
+                                .build())
+                        .toList())
+                .prices(facets.getPrices().stream()
+                        .map(bucket -> BookPriceBucketDto.builder()
+                                .from(bucket.getFrom())
+                                .to(bucket.getTo())
+                                .count(bucket.getCount())
+                                .build())
+                        .toList())
+                .build();
+    }
+}
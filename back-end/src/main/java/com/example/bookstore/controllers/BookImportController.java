@@ -0,0 +1,65 @@
+package com.example.bookstore.controllers;
+
+import com.example.bookstore.dtos.BookImportReportDto;
+import com.example.bookstore.imports.BookImportReader;
+import com.example.bookstore.mappers.BookMapper;
+import com.example.bookstore.services.IBookImportService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+@RestController
+@RequestMapping("/api/v1/books")
+@Slf4j
+public class BookImportController {
+
+    public static final String TEXT_CSV_VALUE = "text/csv";
+
+    private IBookImportService service;
+
+    private BookMapper mapper;
+
+    private ObjectMapper objectMapper;
+
+    private Validator validator;
+
+    @Autowired
+    public BookImportController(IBookImportService service, BookMapper mapper, ObjectMapper objectMapper, Validator validator) {
+        this.service = service;
+        this.mapper = mapper;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+    }
+
+    /**
+     * Imports the books of a NDJSON or CSV body. The body is read as it arrives and the valid rows are inserted
+     * in batches; the rejected ones are reported with their line number and do not stop the import.
+     */
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, TEXT_CSV_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    @ResponseStatus(HttpStatus.OK)
+    public BookImportReportDto importBooks(@RequestHeader(HttpHeaders.CONTENT_TYPE) MediaType contentType,
+                                           InputStream body) {
+        log.info("importBooks({})", contentType);
+
+        BookImportReader.Format format = MediaType.APPLICATION_NDJSON.equalsTypeAndSubtype(contentType)
+                ? BookImportReader.Format.NDJSON
+                : BookImportReader.Format.CSV;
+        Charset charset = Objects.requireNonNullElse(contentType.getCharset(), StandardCharsets.UTF_8);
+
+        return service.importBooks(new BookImportReader(
+                new InputStreamReader(body, charset), format, objectMapper, validator, mapper));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.bookstore.controllers;
+
+import com.example.bookstore.dtos.BookSearchPageDto;
+import com.example.bookstore.dtos.BookSuggestionDto;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.mappers.BookMapper;
+import com.example.bookstore.services.IBookSearchService;
+import com.example.bookstore.services.IBookSuggestService;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotBlank;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+
+@RestController
+@RequestMapping("/api/v1/books")
+@Slf4j
+public class BookSearchController {
+
+    private IBookSearchService service;
+
+    private IBookSuggestService suggestService;
+
+    private BookMapper mapper;
+
+    @Value("${books.pagination.default-size}")
+    private int defaultPageSize;
+
+    @Value("${books.pagination.max-size}")
+    private int maxPageSize;
+
+    @Value("${books.suggest.max-size}")
+    private int maxSuggestSize;
+
+    @Autowired
+    public BookSearchController(IBookSearchService service, IBookSuggestService suggestService, BookMapper mapper) {
+        this.service = service;
+        this.suggestService = suggestService;
+        this.mapper = mapper;
+    }
+
+    @GetMapping("/search")
+    @ResponseStatus(HttpStatus.OK)
+    public BookSearchPageDto search(@RequestParam(name = "q") @NotBlank String query,
+                                    @RequestParam(name = "page", defaultValue = "0") @Min(0) Integer page,
+                                    @RequestParam(name = "size", required = false) @Min(1) Integer size,
+                                    @RequestParam(name = "fuzzy", defaultValue = "false") boolean fuzzy) {
+        log.info("search({}, {}, {}, {})", query, page, size, fuzzy);
+
+        int pageSize = Objects.isNull(size) ? defaultPageSize : Math.min(size, maxPageSize);
+        Page<BookEntity> result = service.search(query, fuzzy, PageRequest.of(page, pageSize));
+
+        return BookSearchPageDto.builder()
+                .items(mapper.toDtoList(result.getContent()))
+                .page(page)
+                .size(result.getNumberOfElements())
+                .total(result.getTotalElements())
+                .build();
+    }
+
+    @GetMapping("/suggest")
+    @ResponseStatus(HttpStatus.OK)
+    public List<BookSuggestionDto> suggest(@RequestParam(name = "prefix") @NotBlank String prefix,
+                                           @RequestParam(name = "size", required = false) @Min(1) Integer size) {
+        log.debug("suggest({}, {})", prefix, size);
+
+        int suggestSize = Objects.isNull(size) ? maxSuggestSize : Math.min(size, maxSuggestSize);
+
+        return suggestService.suggest(prefix, suggestSize).stream()
+                .map(suggestion -> BookSuggestionDto.builder()
+                        .text(suggestion.getText())
+                        .field(suggestion.getField().name().toLowerCase(Locale.ROOT))
+                        .weight(suggestion.getWeight())
+                        .build())
+                .toList();
+    }
+}
@@ -2,13 +2,17 @@ package com.example.bookstore.controllers;
 
 import com.example.bookstore.dtos.CartCheckoutDto;
 import com.example.bookstore.dtos.CartDto;
+import com.example.bookstore.dtos.CartOperationsDto;
 import com.example.bookstore.entities.CartEntity;
+import com.example.bookstore.exceptions.BadRequestException;
 import com.example.bookstore.mappers.CartCheckoutMapper;
 import com.example.bookstore.mappers.CartMapper;
 import com.example.bookstore.services.ICartService;
+import jakarta.validation.Valid;
 import jakarta.validation.constraints.Min;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
@@ -26,6 +30,9 @@ public class CartController {
 
     private CartCheckoutMapper cartCheckoutMapper;
 
+    @Value("${carts.batch.max-operations}")
+    private int maxOperations;
+
     @Autowired
     public CartController(ICartService service, CartMapper mapper, CartCheckoutMapper cartCheckoutMapper) {
         this.service = service;
@@ -60,11 +67,27 @@ public class CartController {
         return mapper.toDto(service.deleteItem(principal.getName(), bookId));
     }
 
+    /**
+     * Applies many add, set and remove operations at once, all or none, and returns the resulting cart.
+     */
+    @PostMapping("/items")
+    @PreAuthorize("hasRole('USER')")
+    @ResponseStatus(HttpStatus.OK)
+    public CartDto updateCartItems(@Valid @RequestBody CartOperationsDto operations,
+                                   Principal principal) { // injecting the user authenticated
+        log.info("updateCartItems({}, {})", operations.getOperations().size(), principal.getName());
+        if (operations.getOperations().size() > maxOperations) {
+            throw new BadRequestException("Too many operations, at most " + maxOperations + " are allowed");
+        }
+
+        return mapper.toDto(service.updateItems(principal.getName(), operations.getOperations()));
+    }
+
     @PostMapping("/checkout")
     @PreAuthorize("hasRole('USER')")
     @ResponseStatus(HttpStatus.OK)
     public CartCheckoutDto checkout(Principal principal) { // injecting the user authenticated
         log.info("checkout({})", principal.getName());
-        return cartCheckoutMapper.toDto(service.getCart(principal.getName()));
+        return cartCheckoutMapper.toDto(service.checkout(principal.getName()));
     }
 }
@@ -0,0 +1,111 @@
+package com.example.bookstore.cursors;
+
+import com.example.bookstore.exceptions.BadRequestException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Encodes and decodes the opaque {@code after} cursor used by the books pagination.
+ * <p>
+ * The cursor is the keyset of the last book of a page (the sort key values plus the id), serialized as
+ * JSON and Base64 (url safe) encoded, so the next page can be fetched with an index range scan
+ * ({@code WHERE ID > ?}) instead of an offset. A cursor of a descending sort is flagged as such, and only goes
+ * with the sort it was issued for.
+ */
+public final class BookCursor {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper()
+            .enable(DeserializationFeature.USE_BIG_DECIMAL_FOR_FLOATS);
+
+    /**
+     * Keyset properties accepted in a cursor, with the conversion back to their entity type.
+     */
+    private static final Map<String, Function<JsonNode, Object>> KEYS = Map.of(
+            "id", JsonNode::asInt,
+            "title", JsonNode::asText,
+            "author", JsonNode::asText,
+            "price", JsonNode::decimalValue
+    );
+
+    private static final String DESCENDING = "desc";
+
+    private BookCursor() {
+    }
+
+    public static String encode(ScrollPosition position, Sort sort) {
+        if (!(position instanceof KeysetScrollPosition keyset) || keyset.isInitial()) {
+            return null;
+        }
+
+        ObjectNode node = OBJECT_MAPPER.createObjectNode();
+        keyset.getKeys().forEach((key, value) -> node.set(key, OBJECT_MAPPER.valueToTree(value)));
+        if (isDescending(sort)) {
+            node.put(DESCENDING, true);
+        }
+
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(node.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * The position of the cursor, which must have been issued for the same sort: the same properties, in the same
+     * direction.
+     */
+    public static KeysetScrollPosition decode(String cursor, Sort sort) {
+        if (Objects.isNull(cursor) || cursor.isBlank()) {
+            return ScrollPosition.keyset();
+        }
+
+        Map<String, Object> keys = new LinkedHashMap<>();
+        boolean descending = false;
+        try {
+            JsonNode node = OBJECT_MAPPER.readTree(Base64.getUrlDecoder().decode(cursor));
+
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (DESCENDING.equals(field.getKey()) && field.getValue().isBoolean()) {
+                    descending = field.getValue().booleanValue();
+                    continue;
+                }
+                Function<JsonNode, Object> converter = KEYS.get(field.getKey());
+                if (Objects.isNull(converter) || field.getValue().isNull()) {
+                    throw new BadRequestException("Invalid cursor: " + cursor);
+                }
+                keys.put(field.getKey(), converter.apply(field.getValue()));
+            }
+
+            if (!keys.containsKey("id")) {
+                throw new BadRequestException("Invalid cursor: " + cursor);
+            }
+        } catch (IllegalArgumentException | IOException e) {
+            throw new BadRequestException("Invalid cursor: " + cursor);
+        }
+
+        Set<String> properties = sort.stream().map(Sort.Order::getProperty).collect(Collectors.toSet());
+        if (!keys.keySet().equals(properties) || descending != isDescending(sort)) {
+            throw new BadRequestException("Cursor does not match the sort: " + cursor);
+        }
+        return ScrollPosition.forward(keys);
+    }
+
+    private static boolean isDescending(Sort sort) {
+        return sort.stream().anyMatch(Sort.Order::isDescending);
+    }
+}
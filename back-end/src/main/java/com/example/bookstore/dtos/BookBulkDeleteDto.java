@@ -0,0 +1,22 @@
+package com.example.bookstore.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Selects the books either by {@code ids} or by {@code author}, exactly one of them must be given.
+ */
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookBulkDeleteDto {
+
+    private List<Integer> ids;
+
+    private String author;
+
+}
@@ -0,0 +1,15 @@
+package com.example.bookstore.dtos;
+
+import lombok.*;
+
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookBulkResultDto {
+
+    private Integer affected;
+
+}
@@ -0,0 +1,31 @@
+package com.example.bookstore.dtos;
+
+import jakarta.validation.constraints.Positive;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Selects the books either by {@code ids} or by {@code author}, and either sets their {@code price} or
+ * multiplies it by {@code priceFactor}. Exactly one of each pair must be given.
+ */
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookBulkUpdateDto {
+
+    private List<Integer> ids;
+
+    private String author;
+
+    @Positive
+    private BigDecimal price;
+
+    @Positive
+    private BigDecimal priceFactor;
+
+}
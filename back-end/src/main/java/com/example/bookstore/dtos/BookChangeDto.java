@@ -0,0 +1,32 @@
+package com.example.bookstore.dtos;
+
+import com.example.bookstore.events.BookChangedEvent;
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * One entry of the change feed. The book fields are those written, they are null for the bulk changes, which
+ * only know the ids (and for the deletions of the bulk kind, nothing else is left anyway).
+ */
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookChangeDto {
+
+    private Long sequence;
+
+    private BookChangedEvent.Type type;
+
+    private Integer bookId;
+
+    private String title;
+
+    private String author;
+
+    private BigDecimal price;
+
+}
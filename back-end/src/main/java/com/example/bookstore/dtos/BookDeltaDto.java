@@ -0,0 +1,26 @@
+package com.example.bookstore.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookDeltaDto {
+
+    private List<BookDto> changed;
+
+    private List<Integer> deleted;
+
+    /**
+     * The change sequence to send back as {@code since} to get the next changes.
+     */
+    private Long until;
+
+    private Boolean hasMore;
+
+}
@@ -0,0 +1,21 @@
+package com.example.bookstore.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookFacetsDto {
+
+    private Long total;
+
+    private List<BookFacetCountDto> authors;
+
+    private List<BookPriceBucketDto> prices;
+
+}
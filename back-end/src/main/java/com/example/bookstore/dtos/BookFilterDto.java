@@ -0,0 +1,28 @@
+package com.example.bookstore.dtos;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+/**
+ * Catalog filters, all optional and AND-ed. Matches are case-sensitive so that they stay index range scans.
+ */
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookFilterDto {
+
+    private String author;
+
+    private String authorPrefix;
+
+    private String titlePrefix;
+
+    private BigDecimal minPrice;
+
+    private BigDecimal maxPrice;
+
+}
@@ -0,0 +1,20 @@
+package com.example.bookstore.dtos;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.util.List;
+
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookIdsDto {
+
+    @NotEmpty
+    private List<@NotNull Integer> ids;
+
+}
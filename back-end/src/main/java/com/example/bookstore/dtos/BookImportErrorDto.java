@@ -0,0 +1,17 @@
+package com.example.bookstore.dtos;
+
+import lombok.*;
+
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookImportErrorDto {
+
+    private Long line;
+
+    private String error;
+
+}
@@ -0,0 +1,21 @@
+package com.example.bookstore.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookImportReportDto {
+
+    private Long received;
+
+    private Long imported;
+
+    private List<BookImportErrorDto> errors;
+
+}
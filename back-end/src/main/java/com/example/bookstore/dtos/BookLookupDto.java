@@ -0,0 +1,22 @@
+package com.example.bookstore.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * The books found, in the order of the ids asked for, and the ids of the books not found.
+ */
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookLookupDto {
+
+    private List<BookDto> items;
+
+    private List<Integer> missing;
+
+}
@@ -0,0 +1,24 @@
+package com.example.bookstore.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookPageDto {
+
+    private List<BookDto> items;
+
+    private Integer size;
+
+    /**
+     * Opaque cursor to send back as {@code after} to fetch the next page, null when there are no more books.
+     */
+    private String nextCursor;
+
+}
@@ -0,0 +1,21 @@
+package com.example.bookstore.dtos;
+
+import lombok.*;
+
+import java.math.BigDecimal;
+
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookPriceBucketDto {
+
+    private BigDecimal from;
+
+    private BigDecimal to;
+
+    private Long count;
+
+}
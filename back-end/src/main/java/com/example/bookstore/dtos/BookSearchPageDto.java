@@ -0,0 +1,23 @@
+package com.example.bookstore.dtos;
+
+import lombok.*;
+
+import java.util.List;
+
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookSearchPageDto {
+
+    private List<BookDto> items;
+
+    private Integer page;
+
+    private Integer size;
+
+    private Long total;
+
+}
@@ -0,0 +1,19 @@
+package com.example.bookstore.dtos;
+
+import lombok.*;
+
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookSuggestionDto {
+
+    private String text;
+
+    private String field;
+
+    private Integer weight;
+
+}
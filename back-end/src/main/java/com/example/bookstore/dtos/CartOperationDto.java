@@ -0,0 +1,34 @@
+package com.example.bookstore.dtos;
+
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+/**
+ * One change to a cart: {@code ADD} a quantity of a book, {@code SET} its quantity (0 removes it) or
+ * {@code REMOVE} it. The quantity is ignored by {@code REMOVE}.
+ */
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class CartOperationDto {
+
+    public enum Type {
+        ADD,
+        SET,
+        REMOVE
+    }
+
+    @NotNull
+    private Type op;
+
+    @NotNull
+    private Integer bookId;
+
+    @Min(0)
+    private Integer quantity;
+
+}
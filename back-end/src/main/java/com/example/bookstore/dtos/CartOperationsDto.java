@@ -0,0 +1,24 @@
+package com.example.bookstore.dtos;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Changes applied to a cart in order and all together: when one of them fails, none is.
+ */
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class CartOperationsDto {
+
+    @NotEmpty
+    private List<@NotNull @Valid CartOperationDto> operations;
+
+}
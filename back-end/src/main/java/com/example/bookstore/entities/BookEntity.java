@@ -1,12 +1,23 @@
 package com.example.bookstore.entities;
 
+import com.example.bookstore.listeners.BookEntityListener;
 import jakarta.persistence.*;
 import lombok.*;
 
 import java.math.BigDecimal;
 
+/**
+ * The indexes lead with the filtered and sorted column and end with the id, the keyset tie-breaker: a filter
+ * combined with its sort and a cursor is read as one index range, already in page order.
+ */
 @Entity
-@Table(name = "BOOKS")
+@Table(name = "BOOKS", indexes = {
+        @Index(name = "IDX_BOOKS_AUTHOR_ID", columnList = "AUTHOR, ID"),
+        @Index(name = "IDX_BOOKS_TITLE_ID", columnList = "TITLE, ID"),
+        @Index(name = "IDX_BOOKS_PRICE_ID", columnList = "PRICE, ID"),
+        @Index(name = "IDX_BOOKS_CHANGE_SEQ", columnList = "CHANGE_SEQ")
+})
+@EntityListeners(BookEntityListener.class)
 @Builder
 @Getter
 @Setter
@@ -15,9 +26,14 @@ import java.math.BigDecimal;
 @ToString
 public class BookEntity {
 
+    /**
+     * Ids are taken from a pooled sequence: one round trip reserves {@code allocationSize} ids, which keeps
+     * the inserts of the bulk import batched.
+     */
     @Id
     @Column(name = "ID")
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "BOOKS_SEQ")
+    @SequenceGenerator(name = "BOOKS_SEQ", sequenceName = "BOOKS_SEQ", allocationSize = 50)
     private Integer id;
 
     @Column(name = "TITLE", nullable = false)
@@ -26,6 +42,19 @@ public class BookEntity {
     @Column(name = "AUTHOR", nullable = false)
     private String author;
 
-    @Column(name = "PRICE")
+    @Column(name = "PRICE", nullable = false)
     private BigDecimal price;
+
+    /**
+     * Tags the book in the ETags. Primitive so that Spring Data tells new books apart by their id only.
+     */
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    private long version;
+
+    /**
+     * Position of the last write of the book in the change log, set by {@code BookEntityListener}.
+     */
+    @Column(name = "CHANGE_SEQ", nullable = false)
+    private long changeSeq;
 }
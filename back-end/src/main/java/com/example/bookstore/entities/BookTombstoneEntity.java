@@ -0,0 +1,28 @@
+package com.example.bookstore.entities;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+/**
+ * What is left of a deleted book for the delta sync: its id and the position of the deletion in the catalog
+ * change log. Written with plain JDBC by {@code BookChangeLog}, read through JPA.
+ */
+@Entity
+@Table(name = "BOOK_TOMBSTONES", indexes = {
+        @Index(name = "IDX_BOOK_TOMBSTONES_CHANGE_SEQ", columnList = "CHANGE_SEQ")
+})
+@Builder
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@ToString
+public class BookTombstoneEntity {
+
+    @Id
+    @Column(name = "BOOK_ID")
+    private Integer bookId;
+
+    @Column(name = "CHANGE_SEQ", nullable = false)
+    private long changeSeq;
+}
@@ -3,13 +3,14 @@ package com.example.bookstore.entities;
 import jakarta.persistence.*;
 import lombok.*;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 
 @Entity
-@Table(name = "CARTS")
+@Table(name = "CARTS", uniqueConstraints = @UniqueConstraint(name = CartEntity.USER_UNIQUE_KEY,
+        columnNames = "USERNAME"))
 @Builder
 @Getter
 @Setter
@@ -18,43 +19,60 @@ import java.util.Optional;
 @ToString
 public class CartEntity {
 
+    /**
+     * One cart per user: two first changes racing to create the cart of a user cannot both succeed.
+     */
+    public static final String USER_UNIQUE_KEY = "UK_CARTS_USERNAME";
+
     @Id
     @Column(name = "ID")
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Integer id;
 
-    @OneToOne
+    /**
+     * Mapped as a many-to-one so that the uniqueness of the user is the named {@link #USER_UNIQUE_KEY}, which a
+     * one-to-one would replace with an anonymous one.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "USERNAME", referencedColumnName = "USERNAME")
     private UserEntity user;
 
+    /**
+     * Keyed by the id of their book, in the order the lines were created.
+     */
     @OneToMany(mappedBy = "cart", cascade = CascadeType.ALL, orphanRemoval = true)
-    private List<CartItemEntity> items = new ArrayList<>();
+    @MapKey(name = "bookId")
+    @OrderBy("id")
+    private Map<Integer, CartItemEntity> items = new LinkedHashMap<>();
+
+    /**
+     * Bumped when a line is added or removed, changes of quantity bump the version of the line.
+     */
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    private long version;
 
-    // Getters, setters, constructors
     public void addItem(CartItemEntity item) {
-        this.getItems().add(item);
+        item.setBookId(item.getBook().getId());
         item.setCart(this);
+        this.getItems().put(item.getBookId(), item);
     }
 
     public void removeItem(CartItemEntity item) {
-        this.getItems().remove(item);
-        item.setCart(null);
+        if (this.getItems().remove(item.getBookId(), item)) {
+            item.setCart(null);
+        }
     }
 
-    public List<CartItemEntity> getItems() {
+    public Map<Integer, CartItemEntity> getItems() {
         if (Objects.isNull(this.items)) {
-            this.items = new ArrayList<>();
+            this.items = new LinkedHashMap<>();
         }
 
         return this.items;
     }
 
     public Optional<CartItemEntity> findCartItemByBookId(Integer bookId) {
-        return this.getItems().stream()
-                .filter(cartItem -> bookId.equals(cartItem.getBook().getId()))
-                .findFirst();
+        return Optional.ofNullable(this.getItems().get(bookId));
     }
-
-
-
 }
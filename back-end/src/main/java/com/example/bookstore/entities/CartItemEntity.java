@@ -3,8 +3,11 @@ package com.example.bookstore.entities;
 import jakarta.persistence.*;
 import lombok.*;
 
+import java.util.Objects;
+
 @Entity
-@Table(name = "CART_ITEMS")
+@Table(name = "CART_ITEMS", uniqueConstraints = @UniqueConstraint(name = CartItemEntity.BOOK_UNIQUE_KEY,
+        columnNames = {"CART_ID", "BOOK_ID"}))
 @Builder
 @Getter
 @Setter
@@ -13,20 +16,72 @@ import lombok.*;
 @ToString
 public class CartItemEntity {
 
+    /**
+     * One line per book in a cart: two changes racing to add the first line of a book cannot both succeed.
+     */
+    public static final String BOOK_UNIQUE_KEY = "UK_CART_ITEMS_CART_BOOK";
+
+    /**
+     * The foreign key of the lines to their book, which rejects a line added to a book deleted meanwhile.
+     */
+    public static final String BOOK_FOREIGN_KEY = "FK_CART_ITEMS_BOOK";
+
     @Id
     @Column(name = "ID")
     @GeneratedValue(strategy = GenerationType.AUTO)
     private Integer id;
 
-    @ManyToOne
+    /**
+     * Lazy: an item is always reached through its cart, which is then already loaded.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "CART_ID", referencedColumnName = "ID")
+    @ToString.Exclude
     private CartEntity cart;
 
-    @ManyToOne
-    @JoinColumn(name = "BOOK_ID", referencedColumnName = "ID")
+    /**
+     * Lazy, the cart reads join the books up front (see {@code CartRepository#findByUserUsername}) rather than
+     * selecting them one item at a time.
+     */
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "BOOK_ID", referencedColumnName = "ID", foreignKey = @ForeignKey(name = BOOK_FOREIGN_KEY))
     private BookEntity book;
 
+    /**
+     * The key of the item in {@link CartEntity#getItems()}, written through {@link #book}.
+     */
+    @Column(name = "BOOK_ID", insertable = false, updatable = false)
+    private Integer bookId;
+
     @Column(name = "QUANTITY")
     private Integer quantity;
 
+    /**
+     * Bumped by Hibernate on every change of quantity, so that concurrent increments of a line are detected
+     * rather than lost.
+     */
+    @Version
+    @Column(name = "VERSION", nullable = false)
+    private long version;
+
+    /**
+     * Identity is the database one: two instances are equal when they stand for the same row. A new item is
+     * only equal to itself, and the hash code does not change when it is given an id.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CartItemEntity other)) {
+            return false;
+        }
+        return Objects.nonNull(id) && id.equals(other.getId());
+    }
+
+    @Override
+    public int hashCode() {
+        return CartItemEntity.class.hashCode();
+    }
+
 }
@@ -0,0 +1,21 @@
+package com.example.bookstore.events;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.List;
+
+/**
+ * Published by the set-based bulk operations, which bypass the entity listeners and therefore do not raise
+ * a {@link BookChangedEvent} per book. Only the ids of the books are known: bulk updates change prices only.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class BookBulkChangedEvent {
+
+    private BookChangedEvent.Type type;
+
+    private List<Integer> ids;
+}
@@ -0,0 +1,38 @@
+package com.example.bookstore.events;
+
+import com.example.bookstore.entities.BookEntity;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+
+/**
+ * Published whenever a book row is inserted, updated or deleted, carrying a copy of the book as written,
+ * so the in-memory views of the catalog can follow the database.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class BookChangedEvent {
+
+    public enum Type {
+        CREATED,
+        UPDATED,
+        DELETED
+    }
+
+    private Type type;
+
+    private Integer id;
+
+    private String title;
+
+    private String author;
+
+    private BigDecimal price;
+
+    public static BookChangedEvent of(Type type, BookEntity entity) {
+        return new BookChangedEvent(type, entity.getId(), entity.getTitle(), entity.getAuthor(), entity.getPrice());
+    }
+}
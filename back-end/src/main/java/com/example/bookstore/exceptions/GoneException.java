@@ -0,0 +1,7 @@
+package com.example.bookstore.exceptions;
+
+public class GoneException extends RuntimeException {
+    public GoneException(String message) {
+        super(message);
+    }
+}
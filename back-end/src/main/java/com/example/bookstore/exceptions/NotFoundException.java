@@ -1,7 +1,11 @@
 package com.example.bookstore.exceptions;
 
+/**
+ * An expected outcome, answered with a 404 by {@code NotFoundExceptionAdvice} and never logged: the stack trace
+ * is not captured, which keeps the lookups of unknown ids cheap.
+ */
 public class NotFoundException extends RuntimeException {
     public NotFoundException(String message) {
-        super(message);
+        super(message, null, false, false);
     }
 }
@@ -0,0 +1,75 @@
+package com.example.bookstore.facets;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Book counts of a set of books: in total, for its most represented authors and per price range.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class BookFacets {
+
+    private long total;
+
+    /**
+     * Most books first, then by author.
+     */
+    private List<Count> authors;
+
+    /**
+     * Every price range, in ascending order, empty ones included.
+     */
+    private List<Bucket> prices;
+
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    public static class Count {
+
+        private String value;
+
+        private long count;
+    }
+
+    /**
+     * The books priced in {@code [from, to)}, the first range being open below and the last one above.
+     */
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    public static class Bucket {
+
+        private BigDecimal from;
+
+        private BigDecimal to;
+
+        private long count;
+    }
+
+    /**
+     * The index of the range of the price among the ones delimited by the ascending bounds.
+     */
+    public static int bucket(List<BigDecimal> bounds, BigDecimal price) {
+        int index = Collections.binarySearch(bounds, price);
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    /**
+     * The ranges delimited by the ascending bounds, with their counts: one more than the bounds.
+     */
+    public static List<Bucket> buckets(List<BigDecimal> bounds, long[] counts) {
+        List<Bucket> buckets = new ArrayList<>(counts.length);
+        for (int i = 0; i < counts.length; i++) {
+            buckets.add(new Bucket(i == 0 ? null : bounds.get(i - 1), i == bounds.size() ? null : bounds.get(i), counts[i]));
+        }
+        return buckets;
+    }
+}
@@ -0,0 +1,192 @@
+package com.example.bookstore.imports;
+
+import com.example.bookstore.dtos.BookDto;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.exceptions.BadRequestException;
+import com.example.bookstore.mappers.BookMapper;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.stream.Collectors;
+
+/**
+ * Reads the rows of a bulk import one line at a time, as the body arrives, and turns each of them into a
+ * validated book or into the reason of its rejection.
+ * <p>
+ * Two formats are supported: NDJSON, one {@link BookDto} per line, and CSV with a header line naming at least
+ * the {@code title}, {@code author} and {@code price} columns (in any order, other columns are ignored).
+ * Quoted CSV fields may contain commas and doubled quotes, but not line breaks.
+ */
+public class BookImportReader implements Iterator<BookImportRow> {
+
+    public enum Format {
+        NDJSON,
+        CSV
+    }
+
+    private static final List<String> CSV_COLUMNS = List.of("title", "author", "price");
+
+    private final BufferedReader reader;
+
+    private final Format format;
+
+    private final ObjectMapper objectMapper;
+
+    private final Validator validator;
+
+    private final BookMapper mapper;
+
+    private Map<String, Integer> columns;
+
+    private long line;
+
+    private BookImportRow next;
+
+    public BookImportReader(Reader reader, Format format, ObjectMapper objectMapper, Validator validator, BookMapper mapper) {
+        this.reader = new BufferedReader(reader);
+        this.format = format;
+        this.objectMapper = objectMapper;
+        this.validator = validator;
+        this.mapper = mapper;
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (Objects.isNull(next)) {
+            try {
+                next = read();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return Objects.nonNull(next);
+    }
+
+    @Override
+    public BookImportRow next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        BookImportRow row = next;
+        next = null;
+        return row;
+    }
+
+    private BookImportRow read() throws IOException {
+        String text;
+        while (Objects.nonNull(text = reader.readLine())) {
+            line++;
+            if (text.isBlank()) {
+                continue;
+            }
+
+            if (format == Format.CSV && Objects.isNull(columns)) {
+                columns = header(text);
+                continue;
+            }
+
+            return parse(text);
+        }
+        return null;
+    }
+
+    private BookImportRow parse(String text) {
+        BookDto dto;
+        try {
+            dto = format == Format.NDJSON ? objectMapper.readValue(text, BookDto.class) : csv(text);
+        } catch (JsonProcessingException e) {
+            return BookImportRow.invalid(line, "Malformed JSON: " + e.getOriginalMessage());
+        } catch (IllegalArgumentException e) {
+            return BookImportRow.invalid(line, e.getMessage());
+        }
+
+        Set<ConstraintViolation<BookDto>> violations = validator.validate(dto);
+        if (!violations.isEmpty()) {
+            return BookImportRow.invalid(line, violations.stream()
+                    .map(violation -> violation.getPropertyPath() + ": " + violation.getMessage())
+                    .sorted()
+                    .collect(Collectors.joining(", ")));
+        }
+
+        BookEntity entity = mapper.toEntity(dto);
+        entity.setId(null); // making sure we are creating it
+        return BookImportRow.valid(line, entity);
+    }
+
+    private Map<String, Integer> header(String text) {
+        List<String> names = split(text);
+
+        Map<String, Integer> header = new HashMap<>();
+        for (int i = 0; i < names.size(); i++) {
+            header.putIfAbsent(names.get(i).trim().toLowerCase(Locale.ROOT), i);
+        }
+
+        List<String> missing = CSV_COLUMNS.stream().filter(column -> !header.containsKey(column)).toList();
+        if (!missing.isEmpty()) {
+            throw new BadRequestException("Missing CSV columns: " + String.join(", ", missing));
+        }
+
+        return header;
+    }
+
+    private BookDto csv(String text) {
+        List<String> fields = split(text);
+        if (fields.size() < columns.size()) {
+            throw new IllegalArgumentException("Expected " + columns.size() + " columns but got " + fields.size());
+        }
+
+        String price = fields.get(columns.get("price")).trim();
+        try {
+            return BookDto.builder()
+                    .title(fields.get(columns.get("title")).trim())
+                    .author(fields.get(columns.get("author")).trim())
+                    .price(price.isEmpty() ? null : new BigDecimal(price))
+                    .build();
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid price: " + price);
+        }
+    }
+
+    static List<String> split(String text) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < text.length() && text.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+
+        if (quoted) {
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+
+        fields.add(field.toString());
+        return fields;
+    }
+}
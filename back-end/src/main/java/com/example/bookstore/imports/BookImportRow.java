@@ -0,0 +1,35 @@
+package com.example.bookstore.imports;
+
+import com.example.bookstore.entities.BookEntity;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.Objects;
+
+/**
+ * One row of a bulk import: either the book to insert or the reason why the row was rejected.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class BookImportRow {
+
+    private long line;
+
+    private BookEntity book;
+
+    private String error;
+
+    public static BookImportRow valid(long line, BookEntity book) {
+        return new BookImportRow(line, book, null);
+    }
+
+    public static BookImportRow invalid(long line, String error) {
+        return new BookImportRow(line, null, error);
+    }
+
+    public boolean isValid() {
+        return Objects.isNull(error);
+    }
+}
@@ -0,0 +1,163 @@
+package com.example.bookstore.indexes;
+
+import com.example.bookstore.facets.BookFacets;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory book counts of the whole catalog per author and per price range, kept up to date book by book.
+ * <p>
+ * The author and the price range of every book are remembered, so that a write moves the book from its old
+ * counts to its new ones without a query. Reading the facets costs the number of authors and of ranges, not the
+ * number of books.
+ * <p>
+ * Thread-safe: reads share a read lock, updates take the write lock.
+ */
+public class BookFacetIndex {
+
+    private static final Comparator<Map.Entry<String, Long>> RANKING =
+            Map.Entry.<String, Long>comparingByValue().reversed().thenComparing(Map.Entry.comparingByKey());
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final List<BigDecimal> bounds;
+
+    private final Map<Integer, Book> books = new HashMap<>();
+
+    private final Map<String, Long> authors = new HashMap<>();
+
+    private final long[] buckets;
+
+    private static final class Book {
+
+        private final String author;
+
+        private final int bucket;
+
+        private Book(String author, int bucket) {
+            this.author = author;
+            this.bucket = bucket;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Book book && author.equals(book.author) && bucket == book.bucket;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(author, bucket);
+        }
+    }
+
+    /**
+     * @param bounds the ascending prices delimiting the ranges
+     */
+    public BookFacetIndex(List<BigDecimal> bounds) {
+        this.bounds = List.copyOf(bounds);
+        this.buckets = new long[bounds.size() + 1];
+    }
+
+    public void put(Integer id, String author, BigDecimal price) {
+        Book book = new Book(author, BookFacets.bucket(bounds, price));
+
+        lock.writeLock().lock();
+        try {
+            Book previous = books.put(id, book);
+            if (book.equals(previous)) {
+                return;
+            }
+
+            if (Objects.nonNull(previous)) {
+                uncount(previous);
+            }
+            authors.merge(book.author, 1L, Long::sum);
+            buckets[book.bucket]++;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer id) {
+        lock.writeLock().lock();
+        try {
+            Book previous = books.remove(id);
+            if (Objects.nonNull(previous)) {
+                uncount(previous);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return books.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The counts with the {@code limit} authors having the most books.
+     */
+    public BookFacets facets(int limit) {
+        lock.readLock().lock();
+        try {
+            // min-heap keeping only the best authors, the worst one on top
+            PriorityQueue<Map.Entry<String, Long>> heap = new PriorityQueue<>(RANKING.reversed());
+            for (Map.Entry<String, Long> entry : authors.entrySet()) {
+                heap.offer(entry);
+                if (heap.size() > limit) {
+                    heap.poll();
+                }
+            }
+
+            List<BookFacets.Count> top = new ArrayList<>(heap.size());
+            while (!heap.isEmpty()) {
+                Map.Entry<String, Long> entry = heap.poll();
+                top.add(new BookFacets.Count(entry.getKey(), entry.getValue()));
+            }
+            Collections.reverse(top);
+
+            return new BookFacets(books.size(), top, BookFacets.buckets(bounds, buckets.clone()));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The number of books counted differently by the other index: missing from one of them, or with another
+     * author or price range.
+     */
+    public int drift(BookFacetIndex other) {
+        lock.readLock().lock();
+        other.lock.readLock().lock();
+        try {
+            int drift = 0;
+            for (Map.Entry<Integer, Book> entry : books.entrySet()) {
+                if (!entry.getValue().equals(other.books.get(entry.getKey()))) {
+                    drift++;
+                }
+            }
+            for (Integer id : other.books.keySet()) {
+                if (!books.containsKey(id)) {
+                    drift++;
+                }
+            }
+            return drift;
+        } finally {
+            other.lock.readLock().unlock();
+            lock.readLock().unlock();
+        }
+    }
+
+    private void uncount(Book book) {
+        authors.computeIfPresent(book.author, (author, count) -> count == 1 ? null : count - 1);
+        buckets[book.bucket]--;
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.bookstore.indexes;
+
+import java.util.BitSet;
+import java.util.Objects;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory set of the ids of the books, one bit per id. The ids are taken from a sequence, dense enough for a
+ * bitmap to be exact and smaller than a hash set or a Bloom filter: a million books take 125 KB.
+ * <p>
+ * Thread-safe: lookups share a read lock, updates take the write lock.
+ */
+public class BookIdSet {
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final BitSet ids = new BitSet();
+
+    public void add(Integer id) {
+        if (Objects.isNull(id) || id < 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            ids.set(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer id) {
+        if (Objects.isNull(id) || id < 0) {
+            return;
+        }
+
+        lock.writeLock().lock();
+        try {
+            ids.clear(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(Integer id) {
+        if (Objects.isNull(id) || id < 0) {
+            return false;
+        }
+
+        lock.readLock().lock();
+        try {
+            return ids.get(id);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return ids.cardinality();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+}
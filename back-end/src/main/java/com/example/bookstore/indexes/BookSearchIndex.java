@@ -0,0 +1,286 @@
+package com.example.bookstore.indexes;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index over the title and the author of the books, ranked with BM25.
+ * <p>
+ * Each book is a bag of the folded terms of its title and author ({@link Tokenizer}). The index keeps, per term,
+ * the books containing it with the term frequency, so a query only walks the postings of its own terms.
+ * Query terms are OR-ed: books matching more terms, and rarer terms, rank first.
+ * <p>
+ * Typo tolerance is optional and works with a deletion dictionary (SymSpell): every term is also registered under
+ * all of its variants with one character removed, so the terms within one edit (insertion, deletion, substitution
+ * or transposition) of a query term are found with a handful of lookups instead of a scan of the vocabulary.
+ * Fuzzy matches score less than exact ones.
+ * <p>
+ * Thread-safe: queries share a read lock, updates take the write lock.
+ */
+public class BookSearchIndex {
+
+    private static final double K1 = 1.2;
+
+    private static final double B = 0.75;
+
+    private static final double FUZZY_WEIGHT = 0.5;
+
+    /**
+     * Shorter query terms are matched exactly only, one edit away from them is almost any other short word.
+     */
+    private static final int FUZZY_MIN_LENGTH = 4;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, Map<Integer, Integer>> postings = new HashMap<>();
+
+    private final Map<Integer, String[]> documents = new HashMap<>();
+
+    private final Map<String, Set<String>> deletions = new HashMap<>();
+
+    private long totalLength;
+
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    public static class Hits {
+
+        private long total;
+
+        private List<Integer> ids;
+    }
+
+    public void put(Integer id, String title, String author) {
+        String[] tokens = concat(Tokenizer.tokenize(title), Tokenizer.tokenize(author));
+
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+
+            Map<String, Integer> frequencies = new HashMap<>();
+            for (String token : tokens) {
+                frequencies.merge(token, 1, Integer::sum);
+            }
+
+            frequencies.forEach((term, frequency) -> {
+                Map<Integer, Integer> posting = postings.get(term);
+                if (Objects.isNull(posting)) {
+                    posting = new HashMap<>();
+                    postings.put(term, posting);
+                    registerDeletions(term);
+                }
+                posting.put(id, frequency);
+            });
+
+            documents.put(id, tokens);
+            totalLength += tokens.length;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer id) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Ranks the books matching the query and returns the ids of the requested slice, best match first.
+     */
+    public Hits search(String query, boolean fuzzy, long offset, int limit) {
+        Set<String> terms = new LinkedHashSet<>(Arrays.asList(Tokenizer.tokenize(query)));
+
+        lock.readLock().lock();
+        try {
+            if (terms.isEmpty() || documents.isEmpty()) {
+                return new Hits(0, List.of());
+            }
+
+            int count = documents.size();
+            double averageLength = (double) totalLength / count;
+
+            Map<Integer, Double> scores = new HashMap<>();
+            for (String term : terms) {
+                // per query term, a book keeps its best scoring expansion
+                Map<Integer, Double> termScores = new HashMap<>();
+
+                for (Map.Entry<String, Double> expansion : expand(term, fuzzy).entrySet()) {
+                    Map<Integer, Integer> posting = postings.get(expansion.getKey());
+                    double idf = Math.log(1 + (count - posting.size() + 0.5) / (posting.size() + 0.5));
+
+                    posting.forEach((id, frequency) -> {
+                        int length = documents.get(id).length;
+                        double norm = frequency + K1 * (1 - B + B * length / averageLength);
+                        double score = expansion.getValue() * idf * frequency * (K1 + 1) / norm;
+                        termScores.merge(id, score, Math::max);
+                    });
+                }
+
+                termScores.forEach((id, score) -> scores.merge(id, score, Double::sum));
+            }
+
+            return new Hits(scores.size(), top(scores, offset, limit));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Map<String, Double> expand(String term, boolean fuzzy) {
+        Map<String, Double> expansions = new HashMap<>();
+        if (postings.containsKey(term)) {
+            expansions.put(term, 1.0);
+        }
+
+        if (fuzzy && term.length() >= FUZZY_MIN_LENGTH) {
+            for (String variant : variants(term)) {
+                for (String candidate : deletions.getOrDefault(variant, Set.of())) {
+                    if (!expansions.containsKey(candidate) && withinOneEdit(term, candidate)) {
+                        expansions.put(candidate, FUZZY_WEIGHT);
+                    }
+                }
+            }
+        }
+
+        return expansions;
+    }
+
+    private static List<Integer> top(Map<Integer, Double> scores, long offset, int limit) {
+        if (offset >= scores.size() || limit <= 0) {
+            return List.of();
+        }
+
+        // best match first, the lowest id first on ties
+        Comparator<Map.Entry<Integer, Double>> ranking = Map.Entry.<Integer, Double>comparingByValue().reversed()
+                .thenComparing(Map.Entry.comparingByKey());
+
+        // min-heap keeping only the offset + limit best books, the worst one on top
+        int capacity = (int) Math.min(offset + limit, scores.size());
+        PriorityQueue<Map.Entry<Integer, Double>> heap = new PriorityQueue<>(capacity, ranking.reversed());
+        for (Map.Entry<Integer, Double> entry : scores.entrySet()) {
+            heap.offer(entry);
+            if (heap.size() > capacity) {
+                heap.poll();
+            }
+        }
+
+        List<Integer> ids = new ArrayList<>(heap.size());
+        while (!heap.isEmpty()) {
+            ids.add(heap.poll().getKey());
+        }
+        Collections.reverse(ids);
+
+        return ids.subList((int) offset, ids.size());
+    }
+
+    private void removeDocument(Integer id) {
+        String[] tokens = documents.remove(id);
+        if (Objects.isNull(tokens)) {
+            return;
+        }
+
+        for (String term : new HashSet<>(Arrays.asList(tokens))) {
+            Map<Integer, Integer> posting = postings.get(term);
+            posting.remove(id);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+                unregisterDeletions(term);
+            }
+        }
+        totalLength -= tokens.length;
+    }
+
+    private void registerDeletions(String term) {
+        if (term.length() < FUZZY_MIN_LENGTH - 1) {
+            return;
+        }
+
+        for (String variant : variants(term)) {
+            deletions.computeIfAbsent(variant, key -> new HashSet<>()).add(term);
+        }
+    }
+
+    private void unregisterDeletions(String term) {
+        if (term.length() < FUZZY_MIN_LENGTH - 1) {
+            return;
+        }
+
+        for (String variant : variants(term)) {
+            Set<String> terms = deletions.get(variant);
+            if (Objects.nonNull(terms)) {
+                terms.remove(term);
+                if (terms.isEmpty()) {
+                    deletions.remove(variant);
+                }
+            }
+        }
+    }
+
+    /**
+     * The term itself and every variant of it with one character removed.
+     */
+    private static Set<String> variants(String term) {
+        Set<String> variants = new HashSet<>();
+        variants.add(term);
+        for (int i = 0; i < term.length(); i++) {
+            variants.add(term.substring(0, i) + term.substring(i + 1));
+        }
+        return variants;
+    }
+
+    /**
+     * Whether the two terms are at most one insertion, deletion, substitution or transposition apart.
+     */
+    static boolean withinOneEdit(String a, String b) {
+        if (Math.abs(a.length() - b.length()) > 1) {
+            return false;
+        }
+
+        String shorter = a.length() <= b.length() ? a : b;
+        String longer = a.length() <= b.length() ? b : a;
+
+        int i = 0;
+        while (i < shorter.length() && shorter.charAt(i) == longer.charAt(i)) {
+            i++;
+        }
+
+        if (i == shorter.length()) {
+            return true;
+        }
+
+        if (shorter.length() != longer.length()) {
+            return longer.startsWith(shorter.substring(i), i + 1);
+        }
+
+        boolean substitution = shorter.startsWith(longer.substring(i + 1), i + 1);
+        boolean transposition = i + 1 < shorter.length()
+                && shorter.charAt(i) == longer.charAt(i + 1)
+                && shorter.charAt(i + 1) == longer.charAt(i)
+                && shorter.startsWith(longer.substring(i + 2), i + 2);
+
+        return substitution || transposition;
+    }
+
+    private static String[] concat(String[] first, String[] second) {
+        String[] tokens = Arrays.copyOf(first, first.length + second.length);
+        System.arraycopy(second, 0, tokens, first.length, second.length);
+        return tokens;
+    }
+}
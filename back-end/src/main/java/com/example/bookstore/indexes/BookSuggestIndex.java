@@ -0,0 +1,449 @@
+package com.example.bookstore.indexes;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory type-ahead over the titles and the authors of the books: a radix tree (compressed trie) of their
+ * folded values ({@link Tokenizer}), each node keeping the top suggestions of its subtree.
+ * <p>
+ * A value is reachable from the start of each of its words, so "hug" suggests "Victor Hugo". Its weight is the
+ * number of books carrying it: the authors with the most books and the titles with the most editions come first,
+ * then the shortest values.
+ * <p>
+ * A lookup walks the prefix and returns the precomputed list of the node it ends in, whatever the size of the
+ * catalog. A write recomputes the lists of the nodes on the paths of the values it touches, bottom-up, each from
+ * the lists of its children. The children are kept in sorted arrays rather than maps to keep the nodes small.
+ * <p>
+ * Thread-safe: lookups share a read lock, updates take the write lock.
+ */
+public class BookSuggestIndex {
+
+    private static final char[] NO_KEYS = new char[0];
+
+    private static final Node[] NO_NODES = new Node[0];
+
+    private static final Entry[] NO_ENTRIES = new Entry[0];
+
+    /**
+     * Heaviest first, then the shortest and in alphabetical order.
+     */
+    private static final Comparator<Entry> RANKING = Comparator.comparingInt((Entry entry) -> entry.weight).reversed()
+            .thenComparingInt(entry -> entry.value.length())
+            .thenComparing(entry -> entry.value)
+            .thenComparing(entry -> entry.field);
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final int capacity;
+
+    private final Node root = new Node("");
+
+    private final Map<Field, Map<String, Entry>> entries = new EnumMap<>(Field.class);
+
+    private final Map<Integer, Entry[]> books = new HashMap<>();
+
+    public enum Field {
+        TITLE, AUTHOR
+    }
+
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    public static class Suggestion {
+
+        private Field field;
+
+        private String text;
+
+        private int weight;
+    }
+
+    /**
+     * A distinct folded value of a field, displayed as first seen.
+     */
+    private static final class Entry {
+
+        private final Field field;
+
+        private final String value;
+
+        private final String text;
+
+        private int weight;
+
+        private Entry(Field field, String value, String text) {
+            this.field = field;
+            this.value = value;
+            this.text = text;
+        }
+    }
+
+    private static final class Node {
+
+        private String label;
+
+        private char[] keys = NO_KEYS;
+
+        private Node[] children = NO_NODES;
+
+        private Entry[] terminals = NO_ENTRIES;
+
+        private Entry[] top = NO_ENTRIES;
+
+        private Node(String label) {
+            this.label = label;
+        }
+    }
+
+    /**
+     * @param capacity the number of suggestions kept per node, the most a lookup can return
+     */
+    public BookSuggestIndex(int capacity) {
+        this.capacity = capacity;
+        for (Field field : Field.values()) {
+            entries.put(field, new HashMap<>());
+        }
+    }
+
+    public void put(Integer id, String title, String author) {
+        lock.writeLock().lock();
+        try {
+            Entry[] previous = books.get(id);
+            String titleValue = fold(title);
+            String authorValue = fold(author);
+            if (Objects.nonNull(previous)
+                    && previous[0].value.equals(titleValue) && previous[1].value.equals(authorValue)) {
+                return;
+            }
+
+            removeBook(id);
+            books.put(id, new Entry[]{increment(Field.TITLE, titleValue, title),
+                    increment(Field.AUTHOR, authorValue, author)});
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(Integer id) {
+        lock.writeLock().lock();
+        try {
+            removeBook(id);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            root.keys = NO_KEYS;
+            root.children = NO_NODES;
+            root.terminals = NO_ENTRIES;
+            root.top = NO_ENTRIES;
+            entries.values().forEach(Map::clear);
+            books.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return books.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The best suggestions starting with the prefix, or with one of its words, at most {@code limit} and never
+     * more than the capacity of the index.
+     */
+    public List<Suggestion> suggest(String prefix, int limit) {
+        String key = fold(prefix);
+
+        lock.readLock().lock();
+        try {
+            if (key.isEmpty()) {
+                return List.of();
+            }
+
+            Node node = find(key);
+            if (Objects.isNull(node)) {
+                return List.of();
+            }
+
+            int size = Math.min(limit, node.top.length);
+            List<Suggestion> suggestions = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                Entry entry = node.top[i];
+                suggestions.add(new Suggestion(entry.field, entry.text, entry.weight));
+            }
+            return suggestions;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * The node of the shortest key starting with the prefix, null when there is none.
+     */
+    private Node find(String prefix) {
+        Node node = root;
+        int i = 0;
+        while (i < prefix.length()) {
+            int index = Arrays.binarySearch(node.keys, prefix.charAt(i));
+            if (index < 0) {
+                return null;
+            }
+
+            node = node.children[index];
+            int length = Math.min(node.label.length(), prefix.length() - i);
+            if (!node.label.regionMatches(0, prefix, i, length)) {
+                return null;
+            }
+            i += length;
+        }
+        return node;
+    }
+
+    private void removeBook(Integer id) {
+        Entry[] previous = books.remove(id);
+        if (Objects.nonNull(previous)) {
+            for (Entry entry : previous) {
+                decrement(entry);
+            }
+        }
+    }
+
+    private Entry increment(Field field, String value, String text) {
+        Entry entry = entries.get(field).get(value);
+        if (Objects.isNull(entry)) {
+            entry = new Entry(field, value, text);
+            entry.weight = 1;
+            entries.get(field).put(value, entry);
+            for (String key : keys(value)) {
+                insert(key, entry);
+            }
+        } else {
+            entry.weight++;
+            for (String key : keys(value)) {
+                refresh(key);
+            }
+        }
+        return entry;
+    }
+
+    private void decrement(Entry entry) {
+        entry.weight--;
+        if (entry.weight > 0) {
+            for (String key : keys(entry.value)) {
+                refresh(key);
+            }
+            return;
+        }
+
+        entries.get(entry.field).remove(entry.value);
+        for (String key : keys(entry.value)) {
+            delete(key, entry);
+        }
+    }
+
+    private void insert(String key, Entry entry) {
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        path.push(node);
+
+        int i = 0;
+        while (i < key.length()) {
+            int index = Arrays.binarySearch(node.keys, key.charAt(i));
+            if (index < 0) {
+                Node leaf = new Node(key.substring(i));
+                addChild(node, -index - 1, leaf);
+                node = leaf;
+                path.push(node);
+                break;
+            }
+
+            Node child = node.children[index];
+            int common = commonPrefix(child.label, key, i);
+            if (common < child.label.length()) {
+                // the key ends or forks inside the label: split the edge
+                Node middle = new Node(child.label.substring(0, common));
+                child.label = child.label.substring(common);
+                middle.keys = new char[]{child.label.charAt(0)};
+                middle.children = new Node[]{child};
+                node.children[index] = middle;
+                child = middle;
+            }
+
+            node = child;
+            path.push(node);
+            i += common;
+        }
+
+        node.terminals = append(node.terminals, entry);
+        recompute(path);
+    }
+
+    private void delete(String key, Entry entry) {
+        Deque<Node> path = walk(key);
+        if (Objects.isNull(path)) {
+            return;
+        }
+
+        Node node = path.pop();
+        node.terminals = without(node.terminals, entry);
+
+        while (!path.isEmpty() && node.terminals.length == 0 && node.children.length <= 1) {
+            Node parent = path.peek();
+            int index = Arrays.binarySearch(parent.keys, node.label.charAt(0));
+            if (node.children.length == 0) {
+                removeChild(parent, index);
+            } else {
+                // a pass-through node: merge it with its only child
+                Node child = node.children[0];
+                child.label = node.label + child.label;
+                parent.children[index] = child;
+            }
+            node = path.pop();
+        }
+
+        path.push(node);
+        recompute(path);
+    }
+
+    private void refresh(String key) {
+        Deque<Node> path = walk(key);
+        if (Objects.nonNull(path)) {
+            recompute(path);
+        }
+    }
+
+    /**
+     * The nodes from the root to the one of the key, the deepest on top, null when the key is not indexed.
+     */
+    private Deque<Node> walk(String key) {
+        Deque<Node> path = new ArrayDeque<>();
+        Node node = root;
+        path.push(node);
+
+        int i = 0;
+        while (i < key.length()) {
+            int index = Arrays.binarySearch(node.keys, key.charAt(i));
+            if (index < 0) {
+                return null;
+            }
+
+            node = node.children[index];
+            if (!key.startsWith(node.label, i)) {
+                return null;
+            }
+            path.push(node);
+            i += node.label.length();
+        }
+        return path;
+    }
+
+    private void recompute(Deque<Node> path) {
+        for (Node node : path) {
+            node.top = top(node);
+        }
+    }
+
+    /**
+     * The best entries among the ones ending at the node and the best ones of its children. A value reachable
+     * from several of its words may come from several children, it is kept once.
+     */
+    private Entry[] top(Node node) {
+        List<Entry> candidates = new ArrayList<>(Arrays.asList(node.terminals));
+        for (Node child : node.children) {
+            candidates.addAll(Arrays.asList(child.top));
+        }
+        candidates.sort(RANKING);
+
+        List<Entry> top = new ArrayList<>(Math.min(capacity, candidates.size()));
+        for (Entry candidate : candidates) {
+            if (top.size() == capacity) {
+                break;
+            }
+            if (top.isEmpty() || top.get(top.size() - 1) != candidate) {
+                top.add(candidate);
+            }
+        }
+        return top.toArray(NO_ENTRIES);
+    }
+
+    private static void addChild(Node node, int index, Node child) {
+        char[] keys = new char[node.keys.length + 1];
+        Node[] children = new Node[node.children.length + 1];
+        System.arraycopy(node.keys, 0, keys, 0, index);
+        System.arraycopy(node.children, 0, children, 0, index);
+        keys[index] = child.label.charAt(0);
+        children[index] = child;
+        System.arraycopy(node.keys, index, keys, index + 1, node.keys.length - index);
+        System.arraycopy(node.children, index, children, index + 1, node.children.length - index);
+        node.keys = keys;
+        node.children = children;
+    }
+
+    private static void removeChild(Node node, int index) {
+        char[] keys = new char[node.keys.length - 1];
+        Node[] children = new Node[node.children.length - 1];
+        System.arraycopy(node.keys, 0, keys, 0, index);
+        System.arraycopy(node.children, 0, children, 0, index);
+        System.arraycopy(node.keys, index + 1, keys, index, keys.length - index);
+        System.arraycopy(node.children, index + 1, children, index, children.length - index);
+        node.keys = keys;
+        node.children = children;
+    }
+
+    private static Entry[] append(Entry[] entries, Entry entry) {
+        Entry[] appended = Arrays.copyOf(entries, entries.length + 1);
+        appended[entries.length] = entry;
+        return appended;
+    }
+
+    private static Entry[] without(Entry[] entries, Entry entry) {
+        return Arrays.stream(entries).filter(candidate -> candidate != entry).toArray(Entry[]::new);
+    }
+
+    private static int commonPrefix(String label, String key, int offset) {
+        int length = Math.min(label.length(), key.length() - offset);
+        int i = 0;
+        while (i < length && label.charAt(i) == key.charAt(offset + i)) {
+            i++;
+        }
+        return i;
+    }
+
+    /**
+     * The folded value and its tails starting at each of its other words.
+     */
+    private static List<String> keys(String value) {
+        List<String> keys = new ArrayList<>();
+        if (value.isEmpty()) {
+            return keys;
+        }
+
+        keys.add(value);
+        for (int i = value.indexOf(' '); i >= 0; i = value.indexOf(' ', i + 1)) {
+            keys.add(value.substring(i + 1));
+        }
+        return keys;
+    }
+
+    /**
+     * The folded words of the text separated by single spaces.
+     */
+    private static String fold(String text) {
+        return String.join(" ", Tokenizer.tokenize(text));
+    }
+}
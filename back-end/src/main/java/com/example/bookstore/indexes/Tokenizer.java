@@ -0,0 +1,43 @@
+package com.example.bookstore.indexes;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * Text folding shared by the in-memory indexes: accents are stripped, case is lowered and the text is
+ * split on anything that is neither a letter nor a digit. "Émile Zola" and "emile zola" give the same terms.
+ */
+public final class Tokenizer {
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{M}+");
+
+    private static final Pattern SEPARATORS = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private static final String[] NO_TOKENS = new String[0];
+
+    private Tokenizer() {
+    }
+
+    public static String normalize(String text) {
+        if (Objects.isNull(text)) {
+            return "";
+        }
+
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    public static String[] tokenize(String text) {
+        String normalized = normalize(text);
+        if (normalized.isBlank()) {
+            return NO_TOKENS;
+        }
+
+        return Arrays.stream(SEPARATORS.split(normalized))
+                .filter(token -> !token.isEmpty())
+                .toArray(String[]::new);
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.bookstore.listeners;
+
+import com.example.bookstore.configs.CacheConfig;
+import com.example.bookstore.events.BookBulkChangedEvent;
+import com.example.bookstore.events.BookChangedEvent;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Objects;
+
+/**
+ * Evicts the changed books from the {@value CacheConfig#BOOKS_CACHE} and {@value CacheConfig#BOOK_VERSIONS_CACHE}
+ * caches once the change is committed,
+ * so the next read loads the committed row. A read racing with the commit may still cache the previous
+ * version, which is then bounded by the cache TTL.
+ */
+@Component
+@Slf4j
+public class BookCacheListener {
+
+    private CacheManager cacheManager;
+
+    @Autowired
+    public BookCacheListener(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        log.debug("onBookChanged() - evicting book {}", event.getId());
+        evict(CacheConfig.BOOKS_CACHE, event.getId());
+        evict(CacheConfig.BOOK_VERSIONS_CACHE, event.getId());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BookBulkChangedEvent event) {
+        log.debug("onBooksChanged() - evicting {} books", event.getIds().size());
+        event.getIds().forEach(id -> {
+            evict(CacheConfig.BOOKS_CACHE, id);
+            evict(CacheConfig.BOOK_VERSIONS_CACHE, id);
+        });
+    }
+
+    private void evict(String cacheName, Integer id) {
+        Cache cache = cacheManager.getCache(cacheName);
+        if (Objects.nonNull(cache)) {
+            cache.evict(id);
+        }
+    }
+}
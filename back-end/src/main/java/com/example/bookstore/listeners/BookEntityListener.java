@@ -0,0 +1,62 @@
+package com.example.bookstore.listeners;
+
+import com.example.bookstore.changes.BookChangeLog;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.events.BookChangedEvent;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+
+/**
+ * Turns every write on {@link BookEntity} into a {@link BookChangedEvent}, and numbers it in the
+ * {@link BookChangeLog}: the change sequence of the book, or a tombstone for a deletion.
+ * <p>
+ * Hooking the entity rather than the service means every path writing books (service, repositories, batches)
+ * is seen. The listeners interested only in committed data use {@code @TransactionalEventListener}.
+ * The instance is created by Hibernate through the Spring bean container, hence the injection.
+ */
+@Slf4j
+public class BookEntityListener {
+
+    private ApplicationEventPublisher publisher;
+
+    private BookChangeLog changeLog;
+
+    @Autowired
+    public BookEntityListener(ApplicationEventPublisher publisher, BookChangeLog changeLog) {
+        this.publisher = publisher;
+        this.changeLog = changeLog;
+    }
+
+    @PrePersist
+    @PreUpdate
+    public void preWrite(BookEntity entity) {
+        entity.setChangeSeq(changeLog.reserve(1));
+    }
+
+    @PostPersist
+    public void postPersist(BookEntity entity) {
+        publish(BookChangedEvent.of(BookChangedEvent.Type.CREATED, entity));
+    }
+
+    @PostUpdate
+    public void postUpdate(BookEntity entity) {
+        publish(BookChangedEvent.of(BookChangedEvent.Type.UPDATED, entity));
+    }
+
+    @PostRemove
+    public void postRemove(BookEntity entity) {
+        changeLog.tombstone(entity.getId(), changeLog.reserve(1));
+        publish(BookChangedEvent.of(BookChangedEvent.Type.DELETED, entity));
+    }
+
+    private void publish(BookChangedEvent event) {
+        log.debug("publish() - {}", event);
+        publisher.publishEvent(event);
+    }
+}
@@ -3,6 +3,7 @@ package com.example.bookstore.mappers;
 import com.example.bookstore.dtos.BookDto;
 import com.example.bookstore.entities.BookEntity;
 import org.mapstruct.Mapper;
+import org.mapstruct.Mapping;
 
 import java.util.List;
 
@@ -11,6 +12,8 @@ public interface BookMapper {
 
     BookDto toDto(BookEntity entity);
 
+    @Mapping(target = "version", ignore = true)
+    @Mapping(target = "changeSeq", ignore = true)
     BookEntity toEntity(BookDto dto);
 
     List<BookDto> toDtoList(List<BookEntity> entities);
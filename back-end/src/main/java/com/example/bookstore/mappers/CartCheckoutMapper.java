@@ -21,7 +21,7 @@ public interface CartCheckoutMapper {
     default void calculateTotal(@MappingTarget CartCheckoutDto cartCheckoutDto, CartEntity entity) {
         BigDecimal total = BigDecimal.ZERO;
 
-        for (CartItemEntity cartItem: entity.getItems()) {
+        for (CartItemEntity cartItem: entity.getItems().values()) {
             Integer quantity = cartItem.getQuantity();
             BigDecimal price = cartItem.getBook().getPrice();
 
@@ -5,7 +5,9 @@ import com.example.bookstore.entities.CartItemEntity;
 import org.mapstruct.*;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Mapper(componentModel = "spring", uses = {BookMapper.class})
 public interface CartItemCheckoutMapper {
@@ -17,6 +19,13 @@ public interface CartItemCheckoutMapper {
 
     List<CartItemCheckoutDto> toDtoList(List<CartItemEntity> entities);
 
+    /**
+     * The items of a cart, keyed by book id, listed in the order of the map.
+     */
+    default List<CartItemCheckoutDto> toDtoList(Map<Integer, CartItemEntity> entities) {
+        return toDtoList(new ArrayList<>(entities.values()));
+    }
+
     @AfterMapping
     default void calculateSubTotal(@MappingTarget CartItemCheckoutDto cartItemCheckoutDto, CartItemEntity entity) {
         Integer quantity = entity.getQuantity();
@@ -4,7 +4,9 @@ import com.example.bookstore.dtos.CartItemDto;
 import com.example.bookstore.entities.CartItemEntity;
 import org.mapstruct.Mapper;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 @Mapper(componentModel = "spring", uses = {BookMapper.class})
 public interface CartItemMapper {
@@ -13,4 +15,11 @@ public interface CartItemMapper {
 
     List<CartItemDto> toDtoList(List<CartItemEntity> entities);
 
+    /**
+     * The items of a cart, keyed by book id, listed in the order of the map.
+     */
+    default List<CartItemDto> toDtoList(Map<Integer, CartItemEntity> entities) {
+        return toDtoList(new ArrayList<>(entities.values()));
+    }
+
 }
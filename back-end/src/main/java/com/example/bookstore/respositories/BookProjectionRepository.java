@@ -0,0 +1,33 @@
+package com.example.bookstore.respositories;
+
+import com.example.bookstore.dtos.BookDto;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.facets.BookFacets;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Read-only queries projected straight into {@link BookDto}: the rows are never turned into managed entities,
+ * so they cost neither persistence context entries, dirty checking snapshots nor a mapping afterwards.
+ */
+public interface BookProjectionRepository {
+
+    /**
+     * Keyset scrolling over the books matching the specification, projected: the page after the position, in the
+     * order of the sort. The sort must end with the id.
+     */
+    Window<BookDto> findDtosBy(Specification<BookEntity> specification, KeysetScrollPosition position, Sort sort, Limit limit);
+
+    /**
+     * The facets of the books matching the specification, aggregated by the database: the total and the price
+     * ranges delimited by the ascending bounds in one pass, the {@code limit} authors with the most books in a
+     * {@code GROUP BY}.
+     */
+    BookFacets countFacetsBy(Specification<BookEntity> specification, List<BigDecimal> bounds, int limit);
+}
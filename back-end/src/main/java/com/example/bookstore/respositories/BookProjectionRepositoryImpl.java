@@ -0,0 +1,159 @@
+package com.example.bookstore.respositories;
+
+import com.example.bookstore.dtos.BookDto;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.facets.BookFacets;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.Tuple;
+import jakarta.persistence.criteria.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.*;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.data.jpa.repository.query.QueryUtils;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+
+public class BookProjectionRepositoryImpl implements BookProjectionRepository {
+
+    /**
+     * Properties usable in the sort, read back from the projected rows to build the scroll positions.
+     */
+    private static final Map<String, Function<BookDto, Object>> KEYS = Map.of(
+            "id", BookDto::getId,
+            "title", BookDto::getTitle,
+            "author", BookDto::getAuthor,
+            "price", BookDto::getPrice
+    );
+
+    private EntityManager entityManager;
+
+    @Autowired
+    public BookProjectionRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    @Override
+    public Window<BookDto> findDtosBy(Specification<BookEntity> specification, KeysetScrollPosition position,
+                                      Sort sort, Limit limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<BookDto> query = cb.createQuery(BookDto.class);
+        Root<BookEntity> root = query.from(BookEntity.class);
+
+        query.select(cb.construct(BookDto.class, root.get("id"), root.get("title"), root.get("author"), root.get("price")));
+
+        List<Predicate> predicates = new ArrayList<>();
+        Predicate filter = Objects.isNull(specification) ? null : specification.toPredicate(root, query, cb);
+        if (Objects.nonNull(filter)) {
+            predicates.add(filter);
+        }
+        if (!position.isInitial()) {
+            predicates.add(after(cb, root, sort, position.getKeys()));
+        }
+        query.where(predicates.toArray(Predicate[]::new));
+        query.orderBy(QueryUtils.toOrders(sort, root, cb));
+
+        // one more row than asked tells whether there is a next window
+        List<BookDto> rows = entityManager.createQuery(query)
+                .setMaxResults(limit.max() + 1)
+                .getResultList();
+
+        boolean hasNext = rows.size() > limit.max();
+        List<BookDto> items = hasNext ? rows.subList(0, limit.max()) : rows;
+
+        return Window.from(items, index -> position(sort, items.get(index)), hasNext);
+    }
+
+    @Override
+    public BookFacets countFacetsBy(Specification<BookEntity> specification, List<BigDecimal> bounds, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+
+        // count(*) then, per bound, the books priced below it
+        CriteriaQuery<Tuple> totals = cb.createTupleQuery();
+        Root<BookEntity> root = totals.from(BookEntity.class);
+        List<Selection<?>> selections = new ArrayList<>();
+        selections.add(cb.count(root));
+        for (BigDecimal bound : bounds) {
+            selections.add(cb.sum(cb.<Integer>selectCase()
+                    .when(cb.lessThan(root.get("price"), bound), 1)
+                    .otherwise(0)));
+        }
+        totals.multiselect(selections);
+        where(totals, root, cb, specification);
+        Tuple row = entityManager.createQuery(totals).getSingleResult();
+
+        long total = row.get(0, Long.class);
+        long[] buckets = new long[bounds.size() + 1];
+        long below = 0;
+        for (int i = 0; i < bounds.size(); i++) {
+            Number cumulated = (Number) row.get(i + 1);
+            long current = Objects.isNull(cumulated) ? 0 : cumulated.longValue();
+            buckets[i] = current - below;
+            below = current;
+        }
+        buckets[bounds.size()] = total - below;
+
+        CriteriaQuery<Tuple> grouped = cb.createTupleQuery();
+        Root<BookEntity> book = grouped.from(BookEntity.class);
+        Expression<Long> count = cb.count(book);
+        grouped.multiselect(book.get("author"), count);
+        where(grouped, book, cb, specification);
+        grouped.groupBy(book.get("author"));
+        grouped.orderBy(cb.desc(count), cb.asc(book.get("author")));
+
+        List<BookFacets.Count> authors = entityManager.createQuery(grouped)
+                .setMaxResults(limit)
+                .getResultStream()
+                .map(tuple -> new BookFacets.Count(tuple.get(0, String.class), tuple.get(1, Long.class)))
+                .toList();
+
+        return new BookFacets(total, authors, BookFacets.buckets(bounds, buckets));
+    }
+
+    private static void where(CriteriaQuery<?> query, Root<BookEntity> root, CriteriaBuilder cb,
+                              Specification<BookEntity> specification) {
+        Predicate filter = Objects.isNull(specification) ? null : specification.toPredicate(root, query, cb);
+        if (Objects.nonNull(filter)) {
+            query.where(filter);
+        }
+    }
+
+    /**
+     * {@code k1 >= v1 and ((k1 > v1) or (k1 = v1 and k2 > v2) or ...)}, with {@code <} for the descending keys.
+     * The leading bound is redundant but H2 cannot seek on the disjunction alone: it turns the sort index into a range.
+     */
+    @SuppressWarnings({"rawtypes", "unchecked"})
+    private static Predicate after(CriteriaBuilder cb, Root<BookEntity> root, Sort sort, Map<String, ?> keys) {
+        List<Predicate> alternatives = new ArrayList<>();
+        List<Predicate> equalities = new ArrayList<>();
+        Predicate bound = null;
+
+        for (Sort.Order order : sort) {
+            Expression<Comparable> path = root.get(order.getProperty());
+            Comparable value = (Comparable) keys.get(order.getProperty());
+
+            if (Objects.isNull(bound)) {
+                bound = order.isAscending() ? cb.greaterThanOrEqualTo(path, value) : cb.lessThanOrEqualTo(path, value);
+            }
+
+            List<Predicate> alternative = new ArrayList<>(equalities);
+            alternative.add(order.isAscending() ? cb.greaterThan(path, value) : cb.lessThan(path, value));
+            alternatives.add(cb.and(alternative.toArray(Predicate[]::new)));
+
+            equalities.add(cb.equal(path, value));
+        }
+
+        return cb.and(bound, cb.or(alternatives.toArray(Predicate[]::new)));
+    }
+
+    private static ScrollPosition position(Sort sort, BookDto book) {
+        Map<String, Object> keys = new LinkedHashMap<>();
+        sort.forEach(order -> keys.put(order.getProperty(), KEYS.get(order.getProperty()).apply(book)));
+        return ScrollPosition.forward(keys);
+    }
+}
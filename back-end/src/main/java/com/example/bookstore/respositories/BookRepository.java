@@ -1,9 +1,106 @@
 package com.example.bookstore.respositories;
 
+import com.example.bookstore.configs.CacheConfig;
+import com.example.bookstore.dtos.BookDto;
 import com.example.bookstore.entities.BookEntity;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
 @Repository
-public interface BookRepository extends JpaRepository<BookEntity, Integer> {
+public interface BookRepository extends JpaRepository<BookEntity, Integer>, BookProjectionRepository {
+
+    int STREAM_FETCH_SIZE = 500;
+
+    /**
+     * Read-through the {@value CacheConfig#BOOKS_CACHE} cache, shared by the book and the cart services.
+     * Missing books are not cached. The cached books are detached and shared between callers, so they must
+     * not be modified; the cache is evicted on every book change (see {@code BookCacheListener}).
+     */
+    @Override
+    @Cacheable(cacheNames = CacheConfig.BOOKS_CACHE, unless = "#result == null")
+    Optional<BookEntity> findById(Integer id);
+
+    /**
+     * Only the version of a book, to answer conditional requests without loading the book itself.
+     * Cached in {@value CacheConfig#BOOK_VERSIONS_CACHE} and evicted along with the book.
+     */
+    @Cacheable(cacheNames = CacheConfig.BOOK_VERSIONS_CACHE, unless = "#result == null")
+    @Query("select b.version from BookEntity b where b.id = :id")
+    Optional<Long> findVersionById(@Param("id") Integer id);
+
+    /**
+     * The whole catalog projected straight into {@link BookDto}, see {@link BookProjectionRepository}.
+     */
+    @Query("select new com.example.bookstore.dtos.BookDto(b.id, b.title, b.author, b.price) from BookEntity b order by b.id")
+    List<BookDto> findAllDtos();
+
+    /**
+     * Forward-only cursor over all the books, fetched {@value #STREAM_FETCH_SIZE} rows at a time and loaded
+     * read-only (no dirty checking snapshots). It must be consumed inside a transaction and closed afterwards.
+     */
+    @Query("select b from BookEntity b order by b.id")
+    @QueryHints({
+            @QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+            @QueryHint(name = HibernateHints.HINT_READ_ONLY, value = "true")
+    })
+    Stream<BookEntity> streamAll();
+
+    /**
+     * Forward-only cursor over the ids of all the books, read from the primary key index alone.
+     * It must be consumed inside a transaction and closed afterwards.
+     */
+    @Query("select b.id from BookEntity b order by b.id")
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE))
+    Stream<Integer> streamIds();
+
+    /**
+     * The books written in {@code (since, until]}, in change order: a range scan on the change sequence index.
+     */
+    @Query("select b from BookEntity b where b.changeSeq > :since and b.changeSeq <= :until order by b.changeSeq")
+    List<BookEntity> findChanged(@Param("since") long since, @Param("until") long until, Limit limit);
+
+    @Query("select b.id from BookEntity b where b.author = :author")
+    List<Integer> findIdsByAuthor(@Param("author") String author);
+
+    /*
+     * Set-based bulk operations: one statement whatever the number of books, bumping the versions like an update
+     * through the entities would. They bypass the entity listeners and the persistence context, which is cleared.
+     * The updates give each book its own change sequence, {@code changeSeqBase} plus its rank by id among the
+     * books updated, from a range reserved with {@code BookChangeLog.reserveBase}: the standard {@code MERGE}
+     * ranks them in the same statement.
+     */
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "merge into BOOKS b"
+            + " using (select ID, row_number() over (order by ID) as N from BOOKS where ID in (:ids)) s on b.ID = s.ID"
+            + " when matched then update set PRICE = :price, VERSION = b.VERSION + 1, CHANGE_SEQ = :changeSeqBase + s.N",
+            nativeQuery = true)
+    int updatePriceByIdIn(@Param("ids") Collection<Integer> ids, @Param("price") BigDecimal price,
+                          @Param("changeSeqBase") long changeSeqBase);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query(value = "merge into BOOKS b"
+            + " using (select ID, row_number() over (order by ID) as N from BOOKS where ID in (:ids)) s on b.ID = s.ID"
+            + " when matched then update set PRICE = b.PRICE * :factor, VERSION = b.VERSION + 1, CHANGE_SEQ = :changeSeqBase + s.N",
+            nativeQuery = true)
+    int scalePriceByIdIn(@Param("ids") Collection<Integer> ids, @Param("factor") BigDecimal factor,
+                         @Param("changeSeqBase") long changeSeqBase);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from BookEntity b where b.id in :ids")
+    int deleteByIdIn(@Param("ids") Collection<Integer> ids);
 }
@@ -0,0 +1,20 @@
+package com.example.bookstore.respositories;
+
+import com.example.bookstore.entities.BookTombstoneEntity;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface BookTombstoneRepository extends JpaRepository<BookTombstoneEntity, Integer> {
+
+    /**
+     * The deletions in {@code (since, until]}, in change order: a range scan on the change sequence index.
+     */
+    @Query("select t from BookTombstoneEntity t where t.changeSeq > :since and t.changeSeq <= :until order by t.changeSeq")
+    List<BookTombstoneEntity> findChanged(@Param("since") long since, @Param("until") long until, Limit limit);
+}
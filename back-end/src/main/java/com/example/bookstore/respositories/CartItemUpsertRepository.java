@@ -0,0 +1,15 @@
+package com.example.bookstore.respositories;
+
+/**
+ * Writes of the cart items bypassing the persistence context, for the hot paths where loading the cart to change
+ * one line would cost more than the change itself.
+ */
+public interface CartItemUpsertRepository {
+
+    /**
+     * Adds the quantity to the line of the book in the cart of the user, creating the line if needed, in a
+     * single statement keyed on the unique (cart, book) pair. Returns 0 when the user has no cart yet. The
+     * book must exist, or the foreign key rejects the statement.
+     */
+    int upsertItem(String username, Integer bookId, Integer quantity);
+}
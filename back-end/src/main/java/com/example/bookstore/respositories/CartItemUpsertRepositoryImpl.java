@@ -0,0 +1,63 @@
+package com.example.bookstore.respositories;
+
+import com.example.bookstore.entities.CartItemEntity;
+import jakarta.persistence.EntityManager;
+import org.hibernate.dialect.Dialect;
+import org.hibernate.dialect.H2Dialect;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.IdentifierGenerator;
+import org.hibernate.query.NativeQuery;
+import org.springframework.beans.factory.annotation.Autowired;
+
+public class CartItemUpsertRepositoryImpl implements CartItemUpsertRepository {
+
+    /**
+     * The standard {@code MERGE}, which H2 runs as one statement.
+     */
+    private static final String MERGE = "merge into CART_ITEMS i"
+            + " using (select c.ID as CART_ID from CARTS c where c.USERNAME = :username) s"
+            + " on i.CART_ID = s.CART_ID and i.BOOK_ID = :bookId"
+            + " when matched then update set QUANTITY = i.QUANTITY + :quantity, VERSION = i.VERSION + 1"
+            + " when not matched then insert (ID, CART_ID, BOOK_ID, QUANTITY, VERSION)"
+            + " values (:id, s.CART_ID, :bookId, :quantity, 0)";
+
+    /**
+     * The {@code INSERT ... ON CONFLICT} of PostgreSQL and alike, atomic even when two transactions insert the
+     * same line at once.
+     */
+    private static final String ON_CONFLICT = "insert into CART_ITEMS (ID, CART_ID, BOOK_ID, QUANTITY, VERSION)"
+            + " select :id, c.ID, :bookId, :quantity, 0 from CARTS c where c.USERNAME = :username"
+            + " on conflict (CART_ID, BOOK_ID) do update"
+            + " set QUANTITY = CART_ITEMS.QUANTITY + excluded.QUANTITY, VERSION = CART_ITEMS.VERSION + 1";
+
+    private EntityManager entityManager;
+
+    @Autowired
+    public CartItemUpsertRepositoryImpl(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    /**
+     * The id of a new line is taken from the generator of {@link CartItemEntity}, as Hibernate would, and left
+     * unused when the line exists already.
+     */
+    @Override
+    public int upsertItem(String username, Integer bookId, Integer quantity) {
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+        SessionFactoryImplementor factory = session.getFactory();
+        Dialect dialect = factory.getJdbcServices().getDialect();
+        IdentifierGenerator generator = (IdentifierGenerator) factory.getMappingMetamodel()
+                .getEntityDescriptor(CartItemEntity.class)
+                .getGenerator();
+
+        return entityManager.createNativeQuery(dialect instanceof H2Dialect ? MERGE : ON_CONFLICT)
+                .unwrap(NativeQuery.class)
+                .addSynchronizedEntityClass(CartItemEntity.class)
+                .setParameter("id", generator.generate(session, null))
+                .setParameter("username", username)
+                .setParameter("bookId", bookId)
+                .setParameter("quantity", quantity)
+                .executeUpdate();
+    }
+}
@@ -2,13 +2,37 @@ package com.example.bookstore.respositories;
 
 import com.example.bookstore.entities.CartEntity;
 import com.example.bookstore.entities.UserEntity;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.Optional;
 
 @Repository
-public interface CartRepository extends JpaRepository<CartEntity, Integer> {
+public interface CartRepository extends JpaRepository<CartEntity, Integer>, CartItemUpsertRepository {
 
+    /**
+     * The cart with its user, its items and their books, in a single select joining the four tables: mapping
+     * the cart afterwards takes no further statement, whatever the number of items.
+     */
+    @EntityGraph(attributePaths = {"user", "items", "items.book"})
     Optional<CartEntity> findByUser(UserEntity userEntity);
+
+    /**
+     * Same as {@link #findByUser}, keyed by the username of the cart, which the unique {@code USERNAME} column
+     * of the carts indexes: the user needs not be loaded beforehand.
+     */
+    @EntityGraph(attributePaths = {"user", "items", "items.book"})
+    Optional<CartEntity> findByUserUsername(String username);
+
+    /**
+     * Removes, in one statement, the cart items pointing to the given books, before deleting them in bulk.
+     */
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("delete from CartItemEntity i where i.book.id in :bookIds")
+    int deleteItemsByBookIdIn(@Param("bookIds") Collection<Integer> bookIds);
 }
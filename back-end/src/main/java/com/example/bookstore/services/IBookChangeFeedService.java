@@ -0,0 +1,12 @@
+package com.example.bookstore.services;
+
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+public interface IBookChangeFeedService {
+
+    /**
+     * Subscribes to the book changes, resuming after {@code lastEventId} when given.
+     */
+    SseEmitter subscribe(Long lastEventId);
+
+}
@@ -0,0 +1,12 @@
+package com.example.bookstore.services;
+
+import com.example.bookstore.dtos.BookFilterDto;
+import com.example.bookstore.facets.BookFacets;
+
+public interface IBookFacetService {
+
+    BookFacets getFacets(BookFilterDto filter, int authors);
+
+    void reconcile();
+
+}
@@ -0,0 +1,12 @@
+package com.example.bookstore.services;
+
+public interface IBookIdFilterService {
+
+    /**
+     * False only when no book has the id, true when it may have one.
+     */
+    boolean mightExist(Integer id);
+
+    void rebuild();
+
+}
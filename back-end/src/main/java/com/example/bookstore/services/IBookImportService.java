@@ -0,0 +1,12 @@
+package com.example.bookstore.services;
+
+import com.example.bookstore.dtos.BookImportReportDto;
+import com.example.bookstore.imports.BookImportRow;
+
+import java.util.Iterator;
+
+public interface IBookImportService {
+
+    BookImportReportDto importBooks(Iterator<BookImportRow> rows);
+
+}
@@ -0,0 +1,13 @@
+package com.example.bookstore.services;
+
+import com.example.bookstore.entities.BookEntity;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+
+public interface IBookSearchService {
+
+    Page<BookEntity> search(String query, boolean fuzzy, Pageable pageable);
+
+    void rebuild();
+
+}
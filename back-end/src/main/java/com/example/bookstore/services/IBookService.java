@@ -1,14 +1,43 @@
 package com.example.bookstore.services;
 
+import com.example.bookstore.changes.BookDelta;
+import com.example.bookstore.dtos.BookDto;
+import com.example.bookstore.dtos.BookFilterDto;
 import com.example.bookstore.entities.BookEntity;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 
+import java.math.BigDecimal;
 import java.util.List;
+import java.util.function.Consumer;
 
 public interface IBookService {
 
     BookEntity getBook(Integer id);
 
-    List<BookEntity> getBooks();
+    /**
+     * The existing books among the ids, each once, in the order of the ids.
+     */
+    List<BookEntity> getBooksByIds(List<Integer> ids);
+
+    long getBookVersion(Integer id);
+
+    long getCatalogVersion();
+
+    List<BookDto> getBookDtos();
+
+    /**
+     * A page of the books matching the filter, in the given order. The sort must end with the id.
+     */
+    Window<BookDto> getBookDtos(BookFilterDto filter, KeysetScrollPosition position, Sort sort, int size);
+
+    /**
+     * The books written and deleted after the given change sequence, at most {@code size} of them.
+     */
+    BookDelta getBookChanges(long since, int size);
+
+    void streamBooks(Consumer<BookEntity> consumer);
 
     void deleteBook(Integer id);
 
@@ -16,4 +45,8 @@ public interface IBookService {
 
     BookEntity updateBook(Integer id, BookEntity entity);
 
+    int deleteBooks(List<Integer> ids, String author);
+
+    int updateBooksPrice(List<Integer> ids, String author, BigDecimal price, BigDecimal priceFactor);
+
 }
@@ -0,0 +1,19 @@
+package com.example.bookstore.services;
+
+import com.example.bookstore.snapshots.BookSnapshot;
+
+import java.util.Optional;
+
+public interface IBookSnapshotService {
+
+    /**
+     * The snapshot of the given catalog version, empty when it is not built yet. Its files are kept until it is
+     * handed back to {@link #release(BookSnapshot)}, once sent.
+     */
+    Optional<BookSnapshot> getSnapshot(long catalogVersion);
+
+    void release(BookSnapshot snapshot);
+
+    void rebuild();
+
+}
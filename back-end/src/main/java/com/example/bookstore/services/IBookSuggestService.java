@@ -0,0 +1,13 @@
+package com.example.bookstore.services;
+
+import com.example.bookstore.indexes.BookSuggestIndex;
+
+import java.util.List;
+
+public interface IBookSuggestService {
+
+    List<BookSuggestIndex.Suggestion> suggest(String prefix, int size);
+
+    void rebuild();
+
+}
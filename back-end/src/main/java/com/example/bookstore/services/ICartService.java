@@ -1,12 +1,22 @@
 package com.example.bookstore.services;
 
+import com.example.bookstore.dtos.CartOperationDto;
 import com.example.bookstore.entities.CartEntity;
 
+import java.util.List;
+
 public interface ICartService {
 
     CartEntity addItem(String username, Integer bookId, Integer quantity);
 
     CartEntity deleteItem(String username, Integer bookId);
 
+    CartEntity updateItems(String username, List<CartOperationDto> operations);
+
     CartEntity getCart(String username);
+
+    /**
+     * The cart to check out, as stored in the database.
+     */
+    CartEntity checkout(String username);
 }
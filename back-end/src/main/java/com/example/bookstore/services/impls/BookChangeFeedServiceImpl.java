@@ -0,0 +1,181 @@
+package com.example.bookstore.services.impls;
+
+import com.example.bookstore.changes.BookChangeRing;
+import com.example.bookstore.dtos.BookChangeDto;
+import com.example.bookstore.events.BookBulkChangedEvent;
+import com.example.bookstore.events.BookChangedEvent;
+import com.example.bookstore.services.IBookChangeFeedService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Pushes the committed book changes to the Server-Sent Events subscribers.
+ * <p>
+ * The subscriptions are asynchronous requests: an idle subscriber holds a connection, not a thread. Changes are
+ * appended to a {@link BookChangeRing} and a single background thread sends every subscriber what it has not
+ * received yet, which also replays the buffered changes to a subscriber resuming with {@code Last-Event-ID}.
+ * A subscriber resuming from a change no longer buffered gets a {@code reset} event instead: it has to reload the
+ * catalog. The same thread sends a heartbeat comment to idle subscribers, which is also how the gone ones are
+ * noticed.
+ */
+@Service
+@Slf4j
+public class BookChangeFeedServiceImpl implements IBookChangeFeedService {
+
+    public static final String RESET_EVENT = "reset";
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "book-changes");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private BookChangeRing ring;
+
+    private Duration timeout;
+
+    /**
+     * Only touched by the feed thread, once subscribed.
+     */
+    private static class Subscriber {
+
+        private final SseEmitter emitter;
+
+        private long cursor;
+
+        Subscriber(SseEmitter emitter, long cursor) {
+            this.emitter = emitter;
+            this.cursor = cursor;
+        }
+    }
+
+    @Autowired
+    public BookChangeFeedServiceImpl(@Value("${books.changes.buffer-size}") int bufferSize,
+                                     @Value("${books.changes.timeout}") Duration timeout,
+                                     @Value("${books.changes.heartbeat-interval}") Duration heartbeatInterval) {
+        this.ring = new BookChangeRing(bufferSize, System.currentTimeMillis());
+        this.timeout = timeout;
+
+        long interval = heartbeatInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::heartbeat, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public SseEmitter subscribe(Long lastEventId) {
+        log.info("subscribe({})", lastEventId);
+
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, Objects.isNull(lastEventId) ? ring.last() : lastEventId);
+
+        emitter.onCompletion(() -> subscribers.remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(e -> subscribers.remove(subscriber));
+        subscribers.add(subscriber);
+
+        executor.execute(() -> deliver(subscriber));
+
+        log.debug("subscribe({}) - {} subscribers", lastEventId, subscribers.size());
+        return emitter;
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        ring.append(BookChangeDto.builder()
+                .type(event.getType())
+                .bookId(event.getId())
+                .title(event.getTitle())
+                .author(event.getAuthor())
+                .price(event.getPrice())
+                .build());
+        scheduleDelivery();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BookBulkChangedEvent event) {
+        event.getIds().forEach(id -> ring.append(BookChangeDto.builder()
+                .type(event.getType())
+                .bookId(id)
+                .build()));
+        scheduleDelivery();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+    }
+
+    private void scheduleDelivery() {
+        if (!pending.compareAndSet(false, true)) {
+            return;
+        }
+
+        executor.execute(() -> {
+            // cleared first: a change appended during the delivery schedules the next one
+            pending.set(false);
+            subscribers.forEach(this::deliver);
+        });
+    }
+
+    private void deliver(Subscriber subscriber) {
+        List<BookChangeDto> changes = ring.after(subscriber.cursor);
+        try {
+            if (Objects.isNull(changes)) {
+                subscriber.cursor = ring.last();
+                subscriber.emitter.send(SseEmitter.event()
+                        .id(String.valueOf(subscriber.cursor))
+                        .name(RESET_EVENT)
+                        .data(subscriber.cursor));
+                return;
+            }
+
+            for (BookChangeDto change : changes) {
+                subscriber.emitter.send(SseEmitter.event()
+                        .id(String.valueOf(change.getSequence()))
+                        .name(change.getType().name().toLowerCase(Locale.ROOT))
+                        .data(change, MediaType.APPLICATION_JSON));
+                subscriber.cursor = change.getSequence();
+            }
+        } catch (IOException | IllegalStateException e) {
+            drop(subscriber, e);
+        }
+    }
+
+    private void heartbeat() {
+        subscribers.forEach(subscriber -> {
+            try {
+                subscriber.emitter.send(SseEmitter.event().comment("heartbeat"));
+            } catch (IOException | IllegalStateException e) {
+                drop(subscriber, e);
+            }
+        });
+    }
+
+    private void drop(Subscriber subscriber, Exception e) {
+        log.debug("drop() - subscriber gone: {}", e.getMessage());
+        subscribers.remove(subscriber);
+        subscriber.emitter.completeWithError(e);
+    }
+}
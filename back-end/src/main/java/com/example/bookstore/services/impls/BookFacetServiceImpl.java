@@ -0,0 +1,176 @@
+package com.example.bookstore.services.impls;
+
+import com.example.bookstore.dtos.BookFilterDto;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.events.BookBulkChangedEvent;
+import com.example.bookstore.events.BookChangedEvent;
+import com.example.bookstore.facets.BookFacets;
+import com.example.bookstore.indexes.BookFacetIndex;
+import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.services.IBookFacetService;
+import com.example.bookstore.services.IBookService;
+import com.example.bookstore.specifications.BookSpecifications;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Serves the facets of the whole catalog from counts kept in memory and updated from the book events; the
+ * filtered facets are aggregated by the database over the matching books.
+ * <p>
+ * The counts are reconciled with the database every {@code books.facets.reconcile-interval}: a new index is
+ * built from the books while the current one keeps serving, the changes received meanwhile are replayed on it,
+ * then it replaces the current one. A drift found on the way is logged.
+ */
+@Service
+@Slf4j
+public class BookFacetServiceImpl implements IBookFacetService {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "book-facets");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Object reconciliation = new Object();
+
+    private final List<BigDecimal> bounds;
+
+    private IBookService bookService;
+
+    private BookRepository repository;
+
+    private volatile BookFacetIndex index;
+
+    /**
+     * The changes applied during a reconciliation, to replay on the new index. Guarded by this, the
+     * reconciliations themselves taking turns on {@link #reconciliation}.
+     */
+    private List<Consumer<BookFacetIndex>> journal;
+
+    @Autowired
+    public BookFacetServiceImpl(IBookService bookService, BookRepository repository,
+                                @Value("${books.facets.price-bounds}") BigDecimal[] priceBounds,
+                                @Value("${books.facets.reconcile-interval}") Duration reconcileInterval) {
+        this.bookService = bookService;
+        this.repository = repository;
+        this.bounds = Arrays.stream(priceBounds).sorted().distinct().toList();
+        this.index = new BookFacetIndex(bounds);
+
+        long interval = reconcileInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::reconcileQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public BookFacets getFacets(BookFilterDto filter, int authors) {
+        log.info("getFacets({}, {})", filter, authors);
+
+        if (isEmpty(filter)) {
+            return index.facets(authors);
+        }
+        return repository.countFacetsBy(BookSpecifications.matching(filter), bounds, authors);
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public void reconcile() {
+        log.info("reconcile() - counting the catalog");
+
+        BookFacetIndex fresh = new BookFacetIndex(bounds);
+        synchronized (reconciliation) {
+            synchronized (this) {
+                journal = new ArrayList<>();
+            }
+
+            try {
+                bookService.streamBooks(book -> fresh.put(book.getId(), book.getAuthor(), book.getPrice()));
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    journal = null;
+                }
+                throw e;
+            }
+
+            synchronized (this) {
+                journal.forEach(change -> change.accept(fresh));
+                journal = null;
+
+                int drift = index.drift(fresh);
+                if (drift > 0) {
+                    log.warn("reconcile() - {} books were counted differently", drift);
+                }
+                index = fresh;
+            }
+        }
+
+        log.info("reconcile() - {} books counted", fresh.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        log.debug("onBookChanged() - {}", event);
+
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            apply(facets -> facets.remove(event.getId()));
+        } else {
+            apply(facets -> facets.put(event.getId(), event.getAuthor(), event.getPrice()));
+        }
+    }
+
+    /**
+     * The bulk updates only tell the ids: the new prices are read back.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BookBulkChangedEvent event) {
+        log.debug("onBooksChanged() - {}", event);
+
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            apply(facets -> event.getIds().forEach(facets::remove));
+        } else {
+            List<BookEntity> books = repository.findAllById(event.getIds());
+            apply(facets -> books.forEach(book -> facets.put(book.getId(), book.getAuthor(), book.getPrice())));
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private synchronized void apply(Consumer<BookFacetIndex> change) {
+        if (Objects.nonNull(journal)) {
+            journal.add(change);
+        }
+        change.accept(index);
+    }
+
+    private void reconcileQuietly() {
+        try {
+            reconcile();
+        } catch (RuntimeException e) {
+            log.error("reconcileQuietly() - the facets could not be reconciled", e);
+        }
+    }
+
+    private static boolean isEmpty(BookFilterDto filter) {
+        return Objects.isNull(filter) || Stream.of(filter.getAuthor(), filter.getAuthorPrefix(),
+                filter.getTitlePrefix(), filter.getMinPrice(), filter.getMaxPrice()).allMatch(Objects::isNull);
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.bookstore.services.impls;
+
+import com.example.bookstore.events.BookBulkChangedEvent;
+import com.example.bookstore.events.BookChangedEvent;
+import com.example.bookstore.indexes.BookIdSet;
+import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.services.IBookIdFilterService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.Objects;
+import java.util.stream.Stream;
+
+/**
+ * Lets the services turn away the ids of books that do not exist without a query. A false answer must be
+ * certain, a true one only says the database has to be asked:
+ * <ul>
+ *     <li>every id is let through until the first load is over;</li>
+ *     <li>the load only ever adds ids, so it cannot drop a book created while it runs, and at worst lets
+ *     through a book deleted meanwhile;</li>
+ *     <li>an id leaves the set only once its deletion is committed, and the sequence never hands it out again.</li>
+ * </ul>
+ * Only the changes made through this instance reach the set: a book inserted otherwise (another instance, a
+ * script) would be turned away until the next restart. Hence {@code books.id-filter.enabled}, for a single
+ * instance owning the books; every id is let through when disabled.
+ */
+@Service
+@Slf4j
+public class BookIdFilterServiceImpl implements IBookIdFilterService {
+
+    private final BookIdSet ids = new BookIdSet();
+
+    private volatile boolean loaded;
+
+    private BookRepository repository;
+
+    private boolean enabled;
+
+    @Autowired
+    public BookIdFilterServiceImpl(BookRepository repository,
+                                   @Value("${books.id-filter.enabled}") boolean enabled) {
+        this.repository = repository;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public boolean mightExist(Integer id) {
+        return !loaded || Objects.isNull(id) || ids.contains(id);
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void rebuild() {
+        if (!enabled) {
+            log.info("rebuild() - book id filter disabled");
+            return;
+        }
+        log.info("rebuild() - loading the book ids");
+
+        try (Stream<Integer> stream = repository.streamIds()) {
+            stream.forEach(ids::add);
+        }
+        loaded = true;
+
+        log.info("rebuild() - {} book ids loaded", ids.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        log.debug("onBookChanged() - {}", event);
+
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            ids.remove(event.getId());
+        } else {
+            ids.add(event.getId());
+        }
+    }
+
+    /**
+     * Only the bulk deletions matter: the bulk updates keep the ids.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BookBulkChangedEvent event) {
+        log.debug("onBooksChanged() - {}", event);
+
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            event.getIds().forEach(ids::remove);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.bookstore.services.impls;
+
+import com.example.bookstore.dtos.BookImportErrorDto;
+import com.example.bookstore.dtos.BookImportReportDto;
+import com.example.bookstore.imports.BookImportRow;
+import com.example.bookstore.services.IBookImportService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+@Service
+@Slf4j
+public class BookImportServiceImpl implements IBookImportService {
+
+    private EntityManager entityManager;
+
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Rows inserted, flushed and cleared per transaction.
+     */
+    @Value("${books.import.batch-size}")
+    private int batchSize;
+
+    @Autowired
+    public BookImportServiceImpl(EntityManager entityManager, PlatformTransactionManager transactionManager) {
+        this.entityManager = entityManager;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @Override
+    public BookImportReportDto importBooks(Iterator<BookImportRow> rows) {
+        log.info("importBooks()");
+
+        long received = 0;
+        long imported = 0;
+        List<BookImportErrorDto> errors = new ArrayList<>();
+        List<BookImportRow> batch = new ArrayList<>(batchSize);
+
+        while (rows.hasNext()) {
+            BookImportRow row = rows.next();
+            received++;
+
+            if (!row.isValid()) {
+                errors.add(error(row.getLine(), row.getError()));
+                continue;
+            }
+
+            batch.add(row);
+            if (batch.size() >= batchSize) {
+                imported += insert(batch, errors);
+                batch.clear();
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            imported += insert(batch, errors);
+        }
+
+        log.info("importBooks() - {} rows received, {} books imported, {} rows rejected", received, imported, errors.size());
+        return BookImportReportDto.builder()
+                .received(received)
+                .imported(imported)
+                .errors(errors)
+                .build();
+    }
+
+    /**
+     * One transaction, then row by row when it fails, so that only the faulty rows are reported.
+     */
+    private int insert(List<BookImportRow> batch, List<BookImportErrorDto> errors) {
+        try {
+            persist(batch);
+            return batch.size();
+        } catch (PersistenceException | DataAccessException e) {
+            log.debug("insert() - batch of {} rows rejected, retrying row by row", batch.size(), e);
+        }
+
+        int inserted = 0;
+        for (BookImportRow row : batch) {
+            try {
+                persist(List.of(row));
+                inserted++;
+            } catch (PersistenceException | DataAccessException e) {
+                log.debug("insert() - row {} rejected", row.getLine(), e);
+                errors.add(error(row.getLine(), NestedExceptionUtils.getMostSpecificCause(e).getMessage()));
+            }
+        }
+        return inserted;
+    }
+
+    private void persist(List<BookImportRow> rows) {
+        // ids given by a rolled back attempt are left behind
+        rows.forEach(row -> row.getBook().setId(null));
+
+        transactionTemplate.executeWithoutResult(status -> {
+            rows.forEach(row -> entityManager.persist(row.getBook()));
+            entityManager.flush();
+            // keep the persistence context from growing with the import
+            entityManager.clear();
+        });
+    }
+
+    private static BookImportErrorDto error(long line, String message) {
+        return BookImportErrorDto.builder()
+                .line(line)
+                .error(message)
+                .build();
+    }
+}
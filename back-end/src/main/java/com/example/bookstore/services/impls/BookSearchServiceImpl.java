@@ -0,0 +1,134 @@
+package com.example.bookstore.services.impls;
+
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.events.BookBulkChangedEvent;
+import com.example.bookstore.events.BookChangedEvent;
+import com.example.bookstore.indexes.BookSearchIndex;
+import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.services.IBookSearchService;
+import com.example.bookstore.services.IBookService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Searches the catalog in memory. The index is rebuilt from the books while the current one keeps serving, the
+ * changes received meanwhile are replayed on it, then it replaces the current one.
+ */
+@Service
+@Slf4j
+public class BookSearchServiceImpl implements IBookSearchService {
+
+    private final Object rebuilding = new Object();
+
+    private volatile BookSearchIndex index = new BookSearchIndex();
+
+    /**
+     * The changes applied during a rebuild, to replay on the new index. Guarded by this, the rebuilds themselves
+     * taking turns on {@link #rebuilding}.
+     */
+    private List<Consumer<BookSearchIndex>> journal;
+
+    private IBookService bookService;
+
+    private BookRepository repository;
+
+    @Autowired
+    public BookSearchServiceImpl(IBookService bookService, BookRepository repository) {
+        this.bookService = bookService;
+        this.repository = repository;
+    }
+
+    @Override
+    public Page<BookEntity> search(String query, boolean fuzzy, Pageable pageable) {
+        log.info("search({}, {}, {})", query, fuzzy, pageable);
+
+        BookSearchIndex.Hits hits = index.search(query, fuzzy, pageable.getOffset(), pageable.getPageSize());
+        log.debug("search({}, {}, {}) - {} hits", query, fuzzy, pageable, hits.getTotal());
+
+        // one IN query for the page, put back in ranking order
+        Map<Integer, BookEntity> books = repository.findAllById(hits.getIds()).stream()
+                .collect(Collectors.toMap(BookEntity::getId, Function.identity()));
+
+        List<BookEntity> content = hits.getIds().stream()
+                .map(books::get)
+                .filter(Objects::nonNull)
+                .toList();
+
+        return new PageImpl<>(content, pageable, hits.getTotal());
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        log.info("rebuild() - indexing the catalog");
+
+        BookSearchIndex fresh = new BookSearchIndex();
+        synchronized (rebuilding) {
+            synchronized (this) {
+                journal = new ArrayList<>();
+            }
+
+            try {
+                bookService.streamBooks(book -> fresh.put(book.getId(), book.getTitle(), book.getAuthor()));
+            } catch (RuntimeException e) {
+                synchronized (this) {
+                    journal = null;
+                }
+                throw e;
+            }
+
+            synchronized (this) {
+                journal.forEach(change -> change.accept(fresh));
+                journal = null;
+                index = fresh;
+            }
+        }
+
+        log.info("rebuild() - {} books indexed", fresh.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        log.debug("onBookChanged() - {}", event);
+
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            apply(books -> books.remove(event.getId()));
+        } else {
+            apply(books -> books.put(event.getId(), event.getTitle(), event.getAuthor()));
+        }
+    }
+
+    /**
+     * Only the bulk deletions matter: the bulk updates change prices, which are not indexed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BookBulkChangedEvent event) {
+        log.debug("onBooksChanged() - {}", event);
+
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            apply(books -> event.getIds().forEach(books::remove));
+        }
+    }
+
+    private synchronized void apply(Consumer<BookSearchIndex> change) {
+        if (Objects.nonNull(journal)) {
+            journal.add(change);
+        }
+        change.accept(index);
+    }
+}
@@ -1,15 +1,49 @@
 package com.example.bookstore.services.impls;
 
+import com.example.bookstore.changes.BookChangeLog;
+import com.example.bookstore.changes.BookDelta;
+import com.example.bookstore.configs.CacheConfig;
+import com.example.bookstore.dtos.BookDto;
+import com.example.bookstore.dtos.BookFilterDto;
 import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.entities.BookTombstoneEntity;
+import com.example.bookstore.events.BookBulkChangedEvent;
+import com.example.bookstore.events.BookChangedEvent;
+import com.example.bookstore.exceptions.BadRequestException;
+import com.example.bookstore.exceptions.GoneException;
 import com.example.bookstore.exceptions.NotFoundException;
 import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.respositories.BookTombstoneRepository;
+import com.example.bookstore.respositories.CartRepository;
+import com.example.bookstore.services.IBookIdFilterService;
 import com.example.bookstore.services.IBookService;
+import com.example.bookstore.specifications.BookSpecifications;
+import jakarta.persistence.EntityManager;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.event.TransactionalEventListener;
 
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 @Service
 @Slf4j
@@ -17,14 +51,48 @@ public class BookServiceImpl implements IBookService {
 
     private BookRepository repository;
 
+    private EntityManager entityManager;
+
+    private CartRepository cartRepository;
+
+    private ApplicationEventPublisher publisher;
+
+    private BookChangeLog changeLog;
+
+    private BookTombstoneRepository tombstoneRepository;
+
+    private CacheManager cacheManager;
+
+    private IBookIdFilterService idFilter;
+
+    /**
+     * Seeded with the startup time, so that a restarted instance never matches the ETags handed out before.
+     */
+    private final AtomicLong catalogVersion = new AtomicLong(System.currentTimeMillis());
+
     @Autowired
-    public BookServiceImpl(BookRepository repository) {
+    public BookServiceImpl(BookRepository repository, EntityManager entityManager, CartRepository cartRepository,
+                           ApplicationEventPublisher publisher, BookChangeLog changeLog,
+                           BookTombstoneRepository tombstoneRepository, CacheManager cacheManager,
+                           IBookIdFilterService idFilter) {
         this.repository = repository;
+        this.entityManager = entityManager;
+        this.cartRepository = cartRepository;
+        this.publisher = publisher;
+        this.changeLog = changeLog;
+        this.tombstoneRepository = tombstoneRepository;
+        this.cacheManager = cacheManager;
+        this.idFilter = idFilter;
     }
 
     @Override
     public BookEntity getBook(Integer id) {
         log.info("getBook({})", id);
+        if (!idFilter.mightExist(id)) {
+            log.debug("getBook({}) - unknown id", id);
+            throw new NotFoundException("Book not found with id: " + id);
+        }
+
         Optional<BookEntity> opt = repository.findById(id);
 
         if (opt.isPresent()) {
@@ -36,16 +104,158 @@ public class BookServiceImpl implements IBookService {
         }
     }
 
+    /**
+     * The books found in the {@value CacheConfig#BOOKS_CACHE} cache are taken from there, the others are loaded
+     * with a single {@code IN} query and cached in turn, like {@link BookRepository#findById} does.
+     */
+    @Override
+    public List<BookEntity> getBooksByIds(List<Integer> ids) {
+        log.info("getBooksByIds({})", ids);
+
+        Set<Integer> distinct = new LinkedHashSet<>(ids);
+        Cache cache = cacheManager.getCache(CacheConfig.BOOKS_CACHE);
+
+        Map<Integer, BookEntity> found = new HashMap<>();
+        List<Integer> misses = new ArrayList<>();
+        for (Integer id : distinct) {
+            BookEntity cached = Objects.isNull(cache) ? null : cache.get(id, BookEntity.class);
+            if (Objects.nonNull(cached)) {
+                found.put(id, cached);
+            } else {
+                misses.add(id);
+            }
+        }
+
+        if (!misses.isEmpty()) {
+            for (BookEntity book : repository.findAllById(misses)) {
+                found.put(book.getId(), book);
+                if (Objects.nonNull(cache)) {
+                    cache.putIfAbsent(book.getId(), book);
+                }
+            }
+        }
+
+        log.debug("getBooksByIds({}) - {} cached, {} loaded", ids, distinct.size() - misses.size(),
+                found.size() - (distinct.size() - misses.size()));
+        return distinct.stream()
+                .map(found::get)
+                .filter(Objects::nonNull)
+                .toList();
+    }
+
+    @Override
+    public long getBookVersion(Integer id) {
+        log.info("getBookVersion({})", id);
+        if (!idFilter.mightExist(id)) {
+            log.debug("getBookVersion({}) - unknown id", id);
+            throw new NotFoundException("Book not found with id: " + id);
+        }
+
+        return repository.findVersionById(id)
+                .orElseThrow(() -> new NotFoundException("Book not found with id: " + id));
+    }
+
     @Override
-    public List<BookEntity> getBooks() {
-        log.info("getBooks()");
+    public long getCatalogVersion() {
+        return catalogVersion.get();
+    }
 
-        List<BookEntity> list = repository.findAll();
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        log.debug("onBookChanged() - {}", event);
+        catalogVersion.incrementAndGet();
+    }
 
-        log.debug("getBooks() - {} books", list.size());
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BookBulkChangedEvent event) {
+        log.debug("onBooksChanged() - {}", event);
+        catalogVersion.incrementAndGet();
+    }
+
+    @Override
+    public List<BookDto> getBookDtos() {
+        log.info("getBookDtos()");
+
+        List<BookDto> list = repository.findAllDtos();
+
+        log.debug("getBookDtos() - {} books", list.size());
         return list;
     }
 
+    @Override
+    public Window<BookDto> getBookDtos(BookFilterDto filter, KeysetScrollPosition position, Sort sort, int size) {
+        log.info("getBookDtos({}, {}, {}, {})", filter, position, sort, size);
+
+        Window<BookDto> window = repository.findDtosBy(BookSpecifications.matching(filter), position, sort, Limit.of(size));
+
+        log.debug("getBookDtos({}, {}, {}, {}) - {} books, hasNext = {}", filter, position, sort, size,
+                window.size(), window.hasNext());
+        return window;
+    }
+
+    /**
+     * Reads both the books and the tombstones in {@code (since, stable]}, at most {@code size + 1} of each, and
+     * merges them in change order. Stopping at the stable mark rather than at the last number handed out keeps
+     * a transaction still open from committing a change behind the returned {@code until}. A {@code since} behind
+     * the horizon of the change log is refused: some of the deletions after it may have been pruned.
+     */
+    @Override
+    @Transactional(readOnly = true)
+    public BookDelta getBookChanges(long since, int size) {
+        log.info("getBookChanges({}, {})", since, size);
+
+        if (since > 0 && since < changeLog.horizon()) {
+            log.debug("getBookChanges({}, {}) - behind the horizon", since, size);
+            throw new GoneException("Changes since " + since + " are no longer kept, start over from 0");
+        }
+
+        long stable = changeLog.stable();
+        List<BookEntity> books = repository.findChanged(since, stable, Limit.of(size + 1));
+        List<BookTombstoneEntity> tombstones = tombstoneRepository.findChanged(since, stable, Limit.of(size + 1));
+
+        List<BookEntity> changed = new ArrayList<>();
+        List<Integer> deleted = new ArrayList<>();
+        long until = since;
+        int b = 0;
+        int t = 0;
+        while (changed.size() + deleted.size() < size && (b < books.size() || t < tombstones.size())) {
+            boolean book = t == tombstones.size()
+                    || (b < books.size() && books.get(b).getChangeSeq() < tombstones.get(t).getChangeSeq());
+            if (book) {
+                changed.add(books.get(b));
+                until = books.get(b++).getChangeSeq();
+            } else {
+                deleted.add(tombstones.get(t).getBookId());
+                until = tombstones.get(t++).getChangeSeq();
+            }
+        }
+
+        boolean hasMore = b < books.size() || t < tombstones.size();
+        BookDelta delta = new BookDelta(changed, deleted, hasMore ? until : Math.max(since, stable), hasMore);
+
+        log.debug("getBookChanges({}, {}) - {} changed, {} deleted, until {}", since, size, changed.size(),
+                deleted.size(), delta.getUntil());
+        return delta;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public void streamBooks(Consumer<BookEntity> consumer) {
+        log.info("streamBooks()");
+
+        AtomicLong count = new AtomicLong();
+        try (Stream<BookEntity> stream = repository.streamAll()) {
+            stream.forEach(book -> {
+                consumer.accept(book);
+                // the book is already handed over, so keep the persistence context from growing with the catalog
+                entityManager.detach(book);
+                count.incrementAndGet();
+            });
+        }
+
+        log.debug("streamBooks() - {} books", count.get());
+    }
+
     @Override
     public void deleteBook(Integer id) {
         log.info("deleteBook({})", id);
@@ -83,6 +293,8 @@ public class BookServiceImpl implements IBookService {
 
             log.debug("updateBook({}) - found = {}", id, opt.get());
             entity.setId(id); // making sure we are updating it
+            entity.setVersion(opt.get().getVersion()); // a concurrent update in between fails with a conflict
+            entity.setChangeSeq(opt.get().getChangeSeq());
 
             entity = repository.save(entity);
             log.debug("updateBook({}) - updated = {}", id, entity);
@@ -92,4 +304,62 @@ public class BookServiceImpl implements IBookService {
             throw new NotFoundException("Book not found with id: " + id);
         }
     }
+
+    @Override
+    @Transactional
+    public int deleteBooks(List<Integer> ids, String author) {
+        log.info("deleteBooks({}, {})", ids, author);
+
+        List<Integer> targets = targets(ids, author);
+        if (targets.isEmpty()) {
+            return 0;
+        }
+
+        // the books leave the carts holding them
+        int items = cartRepository.deleteItemsByBookIdIn(targets);
+        changeLog.tombstoneAll(targets, changeLog.reserveBase(targets));
+        int deleted = repository.deleteByIdIn(targets);
+        publisher.publishEvent(new BookBulkChangedEvent(BookChangedEvent.Type.DELETED, targets));
+
+        log.info("deleteBooks({}, {}) - {} books deleted, {} cart items removed", ids, author, deleted, items);
+        return deleted;
+    }
+
+    @Override
+    @Transactional
+    public int updateBooksPrice(List<Integer> ids, String author, BigDecimal price, BigDecimal priceFactor) {
+        log.info("updateBooksPrice({}, {}, {}, {})", ids, author, price, priceFactor);
+
+        if (Objects.isNull(price) == Objects.isNull(priceFactor)) {
+            throw new BadRequestException("Either a price or a price factor must be given");
+        }
+
+        List<Integer> targets = targets(ids, author);
+        if (targets.isEmpty()) {
+            return 0;
+        }
+
+        long changeSeqBase = changeLog.reserveBase(targets);
+        int updated = Objects.nonNull(price)
+                ? repository.updatePriceByIdIn(targets, price, changeSeqBase)
+                : repository.scalePriceByIdIn(targets, priceFactor, changeSeqBase);
+        publisher.publishEvent(new BookBulkChangedEvent(BookChangedEvent.Type.UPDATED, targets));
+
+        log.info("updateBooksPrice({}, {}, {}, {}) - {} books updated", ids, author, price, priceFactor, updated);
+        return updated;
+    }
+
+    /**
+     * Resolved to ids first, so that the bulk statement and its event cover the same books.
+     */
+    private List<Integer> targets(List<Integer> ids, String author) {
+        if (Objects.isNull(ids) == Objects.isNull(author)) {
+            throw new BadRequestException("Either ids or an author must be given");
+        }
+
+        if (Objects.nonNull(ids)) {
+            return ids.stream().filter(Objects::nonNull).distinct().toList();
+        }
+        return repository.findIdsByAuthor(author);
+    }
 }
@@ -0,0 +1,210 @@
+package com.example.bookstore.services.impls;
+
+import com.example.bookstore.events.BookBulkChangedEvent;
+import com.example.bookstore.events.BookChangedEvent;
+import com.example.bookstore.services.IBookService;
+import com.example.bookstore.services.IBookSnapshotService;
+import com.example.bookstore.snapshots.BookSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Keeps the snapshot served by the unpaged listing, so that identical requests no longer load, map and
+ * serialize the catalog each time.
+ * <p>
+ * Every book change schedules a rebuild on a single background thread; changes arriving while a rebuild is
+ * pending share it. A request finding the snapshot behind the catalog version is served the usual way and
+ * schedules a rebuild as well. Only enabled with {@code books.pagination.unpaged}, the only way to list the
+ * whole catalog at once.
+ * <p>
+ * A replaced snapshot is retired, its files deleted by a later rebuild once no response is sending them anymore
+ * and {@code books.snapshot.grace-period} is over: a file handed over to the connector is only opened once the
+ * request is over, after the snapshot was released.
+ */
+@Service
+@Slf4j
+public class BookSnapshotServiceImpl implements IBookSnapshotService {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final AtomicReference<BookSnapshot> current = new AtomicReference<>();
+
+    private final AtomicBoolean pending = new AtomicBoolean();
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "book-snapshot");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private IBookService bookService;
+
+    private ObjectMapper objectMapper;
+
+    private boolean enabled;
+
+    private Path directory;
+
+    private long gracePeriod;
+
+    /**
+     * The snapshots replaced, whose files are still there, with the time they were retired. Guarded by this.
+     */
+    private final Map<BookSnapshot, Long> retired = new LinkedHashMap<>();
+
+    @Autowired
+    public BookSnapshotServiceImpl(IBookService bookService, ObjectMapper objectMapper,
+                                   @Value("${books.pagination.unpaged}") boolean enabled,
+                                   @Value("${books.snapshot.directory}") String directory,
+                                   @Value("${books.snapshot.grace-period}") Duration gracePeriod) throws IOException {
+        this.bookService = bookService;
+        this.objectMapper = objectMapper;
+        this.enabled = enabled;
+        this.gracePeriod = gracePeriod.toMillis();
+        this.directory = directory.isBlank()
+                ? Files.createTempDirectory("book-snapshots")
+                : Files.createDirectories(Path.of(directory));
+    }
+
+    @Override
+    public Optional<BookSnapshot> getSnapshot(long catalogVersion) {
+        BookSnapshot snapshot = current.get();
+        if (Objects.nonNull(snapshot) && snapshot.getVersion() == catalogVersion && snapshot.retain()) {
+            return Optional.of(snapshot);
+        }
+
+        log.debug("getSnapshot({}) - snapshot behind, at {}", catalogVersion,
+                Objects.isNull(snapshot) ? null : snapshot.getVersion());
+        scheduleRebuild();
+        return Optional.empty();
+    }
+
+    @Override
+    public void release(BookSnapshot snapshot) {
+        snapshot.release();
+    }
+
+    /**
+     * Builds the snapshot of the current catalog version and swaps it in; runs on the background thread.
+     */
+    @Override
+    public synchronized void rebuild() {
+        long version = bookService.getCatalogVersion();
+        BookSnapshot snapshot = current.get();
+        if (Objects.nonNull(snapshot) && snapshot.getVersion() == version) {
+            return;
+        }
+
+        log.info("rebuild() - serializing the catalog at version {}", version);
+
+        Path json = directory.resolve("books-" + version + ".json");
+        Path gzip = directory.resolve("books-" + version + ".json.gz");
+        try {
+            try (OutputStream out = Files.newOutputStream(json)) {
+                objectMapper.writeValue(out, bookService.getBookDtos());
+            }
+            try (OutputStream out = new BestGZIPOutputStream(Files.newOutputStream(gzip))) {
+                Files.copy(json, out);
+            }
+
+            BookSnapshot built = new BookSnapshot(version, json, Files.size(json), gzip, Files.size(gzip));
+            BookSnapshot replaced = current.getAndSet(built);
+            purge();
+            if (Objects.nonNull(replaced)) {
+                replaced.release();
+                retired.put(replaced, System.currentTimeMillis());
+            }
+
+            log.info("rebuild() - {} bytes, {} gzipped", built.getJsonLength(), built.getGzipLength());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        scheduleRebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        scheduleRebuild();
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BookBulkChangedEvent event) {
+        scheduleRebuild();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    private void scheduleRebuild() {
+        if (!enabled || !pending.compareAndSet(false, true)) {
+            return;
+        }
+
+        executor.execute(() -> {
+            // cleared first: a change arriving during the rebuild schedules the next one
+            pending.set(false);
+            try {
+                rebuild();
+            } catch (RuntimeException e) {
+                log.error("rebuild() - failed, the listing is served without snapshot", e);
+            }
+        });
+    }
+
+    private void purge() throws IOException {
+        long retiredBefore = System.currentTimeMillis() - gracePeriod;
+        Iterator<Map.Entry<BookSnapshot, Long>> iterator = retired.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<BookSnapshot, Long> entry = iterator.next();
+            BookSnapshot snapshot = entry.getKey();
+            if (entry.getValue() > retiredBefore) {
+                log.debug("purge() - snapshot at version {} retired recently", snapshot.getVersion());
+            } else if (snapshot.expire()) {
+                Files.deleteIfExists(snapshot.getJson());
+                Files.deleteIfExists(snapshot.getGzip());
+                iterator.remove();
+            } else {
+                log.debug("purge() - snapshot at version {} still being sent", snapshot.getVersion());
+            }
+        }
+    }
+
+    private static class BestGZIPOutputStream extends GZIPOutputStream {
+
+        BestGZIPOutputStream(OutputStream out) throws IOException {
+            super(out, BUFFER_SIZE);
+            def.setLevel(Deflater.BEST_COMPRESSION);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.bookstore.services.impls;
+
+import com.example.bookstore.events.BookBulkChangedEvent;
+import com.example.bookstore.events.BookChangedEvent;
+import com.example.bookstore.indexes.BookSuggestIndex;
+import com.example.bookstore.services.IBookService;
+import com.example.bookstore.services.IBookSuggestService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.List;
+
+@Service
+@Slf4j
+public class BookSuggestServiceImpl implements IBookSuggestService {
+
+    private final BookSuggestIndex index;
+
+    private IBookService bookService;
+
+    @Autowired
+    public BookSuggestServiceImpl(IBookService bookService, @Value("${books.suggest.max-size}") int maxSize) {
+        this.bookService = bookService;
+        this.index = new BookSuggestIndex(maxSize);
+    }
+
+    @Override
+    public List<BookSuggestIndex.Suggestion> suggest(String prefix, int size) {
+        log.debug("suggest({}, {})", prefix, size);
+        return index.suggest(prefix, size);
+    }
+
+    @Override
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuild() {
+        log.info("rebuild() - indexing the titles and the authors");
+
+        index.clear();
+        bookService.streamBooks(book -> index.put(book.getId(), book.getTitle(), book.getAuthor()));
+
+        log.info("rebuild() - {} books indexed", index.size());
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        log.debug("onBookChanged() - {}", event);
+
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            index.remove(event.getId());
+        } else {
+            index.put(event.getId(), event.getTitle(), event.getAuthor());
+        }
+    }
+
+    /**
+     * Only the bulk deletions matter: the bulk updates change prices, which are not indexed.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BookBulkChangedEvent event) {
+        log.debug("onBooksChanged() - {}", event);
+
+        if (event.getType() == BookChangedEvent.Type.DELETED) {
+            event.getIds().forEach(index::remove);
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.example.bookstore.services.impls;
+
+import com.example.bookstore.dtos.CartOperationDto;
+import com.example.bookstore.entities.CartEntity;
+import com.example.bookstore.services.ICartService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Single writer variant of the cart service, enabled with {@code carts.mode=actor}. Every operation on a cart,
+ * reads included, is queued in the mailbox of its user and the mailboxes are processed on a shared pool of
+ * {@code carts.actor.threads} threads, one batch at a time per cart: the writes of a cart never race each other
+ * within the instance, and the carts being busy at once are spread over the threads.
+ * <p>
+ * The commands queued while a batch is running are taken together as the next batch (up to
+ * {@code carts.actor.max-batch}) and applied in order in one transaction, each of them answered with the cart
+ * as written. Should that transaction fail, the commands are run one by one through {@link CartServiceImpl},
+ * retrying the conflicts with other instances, so that one faulty command does not fail its neighbours.
+ * <p>
+ * A caller waits {@code carts.actor.timeout} at most, then gives up with a {@link ConcurrencyFailureException}
+ * (a 409), its command being skipped unless already taken. The commands a mailbox can no longer run, once the
+ * service is shut down, are failed rather than left waiting.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "carts.mode", havingValue = "actor")
+@Slf4j
+public class CartActorServiceImpl implements ICartService {
+
+    private final ExecutorService executor;
+
+    /**
+     * The mailboxes of the carts with commands queued or running. Every change of a mailbox is made within
+     * {@link Map#compute} on its entry, which makes the queueing and the end of a run atomic.
+     */
+    private final Map<String, Mailbox> mailboxes = new ConcurrentHashMap<>();
+
+    private CartServiceImpl cartService;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final int maxBatch;
+
+    private final Duration timeout;
+
+    /**
+     * Operations on a cart, none for a read.
+     */
+    private static final class Command {
+
+        private final List<CartOperationDto> operations;
+
+        private final CompletableFuture<CartEntity> result = new CompletableFuture<>();
+
+        private Command(List<CartOperationDto> operations) {
+            this.operations = operations;
+        }
+    }
+
+    /**
+     * The commands of a cart not taken yet, and whether a thread is on them.
+     */
+    private static final class Mailbox {
+
+        private final String username;
+
+        private final Deque<Command> queue = new ArrayDeque<>();
+
+        private boolean running;
+
+        private Mailbox(String username) {
+            this.username = username;
+        }
+    }
+
+    @Autowired
+    public CartActorServiceImpl(CartServiceImpl cartService, PlatformTransactionManager transactionManager,
+                                @Value("${carts.actor.threads}") int threads,
+                                @Value("${carts.actor.max-batch}") int maxBatch,
+                                @Value("${carts.actor.timeout}") Duration timeout) {
+        this.cartService = cartService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.maxBatch = maxBatch;
+        this.timeout = timeout;
+
+        AtomicInteger count = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, "cart-actor-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public CartEntity addItem(String username, Integer bookId, Integer quantity) {
+        log.info("addItem({}, {}, {})", username, bookId, quantity);
+        return submit(username, List.of(CartOperationDto.builder()
+                .op(CartOperationDto.Type.ADD)
+                .bookId(bookId)
+                .quantity(quantity)
+                .build()));
+    }
+
+    @Override
+    public CartEntity deleteItem(String username, Integer bookId) {
+        log.info("deleteItem({}, {})", username, bookId);
+
+        // an unknown book is a 404 as in the other modes, which a removal in a batch does not check
+        cartService.getBook(bookId);
+
+        return submit(username, List.of(CartOperationDto.builder()
+                .op(CartOperationDto.Type.REMOVE)
+                .bookId(bookId)
+                .build()));
+    }
+
+    @Override
+    public CartEntity updateItems(String username, List<CartOperationDto> operations) {
+        log.info("updateItems({}, {} operations)", username, operations.size());
+        return submit(username, operations);
+    }
+
+    @Override
+    public CartEntity getCart(String username) {
+        log.info("getCart({})", username);
+        return submit(username, List.of());
+    }
+
+    @Override
+    public CartEntity checkout(String username) {
+        log.info("checkout({})", username);
+        return submit(username, List.of());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("shutdown() - {} carts still had commands queued", mailboxes.size());
+        }
+    }
+
+    private CartEntity submit(String username, List<CartOperationDto> operations) {
+        operations.forEach(cartService::check);
+
+        Command command = new Command(operations);
+        boolean[] start = new boolean[1];
+        Mailbox mailbox = mailboxes.compute(username, (key, current) -> {
+            Mailbox target = Objects.isNull(current) ? new Mailbox(key) : current;
+            target.queue.add(command);
+            start[0] = !target.running;
+            target.running = true;
+            return target;
+        });
+        if (start[0]) {
+            schedule(mailbox);
+        }
+
+        return await(username, command);
+    }
+
+    /**
+     * Past the timeout, the command is failed here and skipped by its run.
+     */
+    private CartEntity await(String username, Command command) {
+        try {
+            return command.result.get(timeout.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.debug("await({}) - no answer after {}", username, timeout);
+            command.result.completeExceptionally(new ConcurrencyFailureException(
+                    "The cart of " + username + " is busy, please retry"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            command.result.completeExceptionally(new ConcurrencyFailureException(
+                    "Interrupted while waiting for the cart of " + username, e));
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        }
+
+        try {
+            return command.result.join();
+        } catch (CompletionException e) {
+            throw unwrap(e.getCause());
+        }
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException runtime) {
+            return runtime;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new CompletionException(cause);
+    }
+
+    /**
+     * Hands the mailbox to the pool, or fails its commands when the pool takes no more work.
+     */
+    private void schedule(Mailbox mailbox) {
+        try {
+            executor.execute(() -> process(mailbox));
+        } catch (RejectedExecutionException e) {
+            abandon(mailbox, e);
+        }
+    }
+
+    /**
+     * Runs one batch, then hands the mailbox back to the pool, so that a busy cart does not hold a thread.
+     */
+    private void process(Mailbox mailbox) {
+        List<Command> batch = take(mailbox);
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        try {
+            run(mailbox.username, batch);
+        } catch (Throwable e) {
+            log.error("process({}) - {} commands failed", mailbox.username, batch.size(), e);
+            batch.forEach(command -> command.result.completeExceptionally(e));
+            if (e instanceof Error error) {
+                throw error;
+            }
+        } finally {
+            schedule(mailbox);
+        }
+    }
+
+    /**
+     * Fails the commands left in the mailbox and drops it, so that the next command starts a new one.
+     */
+    private void abandon(Mailbox mailbox, RuntimeException cause) {
+        List<Command> left = new ArrayList<>();
+        mailboxes.compute(mailbox.username, (key, current) -> {
+            left.addAll(mailbox.queue);
+            mailbox.queue.clear();
+            mailbox.running = false;
+            return current == mailbox ? null : current;
+        });
+        log.warn("abandon({}) - {} commands failed", mailbox.username, left.size());
+        left.forEach(command -> command.result.completeExceptionally(cause));
+    }
+
+    /**
+     * Up to {@code carts.actor.max-batch} commands still awaited. The mailbox is dropped once empty.
+     */
+    private List<Command> take(Mailbox mailbox) {
+        List<Command> batch = new ArrayList<>();
+        mailboxes.compute(mailbox.username, (key, current) -> {
+            while (batch.size() < maxBatch && !mailbox.queue.isEmpty()) {
+                Command command = mailbox.queue.poll();
+                if (!command.result.isDone()) {
+                    batch.add(command);
+                }
+            }
+            if (batch.isEmpty()) {
+                mailbox.running = false;
+                return null;
+            }
+            return current;
+        });
+        return batch;
+    }
+
+    private void run(String username, List<Command> batch) {
+        List<CartOperationDto> operations = batch.stream()
+                .flatMap(command -> command.operations.stream())
+                .toList();
+
+        RuntimeException failure;
+        try {
+            // a batch of reads only leaves a missing cart missing
+            CartEntity cart = operations.isEmpty() ? cartService.findCart(username) : write(username, operations);
+
+            log.debug("run({}) - {} commands, {} operations written at once", username, batch.size(),
+                    operations.size());
+            batch.forEach(command -> command.result.complete(cart));
+            return;
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+
+        // a lone command rejected for its own sake has its answer already, a conflict is worth retrying
+        boolean conflict = failure instanceof ConcurrencyFailureException
+                || failure instanceof DataIntegrityViolationException;
+        if (batch.size() == 1 && !conflict) {
+            batch.get(0).result.completeExceptionally(failure);
+            return;
+        }
+
+        log.debug("run({}) - {} commands rejected together, running them one by one", username, batch.size(),
+                failure);
+        for (Command command : batch) {
+            try {
+                command.result.complete(command.operations.isEmpty()
+                        ? cartService.findCart(username)
+                        : cartService.updateItems(username, command.operations));
+            } catch (RuntimeException e) {
+                command.result.completeExceptionally(e);
+            }
+        }
+    }
+
+    private CartEntity write(String username, List<CartOperationDto> operations) {
+        return transactionTemplate.execute(status -> cartService.write(username, operations));
+    }
+}
@@ -1,19 +1,37 @@
 package com.example.bookstore.services.impls;
 
+import com.example.bookstore.dtos.CartOperationDto;
 import com.example.bookstore.entities.BookEntity;
 import com.example.bookstore.entities.CartEntity;
 import com.example.bookstore.entities.CartItemEntity;
 import com.example.bookstore.entities.UserEntity;
+import com.example.bookstore.exceptions.BadRequestException;
 import com.example.bookstore.exceptions.NotFoundException;
 import com.example.bookstore.respositories.BookRepository;
 import com.example.bookstore.respositories.CartRepository;
 import com.example.bookstore.respositories.UserRepository;
+import com.example.bookstore.services.IBookIdFilterService;
 import com.example.bookstore.services.ICartService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.ConcurrencyFailureException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
@@ -25,26 +43,52 @@ public class CartServiceImpl implements ICartService {
 
     private BookRepository bookRepository;
 
+    private IBookIdFilterService bookIdFilter;
+
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Attempts of a mutation losing to a concurrent write of the same cart, the first one included.
+     */
+    @Value("${carts.retry.max-attempts}")
+    private int maxAttempts;
+
+    /**
+     * Upper bound of the first pause, doubled at each attempt up to 32 times. Pauses are drawn at random below it.
+     */
+    @Value("${carts.retry.backoff}")
+    private Duration backoff;
+
     @Autowired
-    public CartServiceImpl(CartRepository repository, UserRepository userRepository, BookRepository bookRepository) {
+    public CartServiceImpl(CartRepository repository, UserRepository userRepository, BookRepository bookRepository,
+                           IBookIdFilterService bookIdFilter, PlatformTransactionManager transactionManager) {
         this.repository = repository;
         this.userRepository = userRepository;
         this.bookRepository = bookRepository;
+        this.bookIdFilter = bookIdFilter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
     }
 
     @Override
     public CartEntity addItem(String username, Integer bookId, Integer quantity) {
         log.info("addItem({}, {}, {})", username, bookId, quantity);
+        return retry("addItem", () -> add(username, bookId, quantity));
+    }
 
-        // check if user exists
-        UserEntity userEntity = getUser(username);
-
-        // check if a cart is already created for that user
-        CartEntity cartEntity = getCart(userEntity);
-
+    /**
+     * Once the cart exists, a single upsert of the line then one read of the cart. The first add creates the cart.
+     */
+    private CartEntity add(String username, Integer bookId, Integer quantity) {
         // check if the book exists
         BookEntity bookEntity = getBook(bookId);
 
+        if (upsert(username, bookId, quantity) > 0) {
+            return repository.findByUserUsername(username).orElseThrow();
+        }
+
+        // the cart of the user, created along with the check of the user on the first change
+        CartEntity cartEntity = getOrCreateCart(username);
+
         // search if book is already there an add
         Optional<CartItemEntity> cartItemOpt = cartEntity.findCartItemByBookId(bookId);
         CartItemEntity cartItemEntity = null;
@@ -65,19 +109,37 @@ public class CartServiceImpl implements ICartService {
         return repository.save(cartEntity);
     }
 
+    private int upsert(String username, Integer bookId, Integer quantity) {
+        try {
+            return repository.upsertItem(username, bookId, quantity);
+        } catch (DataIntegrityViolationException e) {
+            if (violates(e, CartItemEntity.BOOK_FOREIGN_KEY)) {
+                log.debug("addItem({}, {}, {}) - book deleted meanwhile", username, bookId, quantity);
+                throw new NotFoundException("Book not found with id: " + bookId);
+            }
+            throw e;
+        }
+    }
+
     @Override
     public CartEntity deleteItem(String username, Integer bookId) {
         log.info("deleteItem({}, {})", username, bookId);
+        return retry("deleteItem", () -> delete(username, bookId));
+    }
 
-        // check if user exists
-        UserEntity userEntity = getUser(username);
-
-        // check if a cart is already created for that user
-        CartEntity cartEntity = getCart(userEntity);
+    private CartEntity delete(String username, Integer bookId) {
+        Optional<CartEntity> opt = repository.findByUserUsername(username);
 
         // check if the book exists
         getBook(bookId);
 
+        if (opt.isEmpty()) {
+            // nothing to remove from a cart not yet created: removing alone does not create it
+            log.debug("deleteItem({}, {}) - cart not yet created for the user", username, bookId);
+            return emptyCart(username);
+        }
+        CartEntity cartEntity = opt.get();
+
         // search if book is already there an add
         Optional<CartItemEntity> cartItemOpt = cartEntity.findCartItemByBookId(bookId);
         CartItemEntity cartItemEntity = null;
@@ -93,18 +155,105 @@ public class CartServiceImpl implements ICartService {
         return repository.save(cartEntity);
     }
 
+    /**
+     * Checks the operations, then loads the user, the cart and all the books added with one query each, applies
+     * the operations in memory and writes the cart once, in a single transaction: an invalid operation or an
+     * unknown book rejects the whole batch. Removing a book the cart does not hold is ignored.
+     */
+    @Override
+    public CartEntity updateItems(String username, List<CartOperationDto> operations) {
+        log.info("updateItems({}, {} operations)", username, operations.size());
+
+        operations.forEach(this::check);
+
+        return retry("updateItems", () -> write(username, operations));
+    }
+
+    /**
+     * Applies the operations to the cart in the transaction of the caller. Only removing books leaves a missing
+     * cart missing, like {@link #deleteItem}.
+     */
+    public CartEntity write(String username, List<CartOperationDto> operations) {
+        CartEntity cartEntity;
+        if (operations.stream().allMatch(operation -> operation.getOp() == CartOperationDto.Type.REMOVE)) {
+            Optional<CartEntity> opt = repository.findByUserUsername(username);
+            if (opt.isEmpty()) {
+                log.debug("updateItems({}, {} operations) - cart not yet created for the user", username,
+                        operations.size());
+                return emptyCart(username);
+            }
+            cartEntity = opt.get();
+        } else {
+            cartEntity = getOrCreateCart(username);
+        }
+        Map<Integer, BookEntity> books = getBooks(operations);
+
+        apply(cartEntity, operations, books);
+
+        log.debug("updateItems({}, {} operations) - {} items in the cart", username, operations.size(),
+                cartEntity.getItems().size());
+        return repository.save(cartEntity);
+    }
+
+    @Override
+    public CartEntity checkout(String username) {
+        log.info("checkout({})", username);
+        return getCart(username);
+    }
+
     @Override
     public CartEntity getCart(String username) {
         log.info("getCart({})", username);
+        return findCart(username);
+    }
+
+    /**
+     * Runs the mutation in a transaction of its own, again when it lost to a concurrent write of the cart. Any
+     * other violation is thrown at once.
+     */
+    private CartEntity retry(String operation, Supplier<CartEntity> mutation) {
+        for (int attempt = 1; ; attempt++) {
+            ConcurrencyFailureException conflict;
+            try {
+                return transactionTemplate.execute(status -> mutation.get());
+            } catch (ConcurrencyFailureException e) {
+                conflict = e;
+            } catch (DataIntegrityViolationException e) {
+                if (!violates(e, CartEntity.USER_UNIQUE_KEY) && !violates(e, CartItemEntity.BOOK_UNIQUE_KEY)) {
+                    throw e;
+                }
+                conflict = new ConcurrencyFailureException(e.getMessage(), e);
+            }
+
+            if (attempt >= maxAttempts) {
+                log.debug("{}() - conflicting write, giving up after {} attempts", operation, attempt);
+                throw conflict;
+            }
 
-        // check if user exists
-        UserEntity userEntity = getUser(username);
+            log.debug("{}() - conflicting write, attempt {} of {}", operation, attempt, maxAttempts);
+            pause(attempt, conflict);
+        }
+    }
+
+    /**
+     * Matched on the message: the constraint name extracted by Hibernate is not reliable on H2.
+     */
+    private static boolean violates(DataIntegrityViolationException e, String constraint) {
+        String message = e.getMostSpecificCause().getMessage();
+        return Objects.nonNull(message) && message.toUpperCase(Locale.ROOT).contains(constraint);
+    }
 
-        // check if a cart is already created for that user
-        return getCart(userEntity);
+    private void pause(int attempt, RuntimeException conflict) {
+        long bound = backoff.toNanos() << Math.min(attempt - 1, 5);
+        try {
+            TimeUnit.NANOSECONDS.sleep(ThreadLocalRandom.current().nextLong(bound + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw conflict;
+        }
     }
 
-    private UserEntity getUser(String username) {
+    public UserEntity getUser(String username) {
         Optional<UserEntity> userOpt = userRepository.findById(username);
         if (userOpt.isEmpty()) {
             log.debug("getUser({}) - user not found", username);
@@ -114,21 +263,119 @@ public class CartServiceImpl implements ICartService {
         return userOpt.get();
     }
 
-    public CartEntity getCart(UserEntity userEntity) {
-        Optional<CartEntity> opt = repository.findByUser(userEntity);
+    /**
+     * The cart of the user, or an empty cart which is not stored when the user has none yet: reading a cart never
+     * writes, the cart is created by its first change only (see {@link #getOrCreateCart}).
+     */
+    public CartEntity findCart(String username) {
+        return repository.findByUserUsername(username).orElseGet(() -> {
+            log.debug("findCart({}) - cart not yet created for the user.", username);
+            return emptyCart(username);
+        });
+    }
+
+    private static CartEntity emptyCart(String username) {
+        return CartEntity.builder()
+                .user(UserEntity.builder().username(username).build())
+                .build();
+    }
+
+    /**
+     * The cart of the user, read by username in one select. The user is only looked up, and the request refused
+     * if it does not exist, when the cart is not there yet: the user behind an existing cart exists, and the
+     * authenticated user has been checked at login already.
+     */
+    public CartEntity getOrCreateCart(String username) {
+        Optional<CartEntity> opt = repository.findByUserUsername(username);
 
         if (opt.isEmpty()) {
-            log.debug("getCart({}) - cart not yet created for the user.", userEntity.getUsername());
+            log.debug("getOrCreateCart({}) - cart not yet created for the user.", username);
+            UserEntity userEntity = getUser(username);
 
-            return repository.save(repository.save(CartEntity.builder()
+            return repository.save(CartEntity.builder()
                     .user(userEntity)
-                    .build()));
+                    .build());
         } else {
             return opt.get();
         }
     }
 
+    public void check(CartOperationDto operation) {
+        if (Objects.isNull(operation.getOp()) || Objects.isNull(operation.getBookId())) {
+            throw new BadRequestException("An operation and a book id must be given: " + operation);
+        }
+        if (operation.getOp() == CartOperationDto.Type.ADD
+                && (Objects.isNull(operation.getQuantity()) || operation.getQuantity() < 1)) {
+            throw new BadRequestException("A positive quantity must be added: " + operation);
+        }
+        if (operation.getOp() == CartOperationDto.Type.SET
+                && (Objects.isNull(operation.getQuantity()) || operation.getQuantity() < 0)) {
+            throw new BadRequestException("A quantity must be set: " + operation);
+        }
+    }
+
+    /**
+     * Applies checked operations to the cart in order, the books added or set being given.
+     */
+    public void apply(CartEntity cart, List<CartOperationDto> operations, Map<Integer, BookEntity> books) {
+        for (CartOperationDto operation : operations) {
+            Integer bookId = operation.getBookId();
+            CartItemEntity item = cart.getItems().get(bookId);
+
+            int quantity = switch (operation.getOp()) {
+                case ADD -> (Objects.isNull(item) ? 0 : item.getQuantity()) + operation.getQuantity();
+                case SET -> operation.getQuantity();
+                case REMOVE -> 0;
+            };
+
+            if (quantity == 0) {
+                if (Objects.nonNull(item)) {
+                    cart.removeItem(item);
+                }
+            } else if (Objects.isNull(item)) {
+                item = CartItemEntity.builder()
+                        .book(books.get(bookId))
+                        .quantity(quantity)
+                        .build();
+                cart.addItem(item);
+            } else {
+                item.setQuantity(quantity);
+            }
+        }
+    }
+
+    /**
+     * The books added or set by the operations, loaded with a single query.
+     */
+    public Map<Integer, BookEntity> getBooks(List<CartOperationDto> operations) {
+        List<Integer> bookIds = operations.stream()
+                .filter(operation -> operation.getOp() != CartOperationDto.Type.REMOVE)
+                .map(CartOperationDto::getBookId)
+                .distinct()
+                .toList();
+
+        List<Integer> unknown = bookIds.stream().filter(bookId -> !bookIdFilter.mightExist(bookId)).toList();
+        if (!unknown.isEmpty()) {
+            log.debug("getBooks() - unknown book ids: {}", unknown);
+            throw new NotFoundException("Books not found with ids: " + unknown);
+        }
+
+        Map<Integer, BookEntity> books = bookRepository.findAllById(bookIds).stream()
+                .collect(Collectors.toMap(BookEntity::getId, Function.identity()));
+        if (books.size() < bookIds.size()) {
+            List<Integer> missing = bookIds.stream().filter(bookId -> !books.containsKey(bookId)).toList();
+            log.debug("getBooks() - books not found: {}", missing);
+            throw new NotFoundException("Books not found with ids: " + missing);
+        }
+        return books;
+    }
+
     public BookEntity getBook(Integer bookId) {
+        if (!bookIdFilter.mightExist(bookId)) {
+            log.debug("getBook({}) - unknown book id", bookId);
+            throw new NotFoundException("Book not found with id: " + bookId);
+        }
+
         Optional<BookEntity> bookOpt = bookRepository.findById(bookId);
 
         if (bookOpt.isEmpty()) {
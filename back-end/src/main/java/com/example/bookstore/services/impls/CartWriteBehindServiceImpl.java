@@ -0,0 +1,519 @@
+package com.example.bookstore.services.impls;
+
+import com.example.bookstore.dtos.CartOperationDto;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.entities.CartEntity;
+import com.example.bookstore.entities.CartItemEntity;
+import com.example.bookstore.events.BookBulkChangedEvent;
+import com.example.bookstore.events.BookChangedEvent;
+import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.services.ICartService;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Write-behind variant of the cart service, enabled with {@code carts.mode=write-behind}. The carts in use are
+ * kept in memory and the mutations are applied there. The carts changed since their last flush are written
+ * together every {@code carts.write-behind.flush-interval}, at checkout, when evicted and on shutdown: the
+ * database sees one write per active cart and interval, whatever the number of clicks.
+ * <p>
+ * A cart untouched for {@code carts.write-behind.idle-timeout} is flushed and dropped, and so are the least
+ * recently used ones beyond {@code carts.write-behind.max-carts}, both on the flushing thread. The checks and the
+ * operations are the ones of {@link CartServiceImpl}, the books being checked through the id filter and the
+ * books cache rather than read on every click. The changes not flushed yet are lost if the process dies, and a
+ * cart must only be used through one instance.
+ */
+@Service
+@Primary
+@ConditionalOnProperty(name = "carts.mode", havingValue = "write-behind")
+@Slf4j
+public class CartWriteBehindServiceImpl implements ICartService {
+
+    private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cart-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * A cart is loaded within {@link Map#computeIfAbsent}, so that it is loaded once. It is only removed when no
+     * write of it is going on, and its changes are written or dropped: a load reads it as last written.
+     */
+    private final Map<String, PendingCart> carts = new ConcurrentHashMap<>();
+
+    private CartServiceImpl cartService;
+
+    private BookRepository bookRepository;
+
+    private TransactionTemplate transactionTemplate;
+
+    private final long idleTimeout;
+
+    private final int maxCarts;
+
+    private final AtomicBoolean overflowing = new AtomicBoolean();
+
+    /**
+     * Detached from any persistence context. Guarded by itself, notified when a write of the cart ends.
+     */
+    private static final class PendingCart {
+
+        private final String username;
+
+        private final CartEntity cart;
+
+        private long version;
+
+        private long flushedVersion;
+
+        private long lastAccess = System.currentTimeMillis();
+
+        private boolean evicted;
+
+        private boolean writing;
+
+        private PendingCart(String username, CartEntity cart) {
+            this.username = username;
+            this.cart = cart;
+        }
+
+        private boolean isDirty() {
+            return version > flushedVersion;
+        }
+    }
+
+    private static final class Snapshot {
+
+        private final PendingCart pending;
+
+        private final long version;
+
+        private final Map<Integer, Integer> quantities;
+
+        private Snapshot(PendingCart pending, long version, Map<Integer, Integer> quantities) {
+            this.pending = pending;
+            this.version = version;
+            this.quantities = quantities;
+        }
+    }
+
+    @Autowired
+    public CartWriteBehindServiceImpl(CartServiceImpl cartService, BookRepository bookRepository,
+                                      PlatformTransactionManager transactionManager,
+                                      @Value("${carts.write-behind.flush-interval}") Duration flushInterval,
+                                      @Value("${carts.write-behind.idle-timeout}") Duration idleTimeout,
+                                      @Value("${carts.write-behind.max-carts}") int maxCarts) {
+        this.cartService = cartService;
+        this.bookRepository = bookRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idleTimeout = idleTimeout.toMillis();
+        this.maxCarts = maxCarts;
+
+        long interval = flushInterval.toMillis();
+        executor.scheduleWithFixedDelay(this::flushQuietly, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public CartEntity addItem(String username, Integer bookId, Integer quantity) {
+        log.info("addItem({}, {}, {})", username, bookId, quantity);
+        return update(username, List.of(CartOperationDto.builder()
+                .op(CartOperationDto.Type.ADD)
+                .bookId(bookId)
+                .quantity(quantity)
+                .build()));
+    }
+
+    @Override
+    public CartEntity deleteItem(String username, Integer bookId) {
+        log.info("deleteItem({}, {})", username, bookId);
+
+        // check if the book exists
+        cartService.getBook(bookId);
+
+        return update(username, List.of(CartOperationDto.builder()
+                .op(CartOperationDto.Type.REMOVE)
+                .bookId(bookId)
+                .build()));
+    }
+
+    @Override
+    public CartEntity updateItems(String username, List<CartOperationDto> operations) {
+        log.info("updateItems({}, {} operations)", username, operations.size());
+        return update(username, operations);
+    }
+
+    @Override
+    public CartEntity getCart(String username) {
+        log.info("getCart({})", username);
+
+        PendingCart pending = pending(username);
+        synchronized (pending) {
+            pending.lastAccess = System.currentTimeMillis();
+            return copy(pending.cart);
+        }
+    }
+
+    /**
+     * Writes the cart first, then reads it back with the current prices of its books.
+     */
+    @Override
+    public CartEntity checkout(String username) {
+        log.info("checkout({})", username);
+
+        Snapshot snapshot = awaitSnapshot(pending(username));
+        if (Objects.nonNull(snapshot)) {
+            try {
+                write(List.of(snapshot));
+            } finally {
+                release(snapshot);
+            }
+        }
+        return cartService.getCart(username);
+    }
+
+    /**
+     * Writes all the carts changed since their last flush.
+     */
+    public void flush() {
+        flush(carts.values());
+    }
+
+    /**
+     * The books deleted leave the carts in memory, as they left the ones in the database, and the books updated
+     * are read again for the carts holding them.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBookChanged(BookChangedEvent event) {
+        onBooksChanged(event.getType(), List.of(event.getId()));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onBooksChanged(BookBulkChangedEvent event) {
+        onBooksChanged(event.getType(), event.getIds());
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        executor.shutdown();
+        if (!executor.awaitTermination(10, TimeUnit.SECONDS)) {
+            log.warn("shutdown() - flushing thread still busy");
+        }
+        log.info("shutdown() - flushing {} carts", carts.size());
+        flush();
+    }
+
+    private void onBooksChanged(BookChangedEvent.Type type, Collection<Integer> bookIds) {
+        if (type == BookChangedEvent.Type.DELETED) {
+            forget(bookIds);
+        } else if (type == BookChangedEvent.Type.UPDATED) {
+            refresh(bookIds);
+        }
+    }
+
+    private CartEntity update(String username, List<CartOperationDto> operations) {
+        operations.forEach(cartService::check);
+        Map<Integer, BookEntity> books = getBooks(operations);
+
+        while (true) {
+            PendingCart pending = pending(username);
+            synchronized (pending) {
+                // an evicted cart is written already: load it again
+                if (!pending.evicted) {
+                    Map<Integer, Integer> before = quantities(pending.cart);
+                    cartService.apply(pending.cart, operations, books);
+                    if (!before.equals(quantities(pending.cart))) {
+                        pending.version++;
+                    }
+                    pending.lastAccess = System.currentTimeMillis();
+                    return copy(pending.cart);
+                }
+            }
+        }
+    }
+
+    /**
+     * A cart not stored yet is kept empty in memory, and only created when written after a change.
+     */
+    private PendingCart pending(String username) {
+        PendingCart pending = carts.get(username);
+        if (Objects.nonNull(pending)) {
+            return pending;
+        }
+
+        pending = carts.computeIfAbsent(username, key -> {
+            log.debug("pending({}) - cart loaded", key);
+            return new PendingCart(key, copy(cartService.findCart(key)));
+        });
+
+        if (carts.size() > maxCarts && overflowing.compareAndSet(false, true)) {
+            try {
+                executor.execute(this::evictOverflow);
+            } catch (RejectedExecutionException e) {
+                // shutting down, every cart is flushed anyway
+                overflowing.set(false);
+            }
+        }
+        return pending;
+    }
+
+    private Map<Integer, BookEntity> getBooks(List<CartOperationDto> operations) {
+        return operations.stream()
+                .filter(operation -> operation.getOp() != CartOperationDto.Type.REMOVE)
+                .map(CartOperationDto::getBookId)
+                .distinct()
+                .collect(Collectors.toMap(Function.identity(), cartService::getBook));
+    }
+
+    /**
+     * The least recently used carts beyond the maximum, and a tenth of it more.
+     */
+    private void evictOverflow() {
+        overflowing.set(false);
+        try {
+            int excess = carts.size() - maxCarts;
+            if (excess > 0) {
+                evict(carts.values().stream()
+                        .sorted(Comparator.comparingLong(cart -> cart.lastAccess))
+                        .limit(excess + Math.max(1, maxCarts / 10))
+                        .toList());
+            }
+        } catch (RuntimeException e) {
+            log.warn("evictOverflow() - eviction failed, the carts will be evicted next time", e);
+        }
+    }
+
+    private void flushQuietly() {
+        try {
+            flush();
+
+            long idleSince = System.currentTimeMillis() - idleTimeout;
+            evict(carts.values().stream().filter(cart -> cart.lastAccess < idleSince).toList());
+        } catch (RuntimeException e) {
+            log.warn("flushQuietly() - flush failed, the carts will be written next time", e);
+        }
+    }
+
+    /**
+     * One transaction, then cart by cart when it fails: a transient failure keeps the cart for the next flush, any
+     * other one drops its changes.
+     */
+    private void flush(Collection<PendingCart> candidates) {
+        List<Snapshot> snapshots = candidates.stream()
+                .map(this::snapshot)
+                .filter(Objects::nonNull)
+                .toList();
+        if (snapshots.isEmpty()) {
+            return;
+        }
+
+        try {
+            write(snapshots);
+        } catch (RuntimeException e) {
+            log.debug("flush() - {} carts rejected, retrying cart by cart", snapshots.size(), e);
+            snapshots.forEach(this::writeAlone);
+        } finally {
+            snapshots.forEach(this::release);
+        }
+    }
+
+    private void writeAlone(Snapshot snapshot) {
+        try {
+            write(List.of(snapshot));
+        } catch (TransientDataAccessException | TransactionException e) {
+            log.warn("flush() - cart of {} rejected, kept for the next flush", snapshot.pending.username, e);
+        } catch (RuntimeException e) {
+            discard(snapshot, e);
+        }
+    }
+
+    private void evict(Collection<PendingCart> victims) {
+        if (victims.isEmpty()) {
+            return;
+        }
+
+        flush(victims);
+
+        int evicted = 0;
+        for (PendingCart pending : victims) {
+            synchronized (pending) {
+                if (!pending.isDirty() && !pending.evicted && !pending.writing) {
+                    pending.evicted = true;
+                    carts.remove(pending.username, pending);
+                    evicted++;
+                }
+            }
+        }
+        log.debug("evict() - {} carts evicted, {} carts in memory", evicted, carts.size());
+    }
+
+    /**
+     * The cart leaves the memory, and is loaded again as stored when next used.
+     */
+    private void discard(Snapshot snapshot, RuntimeException cause) {
+        PendingCart pending = snapshot.pending;
+        synchronized (pending) {
+            log.warn("discard() - cart of {} rejected, its changes up to version {} dropped", pending.username,
+                    pending.version, cause);
+            pending.evicted = true;
+            carts.remove(pending.username, pending);
+        }
+    }
+
+    /**
+     * Null when the cart is being written already. The write must be released.
+     */
+    private Snapshot snapshot(PendingCart pending) {
+        synchronized (pending) {
+            if (!pending.isDirty() || pending.evicted || pending.writing) {
+                return null;
+            }
+
+            pending.writing = true;
+            return new Snapshot(pending, pending.version, quantities(pending.cart));
+        }
+    }
+
+    private Snapshot awaitSnapshot(PendingCart pending) {
+        synchronized (pending) {
+            try {
+                while (pending.writing) {
+                    pending.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new ConcurrencyFailureException("Interrupted while waiting for the cart of "
+                        + pending.username, e);
+            }
+            return snapshot(pending);
+        }
+    }
+
+    private void release(Snapshot snapshot) {
+        synchronized (snapshot.pending) {
+            snapshot.pending.writing = false;
+            snapshot.pending.notifyAll();
+        }
+    }
+
+    private void write(List<Snapshot> snapshots) {
+        transactionTemplate.executeWithoutResult(status -> snapshots.forEach(this::write));
+
+        for (Snapshot snapshot : snapshots) {
+            synchronized (snapshot.pending) {
+                snapshot.pending.flushedVersion = Math.max(snapshot.pending.flushedVersion, snapshot.version);
+            }
+        }
+        log.debug("write() - {} carts written", snapshots.size());
+    }
+
+    /**
+     * Touches only the lines that differ.
+     */
+    private void write(Snapshot snapshot) {
+        CartEntity cart = cartService.getOrCreateCart(snapshot.pending.username);
+
+        for (CartItemEntity item : List.copyOf(cart.getItems().values())) {
+            if (!snapshot.quantities.containsKey(item.getBookId())) {
+                cart.removeItem(item);
+            }
+        }
+
+        snapshot.quantities.forEach((bookId, quantity) -> {
+            CartItemEntity item = cart.getItems().get(bookId);
+            if (Objects.isNull(item)) {
+                cart.addItem(CartItemEntity.builder()
+                        .book(bookRepository.getReferenceById(bookId))
+                        .quantity(quantity)
+                        .build());
+            } else if (!quantity.equals(item.getQuantity())) {
+                item.setQuantity(quantity);
+            }
+        });
+    }
+
+    private void forget(Collection<Integer> bookIds) {
+        for (PendingCart pending : carts.values()) {
+            synchronized (pending) {
+                bookIds.forEach(pending.cart.getItems()::remove);
+            }
+        }
+    }
+
+    private void refresh(Collection<Integer> bookIds) {
+        Set<Integer> changed = Set.copyOf(bookIds);
+        Set<Integer> held = new HashSet<>();
+        for (PendingCart pending : carts.values()) {
+            synchronized (pending) {
+                pending.cart.getItems().keySet().stream().filter(changed::contains).forEach(held::add);
+            }
+        }
+        if (held.isEmpty()) {
+            return;
+        }
+
+        Map<Integer, BookEntity> books = bookRepository.findAllById(held).stream()
+                .collect(Collectors.toMap(BookEntity::getId, Function.identity()));
+        for (PendingCart pending : carts.values()) {
+            synchronized (pending) {
+                pending.cart.getItems().forEach((bookId, item) -> {
+                    BookEntity book = books.get(bookId);
+                    if (Objects.nonNull(book)) {
+                        item.setBook(book);
+                    }
+                });
+            }
+        }
+        log.debug("refresh() - {} books read again for the carts in memory", books.size());
+    }
+
+    private static Map<Integer, Integer> quantities(CartEntity cart) {
+        Map<Integer, Integer> quantities = new LinkedHashMap<>();
+        cart.getItems().forEach((bookId, item) -> quantities.put(bookId, item.getQuantity()));
+        return quantities;
+    }
+
+    /**
+     * Shares the user and the books.
+     */
+    private static CartEntity copy(CartEntity cart) {
+        CartEntity copy = CartEntity.builder()
+                .id(cart.getId())
+                .user(cart.getUser())
+                .build();
+        cart.getItems().values().forEach(item -> copy.addItem(CartItemEntity.builder()
+                .id(item.getId())
+                .book(item.getBook())
+                .quantity(item.getQuantity())
+                .build()));
+        return copy;
+    }
+}
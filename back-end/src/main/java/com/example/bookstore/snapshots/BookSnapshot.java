@@ -0,0 +1,61 @@
+package com.example.bookstore.snapshots;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.ToString;
+
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The whole catalog serialized once as a JSON array, plain and gzipped, in files that are never rewritten.
+ * Tagged with the catalog version read before the books were loaded, like the listing ETag.
+ * <p>
+ * Reference counted: one reference while it is the current snapshot, one per response sending it. The files are
+ * only deleted once {@link #expire()} found no reference left, and an expired snapshot cannot be retained again.
+ */
+@Getter
+@AllArgsConstructor
+@ToString
+public class BookSnapshot {
+
+    private long version;
+
+    private Path json;
+
+    private long jsonLength;
+
+    private Path gzip;
+
+    private long gzipLength;
+
+    @Getter(AccessLevel.NONE)
+    private final AtomicInteger references = new AtomicInteger(1);
+
+    /**
+     * Takes a reference, unless the snapshot is expired already.
+     */
+    public boolean retain() {
+        while (true) {
+            int count = references.get();
+            if (count < 0) {
+                return false;
+            }
+            if (references.compareAndSet(count, count + 1)) {
+                return true;
+            }
+        }
+    }
+
+    public void release() {
+        references.decrementAndGet();
+    }
+
+    /**
+     * Whether no reference is left, in which case the snapshot can no longer be retained and its files can go.
+     */
+    public boolean expire() {
+        return references.compareAndSet(0, -1);
+    }
+}
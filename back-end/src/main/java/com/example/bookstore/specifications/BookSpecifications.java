@@ -0,0 +1,75 @@
+package com.example.bookstore.specifications;
+
+import com.example.bookstore.dtos.BookFilterDto;
+import com.example.bookstore.entities.BookEntity;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+
+/**
+ * Catalog filters as {@link Specification}s. Each of them compares a bare column, an exact value, a prefix or
+ * a bound, so that it can be answered with a range of the matching {@code BOOKS} index.
+ */
+public final class BookSpecifications {
+
+    private static final char ESCAPE = '\\';
+
+    private BookSpecifications() {
+    }
+
+    /**
+     * All the filters set in the DTO, AND-ed; matches every book when none is set.
+     */
+    public static Specification<BookEntity> matching(BookFilterDto filter) {
+        Specification<BookEntity> specification = Specification.where(null);
+        if (Objects.isNull(filter)) {
+            return specification;
+        }
+
+        if (Objects.nonNull(filter.getAuthor())) {
+            specification = specification.and(authorIs(filter.getAuthor()));
+        }
+        if (Objects.nonNull(filter.getAuthorPrefix())) {
+            specification = specification.and(authorStartsWith(filter.getAuthorPrefix()));
+        }
+        if (Objects.nonNull(filter.getTitlePrefix())) {
+            specification = specification.and(titleStartsWith(filter.getTitlePrefix()));
+        }
+        if (Objects.nonNull(filter.getMinPrice())) {
+            specification = specification.and(priceAtLeast(filter.getMinPrice()));
+        }
+        if (Objects.nonNull(filter.getMaxPrice())) {
+            specification = specification.and(priceAtMost(filter.getMaxPrice()));
+        }
+
+        return specification;
+    }
+
+    public static Specification<BookEntity> authorIs(String author) {
+        return (root, query, cb) -> cb.equal(root.get("author"), author);
+    }
+
+    public static Specification<BookEntity> authorStartsWith(String prefix) {
+        return (root, query, cb) -> cb.like(root.get("author"), escape(prefix) + "%", ESCAPE);
+    }
+
+    public static Specification<BookEntity> titleStartsWith(String prefix) {
+        return (root, query, cb) -> cb.like(root.get("title"), escape(prefix) + "%", ESCAPE);
+    }
+
+    public static Specification<BookEntity> priceAtLeast(BigDecimal price) {
+        return (root, query, cb) -> cb.greaterThanOrEqualTo(root.get("price"), price);
+    }
+
+    public static Specification<BookEntity> priceAtMost(BigDecimal price) {
+        return (root, query, cb) -> cb.lessThanOrEqualTo(root.get("price"), price);
+    }
+
+    /**
+     * The wildcards typed by the client are matched literally: only the trailing {@code %} makes the prefix.
+     */
+    private static String escape(String text) {
+        return text.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
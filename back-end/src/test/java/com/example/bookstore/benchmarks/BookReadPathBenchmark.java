@@ -0,0 +1,128 @@
+package com.example.bookstore.benchmarks;
+
+import com.example.bookstore.BookstoreApplication;
+import com.example.bookstore.dtos.BookDto;
+import com.example.bookstore.dtos.BookFilterDto;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.mappers.BookMapper;
+import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.services.IBookService;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the catalog read paths: entities loaded by JPA and mapped afterwards by {@link BookMapper}, the way
+ * the listing used to read them, against the projections straight into {@link BookDto} it reads now, for a page
+ * and for the whole catalog. The allocation per operation is reported by the GC profiler
+ * ({@code gc.alloc.rate.norm}).
+ * <p>
+ * Not a test: run the {@link #main} method, JMH options can be given as arguments (e.g. {@code -wi 1 -i 3}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookReadPathBenchmark {
+
+    private static final int CATALOG_SIZE = 5_000;
+
+    @Param({"20", "100"})
+    private int pageSize;
+
+    private ConfigurableApplicationContext context;
+
+    private IBookService service;
+
+    private EntityManagerFactory entityManagerFactory;
+
+    private BookMapper mapper;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(BookstoreApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("tests")
+                .properties("spring.jpa.show-sql=false", "logging.level.root=WARN")
+                .run();
+
+        service = context.getBean(IBookService.class);
+        entityManagerFactory = context.getBean(EntityManagerFactory.class);
+        mapper = context.getBean(BookMapper.class);
+
+        List<BookEntity> books = new ArrayList<>(CATALOG_SIZE);
+        for (int i = 0; i < CATALOG_SIZE; i++) {
+            books.add(BookEntity.builder()
+                    .title("title" + i)
+                    .author("author" + i % 100)
+                    .price(BigDecimal.valueOf(i % 50 + 1))
+                    .build());
+        }
+        context.getBean(BookRepository.class).saveAll(books);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @Benchmark
+    public List<BookDto> pageThroughEntities() {
+        return mapper.toDtoList(entities(pageSize));
+    }
+
+    @Benchmark
+    public List<BookDto> pageThroughProjections() {
+        return service.getBookDtos(new BookFilterDto(), ScrollPosition.keyset(), Sort.by("id"), pageSize).getContent();
+    }
+
+    @Benchmark
+    public List<BookDto> catalogThroughEntities() {
+        return mapper.toDtoList(entities(Integer.MAX_VALUE));
+    }
+
+    @Benchmark
+    public List<BookDto> catalogThroughProjections() {
+        return service.getBookDtos();
+    }
+
+    /**
+     * The books as managed entities, in id order, in a persistence context of their own like a request would.
+     */
+    private List<BookEntity> entities(int limit) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return entityManager.createQuery("select b from BookEntity b order by b.id", BookEntity.class)
+                    .setMaxResults(limit)
+                    .getResultList();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(BookReadPathBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
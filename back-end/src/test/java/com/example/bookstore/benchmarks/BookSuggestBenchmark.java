@@ -0,0 +1,70 @@
+package com.example.bookstore.benchmarks;
+
+import com.example.bookstore.indexes.BookSuggestIndex;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the type-ahead lookups of {@link BookSuggestIndex} on a generated catalog, one to four characters
+ * typed. Sampled, so that JMH reports the latency percentiles (p99 included) and not only the average.
+ * <p>
+ * Not a test: run the {@link #main} method, JMH options can be given as arguments (e.g. {@code -wi 1 -i 3}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BookSuggestBenchmark {
+
+    private static final String[] WORDS = {"les", "la", "voyage", "paris", "mer", "nuit", "histoire", "guerre",
+            "amour", "temps", "monde", "roi", "ville", "jardin", "secret", "lettres", "memoires", "contes"};
+
+    @Param({"10000", "100000"})
+    private int catalogSize;
+
+    private BookSuggestIndex index;
+
+    private String[] prefixes;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        index = new BookSuggestIndex(10);
+        for (int i = 0; i < catalogSize; i++) {
+            String title = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)] + " " + i;
+            index.put(i, title, "author" + random.nextInt(catalogSize / 10));
+        }
+
+        prefixes = new String[1024];
+        for (int i = 0; i < prefixes.length; i++) {
+            String word = WORDS[random.nextInt(WORDS.length)];
+            prefixes[i] = word.substring(0, 1 + random.nextInt(Math.min(4, word.length())));
+        }
+    }
+
+    @Benchmark
+    public List<BookSuggestIndex.Suggestion> suggest() {
+        return index.suggest(prefixes[next++ & (prefixes.length - 1)], 10);
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(BookSuggestBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}
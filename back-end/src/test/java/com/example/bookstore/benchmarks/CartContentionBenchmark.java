@@ -0,0 +1,121 @@
+package com.example.bookstore.benchmarks;
+
+import com.example.bookstore.BookstoreApplication;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.entities.CartEntity;
+import com.example.bookstore.entities.UserEntity;
+import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.respositories.UserRepository;
+import com.example.bookstore.services.ICartService;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.ThreadParams;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.dao.ConcurrencyFailureException;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the adds to the carts from 8 threads, with the retry settings of the local profile: every thread
+ * adding to the same cart (the worst case of several tabs clicking at once) against every thread adding to a
+ * cart of its own, for the {@code sync} mode retrying the conflicts and the {@code actor} mode queueing the adds
+ * of a cart for a single writer. The adds which spent all their attempts are counted apart ({@code givenUp}),
+ * they are not part of the throughput.
+ * <p>
+ * Not a test: run the {@link #main} method, JMH options can be given as arguments (e.g. {@code -wi 1 -i 3}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class CartContentionBenchmark {
+
+    private static final int MAX_THREADS = 64;
+
+    @Param({"shared", "own"})
+    private String carts;
+
+    @Param({"sync", "actor"})
+    private String mode;
+
+    private ConfigurableApplicationContext context;
+
+    private ICartService service;
+
+    private Integer bookId;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        context = new SpringApplicationBuilder(BookstoreApplication.class)
+                .web(WebApplicationType.NONE)
+                .profiles("tests")
+                // arguments rather than default properties, which the tests profile overrides
+                .run("--spring.jpa.show-sql=false", "--logging.level.root=WARN",
+                        "--carts.retry.max-attempts=5", "--carts.retry.backoff=10ms", "--carts.mode=" + mode);
+
+        service = context.getBean(ICartService.class);
+
+        UserRepository userRepository = context.getBean(UserRepository.class);
+        for (int i = 0; i < MAX_THREADS; i++) {
+            userRepository.save(UserEntity.builder()
+                    .username("user" + i)
+                    .password("password")
+                    .role("ROLE_USER")
+                    .build());
+        }
+        bookId = context.getBean(BookRepository.class).save(BookEntity.builder()
+                .title("title")
+                .author("author")
+                .price(BigDecimal.TEN)
+                .build()).getId();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        context.close();
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Writer {
+
+        private String username;
+
+        public long givenUp;
+
+        @Setup(Level.Trial)
+        public void setUp(CartContentionBenchmark benchmark, ThreadParams threads) {
+            username = "shared".equals(benchmark.carts) ? "user0" : "user" + threads.getThreadIndex() % MAX_THREADS;
+        }
+    }
+
+    /**
+     * Adds one more of the book to the cart of the thread, retried on conflicts by the service.
+     */
+    @Benchmark
+    public CartEntity add(Writer writer) {
+        try {
+            return service.addItem(writer.username, bookId, 1);
+        } catch (ConcurrencyFailureException e) {
+            writer.givenUp++;
+            return null;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(CartContentionBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
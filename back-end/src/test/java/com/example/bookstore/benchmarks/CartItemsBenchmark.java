@@ -0,0 +1,80 @@
+package com.example.bookstore.benchmarks;
+
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.entities.CartEntity;
+import com.example.bookstore.entities.CartItemEntity;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the mutations of a {@link CartEntity} in memory, as the cart operations apply them before writing:
+ * updating the line of a book already in the cart, and adding then removing the line of another one. The cost
+ * should stay flat from a handful of lines to the carts of the B2B customers.
+ * <p>
+ * Not a test: run the {@link #main} method, JMH options can be given as arguments (e.g. {@code -wi 1 -i 3}).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CartItemsBenchmark {
+
+    @Param({"10", "100", "1000", "10000"})
+    private int cartSize;
+
+    private CartEntity cart;
+
+    private BookEntity extra;
+
+    private int next;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        cart = CartEntity.builder().id(1).build();
+        for (int i = 0; i < cartSize; i++) {
+            cart.addItem(CartItemEntity.builder().id(i).book(book(i)).quantity(1).build());
+        }
+        extra = book(cartSize);
+    }
+
+    /**
+     * Adds to the quantity of a book of the cart, cycling over all of them.
+     */
+    @Benchmark
+    public CartItemEntity update() {
+        CartItemEntity item = cart.findCartItemByBookId(next++ % cartSize).orElseThrow();
+        item.setQuantity(item.getQuantity() + 1);
+        return item;
+    }
+
+    /**
+     * Adds a new book to the cart, then removes it.
+     */
+    @Benchmark
+    public CartEntity addThenRemove() {
+        CartItemEntity item = CartItemEntity.builder().book(extra).quantity(1).build();
+        cart.addItem(item);
+        cart.removeItem(cart.findCartItemByBookId(extra.getId()).orElseThrow());
+        return cart;
+    }
+
+    private static BookEntity book(int id) {
+        return BookEntity.builder().id(id).title("title" + id).author("author").price(BigDecimal.TEN).build();
+    }
+
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(CartItemsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
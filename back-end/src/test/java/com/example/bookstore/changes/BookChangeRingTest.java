@@ -0,0 +1,86 @@
+package com.example.bookstore.changes;
+
+import com.example.bookstore.dtos.BookChangeDto;
+import com.example.bookstore.events.BookChangedEvent;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookChangeRingTest {
+
+    private static final long START = 1000;
+
+    private BookChangeRing ring;
+
+    @BeforeEach
+    void beforeEach() {
+        ring = new BookChangeRing(3, START);
+    }
+
+    /**
+     * Given changes appended,
+     * When reading after a buffered sequence
+     * Then, it should return the following changes in order, numbered from the start
+     */
+    @Test
+    void givenChanges_whenReadingAfterSequence_thenReturnFollowingChanges() {
+        // given
+        append(1);
+        append(2);
+
+        // when
+        List<BookChangeDto> all = ring.after(START);
+        List<BookChangeDto> afterFirst = ring.after(START + 1);
+        List<BookChangeDto> none = ring.after(START + 2);
+
+        // then
+        assertEquals(List.of(1, 2), all.stream().map(BookChangeDto::getBookId).toList());
+        assertEquals(List.of(START + 1, START + 2), all.stream().map(BookChangeDto::getSequence).toList());
+        assertEquals(List.of(2), afterFirst.stream().map(BookChangeDto::getBookId).toList());
+        assertTrue(none.isEmpty());
+        assertEquals(START + 2, ring.last());
+    }
+
+    /**
+     * Given more changes appended than the capacity,
+     * When reading after a sequence
+     * Then, it should return null when changes after it were overwritten, the changes otherwise
+     */
+    @Test
+    void givenOverwrittenChanges_whenReadingAfterSequence_thenReturnNullWhenGap() {
+        // given
+        for (int i = 1; i <= 5; i++) {
+            append(i);
+        }
+
+        // when
+        List<BookChangeDto> gap = ring.after(START + 1);
+        List<BookChangeDto> oldest = ring.after(START + 2);
+
+        // then
+        assertNull(gap);
+        assertEquals(List.of(3, 4, 5), oldest.stream().map(BookChangeDto::getBookId).toList());
+    }
+
+    /**
+     * Given a sequence not handed out by this ring,
+     * When reading after it
+     * Then, it should return null
+     */
+    @Test
+    void givenUnknownSequence_whenReadingAfterIt_thenReturnNull() {
+        // given
+        append(1);
+
+        // when - then
+        assertNull(ring.after(START + 2));
+        assertNull(ring.after(START - 1));
+    }
+
+    private void append(int bookId) {
+        ring.append(BookChangeDto.builder().type(BookChangedEvent.Type.CREATED).bookId(bookId).build());
+    }
+}
@@ -1,7 +1,13 @@
 package com.example.bookstore.configs;
 
 import com.example.bookstore.mappers.*;
+import com.example.bookstore.services.IBookChangeFeedService;
+import com.example.bookstore.services.IBookFacetService;
+import com.example.bookstore.services.IBookImportService;
+import com.example.bookstore.services.IBookSearchService;
 import com.example.bookstore.services.IBookService;
+import com.example.bookstore.services.IBookSnapshotService;
+import com.example.bookstore.services.IBookSuggestService;
 import com.example.bookstore.services.ICartService;
 import com.example.bookstore.services.IUserService;
 import org.mockito.Mockito;
@@ -27,6 +33,36 @@ public class TestConfig {
         return Mockito.mock(IBookService.class);
     }
 
+    @Bean
+    public IBookChangeFeedService bookChangeFeedService() {
+        return Mockito.mock(IBookChangeFeedService.class);
+    }
+
+    @Bean
+    public IBookFacetService bookFacetService() {
+        return Mockito.mock(IBookFacetService.class);
+    }
+
+    @Bean
+    public IBookImportService bookImportService() {
+        return Mockito.mock(IBookImportService.class);
+    }
+
+    @Bean
+    public IBookSearchService bookSearchService() {
+        return Mockito.mock(IBookSearchService.class);
+    }
+
+    @Bean
+    public IBookSuggestService bookSuggestService() {
+        return Mockito.mock(IBookSuggestService.class);
+    }
+
+    @Bean
+    public IBookSnapshotService bookSnapshotService() {
+        return Mockito.mock(IBookSnapshotService.class);
+    }
+
     @Bean
     public IUserService userService() {
         return Mockito.mock(IUserService.class);
@@ -78,6 +114,7 @@ public class TestConfig {
                 .authorizeHttpRequests(auth -> auth
                         .requestMatchers(HttpMethod.GET, "/api/v1/ping").permitAll()
                         .requestMatchers(HttpMethod.GET, "/api/v1/books/**").permitAll()
+                        .requestMatchers(HttpMethod.POST, "/api/v1/books/lookup").permitAll()
                         .requestMatchers("/api/v1/users/register").permitAll()
                         .anyRequest().authenticated()
                 )
@@ -0,0 +1,156 @@
+package com.example.bookstore.controllers;
+
+import com.example.bookstore.changes.BookDelta;
+import com.example.bookstore.configs.TestConfig;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.services.IBookChangeFeedService;
+import com.example.bookstore.services.IBookService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithAnonymousUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(BookChangeController.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("tests")
+@Import({TestConfig.class})
+class BookChangeControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private IBookChangeFeedService service;
+
+    @Autowired
+    private IBookService bookService;
+
+    private static final String CHANGES_URI = "/api/v1/books/changes";
+
+    /**
+     * Given the test objects to support the tests,
+     * When starting to test
+     * Then, it should assert that all of them are not null
+     */
+    @Test
+    void givenTestObjects_whenTesting_thenAssertNotNull() {
+        assertNotNull(mockMvc);
+        assertNotNull(service);
+    }
+
+    /**
+     * Given a client resuming the feed,
+     * When subscribing with Last-Event-ID
+     * Then, it should start the event stream after that id
+     */
+    @Test
+    @WithAnonymousUser
+    void givenLastEventId_whenSubscribing_thenResumeAfterIt() throws Exception {
+        // given
+        clearInvocations(service);
+        doReturn(new SseEmitter()).when(service).subscribe(any());
+
+        // when
+        MvcResult result = mockMvc.perform(get(CHANGES_URI)
+                        .header("Last-Event-ID", "42"))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // then
+        assertTrue(result.getRequest().isAsyncStarted());
+        verify(service, times(1)).subscribe(42L);
+    }
+
+    /**
+     * Given a new client,
+     * When subscribing without Last-Event-ID
+     * Then, it should start the event stream from now on
+     */
+    @Test
+    @WithAnonymousUser
+    void givenNoLastEventId_whenSubscribing_thenFollowFromNow() throws Exception {
+        // given
+        clearInvocations(service);
+        doReturn(new SseEmitter()).when(service).subscribe(any());
+
+        // when
+        MvcResult result = mockMvc.perform(get(CHANGES_URI))
+                .andExpect(status().isOk())
+                .andReturn();
+
+        // then
+        assertTrue(result.getRequest().isAsyncStarted());
+        verify(service, times(1)).subscribe(null);
+    }
+
+    /**
+     * Given books changed and deleted after a sequence,
+     * When getting the delta since that sequence
+     * Then, it should return the changed books, the deleted ids and the sequence to resume from
+     */
+    @Test
+    @WithAnonymousUser
+    void givenChanges_whenGettingDelta_thenReturnChangedDeletedAndUntil() throws Exception {
+        // given
+        clearInvocations(bookService);
+        BookEntity book = BookEntity.builder().id(1).title("title").author("author").price(BigDecimal.TEN).build();
+        doReturn(new BookDelta(List.of(book), List.of(2), 12L, true)).when(bookService).getBookChanges(10L, 5);
+
+        // when/then
+        MvcResult result = mockMvc.perform(get(CHANGES_URI)
+                        .param("since", "10")
+                        .param("size", "5")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed", hasSize(1)))
+                .andExpect(jsonPath("$.changed[0].id", is(1)))
+                .andExpect(jsonPath("$.deleted", contains(2)))
+                .andExpect(jsonPath("$.until", is(12)))
+                .andExpect(jsonPath("$.hasMore", is(true)))
+                .andReturn();
+
+        assertFalse(result.getRequest().isAsyncStarted());
+        verify(bookService, times(1)).getBookChanges(10L, 5);
+    }
+
+    /**
+     * Given a negative sequence,
+     * When getting the delta
+     * Then, it should return bad request
+     */
+    @Test
+    @WithAnonymousUser
+    void givenNegativeSince_whenGettingDelta_thenReturnBadRequest() throws Exception {
+        // given
+        clearInvocations(bookService);
+
+        // when/then
+        mockMvc.perform(get(CHANGES_URI)
+                        .param("since", "-1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+
+        verify(bookService, never()).getBookChanges(anyLong(), anyInt());
+    }
+}
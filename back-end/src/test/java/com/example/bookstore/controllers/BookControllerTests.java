@@ -1,35 +1,61 @@
 package com.example.bookstore.controllers;
 
 import com.example.bookstore.configs.TestConfig;
+import com.example.bookstore.cursors.BookCursor;
+import com.example.bookstore.dtos.BookBulkDeleteDto;
+import com.example.bookstore.dtos.BookBulkUpdateDto;
 import com.example.bookstore.dtos.BookDto;
+import com.example.bookstore.dtos.BookFilterDto;
+import com.example.bookstore.dtos.BookIdsDto;
 import com.example.bookstore.entities.BookEntity;
 import com.example.bookstore.exceptions.NotFoundException;
 import com.example.bookstore.mappers.BookMapper;
 import com.example.bookstore.services.IBookService;
+import com.example.bookstore.services.IBookSnapshotService;
+import com.example.bookstore.snapshots.BookSnapshot;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.mockito.ArgumentMatchers;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.security.test.context.support.WithAnonymousUser;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
 
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
 
 import static org.hamcrest.Matchers.*;
-import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 
 @WebMvcTest(BookController.class)
@@ -238,6 +264,107 @@ class BookControllerTests {
         ;
     }
 
+    /**
+     * Given an author and a price factor,
+     * When calling the bulk update endpoint
+     * Then, it should return the number of updated books
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenAuthorAndPriceFactor_whenUpdatingInBulk_thenReturnAffectedCount() throws Exception {
+        // given
+        BookBulkUpdateDto dto = BookBulkUpdateDto.builder()
+                .author("author")
+                .priceFactor(new BigDecimal("1.1"))
+                .build();
+
+        doReturn(3).when(service).updateBooksPrice(null, "author", null, new BigDecimal("1.1"));
+
+        // when
+        ResultActions result = mockMvc.perform(post(BOOKS_CONTROLLER_URI + "/bulk/update")
+                .content(objectMapper.writeValueAsString(dto))
+                .contentType(MediaType.APPLICATION_JSON));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected", is(3)))
+        ;
+    }
+
+    /**
+     * Given a negative price,
+     * When calling the bulk update endpoint
+     * Then, it should return bad request
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenNegativePrice_whenUpdatingInBulk_thenReturnBadRequest() throws Exception {
+        // given
+        BookBulkUpdateDto dto = BookBulkUpdateDto.builder()
+                .ids(List.of(1))
+                .price(BigDecimal.valueOf(-1))
+                .build();
+
+        // when
+        ResultActions result = mockMvc.perform(post(BOOKS_CONTROLLER_URI + "/bulk/update")
+                .content(objectMapper.writeValueAsString(dto))
+                .contentType(MediaType.APPLICATION_JSON));
+
+        // then
+        result.andExpect(status().isBadRequest())
+        ;
+    }
+
+    /**
+     * Given ids,
+     * When calling the bulk delete endpoint as a user
+     * Then, it should return forbidden
+     */
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void givenUser_whenDeletingInBulk_thenReturnForbidden() throws Exception {
+        // given
+        BookBulkDeleteDto dto = BookBulkDeleteDto.builder()
+                .ids(List.of(1, 2))
+                .build();
+
+        // when
+        ResultActions result = mockMvc.perform(post(BOOKS_CONTROLLER_URI + "/bulk/delete")
+                .content(objectMapper.writeValueAsString(dto))
+                .contentType(MediaType.APPLICATION_JSON));
+
+        // then
+        result.andExpect(status().isForbidden())
+        ;
+    }
+
+    /**
+     * Given a book updated concurrently,
+     * When calling the update endpoint
+     * Then, it should return conflict
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenConcurrentUpdate_whenUpdating_thenReturnConflict() throws Exception {
+        // given
+        BookDto dto = BookDto.builder()
+                .title("title")
+                .author("author")
+                .price(BigDecimal.ONE)
+                .build();
+
+        doThrow(new ObjectOptimisticLockingFailureException(BookEntity.class, 1)).when(service).updateBook(anyInt(), any(BookEntity.class));
+
+        // when
+        ResultActions result = mockMvc.perform(put(BOOKS_CONTROLLER_URI + "/1")
+                .content(objectMapper.writeValueAsString(dto))
+                .contentType(MediaType.APPLICATION_JSON));
+
+        // then
+        result.andExpect(status().isConflict())
+        ;
+    }
+
     /**
      * Given an id,
      * When calling the delete method
@@ -312,6 +439,90 @@ class BookControllerTests {
         ;
     }
 
+    /**
+     * Given a valid id,
+     * When calling the get by id
+     * Then, it should tag the book with its version
+     */
+    @Test
+    @WithAnonymousUser
+    void givenValidId_whenGettingById_thenReturnETag() throws Exception {
+        // given
+        BookEntity entity = BookEntity.builder()
+                .id(1)
+                .title("title")
+                .author("author")
+                .price(BigDecimal.ONE)
+                .version(3)
+                .build();
+
+        doReturn(entity).when(service).getBook(anyInt());
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/1"));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"book-1-3\""))
+        ;
+    }
+
+    /**
+     * Given the ETag of the current version of a book,
+     * When calling the get by id with If-None-Match
+     * Then, it should return not modified without loading the book
+     */
+    @Test
+    @WithAnonymousUser
+    void givenCurrentETag_whenGettingById_thenReturnNotModified() throws Exception {
+        // given
+        clearInvocations(service);
+        doReturn(3L).when(service).getBookVersion(1);
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"book-1-3\""));
+
+        // then
+        result.andExpect(status().isNotModified())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"book-1-3\""))
+                .andExpect(content().string(""))
+        ;
+
+        verify(service, never()).getBook(anyInt());
+    }
+
+    /**
+     * Given the ETag of an outdated version of a book,
+     * When calling the get by id with If-None-Match
+     * Then, it should return the book with the new ETag
+     */
+    @Test
+    @WithAnonymousUser
+    void givenOutdatedETag_whenGettingById_thenReturnBook() throws Exception {
+        // given
+        BookEntity entity = BookEntity.builder()
+                .id(1)
+                .title("title")
+                .author("author")
+                .price(BigDecimal.ONE)
+                .version(4)
+                .build();
+
+        doReturn(4L).when(service).getBookVersion(1);
+        doReturn(entity).when(service).getBook(1);
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/1")
+                .header(HttpHeaders.IF_NONE_MATCH, "\"book-1-3\""));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"book-1-4\""))
+                .andExpect(jsonPath("$.title", equalTo(entity.getTitle())))
+        ;
+    }
+
     /**
      * Given an invalid id,
      * When calling the get by id
@@ -336,11 +547,11 @@ class BookControllerTests {
     /**
      * Given a list of books persited,
      * When calling the get all
-     * Then, it should return a lsit of books
+     * Then, it should return the first page of books
      */
     @Test
     @WithAnonymousUser
-    void givenListsPersisted_whenGettingAll_thenReturnListOfBooks() throws Exception {
+    void givenListsPersisted_whenGettingAll_thenReturnFirstPageOfBooks() throws Exception {
         // given
         Double price = 123.0;
         BookEntity entity = BookEntity.builder()
@@ -356,23 +567,581 @@ class BookControllerTests {
                 .price(BigDecimal.valueOf(price + 1))
                 .build();
 
-
-        doReturn(List.of(entity, entity2)).when(service).getBooks();
+        clearInvocations(service);
+        doReturn(window(List.of(entity, entity2), false)).when(service).getBookDtos(any(), any(KeysetScrollPosition.class), any(Sort.class), anyInt());
 
         // when
         ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI));
 
         // then
         result.andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].id", allOf(notNullValue(), is(entity.getId()))))
-                .andExpect(jsonPath("$[0].title", equalTo(entity.getTitle())))
-                .andExpect(jsonPath("$[0].author", equalTo(entity.getAuthor())))
-                .andExpect(jsonPath("$[0].price", is(price)))
-                .andExpect(jsonPath("$[1].id", allOf(notNullValue(), is(entity2.getId()))))
-                .andExpect(jsonPath("$[1].title", equalTo(entity2.getTitle())))
-                .andExpect(jsonPath("$[1].author", equalTo(entity2.getAuthor())))
-                .andExpect(jsonPath("$[1].price", is(price + 1)))
+                .andExpect(jsonPath("$.size", is(2)))
+                .andExpect(jsonPath("$.nextCursor", nullValue()))
+                .andExpect(jsonPath("$.items[0].id", allOf(notNullValue(), is(entity.getId()))))
+                .andExpect(jsonPath("$.items[0].title", equalTo(entity.getTitle())))
+                .andExpect(jsonPath("$.items[0].author", equalTo(entity.getAuthor())))
+                .andExpect(jsonPath("$.items[0].price", is(price)))
+                .andExpect(jsonPath("$.items[1].id", allOf(notNullValue(), is(entity2.getId()))))
+                .andExpect(jsonPath("$.items[1].title", equalTo(entity2.getTitle())))
+                .andExpect(jsonPath("$.items[1].author", equalTo(entity2.getAuthor())))
+                .andExpect(jsonPath("$.items[1].price", is(price + 1)))
+        ;
+
+        verify(service, times(1)).getBookDtos(any(BookFilterDto.class), eq(ScrollPosition.keyset()), eq(Sort.by("id")), eq(20));
+    }
+
+    /**
+     * Given more books than the page size,
+     * When calling the get all with a cursor
+     * Then, it should resume after the cursor and return the cursor of the next page
+     */
+    @Test
+    @WithAnonymousUser
+    void givenCursor_whenGettingAll_thenReturnNextPageWithNextCursor() throws Exception {
+        // given
+        BookEntity entity = BookEntity.builder()
+                .id(3)
+                .title("title3")
+                .author("author3")
+                .price(BigDecimal.valueOf(123))
+                .build();
+
+        String after = BookCursor.encode(ScrollPosition.forward(Map.of("id", 2)), Sort.by("id"));
+
+        clearInvocations(service);
+        doReturn(window(List.of(entity), true)).when(service).getBookDtos(any(), any(KeysetScrollPosition.class), any(Sort.class), anyInt());
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("after", after)
+                .param("size", "1"));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.size", is(1)))
+                .andExpect(jsonPath("$.items[0].id", is(entity.getId())))
+                .andExpect(jsonPath("$.nextCursor", equalTo(BookCursor.encode(ScrollPosition.forward(Map.of("id", 3)), Sort.by("id")))))
+        ;
+
+        verify(service, times(1)).getBookDtos(any(BookFilterDto.class), eq(ScrollPosition.forward(Map.of("id", 2))), eq(Sort.by("id")), eq(1));
+    }
+
+    /**
+     * Given a page size bigger than the maximum allowed,
+     * When calling the get all
+     * Then, it should cap the page size
+     */
+    @Test
+    @WithAnonymousUser
+    void givenTooBigSize_whenGettingAll_thenCapPageSize() throws Exception {
+        // given
+        clearInvocations(service);
+        doReturn(window(List.of(), false)).when(service).getBookDtos(any(), any(KeysetScrollPosition.class), any(Sort.class), anyInt());
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("size", "100000"));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(0)))
+        ;
+
+        verify(service, times(1)).getBookDtos(any(BookFilterDto.class), eq(ScrollPosition.keyset()), eq(Sort.by("id")), eq(100));
+    }
+
+    /**
+     * Given the ETag of the current catalog version,
+     * When calling the get all with If-None-Match
+     * Then, it should return not modified without loading the books
+     */
+    @Test
+    @WithAnonymousUser
+    void givenCurrentETag_whenGettingAll_thenReturnNotModified() throws Exception {
+        // given
+        clearInvocations(service);
+        doReturn(42L).when(service).getCatalogVersion();
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"books-42\""));
+
+        // then
+        result.andExpect(status().isNotModified())
+                .andExpect(content().string(""))
+        ;
+
+        verify(service, never()).getBookDtos(any(), any(KeysetScrollPosition.class), any(Sort.class), anyInt());
+    }
+
+    /**
+     * Given the ETag of an outdated catalog version,
+     * When calling the get all with If-None-Match
+     * Then, it should return the page with the new ETag
+     */
+    @Test
+    @WithAnonymousUser
+    void givenOutdatedETag_whenGettingAll_thenReturnPageOfBooks() throws Exception {
+        // given
+        doReturn(43L).when(service).getCatalogVersion();
+        doReturn(window(List.of(), false)).when(service).getBookDtos(any(), any(KeysetScrollPosition.class), any(Sort.class), anyInt());
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"books-42\""));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, "\"books-43\""))
+                .andExpect(jsonPath("$.size", is(0)))
+        ;
+    }
+
+    /**
+     * Given an invalid cursor,
+     * When calling the get all
+     * Then, it should return bad request
+     */
+    @Test
+    @WithAnonymousUser
+    void givenInvalidCursor_whenGettingAll_thenReturnBadRequest() throws Exception {
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("after", "not-a-cursor"));
+
+        // then
+        result.andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", notNullValue()))
+        ;
+    }
+
+    /**
+     * Given an invalid page size,
+     * When calling the get all
+     * Then, it should return bad request
+     */
+    @Test
+    @WithAnonymousUser
+    void givenInvalidSize_whenGettingAll_thenReturnBadRequest() throws Exception {
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("size", "0"));
+
+        // then
+        result.andExpect(status().isBadRequest())
+        ;
+    }
+
+    /**
+     * Given filters and a descending sort,
+     * When calling the get all
+     * Then, it should pass the filters and the sort, ending with the id, to the service
+     */
+    @Test
+    @WithAnonymousUser
+    void givenFiltersAndSort_whenGettingAll_thenQueryFilteredAndSortedPage() throws Exception {
+        // given
+        clearInvocations(service);
+        doReturn(window(List.of(), false)).when(service).getBookDtos(any(), any(KeysetScrollPosition.class), any(Sort.class), anyInt());
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("authorPrefix", "Hu")
+                .param("titlePrefix", "Les")
+                .param("minPrice", "5")
+                .param("maxPrice", "20.50")
+                .param("sort", "price,desc"));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(0)))
+        ;
+
+        verify(service, times(1)).getBookDtos(
+                ArgumentMatchers.<BookFilterDto>argThat(filter -> Objects.isNull(filter.getAuthor())
+                        && "Hu".equals(filter.getAuthorPrefix())
+                        && "Les".equals(filter.getTitlePrefix())
+                        && new BigDecimal("5").equals(filter.getMinPrice())
+                        && new BigDecimal("20.50").equals(filter.getMaxPrice())),
+                eq(ScrollPosition.keyset()),
+                eq(Sort.by(Sort.Direction.DESC, "price").and(Sort.by(Sort.Direction.DESC, "id"))),
+                eq(20));
+    }
+
+    /**
+     * Given a sort on an unknown property or direction,
+     * When calling the get all
+     * Then, it should return bad request
+     */
+    @Test
+    @WithAnonymousUser
+    void givenInvalidSort_whenGettingAll_thenReturnBadRequest() throws Exception {
+        // when
+        ResultActions unknownProperty = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("sort", "version"));
+        ResultActions unknownDirection = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("sort", "title,sideways"));
+
+        // then
+        unknownProperty.andExpect(status().isBadRequest());
+        unknownDirection.andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Given a cursor issued for the id order,
+     * When calling the get all sorted by title with it
+     * Then, it should return bad request
+     */
+    @Test
+    @WithAnonymousUser
+    void givenCursorOfAnotherSort_whenGettingAll_thenReturnBadRequest() throws Exception {
+        // given
+        String after = BookCursor.encode(ScrollPosition.forward(Map.of("id", 2)), Sort.by("id"));
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("after", after)
+                .param("sort", "title"));
+
+        // then
+        result.andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", notNullValue()))
         ;
     }
 
+    /**
+     * Given a cursor issued for the ascending price order,
+     * When calling the get all sorted by descending price with it
+     * Then, it should return bad request
+     */
+    @Test
+    @WithAnonymousUser
+    void givenCursorOfAnotherDirection_whenGettingAll_thenReturnBadRequest() throws Exception {
+        // given
+        String after = BookCursor.encode(ScrollPosition.forward(Map.of("price", BigDecimal.TEN, "id", 2)),
+                Sort.by("price").and(Sort.by("id")));
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("after", after)
+                .param("sort", "price,desc"));
+
+        // then
+        result.andExpect(status().isBadRequest())
+                .andExpect(jsonPath("$.error", notNullValue()))
+        ;
+    }
+
+    /**
+     * Given ids of existing and missing books,
+     * When getting the books by ids
+     * Then, it should return the books found in the order of the ids and the missing ids
+     */
+    @Test
+    @WithAnonymousUser
+    void givenIds_whenGettingByIds_thenReturnBooksAndMissingIds() throws Exception {
+        // given
+        clearInvocations(service);
+        BookEntity second = BookEntity.builder().id(2).title("title2").author("author2").price(BigDecimal.TEN).build();
+        BookEntity first = BookEntity.builder().id(1).title("title").author("author").price(BigDecimal.ONE).build();
+        doReturn(List.of(second, first)).when(service).getBooksByIds(List.of(2, 9, 1));
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI).param("ids", "2,9,1"));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(2, 1)))
+                .andExpect(jsonPath("$.missing", contains(9)))
+        ;
+        verify(service, never()).getBookDtos(any(), any(), any(), anyInt());
+    }
+
+    /**
+     * Given a long list of ids in a body,
+     * When looking the books up anonymously
+     * Then, it should return the books found and the missing ids
+     */
+    @Test
+    @WithAnonymousUser
+    void givenIdsInBody_whenLookingUp_thenReturnBooksAndMissingIds() throws Exception {
+        // given
+        clearInvocations(service);
+        BookEntity book = BookEntity.builder().id(1).title("title").author("author").price(BigDecimal.ONE).build();
+        doReturn(List.of(book)).when(service).getBooksByIds(List.of(1, 2));
+
+        // when
+        ResultActions result = mockMvc.perform(post(BOOKS_CONTROLLER_URI + "/lookup")
+                .content(objectMapper.writeValueAsString(BookIdsDto.builder().ids(List.of(1, 2)).build()))
+                .contentType(MediaType.APPLICATION_JSON));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].title", is("title")))
+                .andExpect(jsonPath("$.missing", contains(2)))
+        ;
+    }
+
+    /**
+     * Given no ids or more ids than allowed,
+     * When looking the books up
+     * Then, it should return bad request without reading any book
+     */
+    @Test
+    @WithAnonymousUser
+    void givenEmptyOrTooManyIds_whenLookingUp_thenReturnBadRequest() throws Exception {
+        // given
+        clearInvocations(service);
+        List<Integer> tooMany = IntStream.rangeClosed(1, 501).boxed().toList();
+
+        // when/then
+        mockMvc.perform(post(BOOKS_CONTROLLER_URI + "/lookup")
+                        .content(objectMapper.writeValueAsString(BookIdsDto.builder().ids(List.of()).build()))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post(BOOKS_CONTROLLER_URI + "/lookup")
+                        .content(objectMapper.writeValueAsString(BookIdsDto.builder().ids(tooMany).build()))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI).param("ids", "1,x"))
+                .andExpect(status().isBadRequest());
+
+        verify(service, never()).getBooksByIds(any());
+    }
+
+    /**
+     * Given books persisted,
+     * When exporting them as NDJSON
+     * Then, it should stream one book per line
+     */
+    @Test
+    @WithAnonymousUser
+    void givenBooksPersisted_whenExportingAsNdjson_thenStreamOneBookPerLine() throws Exception {
+        // given
+        mockStreamBooks(
+                BookEntity.builder().id(1).title("title").author("author").price(BigDecimal.valueOf(123)).build(),
+                BookEntity.builder().id(2).title("title2").author("author2").price(BigDecimal.valueOf(321)).build());
+
+        // when
+        MvcResult mvcResult = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/export")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        ResultActions result = mockMvc.perform(asyncDispatch(mvcResult));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_NDJSON))
+                .andExpect(content().string(
+                        "{\"id\":1,\"title\":\"title\",\"author\":\"author\",\"price\":123}\n" +
+                        "{\"id\":2,\"title\":\"title2\",\"author\":\"author2\",\"price\":321}\n"))
+        ;
+    }
+
+    /**
+     * Given books persisted,
+     * When exporting them as JSON
+     * Then, it should stream a JSON array with all the books
+     */
+    @Test
+    @WithAnonymousUser
+    void givenBooksPersisted_whenExportingAsJson_thenStreamJsonArray() throws Exception {
+        // given
+        mockStreamBooks(
+                BookEntity.builder().id(1).title("title").author("author").price(BigDecimal.valueOf(123)).build(),
+                BookEntity.builder().id(2).title("title2").author("author2").price(BigDecimal.valueOf(321)).build());
+
+        // when
+        MvcResult mvcResult = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/export")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        ResultActions result = mockMvc.perform(asyncDispatch(mvcResult));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].id", is(1)))
+                .andExpect(jsonPath("$[1].title", equalTo("title2")))
+        ;
+    }
+
+    @Nested
+    @TestPropertySource(properties = "books.pagination.unpaged=true")
+    class Unpaged {
+
+        // the nested class runs with its own context, so it needs its own MockMvc and services
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Autowired
+        private IBookService service;
+
+        @Autowired
+        private IBookSnapshotService snapshotService;
+
+        @TempDir
+        private Path directory;
+
+        /**
+         * Given the unpaged listing enabled and a list of books persited,
+         * When calling the get all without paging parameters
+         * Then, it should return a list of books
+         */
+        @Test
+        @WithAnonymousUser
+        void givenListsPersisted_whenGettingAll_thenReturnListOfBooks() throws Exception {
+            // given
+            Double price = 123.0;
+            BookEntity entity = BookEntity.builder()
+                    .id(1)
+                    .title("title")
+                    .author("author")
+                    .price(BigDecimal.valueOf(price))
+                    .build();
+            BookEntity entity2 = BookEntity.builder()
+                    .id(2)
+                    .title("title2")
+                    .author("author2")
+                    .price(BigDecimal.valueOf(price + 1))
+                    .build();
+
+            doReturn(Optional.empty()).when(snapshotService).getSnapshot(anyLong());
+            doReturn(List.of(dto(entity), dto(entity2))).when(service).getBookDtos();
+
+            // when
+            ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI));
+
+            // then
+            result.andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                    .andExpect(jsonPath("$[0].id", allOf(notNullValue(), is(entity.getId()))))
+                    .andExpect(jsonPath("$[0].title", equalTo(entity.getTitle())))
+                    .andExpect(jsonPath("$[0].author", equalTo(entity.getAuthor())))
+                    .andExpect(jsonPath("$[0].price", is(price)))
+                    .andExpect(jsonPath("$[1].id", allOf(notNullValue(), is(entity2.getId()))))
+                    .andExpect(jsonPath("$[1].title", equalTo(entity2.getTitle())))
+                    .andExpect(jsonPath("$[1].author", equalTo(entity2.getAuthor())))
+                    .andExpect(jsonPath("$[1].price", is(price + 1)))
+            ;
+        }
+
+        /**
+         * Given the unpaged listing enabled and a snapshot of the current catalog version,
+         * When calling the get all, accepting gzip or not
+         * Then, it should send the matching snapshot file, each tagged with its own ETag, and release the snapshot
+         */
+        @Test
+        @WithAnonymousUser
+        void givenCurrentSnapshot_whenGettingAll_thenSendSnapshotFile() throws Exception {
+            // given
+            byte[] json = "[{\"id\":1}]".getBytes(StandardCharsets.UTF_8);
+            byte[] gzip = "gzipped".getBytes(StandardCharsets.UTF_8);
+            Path jsonFile = Files.write(directory.resolve("books.json"), json);
+            Path gzipFile = Files.write(directory.resolve("books.json.gz"), gzip);
+
+            BookSnapshot snapshot = new BookSnapshot(7L, jsonFile, json.length, gzipFile, gzip.length);
+
+            doReturn(7L).when(service).getCatalogVersion();
+            doReturn(Optional.of(snapshot)).when(snapshotService).getSnapshot(7L);
+            clearInvocations(service, snapshotService);
+
+            // when
+            ResultActions plain = mockMvc.perform(get(BOOKS_CONTROLLER_URI));
+            ResultActions compressed = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "br;q=1.0, gzip;q=0.8"));
+
+            // then
+            plain.andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"books-7\""))
+                    .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                    .andExpect(header().doesNotExist(HttpHeaders.CONTENT_ENCODING))
+                    .andExpect(content().contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(content().bytes(json))
+            ;
+            compressed.andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"books-7-gz\""))
+                    .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING))
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andExpect(header().longValue(HttpHeaders.CONTENT_LENGTH, gzip.length))
+                    .andExpect(content().bytes(gzip))
+            ;
+
+            verify(service, never()).getBookDtos();
+            verify(snapshotService, times(2)).release(snapshot);
+        }
+
+        /**
+         * Given the unpaged listing enabled and a snapshot of the current catalog version,
+         * When revalidating the gzipped ETag, accepting gzip then not
+         * Then, it should answer not modified for the gzipped representation only
+         */
+        @Test
+        @WithAnonymousUser
+        void givenGzipETag_whenRevalidating_thenMatchGzippedRepresentationOnly() throws Exception {
+            // given
+            byte[] json = "[{\"id\":1}]".getBytes(StandardCharsets.UTF_8);
+            Path jsonFile = Files.write(directory.resolve("books.json"), json);
+            Path gzipFile = Files.write(directory.resolve("books.json.gz"), new byte[]{1});
+            BookSnapshot snapshot = new BookSnapshot(7L, jsonFile, json.length, gzipFile, 1);
+
+            doReturn(7L).when(service).getCatalogVersion();
+            doReturn(Optional.of(snapshot)).when(snapshotService).getSnapshot(7L);
+            clearInvocations(snapshotService);
+
+            // when
+            ResultActions compressed = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                    .header(HttpHeaders.ACCEPT_ENCODING, "gzip")
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"books-7-gz\""));
+            ResultActions plain = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                    .header(HttpHeaders.IF_NONE_MATCH, "\"books-7-gz\""));
+
+            // then
+            compressed.andExpect(status().isNotModified())
+                    .andExpect(header().string(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING));
+            plain.andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"books-7\""))
+                    .andExpect(content().bytes(json));
+            verify(snapshotService, times(2)).release(snapshot);
+        }
+    }
+
+    /**
+     * Given Accept-Encoding headers,
+     * When checking whether gzip is accepted
+     * Then, it should honour the gzip quality first, the wildcard otherwise
+     */
+    @Test
+    void givenAcceptEncodings_whenCheckingGzip_thenHonourQualities() {
+        assertTrue(BookController.acceptsGzip("gzip, deflate, br"));
+        assertTrue(BookController.acceptsGzip("*"));
+        assertFalse(BookController.acceptsGzip(null));
+        assertFalse(BookController.acceptsGzip("identity"));
+        assertFalse(BookController.acceptsGzip("gzip;q=0, *"));
+        assertFalse(BookController.acceptsGzip("*;q=0"));
+    }
+
+    private void mockStreamBooks(BookEntity... books) {
+        doAnswer(invocation -> {
+            Consumer<BookEntity> consumer = invocation.getArgument(0);
+            for (BookEntity book : books) {
+                consumer.accept(book);
+            }
+            return null;
+        }).when(service).streamBooks(any());
+    }
+
+    private static Window<BookDto> window(List<BookEntity> books, boolean hasNext) {
+        List<BookDto> dtos = books.stream().map(BookControllerTests::dto).toList();
+        return Window.from(dtos, i -> ScrollPosition.forward(Map.of("id", dtos.get(i).getId())), hasNext);
+    }
+
+    private static BookDto dto(BookEntity entity) {
+        return new BookDto(entity.getId(), entity.getTitle(), entity.getAuthor(), entity.getPrice());
+    }
+
 }
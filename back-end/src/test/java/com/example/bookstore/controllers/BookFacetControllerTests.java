@@ -0,0 +1,112 @@
+package com.example.bookstore.controllers;
+
+import com.example.bookstore.configs.TestConfig;
+import com.example.bookstore.dtos.BookFilterDto;
+import com.example.bookstore.facets.BookFacets;
+import com.example.bookstore.services.IBookFacetService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.test.context.support.WithAnonymousUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(BookFacetController.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("tests")
+@Import({TestConfig.class})
+class BookFacetControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private IBookFacetService service;
+
+    private static final String FACETS_URI = "/api/v1/books/facets";
+
+    /**
+     * Given the test objects to support the tests,
+     * When starting to test
+     * Then, it should assert that all of them are not null
+     */
+    @Test
+    void givenTestObjects_whenTesting_thenAssertNotNull() {
+        assertNotNull(mockMvc);
+        assertNotNull(service);
+    }
+
+    /**
+     * Given filters and a number of authors above the maximum,
+     * When getting the facets
+     * Then, it should pass the filters, ask for the maximum of authors and return the counts
+     */
+    @Test
+    @WithAnonymousUser
+    void givenFilters_whenGettingFacets_thenReturnCounts() throws Exception {
+        // given
+        clearInvocations(service);
+        doReturn(new BookFacets(3,
+                List.of(new BookFacets.Count("Victor Hugo", 2), new BookFacets.Count("Émile Zola", 1)),
+                List.of(new BookFacets.Bucket(null, BigDecimal.TEN, 1), new BookFacets.Bucket(BigDecimal.TEN, null, 2))))
+                .when(service).getFacets(any(), anyInt());
+
+        // when
+        ResultActions result = mockMvc.perform(get(FACETS_URI)
+                .param("authorPrefix", "V")
+                .param("minPrice", "5")
+                .param("authors", "500"));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(3)))
+                .andExpect(jsonPath("$.authors[*].value", contains("Victor Hugo", "Émile Zola")))
+                .andExpect(jsonPath("$.authors[0].count", is(2)))
+                .andExpect(jsonPath("$.prices", hasSize(2)))
+                .andExpect(jsonPath("$.prices[0].from", nullValue()))
+                .andExpect(jsonPath("$.prices[0].to", is(10)))
+                .andExpect(jsonPath("$.prices[1].count", is(2)))
+        ;
+
+        verify(service, times(1)).getFacets(argThat((BookFilterDto filter) -> "V".equals(filter.getAuthorPrefix())
+                && new BigDecimal("5").equals(filter.getMinPrice())
+                && filter.getAuthor() == null), eq(100));
+    }
+
+    /**
+     * Given a negative minimum price,
+     * When getting the facets
+     * Then, it should return bad request
+     */
+    @Test
+    @WithAnonymousUser
+    void givenNegativePrice_whenGettingFacets_thenReturnBadRequest() throws Exception {
+        // given
+        clearInvocations(service);
+
+        // when
+        ResultActions result = mockMvc.perform(get(FACETS_URI).param("minPrice", "-1"));
+
+        // then
+        result.andExpect(status().isBadRequest())
+        ;
+        verify(service, never()).getFacets(any(), anyInt());
+    }
+}
@@ -0,0 +1,186 @@
+package com.example.bookstore.controllers;
+
+import com.example.bookstore.configs.TestConfig;
+import com.example.bookstore.dtos.BookImportReportDto;
+import com.example.bookstore.imports.BookImportRow;
+import com.example.bookstore.services.IBookImportService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(BookImportController.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("tests")
+@Import({TestConfig.class})
+class BookImportControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private IBookImportService service;
+
+    private static final String IMPORT_URI = "/api/v1/books/import";
+
+    /**
+     * Given the test objects to support the tests,
+     * When starting to test
+     * Then, it should assert that all of them are not null
+     */
+    @Test
+    void givenTestObjects_whenTesting_thenAssertNotNull() {
+        assertNotNull(mockMvc);
+        assertNotNull(service);
+    }
+
+    /**
+     * Given a NDJSON body with valid, malformed and invalid rows,
+     * When importing
+     * Then, it should hand the books and the rejected lines over to the service
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenNdjsonBody_whenImporting_thenParseAndValidateRows() throws Exception {
+        // given
+        String body = """
+                {"title":"Germinal","author":"Émile Zola","price":12.5}
+
+                {"title":"Nana",
+                {"title":"","author":"Émile Zola"}
+                {"id":99,"title":"L'Assommoir","author":"Émile Zola","price":9}
+                """;
+        List<BookImportRow> rows = drainRows();
+
+        // when
+        ResultActions result = mockMvc.perform(post(IMPORT_URI)
+                .content(body)
+                .contentType(MediaType.APPLICATION_NDJSON));
+
+        // then
+        result.andExpect(status().isOk());
+
+        assertEquals(4, rows.size());
+        assertTrue(rows.get(0).isValid());
+        assertEquals(1, rows.get(0).getLine());
+        assertEquals("Germinal", rows.get(0).getBook().getTitle());
+        assertEquals(new BigDecimal("12.5"), rows.get(0).getBook().getPrice());
+
+        assertFalse(rows.get(1).isValid());
+        assertEquals(3, rows.get(1).getLine());
+        assertTrue(rows.get(1).getError().startsWith("Malformed JSON"));
+
+        assertFalse(rows.get(2).isValid());
+        assertEquals(4, rows.get(2).getLine());
+        assertTrue(rows.get(2).getError().contains("price"));
+        assertTrue(rows.get(2).getError().contains("title"));
+
+        assertTrue(rows.get(3).isValid());
+        assertNull(rows.get(3).getBook().getId());
+    }
+
+    /**
+     * Given a CSV body with a header, quoted fields and invalid rows,
+     * When importing
+     * Then, it should hand the books and the rejected lines over to the service
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenCsvBody_whenImporting_thenParseAndValidateRows() throws Exception {
+        // given
+        String body = """
+                price,Title,author,isbn
+                12.5,"Guerre et paix, tome 1",Léon Tolstoï,123
+                9,"Le \"\"Horla\"\"",Guy de Maupassant,456
+                abc,Bel-Ami,Guy de Maupassant,789
+                10,Une vie
+                """;
+        List<BookImportRow> rows = drainRows();
+
+        // when
+        ResultActions result = mockMvc.perform(post(IMPORT_URI)
+                .content(body)
+                .contentType("text/csv"));
+
+        // then
+        result.andExpect(status().isOk());
+
+        assertEquals(4, rows.size());
+        assertEquals("Guerre et paix, tome 1", rows.get(0).getBook().getTitle());
+        assertEquals("Léon Tolstoï", rows.get(0).getBook().getAuthor());
+        assertEquals(new BigDecimal("12.5"), rows.get(0).getBook().getPrice());
+        assertEquals("Le \"Horla\"", rows.get(1).getBook().getTitle());
+        assertEquals("Invalid price: abc", rows.get(2).getError());
+        assertEquals(5, rows.get(3).getLine());
+        assertFalse(rows.get(3).isValid());
+    }
+
+    /**
+     * Given a CSV body without the expected columns,
+     * When importing
+     * Then, it should return bad request
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenCsvBodyWithoutColumns_whenImporting_thenReturnBadRequest() throws Exception {
+        // given
+        drainRows();
+
+        // when
+        ResultActions result = mockMvc.perform(post(IMPORT_URI)
+                .content("title,author\nGerminal,Émile Zola\n")
+                .contentType("text/csv"));
+
+        // then
+        result.andExpect(status().isBadRequest())
+        ;
+    }
+
+    /**
+     * Given a user without the admin role,
+     * When importing
+     * Then, it should return forbidden
+     */
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void givenUser_whenImporting_thenReturnForbidden() throws Exception {
+        // when
+        ResultActions result = mockMvc.perform(post(IMPORT_URI)
+                .content("{}")
+                .contentType(MediaType.APPLICATION_NDJSON));
+
+        // then
+        result.andExpect(status().isForbidden())
+        ;
+    }
+
+    /**
+     * Makes the service consume the rows it is given, as the real one does, and collect them.
+     */
+    private List<BookImportRow> drainRows() {
+        List<BookImportRow> rows = new ArrayList<>();
+        doAnswer(invocation -> {
+            Iterator<BookImportRow> iterator = invocation.getArgument(0);
+            iterator.forEachRemaining(rows::add);
+            return BookImportReportDto.builder().received((long) rows.size()).imported(0L).errors(List.of()).build();
+        }).when(service).importBooks(any());
+        return rows;
+    }
+}
@@ -0,0 +1,171 @@
+package com.example.bookstore.controllers;
+
+import com.example.bookstore.configs.TestConfig;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.indexes.BookSuggestIndex;
+import com.example.bookstore.services.IBookSearchService;
+import com.example.bookstore.services.IBookSuggestService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.security.test.context.support.WithAnonymousUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.ResultActions;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@WebMvcTest(BookSearchController.class)
+@AutoConfigureMockMvc
+@ActiveProfiles("tests")
+@Import({TestConfig.class})
+class BookSearchControllerTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private IBookSearchService service;
+
+    @Autowired
+    private IBookSuggestService suggestService;
+
+    private static final String SEARCH_URI = "/api/v1/books/search";
+
+    private static final String SUGGEST_URI = "/api/v1/books/suggest";
+
+    /**
+     * Given the test objects to support the tests,
+     * When starting to test
+     * Then, it should assert that all of them are not null
+     */
+    @Test
+    void givenTestObjects_whenTesting_thenAssertNotNull() {
+        assertNotNull(mockMvc);
+        assertNotNull(service);
+    }
+
+    /**
+     * Given a query matching books,
+     * When searching
+     * Then, it should return the page of matching books with the total
+     */
+    @Test
+    @WithAnonymousUser
+    void givenQuery_whenSearching_thenReturnPageOfBooks() throws Exception {
+        // given
+        BookEntity entity = BookEntity.builder()
+                .id(1)
+                .title("Germinal")
+                .author("Émile Zola")
+                .price(BigDecimal.valueOf(12))
+                .build();
+
+        clearInvocations(service);
+        doReturn(new PageImpl<>(List.of(entity), PageRequest.of(1, 1), 3))
+                .when(service).search(anyString(), anyBoolean(), any(Pageable.class));
+
+        // when
+        ResultActions result = mockMvc.perform(get(SEARCH_URI)
+                .param("q", "zola")
+                .param("page", "1")
+                .param("size", "1")
+                .param("fuzzy", "true"));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.page", is(1)))
+                .andExpect(jsonPath("$.size", is(1)))
+                .andExpect(jsonPath("$.total", is(3)))
+                .andExpect(jsonPath("$.items[0].id", is(entity.getId())))
+                .andExpect(jsonPath("$.items[0].title", equalTo(entity.getTitle())))
+        ;
+
+        verify(service, times(1)).search("zola", true, PageRequest.of(1, 1));
+    }
+
+    /**
+     * Given a blank query,
+     * When searching
+     * Then, it should return bad request
+     */
+    @Test
+    @WithAnonymousUser
+    void givenBlankQuery_whenSearching_thenReturnBadRequest() throws Exception {
+        // when
+        ResultActions result = mockMvc.perform(get(SEARCH_URI).param("q", " "));
+
+        // then
+        result.andExpect(status().isBadRequest())
+        ;
+    }
+
+    /**
+     * Given a prefix matching titles and authors,
+     * When suggesting with a size above the maximum
+     * Then, it should ask for the maximum and return the suggestions in order
+     */
+    @Test
+    @WithAnonymousUser
+    void givenPrefix_whenSuggesting_thenReturnSuggestions() throws Exception {
+        // given
+        clearInvocations(suggestService);
+        doReturn(List.of(
+                new BookSuggestIndex.Suggestion(BookSuggestIndex.Field.AUTHOR, "Victor Hugo", 3),
+                new BookSuggestIndex.Suggestion(BookSuggestIndex.Field.TITLE, "Hugo", 1)))
+                .when(suggestService).suggest(anyString(), anyInt());
+
+        // when
+        ResultActions result = mockMvc.perform(get(SUGGEST_URI)
+                .param("prefix", "hug")
+                .param("size", "50"));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].text", is("Victor Hugo")))
+                .andExpect(jsonPath("$[0].field", is("author")))
+                .andExpect(jsonPath("$[0].weight", is(3)))
+                .andExpect(jsonPath("$[1].field", is("title")))
+        ;
+
+        verify(suggestService, times(1)).suggest("hug", 10);
+    }
+
+    /**
+     * Given a blank prefix,
+     * When suggesting
+     * Then, it should return bad request
+     */
+    @Test
+    @WithAnonymousUser
+    void givenBlankPrefix_whenSuggesting_thenReturnBadRequest() throws Exception {
+        // given
+        clearInvocations(suggestService);
+
+        // when
+        ResultActions result = mockMvc.perform(get(SUGGEST_URI).param("prefix", " "));
+
+        // then
+        result.andExpect(status().isBadRequest())
+        ;
+        verify(suggestService, never()).suggest(anyString(), anyInt());
+    }
+}
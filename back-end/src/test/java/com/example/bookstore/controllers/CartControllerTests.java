@@ -1,6 +1,8 @@
 package com.example.bookstore.controllers;
 
 import com.example.bookstore.configs.TestConfig;
+import com.example.bookstore.dtos.CartOperationDto;
+import com.example.bookstore.dtos.CartOperationsDto;
 import com.example.bookstore.entities.BookEntity;
 import com.example.bookstore.entities.CartEntity;
 import com.example.bookstore.entities.CartItemEntity;
@@ -15,6 +17,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.context.annotation.Import;
+import org.springframework.dao.CannotAcquireLockException;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithAnonymousUser;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
@@ -22,10 +26,13 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 
 import java.math.BigDecimal;
+import java.util.Collections;
+import java.util.List;
 
 import static org.hamcrest.Matchers.equalToObject;
 import static org.hamcrest.Matchers.is;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
@@ -134,6 +141,25 @@ class CartControllerTests {
         ;
     }
 
+    /**
+     * Given a cart whose lock could not be acquired within the attempts
+     * When adding item into the cart
+     * Then, it should return conflict, as for a stale version
+     */
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void givenLockTimeout_whenAddingItems_thenReturnConflict() throws Exception {
+        // given
+        doThrow(new CannotAcquireLockException("lock timeout")).when(service).addItem(anyString(), anyInt(), anyInt());
+
+        // when
+        ResultActions result = mockMvc.perform(post(CART_CONTROLLER_URI + "/item/1/quantity/2"));
+
+        // then
+        result.andExpect(status().isConflict())
+        ;
+    }
+
     /**
      * Given Not yet created Cart, a username, a book id to be added and a quantity,
      * When adding item into the cart
@@ -306,7 +332,7 @@ class CartControllerTests {
 
         cartEntity.addItem(cartItemEntity);
 
-        doReturn(cartEntity).when(service).getCart(anyString());
+        doReturn(cartEntity).when(service).checkout(anyString());
 
         // when
         ResultActions result = mockMvc.perform(post(CART_CONTROLLER_URI + "/checkout"));
@@ -319,4 +345,66 @@ class CartControllerTests {
         ;
     }
 
+    /**
+     * Given a list of operations,
+     * When updating the cart items
+     * Then, it should apply them through the service and return the resulting cart
+     */
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void givenOperations_whenUpdatingItems_thenReturnResultingCart() throws Exception {
+        // given
+        clearInvocations(service);
+        List<CartOperationDto> operations = List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.ADD).bookId(1).quantity(2).build(),
+                CartOperationDto.builder().op(CartOperationDto.Type.REMOVE).bookId(2).build());
+
+        UserEntity userEntity = UserEntity.builder().username("user").build();
+        CartEntity cartEntity = CartEntity.builder().id(1).user(userEntity).build();
+        cartEntity.addItem(CartItemEntity.builder()
+                .book(BookEntity.builder().id(1).title("title").author("author").price(BigDecimal.TEN).build())
+                .quantity(2)
+                .build());
+        doReturn(cartEntity).when(service).updateItems(eq("user"), any());
+
+        // when
+        ResultActions result = mockMvc.perform(post(CART_CONTROLLER_URI + "/items")
+                .content(objectMapper.writeValueAsString(CartOperationsDto.builder().operations(operations).build()))
+                .contentType(MediaType.APPLICATION_JSON));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.username", is("user")))
+                .andExpect(jsonPath("$.items[0].quantity", is(2)))
+        ;
+        verify(service).updateItems(eq("user"), argThat(actual -> actual.size() == 2
+                && actual.get(0).getOp() == CartOperationDto.Type.ADD
+                && actual.get(1).getOp() == CartOperationDto.Type.REMOVE));
+    }
+
+    /**
+     * Given no operations, an incomplete one or more operations than allowed,
+     * When updating the cart items
+     * Then, it should return bad request without calling the service
+     */
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void givenInvalidOperations_whenUpdatingItems_thenReturnBadRequest() throws Exception {
+        // given
+        clearInvocations(service);
+        CartOperationDto add = CartOperationDto.builder().op(CartOperationDto.Type.ADD).bookId(1).quantity(1).build();
+        List<List<CartOperationDto>> invalid = List.of(
+                List.of(),
+                List.of(CartOperationDto.builder().op(CartOperationDto.Type.ADD).quantity(1).build()),
+                Collections.nCopies(4, add));
+
+        // when/then
+        for (List<CartOperationDto> operations : invalid) {
+            mockMvc.perform(post(CART_CONTROLLER_URI + "/items")
+                            .content(objectMapper.writeValueAsString(CartOperationsDto.builder().operations(operations).build()))
+                            .contentType(MediaType.APPLICATION_JSON))
+                    .andExpect(status().isBadRequest());
+        }
+        verify(service, never()).updateItems(anyString(), any());
+    }
 }
@@ -0,0 +1,90 @@
+package com.example.bookstore.indexes;
+
+import com.example.bookstore.facets.BookFacets;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookFacetIndexTest {
+
+    private BookFacetIndex index;
+
+    @BeforeEach
+    void beforeEach() {
+        index = new BookFacetIndex(List.of(BigDecimal.TEN, new BigDecimal("20")));
+        index.put(1, "Victor Hugo", new BigDecimal("5.00"));
+        index.put(2, "Victor Hugo", new BigDecimal("10.00"));
+        index.put(3, "Émile Zola", new BigDecimal("19.99"));
+        index.put(4, "Jules Verne", new BigDecimal("25"));
+    }
+
+    /**
+     * Given indexed books,
+     * When reading the facets
+     * Then, it should count the books per author, most books first, and per price range, a bound starting its range
+     */
+    @Test
+    void givenIndexedBooks_whenReadingFacets_thenCountPerAuthorAndPriceRange() {
+        // when
+        BookFacets actual = index.facets(2);
+
+        // then
+        assertEquals(4, actual.getTotal());
+        assertEquals(List.of("Victor Hugo:2", "Jules Verne:1"), actual.getAuthors().stream()
+                .map(count -> count.getValue() + ":" + count.getCount())
+                .toList());
+        assertEquals(List.of(1L, 2L, 1L), actual.getPrices().stream().map(BookFacets.Bucket::getCount).toList());
+        assertNull(actual.getPrices().get(0).getFrom());
+        assertEquals(BigDecimal.TEN, actual.getPrices().get(0).getTo());
+        assertEquals(BigDecimal.TEN, actual.getPrices().get(1).getFrom());
+        assertNull(actual.getPrices().get(2).getTo());
+    }
+
+    /**
+     * Given indexed books,
+     * When updating and removing them
+     * Then, it should move them between the counts and drop the authors left without books
+     */
+    @Test
+    void givenIndexedBooks_whenUpdatingAndRemoving_thenMoveCounts() {
+        // when
+        index.put(1, "Victor Hugo", new BigDecimal("30"));
+        index.put(3, "Emile Zola", new BigDecimal("19.99"));
+        index.remove(4);
+        index.remove(5);
+
+        // then
+        BookFacets actual = index.facets(10);
+        assertEquals(3, actual.getTotal());
+        assertEquals(List.of("Victor Hugo:2", "Emile Zola:1"), actual.getAuthors().stream()
+                .map(count -> count.getValue() + ":" + count.getCount())
+                .toList());
+        assertEquals(List.of(0L, 2L, 1L), actual.getPrices().stream().map(BookFacets.Bucket::getCount).toList());
+    }
+
+    /**
+     * Given two indexes of the same catalog, one of them out of date,
+     * When measuring their drift
+     * Then, it should count the books missing or counted differently
+     */
+    @Test
+    void givenOutdatedIndex_whenMeasuringDrift_thenCountDifferentBooks() {
+        // given
+        BookFacetIndex fresh = new BookFacetIndex(List.of(BigDecimal.TEN, new BigDecimal("20")));
+        fresh.put(1, "Victor Hugo", new BigDecimal("6")); // same range
+        fresh.put(2, "Victor Hugo", new BigDecimal("9")); // another range
+        fresh.put(3, "Émile Zola", new BigDecimal("19.99"));
+        fresh.put(5, "Jules Verne", new BigDecimal("25")); // 4 missing, 5 unknown
+
+        // when
+        int actual = index.drift(fresh);
+
+        // then
+        assertEquals(3, actual);
+        assertEquals(0, fresh.drift(fresh));
+    }
+}
@@ -0,0 +1,35 @@
+package com.example.bookstore.indexes;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookIdSetTest {
+
+    /**
+     * Given ids added and removed,
+     * When checking them
+     * Then, it should contain only the ones left, and never the null or negative ids
+     */
+    @Test
+    void givenIdsAddedAndRemoved_whenChecking_thenContainOnlyTheOnesLeft() {
+        // given
+        BookIdSet ids = new BookIdSet();
+        ids.add(1);
+        ids.add(2);
+        ids.add(1_000_000);
+        ids.add(-1);
+        ids.add(null);
+        ids.remove(2);
+        ids.remove(3);
+
+        // when/then
+        assertTrue(ids.contains(1));
+        assertFalse(ids.contains(2));
+        assertTrue(ids.contains(1_000_000));
+        assertFalse(ids.contains(Integer.MAX_VALUE));
+        assertFalse(ids.contains(-1));
+        assertFalse(ids.contains(null));
+        assertEquals(2, ids.size());
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.bookstore.indexes;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSearchIndexTest {
+
+    private BookSearchIndex index;
+
+    @BeforeEach
+    void beforeEach() {
+        index = new BookSearchIndex();
+        index.put(1, "Les Misérables", "Victor Hugo");
+        index.put(2, "Notre-Dame de Paris", "Victor Hugo");
+        index.put(3, "Germinal", "Émile Zola");
+        index.put(4, "Paris au XXe siècle", "Jules Verne");
+    }
+
+    /**
+     * Given indexed books,
+     * When searching with a different case and without accents
+     * Then, it should match the folded terms of title and author
+     */
+    @Test
+    void givenIndexedBooks_whenSearchingFoldedTerms_thenReturnMatchingBooks() {
+        // when
+        BookSearchIndex.Hits misérables = index.search("MISERABLES", false, 0, 10);
+        BookSearchIndex.Hits zola = index.search("emile", false, 0, 10);
+
+        // then
+        assertEquals(1, misérables.getTotal());
+        assertEquals(List.of(1), misérables.getIds());
+        assertEquals(List.of(3), zola.getIds());
+    }
+
+    /**
+     * Given indexed books,
+     * When searching several terms
+     * Then, it should rank first the books matching the most and the rarest terms
+     */
+    @Test
+    void givenIndexedBooks_whenSearchingSeveralTerms_thenRankByRelevance() {
+        // when
+        BookSearchIndex.Hits hits = index.search("paris hugo", false, 0, 10);
+
+        // then
+        assertEquals(3, hits.getTotal());
+        assertEquals(2, hits.getIds().get(0)); // both terms
+        assertEquals(3, hits.getIds().size());
+    }
+
+    /**
+     * Given indexed books,
+     * When searching with a typo
+     * Then, it should match only when fuzzy matching is asked
+     */
+    @Test
+    void givenIndexedBooks_whenSearchingWithTypo_thenMatchOnlyWhenFuzzy() {
+        // when
+        BookSearchIndex.Hits exact = index.search("germnial", false, 0, 10);
+        BookSearchIndex.Hits fuzzy = index.search("germnial", true, 0, 10);
+        BookSearchIndex.Hits deletion = index.search("vernne", true, 0, 10);
+
+        // then
+        assertEquals(0, exact.getTotal());
+        assertEquals(List.of(3), fuzzy.getIds());
+        assertEquals(List.of(4), deletion.getIds());
+    }
+
+    /**
+     * Given indexed books,
+     * When searching with an exact term and a fuzzy one matching different books
+     * Then, it should rank the exact match first
+     */
+    @Test
+    void givenExactAndFuzzyMatches_whenSearching_thenRankExactMatchFirst() {
+        // given
+        index.put(5, "Paros", "Someone");
+
+        // when
+        BookSearchIndex.Hits hits = index.search("paros", true, 0, 10);
+
+        // then
+        assertEquals(5, hits.getIds().get(0));
+        assertTrue(hits.getIds().containsAll(List.of(2, 4)));
+    }
+
+    /**
+     * Given indexed books,
+     * When paging through the results
+     * Then, it should return consecutive slices of the same ranking
+     */
+    @Test
+    void givenIndexedBooks_whenPaging_thenReturnSlicesOfRanking() {
+        // given
+        List<Integer> all = index.search("victor paris", false, 0, 10).getIds();
+
+        // when
+        BookSearchIndex.Hits first = index.search("victor paris", false, 0, 2);
+        BookSearchIndex.Hits second = index.search("victor paris", false, 2, 2);
+        BookSearchIndex.Hits beyond = index.search("victor paris", false, 10, 2);
+
+        // then
+        assertEquals(3, first.getTotal());
+        assertEquals(all.subList(0, 2), first.getIds());
+        assertEquals(all.subList(2, 3), second.getIds());
+        assertTrue(beyond.getIds().isEmpty());
+    }
+
+    /**
+     * Given indexed books,
+     * When updating and removing books
+     * Then, it should only match their current content
+     */
+    @Test
+    void givenIndexedBooks_whenUpdatingAndRemoving_thenMatchCurrentContent() {
+        // when
+        index.put(3, "L'Assommoir", "Émile Zola");
+        index.remove(1);
+
+        // then
+        assertEquals(0, index.search("germinal", true, 0, 10).getTotal());
+        assertEquals(List.of(3), index.search("assommoir", false, 0, 10).getIds());
+        assertEquals(List.of(2), index.search("hugo", false, 0, 10).getIds());
+        assertEquals(3, index.size());
+    }
+
+    /**
+     * Given two terms,
+     * When checking if they are one edit apart
+     * Then, it should accept insertions, deletions, substitutions and transpositions only
+     */
+    @Test
+    void givenTerms_whenCheckingOneEdit_thenAcceptSingleEditsOnly() {
+        assertTrue(BookSearchIndex.withinOneEdit("verne", "verne"));
+        assertTrue(BookSearchIndex.withinOneEdit("verne", "vern"));
+        assertTrue(BookSearchIndex.withinOneEdit("verne", "vernes"));
+        assertTrue(BookSearchIndex.withinOneEdit("verne", "varne"));
+        assertTrue(BookSearchIndex.withinOneEdit("verne", "venre"));
+        assertFalse(BookSearchIndex.withinOneEdit("verne", "vanre"));
+        assertFalse(BookSearchIndex.withinOneEdit("verne", "ver"));
+    }
+}
@@ -0,0 +1,189 @@
+package com.example.bookstore.indexes;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.*;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BookSuggestIndexTest {
+
+    private BookSuggestIndex index;
+
+    @BeforeEach
+    void beforeEach() {
+        index = new BookSuggestIndex(3);
+        index.put(1, "Les Misérables", "Victor Hugo");
+        index.put(2, "Notre-Dame de Paris", "Victor Hugo");
+        index.put(3, "Germinal", "Émile Zola");
+        index.put(4, "Paris au XXe siècle", "Jules Verne");
+        index.put(5, "Les Travailleurs de la mer", "Victor Hugo");
+    }
+
+    /**
+     * Given indexed books,
+     * When suggesting a folded prefix
+     * Then, it should return the titles and authors starting with it, as first written
+     */
+    @Test
+    void givenIndexedBooks_whenSuggestingFoldedPrefix_thenReturnMatchingValues() {
+        // when
+        List<BookSuggestIndex.Suggestion> actual = index.suggest("EMI", 10);
+
+        // then
+        assertEquals(1, actual.size());
+        assertEquals("Émile Zola", actual.get(0).getText());
+        assertEquals(BookSuggestIndex.Field.AUTHOR, actual.get(0).getField());
+    }
+
+    /**
+     * Given indexed books,
+     * When suggesting the start of a word inside the values
+     * Then, it should return them, the ones carried by the most books first
+     */
+    @Test
+    void givenIndexedBooks_whenSuggestingInnerWord_thenRankByWeight() {
+        // when
+        List<BookSuggestIndex.Suggestion> hugo = index.suggest("hug", 10);
+        List<BookSuggestIndex.Suggestion> paris = index.suggest("paris", 10);
+
+        // then
+        assertEquals(List.of("Victor Hugo"), hugo.stream().map(BookSuggestIndex.Suggestion::getText).toList());
+        assertEquals(3, hugo.get(0).getWeight());
+        assertEquals(List.of("Notre-Dame de Paris", "Paris au XXe siècle"), // same weight and length
+                paris.stream().map(BookSuggestIndex.Suggestion::getText).toList());
+    }
+
+    /**
+     * Given more matching values than the capacity,
+     * When suggesting with a larger limit
+     * Then, it should return the best ones up to the capacity, each value once
+     */
+    @Test
+    void givenMoreMatchesThanCapacity_whenSuggesting_thenReturnBestOnesOnce() {
+        // given
+        index.put(6, "La La Land", "Someone");
+        index.put(7, "Lord Jim", "Joseph Conrad");
+
+        // when
+        List<BookSuggestIndex.Suggestion> all = index.suggest("l", 10);
+        List<BookSuggestIndex.Suggestion> la = index.suggest("la", 10);
+
+        // then
+        assertEquals(List.of("Lord Jim", "La La Land", "Les Misérables"),
+                all.stream().map(BookSuggestIndex.Suggestion::getText).toList());
+        assertEquals(List.of("La La Land", "Les Travailleurs de la mer"),
+                la.stream().map(BookSuggestIndex.Suggestion::getText).toList());
+    }
+
+    /**
+     * Given indexed books,
+     * When updating and removing them
+     * Then, it should follow the new values and weights
+     */
+    @Test
+    void givenIndexedBooks_whenUpdatingAndRemoving_thenFollowChanges() {
+        // when
+        index.put(3, "Germinal", "Emile Zola");
+        index.put(1, "Les Misérables", "V. Hugo");
+        index.remove(2);
+
+        // then
+        assertEquals(1, index.suggest("hugo", 10).stream()
+                .filter(suggestion -> suggestion.getText().equals("Victor Hugo"))
+                .findFirst().orElseThrow().getWeight());
+        assertEquals(List.of("Les Misérables", "Les Travailleurs de la mer"),
+                index.suggest("les", 10).stream().map(BookSuggestIndex.Suggestion::getText).toList());
+        assertTrue(index.suggest("notre", 10).isEmpty());
+        assertEquals(1, index.suggest("zola", 10).size());
+        assertEquals(4, index.size());
+    }
+
+    /**
+     * Given a prefix matching nothing or only separators,
+     * When suggesting
+     * Then, it should return no suggestion
+     */
+    @Test
+    void givenUnknownOrBlankPrefix_whenSuggesting_thenReturnNothing() {
+        assertTrue(index.suggest("xyz", 10).isEmpty());
+        assertTrue(index.suggest("lesx", 10).isEmpty());
+        assertTrue(index.suggest(" - ", 10).isEmpty());
+    }
+
+    /**
+     * Given books removed down to an empty index,
+     * When suggesting
+     * Then, it should return no suggestion and accept new books
+     */
+    @Test
+    void givenAllBooksRemoved_whenSuggesting_thenReturnNothingAndAcceptNewBooks() {
+        // when
+        for (int id = 1; id <= 5; id++) {
+            index.remove(id);
+        }
+        List<BookSuggestIndex.Suggestion> empty = index.suggest("l", 10);
+        index.put(7, "Les Rougon-Macquart", "Émile Zola");
+
+        // then
+        assertTrue(empty.isEmpty());
+        assertEquals("Les Rougon-Macquart", index.suggest("les", 10).get(0).getText());
+    }
+
+    /**
+     * Given random writes and removals over a small vocabulary,
+     * When suggesting every prefix
+     * Then, it should return the same suggestions as a scan of the books
+     */
+    @Test
+    void givenRandomWrites_whenSuggestingEveryPrefix_thenMatchScanOfBooks() {
+        // given
+        String[] words = {"la", "le", "les", "lune", "mer", "mers", "paris", "par"};
+        Random random = new Random(42);
+        Map<Integer, String[]> books = new HashMap<>();
+        index.clear();
+
+        for (int i = 0; i < 2_000; i++) {
+            int id = random.nextInt(40);
+            if (random.nextInt(4) == 0) {
+                index.remove(id);
+                books.remove(id);
+            } else {
+                String title = words[random.nextInt(words.length)] + " " + words[random.nextInt(words.length)];
+                String author = words[random.nextInt(words.length)];
+                index.put(id, title, author);
+                books.put(id, new String[]{title, author});
+            }
+        }
+
+        // when/then
+        for (String word : words) {
+            for (int length = 1; length <= word.length(); length++) {
+                String prefix = word.substring(0, length);
+                assertEquals(scan(books, prefix), index.suggest(prefix, 10).stream()
+                        .map(suggestion -> suggestion.getField() + ":" + suggestion.getText() + ":" + suggestion.getWeight())
+                        .toList(), prefix);
+            }
+        }
+    }
+
+    private static List<String> scan(Map<Integer, String[]> books, String prefix) {
+        Map<String, Integer> weights = new HashMap<>();
+        books.values().forEach(book -> {
+            weights.merge("TITLE:" + book[0], 1, Integer::sum);
+            weights.merge("AUTHOR:" + book[1], 1, Integer::sum);
+        });
+
+        return weights.entrySet().stream()
+                .filter(entry -> Arrays.stream(entry.getKey().split("[: ]")).skip(1).anyMatch(word -> word.startsWith(prefix)))
+                .sorted(Comparator.comparing((Map.Entry<String, Integer> entry) -> entry.getValue()).reversed()
+                        .thenComparing(entry -> entry.getKey().substring(entry.getKey().indexOf(':') + 1).length())
+                        .thenComparing(entry -> entry.getKey().substring(entry.getKey().indexOf(':') + 1))
+                        .thenComparing(entry -> entry.getKey().startsWith("AUTHOR")))
+                .limit(3)
+                .map(entry -> entry.getKey() + ":" + entry.getValue())
+                .collect(Collectors.toList());
+    }
+}
@@ -1,29 +1,65 @@
 package com.example.bookstore.integration;
 
+import com.example.bookstore.changes.BookChangeLog;
+import com.example.bookstore.configs.CacheConfig;
+import com.example.bookstore.dtos.BookBulkDeleteDto;
+import com.example.bookstore.dtos.BookBulkUpdateDto;
 import com.example.bookstore.dtos.BookDto;
 import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.entities.CartEntity;
+import com.example.bookstore.entities.CartItemEntity;
+import com.example.bookstore.entities.UserEntity;
 import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.respositories.BookTombstoneRepository;
 import com.example.bookstore.respositories.CartRepository;
+import com.example.bookstore.respositories.UserRepository;
+import com.example.bookstore.services.IBookFacetService;
+import com.example.bookstore.services.IBookIdFilterService;
+import com.example.bookstore.services.IBookService;
+import com.example.bookstore.services.IBookSnapshotService;
+import com.example.bookstore.snapshots.BookSnapshot;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.domain.Limit;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithAnonymousUser;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.json.JsonCompareMode;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
 import org.springframework.test.web.servlet.ResultActions;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
-import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @SpringBootTest
 @AutoConfigureMockMvc
@@ -39,9 +75,33 @@ class BookControllerIntegrationTest {
     @Autowired
     private CartRepository cartRepository;
 
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private CacheManager cacheManager;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private BookChangeLog changeLog;
+
+    @Autowired
+    private BookTombstoneRepository tombstoneRepository;
+
+    @Autowired
+    private IBookFacetService facetService;
+
+    @Autowired
+    private IBookIdFilterService idFilter;
+
     private static final String BOOKS_CONTROLLER_URI = "/api/v1/books";
 
     @BeforeEach
@@ -321,14 +381,36 @@ class BookControllerIntegrationTest {
         ;
     }
 
+    /**
+     * Given a book created then deleted,
+     * When getting it by id after each write
+     * Then, it should follow the writes, the id filter never hiding an existing book
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenBookCreatedThenDeleted_whenGettingById_thenFollowWrites() throws Exception {
+        // given
+        BookEntity entity = repository.save(BookEntity.builder().title("Nana").author("Émile Zola").price(BigDecimal.ONE).build());
+        String uri = BOOKS_CONTROLLER_URI + "/" + entity.getId();
+
+        // when/then
+        mockMvc.perform(get(uri)).andExpect(status().isOk());
+        assertTrue(idFilter.mightExist(entity.getId()));
+
+        mockMvc.perform(delete(uri)).andExpect(status().isOk());
+        assertFalse(idFilter.mightExist(entity.getId()));
+        mockMvc.perform(get(uri)).andExpect(status().isNotFound());
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/" + Integer.MAX_VALUE)).andExpect(status().isNotFound());
+    }
+
     /**
      * Given a list of books persited,
      * When calling the get all
-     * Then, it should return a lsit of books
+     * Then, it should return the first page of books
      */
     @Test
     @WithAnonymousUser
-    void givenListsPersisted_whenGettingAll_thenReturnListOfBooks() throws Exception {
+    void givenListsPersisted_whenGettingAll_thenReturnFirstPageOfBooks() throws Exception {
         // given
         Double price = 123.0;
         BookEntity entity = repository.save(BookEntity.builder()
@@ -347,14 +429,771 @@ class BookControllerIntegrationTest {
 
         // then
         result.andExpect(status().isOk())
-                .andExpect(jsonPath("$[0].id", allOf(notNullValue(), is(entity.getId()))))
-                .andExpect(jsonPath("$[0].title", equalTo(entity.getTitle())))
-                .andExpect(jsonPath("$[0].author", equalTo(entity.getAuthor())))
-                .andExpect(jsonPath("$[0].price", is(price)))
-                .andExpect(jsonPath("$[1].id", allOf(notNullValue(), is(entity2.getId()))))
-                .andExpect(jsonPath("$[1].title", equalTo(entity2.getTitle())))
-                .andExpect(jsonPath("$[1].author", equalTo(entity2.getAuthor())))
-                .andExpect(jsonPath("$[1].price", is(price + 1)))
+                .andExpect(jsonPath("$.size", is(2)))
+                .andExpect(jsonPath("$.nextCursor", nullValue()))
+                .andExpect(jsonPath("$.items[0].id", allOf(notNullValue(), is(entity.getId()))))
+                .andExpect(jsonPath("$.items[0].title", equalTo(entity.getTitle())))
+                .andExpect(jsonPath("$.items[0].author", equalTo(entity.getAuthor())))
+                .andExpect(jsonPath("$.items[0].price", is(price)))
+                .andExpect(jsonPath("$.items[1].id", allOf(notNullValue(), is(entity2.getId()))))
+                .andExpect(jsonPath("$.items[1].title", equalTo(entity2.getTitle())))
+                .andExpect(jsonPath("$.items[1].author", equalTo(entity2.getAuthor())))
+                .andExpect(jsonPath("$.items[1].price", is(price + 1)))
+        ;
+    }
+
+    /**
+     * Given more books persisted than the page size,
+     * When following the next cursor
+     * Then, it should walk through all the books once, in id order
+     */
+    @Test
+    @WithAnonymousUser
+    void givenMoreBooksThanPageSize_whenFollowingNextCursor_thenReturnAllBooksInOrder() throws Exception {
+        // given
+        BookEntity entity = repository.save(BookEntity.builder().title("title").author("author").price(BigDecimal.ONE).build());
+        BookEntity entity2 = repository.save(BookEntity.builder().title("title2").author("author2").price(BigDecimal.ONE).build());
+        BookEntity entity3 = repository.save(BookEntity.builder().title("title3").author("author3").price(BigDecimal.ONE).build());
+
+        // when
+        MvcResult first = mockMvc.perform(get(BOOKS_CONTROLLER_URI).param("size", "2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(entity.getId(), entity2.getId())))
+                .andExpect(jsonPath("$.nextCursor", notNullValue()))
+                .andReturn();
+
+        String nextCursor = objectMapper.readTree(first.getResponse().getContentAsString()).get("nextCursor").asText();
+
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("size", "2")
+                .param("after", nextCursor));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.size", is(1)))
+                .andExpect(jsonPath("$.items[*].id", contains(entity3.getId())))
+                .andExpect(jsonPath("$.nextCursor", nullValue()))
+        ;
+    }
+
+    /**
+     * Given books of several authors,
+     * When filtering by author prefix sorted by price and following the next cursor
+     * Then, it should walk through the matching books only, cheapest first
+     */
+    @Test
+    @WithAnonymousUser
+    void givenBooksOfAuthors_whenFilteringAndSortingAcrossPages_thenReturnMatchingBooksInOrder() throws Exception {
+        // given
+        BookEntity miserables = repository.save(BookEntity.builder().title("Les Misérables").author("Victor Hugo").price(new BigDecimal("12.50")).build());
+        BookEntity notreDame = repository.save(BookEntity.builder().title("Notre-Dame de Paris").author("Victor Hugo").price(new BigDecimal("9.90")).build());
+        repository.save(BookEntity.builder().title("Germinal").author("Émile Zola").price(new BigDecimal("5.00")).build());
+
+        // when
+        MvcResult first = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                        .param("authorPrefix", "Victor")
+                        .param("sort", "price")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(notreDame.getId())))
+                .andExpect(jsonPath("$.nextCursor", notNullValue()))
+                .andReturn();
+
+        String nextCursor = objectMapper.readTree(first.getResponse().getContentAsString()).get("nextCursor").asText();
+
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("authorPrefix", "Victor")
+                .param("sort", "price")
+                .param("size", "1")
+                .param("after", nextCursor));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(miserables.getId())))
+                .andExpect(jsonPath("$.nextCursor", nullValue()))
+        ;
+    }
+
+    /**
+     * Given books of several prices,
+     * When sorting by descending price and following the next cursor, in that order and in the other one
+     * Then, it should walk through the books most expensive first, and refuse the cursor in the other order
+     */
+    @Test
+    @WithAnonymousUser
+    void givenBooks_whenFollowingDescendingCursor_thenReturnBooksInOrderAndRefuseOtherDirection() throws Exception {
+        // given
+        BookEntity cheap = repository.save(BookEntity.builder().title("cheap").author("author").price(new BigDecimal("5.00")).build());
+        BookEntity dear = repository.save(BookEntity.builder().title("dear").author("author").price(new BigDecimal("12.50")).build());
+
+        // when
+        MvcResult first = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                        .param("sort", "price,desc")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(dear.getId())))
+                .andReturn();
+
+        String nextCursor = objectMapper.readTree(first.getResponse().getContentAsString()).get("nextCursor").asText();
+
+        ResultActions sameDirection = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("sort", "price,desc")
+                .param("size", "1")
+                .param("after", nextCursor));
+        ResultActions otherDirection = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("sort", "price")
+                .param("size", "1")
+                .param("after", nextCursor));
+
+        // then
+        sameDirection.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].id", contains(cheap.getId())))
+                .andExpect(jsonPath("$.nextCursor", nullValue()))
+        ;
+        otherDirection.andExpect(status().isBadRequest());
+    }
+
+    /**
+     * Given books persisted,
+     * When exporting them as NDJSON
+     * Then, it should stream every book, one per line, in id order
+     */
+    @Test
+    @WithAnonymousUser
+    void givenBooksPersisted_whenExportingAsNdjson_thenStreamAllBooks() throws Exception {
+        // given
+        BookEntity entity = repository.save(BookEntity.builder().title("title").author("author").price(BigDecimal.ONE).build());
+        BookEntity entity2 = repository.save(BookEntity.builder().title("title2").author("author2").price(BigDecimal.TEN).build());
+
+        // when
+        MvcResult mvcResult = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/export")
+                        .accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        String content = mockMvc.perform(asyncDispatch(mvcResult))
+                .andExpect(status().isOk())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+
+        // then
+        String[] lines = content.split("\n");
+        assertEquals(2, lines.length);
+        assertEquals(entity.getId(), objectMapper.readTree(lines[0]).get("id").asInt());
+        assertEquals(entity2.getId(), objectMapper.readTree(lines[1]).get("id").asInt());
+        assertEquals(entity2.getTitle(), objectMapper.readTree(lines[1]).get("title").asText());
+    }
+
+    /**
+     * Given a book read once,
+     * When reading it again and then updating it
+     * Then, it should serve the second read from the cache and the updated book after the update
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenBookRead_whenReadingAgainAndUpdating_thenServeFromCacheUntilUpdated() throws Exception {
+        // given
+        BookEntity entity = repository.save(BookEntity.builder().title("title").author("author").price(BigDecimal.ONE).build());
+        Cache cache = cacheManager.getCache(CacheConfig.BOOKS_CACHE);
+        double hits = cacheGets("hit");
+
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/" + entity.getId())).andExpect(status().isOk());
+
+        // when
+        ResultActions cached = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/" + entity.getId()));
+
+        mockMvc.perform(put(BOOKS_CONTROLLER_URI + "/" + entity.getId())
+                        .content(objectMapper.writeValueAsString(BookDto.builder().title("new title").author("author").price(BigDecimal.ONE).build()))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isAccepted());
+        Cache.ValueWrapper evicted = cache.get(entity.getId());
+
+        ResultActions updated = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/" + entity.getId()));
+
+        // then
+        cached.andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", equalTo("title")))
+        ;
+        assertEquals(hits + 2, cacheGets("hit")); // the second read and the lookup of the update
+        assertNull(evicted);
+        updated.andExpect(status().isOk())
+                .andExpect(jsonPath("$.title", equalTo("new title")))
+        ;
+    }
+
+    /**
+     * Given the ETags of a book and of the catalog,
+     * When reading them again before and after updating the book
+     * Then, it should return not modified before the update and the updated book after it
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenETags_whenReadingBeforeAndAfterUpdate_thenReturnNotModifiedUntilUpdated() throws Exception {
+        // given
+        BookEntity entity = repository.save(BookEntity.builder().title("title").author("author").price(BigDecimal.ONE).build());
+        String bookUri = BOOKS_CONTROLLER_URI + "/" + entity.getId();
+
+        String bookETag = mockMvc.perform(get(bookUri)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+        String catalogETag = mockMvc.perform(get(BOOKS_CONTROLLER_URI)).andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // when
+        ResultActions bookNotModified = mockMvc.perform(get(bookUri).header(HttpHeaders.IF_NONE_MATCH, bookETag));
+        ResultActions catalogNotModified = mockMvc.perform(get(BOOKS_CONTROLLER_URI).header(HttpHeaders.IF_NONE_MATCH, catalogETag));
+
+        mockMvc.perform(put(bookUri)
+                        .content(objectMapper.writeValueAsString(BookDto.builder().title("new title").author("author").price(BigDecimal.ONE).build()))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isAccepted());
+
+        ResultActions bookModified = mockMvc.perform(get(bookUri).header(HttpHeaders.IF_NONE_MATCH, bookETag));
+        ResultActions catalogModified = mockMvc.perform(get(BOOKS_CONTROLLER_URI).header(HttpHeaders.IF_NONE_MATCH, catalogETag));
+
+        // then
+        assertNotNull(bookETag);
+        bookNotModified.andExpect(status().isNotModified());
+        catalogNotModified.andExpect(status().isNotModified());
+        bookModified.andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(bookETag)))
+                .andExpect(jsonPath("$.title", equalTo("new title")))
+        ;
+        catalogModified.andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ETAG, not(catalogETag)))
+                .andExpect(jsonPath("$.items[0].title", equalTo("new title")))
+        ;
+    }
+
+    /**
+     * Given a NDJSON body with valid rows, an invalid row and a row rejected by the database,
+     * When importing
+     * Then, it should insert the valid books in batches and report the rejected rows
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenNdjsonBody_whenImporting_thenInsertValidBooksAndReportRejectedRows() throws Exception {
+        // given
+        StringBuilder body = new StringBuilder();
+        for (int i = 1; i <= 5; i++) {
+            body.append("{\"title\":\"title").append(i).append("\",\"author\":\"author\",\"price\":").append(i).append("}\n");
+        }
+        body.append("{\"title\":\"no price\",\"author\":\"author\"}\n");
+        body.append("{\"title\":\"").append("x".repeat(300)).append("\",\"author\":\"author\",\"price\":1}\n");
+
+        // when
+        ResultActions result = mockMvc.perform(post(BOOKS_CONTROLLER_URI + "/import")
+                .content(body.toString())
+                .contentType(MediaType.APPLICATION_NDJSON));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.received", is(7)))
+                .andExpect(jsonPath("$.imported", is(5)))
+                .andExpect(jsonPath("$.errors", hasSize(2)))
+                .andExpect(jsonPath("$.errors[0].line", is(6)))
+                .andExpect(jsonPath("$.errors[1].line", is(7)))
         ;
+        assertEquals(5, repository.count());
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/search").param("q", "title3"))
+                .andExpect(jsonPath("$.total", is(1)));
+    }
+
+    /**
+     * Given a CSV body,
+     * When importing
+     * Then, it should insert the books
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenCsvBody_whenImporting_thenInsertBooks() throws Exception {
+        // given
+        String body = "title,author,price\n\"Guerre et paix, tome 1\",Léon Tolstoï,12.5\nAnna Karénine,Léon Tolstoï,10\n";
+
+        // when
+        ResultActions result = mockMvc.perform(post(BOOKS_CONTROLLER_URI + "/import")
+                .content(body)
+                .contentType("text/csv"));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.received", is(2)))
+                .andExpect(jsonPath("$.imported", is(2)))
+                .andExpect(jsonPath("$.errors", hasSize(0)))
+        ;
+        assertEquals(2, repository.count());
+    }
+
+    /**
+     * Given books of several authors, one of them cached,
+     * When repricing the books of an author in bulk
+     * Then, it should update only their prices and serve the new price
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenBooksOfAuthors_whenRepricingAuthorInBulk_thenUpdateOnlyTheirPrices() throws Exception {
+        // given
+        BookEntity hugo = repository.save(BookEntity.builder().title("Les Misérables").author("Victor Hugo").price(new BigDecimal("10.00")).build());
+        repository.save(BookEntity.builder().title("Notre-Dame de Paris").author("Victor Hugo").price(new BigDecimal("20.00")).build());
+        BookEntity zola = repository.save(BookEntity.builder().title("Germinal").author("Émile Zola").price(new BigDecimal("30.00")).build());
+
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/" + hugo.getId())).andExpect(status().isOk());
+
+        // when
+        ResultActions result = mockMvc.perform(post(BOOKS_CONTROLLER_URI + "/bulk/update")
+                .content(objectMapper.writeValueAsString(BookBulkUpdateDto.builder()
+                        .author("Victor Hugo")
+                        .priceFactor(new BigDecimal("1.10"))
+                        .build()))
+                .contentType(MediaType.APPLICATION_JSON));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected", is(2)))
+        ;
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/" + hugo.getId()))
+                .andExpect(jsonPath("$.price", is(11.0)));
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/" + zola.getId()))
+                .andExpect(jsonPath("$.price", is(30.0)));
+    }
+
+    /**
+     * Given books, one of them in a cart,
+     * When deleting them in bulk by ids
+     * Then, it should delete them, remove them from the cart and from the search
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenBooksInCart_whenDeletingInBulk_thenDeleteThemEverywhere() throws Exception {
+        // given
+        BookEntity kept = repository.save(BookEntity.builder().title("Germinal").author("Émile Zola").price(BigDecimal.ONE).build());
+        BookEntity first = repository.save(BookEntity.builder().title("Nana").author("Émile Zola").price(BigDecimal.ONE).build());
+        BookEntity second = repository.save(BookEntity.builder().title("La Bête humaine").author("Émile Zola").price(BigDecimal.ONE).build());
+
+        UserEntity user = userRepository.save(UserEntity.builder().username("bulk").password("password").role("ROLE_USER").build());
+        CartEntity cart = cartRepository.save(CartEntity.builder().user(user).build());
+        cart.addItem(CartItemEntity.builder().book(first).quantity(1).build());
+        cart.addItem(CartItemEntity.builder().book(kept).quantity(1).build());
+        cartRepository.save(cart);
+
+        // when
+        ResultActions result = mockMvc.perform(post(BOOKS_CONTROLLER_URI + "/bulk/delete")
+                .content(objectMapper.writeValueAsString(BookBulkDeleteDto.builder()
+                        .ids(List.of(first.getId(), second.getId()))
+                        .build()))
+                .contentType(MediaType.APPLICATION_JSON));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.affected", is(2)))
+        ;
+        assertEquals(1, repository.count());
+        Integer items = transactionTemplate.execute(status -> cartRepository.findByUser(user).orElseThrow().getItems().size());
+        assertEquals(1, items);
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/search").param("q", "zola"))
+                .andExpect(jsonPath("$.total", is(1)));
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/" + first.getId()))
+                .andExpect(status().isNotFound());
+    }
+
+    /**
+     * Given books created, updated and deleted through the API,
+     * When searching
+     * Then, it should find the books by their current title and author
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenBooksWrittenThroughApi_whenSearching_thenFindCurrentBooks() throws Exception {
+        // given
+        String created = mockMvc.perform(post(BOOKS_CONTROLLER_URI)
+                        .content(objectMapper.writeValueAsString(BookDto.builder()
+                                .title("Vingt mille lieues sous les mers")
+                                .author("Jules Verne")
+                                .price(BigDecimal.TEN)
+                                .build()))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isCreated())
+                .andReturn().getResponse().getContentAsString();
+        Integer id = objectMapper.readTree(created).get("id").asInt();
+
+        BookEntity removed = repository.save(BookEntity.builder().title("Cinq semaines en ballon").author("Jules Verne").price(BigDecimal.ONE).build());
+        mockMvc.perform(delete(BOOKS_CONTROLLER_URI + "/" + removed.getId())).andExpect(status().isOk());
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/search")
+                .param("q", "jules vernes")
+                .param("fuzzy", "true"));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(1)))
+                .andExpect(jsonPath("$.items[0].id", is(id)))
+                .andExpect(jsonPath("$.items[0].title", equalTo("Vingt mille lieues sous les mers")))
+        ;
+    }
+
+    /**
+     * Given books of an author written through the API, one of them moved to another author,
+     * When suggesting the start of the author's last name
+     * Then, it should suggest the authors by number of books, then the matching titles
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenBooksWrittenThroughApi_whenSuggesting_thenSuggestCurrentValues() throws Exception {
+        // given
+        repository.save(BookEntity.builder().title("Vingt mille lieues sous les mers").author("Jules Verne").price(BigDecimal.ONE).build());
+        repository.save(BookEntity.builder().title("Le Tour du monde en quatre-vingts jours").author("Jules Verne").price(BigDecimal.ONE).build());
+        BookEntity moved = repository.save(BookEntity.builder().title("Vernon Subutex").author("Jules Verne").price(BigDecimal.ONE).build());
+        moved.setAuthor("Virginie Despentes");
+        repository.save(moved);
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/suggest").param("prefix", "ver"));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$[*].text", contains("Jules Verne", "Vernon Subutex")))
+                .andExpect(jsonPath("$[0].weight", is(2)))
+        ;
+    }
+
+    /**
+     * Given books written one by one and repriced in bulk,
+     * When getting the facets of the catalog, then of the books matching a filter
+     * Then, it should serve the counts kept in memory, the same as after a reconciliation, and the filtered ones
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenBooksWritten_whenGettingFacets_thenCountCurrentBooks() throws Exception {
+        // given
+        repository.save(BookEntity.builder().title("Les Misérables").author("Victor Hugo").price(new BigDecimal("5.00")).build());
+        repository.save(BookEntity.builder().title("Notre-Dame de Paris").author("Victor Hugo").price(new BigDecimal("15.00")).build());
+        BookEntity zola = repository.save(BookEntity.builder().title("Germinal").author("Émile Zola").price(new BigDecimal("8.00")).build());
+        repository.deleteById(zola.getId());
+        mockMvc.perform(post(BOOKS_CONTROLLER_URI + "/bulk/update")
+                        .content(objectMapper.writeValueAsString(BookBulkUpdateDto.builder()
+                                .author("Victor Hugo")
+                                .price(new BigDecimal("30.00"))
+                                .build()))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+
+        // when/then
+        String counted = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/facets"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(2)))
+                .andExpect(jsonPath("$.authors[*].value", contains("Victor Hugo")))
+                .andExpect(jsonPath("$.prices[*].count", contains(0, 0, 2, 0)))
+                .andReturn().getResponse().getContentAsString();
+
+        facetService.reconcile();
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/facets"))
+                .andExpect(content().json(counted, JsonCompareMode.STRICT));
+
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/facets").param("titlePrefix", "Notre"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.total", is(1)))
+                .andExpect(jsonPath("$.authors[0].count", is(1)))
+                .andExpect(jsonPath("$.prices[*].count", contains(0, 0, 1, 0)));
+    }
+
+    /**
+     * Given books, one of them already read and cached,
+     * When getting them by ids along with a missing id
+     * Then, it should return them in the order of the ids, report the missing id and cache the books loaded
+     */
+    @Test
+    @WithAnonymousUser
+    void givenBooksPartlyCached_whenGettingByIds_thenReturnBooksInOrderAndMissingIds() throws Exception {
+        // given
+        BookEntity first = repository.save(BookEntity.builder().title("Nana").author("Émile Zola").price(BigDecimal.ONE).build());
+        BookEntity second = repository.save(BookEntity.builder().title("Germinal").author("Émile Zola").price(BigDecimal.TEN).build());
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/" + second.getId())).andExpect(status().isOk());
+        int missing = second.getId() + 1000;
+
+        // when
+        ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                .param("ids", second.getId() + "," + missing + "," + first.getId()));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].title", contains("Germinal", "Nana")))
+                .andExpect(jsonPath("$.missing", contains(missing)))
+        ;
+        Cache cache = cacheManager.getCache(CacheConfig.BOOKS_CACHE);
+        assertNotNull(cache.get(first.getId()));
+    }
+
+    /**
+     * Given a subscriber to the change feed,
+     * When a book is created, updated and deleted, then a subscriber resumes after the creation
+     * Then, it should push the three changes in order and replay the last two on resume
+     */
+    @Test
+    @WithAnonymousUser
+    void givenSubscriber_whenBookWritten_thenPushChangesAndReplayThemOnResume() throws Exception {
+        // given
+        MvcResult live = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/changes"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // when
+        BookEntity book = repository.save(BookEntity.builder().title("Germinal").author("Émile Zola").price(BigDecimal.ONE).build());
+        book.setPrice(BigDecimal.TEN);
+        repository.save(book);
+        repository.deleteById(book.getId());
+
+        List<Map<String, String>> pushed = awaitEvents(live, 3);
+
+        MvcResult resumed = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/changes")
+                        .header("Last-Event-ID", pushed.get(0).get("id")))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+        List<Map<String, String>> replayed = awaitEvents(resumed, 2);
+
+        // then
+        assertEquals(List.of("created", "updated", "deleted"), pushed.stream().map(event -> event.get("event")).toList());
+        for (Map<String, String> event : pushed) {
+            assertEquals(book.getId().intValue(), objectMapper.readTree(event.get("data")).get("bookId").asInt());
+        }
+        assertEquals("Germinal", objectMapper.readTree(pushed.get(0).get("data")).get("title").asText());
+        assertEquals(pushed.subList(1, 3), replayed);
+    }
+
+    /**
+     * Given a Last-Event-ID older than the buffered changes,
+     * When resuming the change feed
+     * Then, it should send a reset event
+     */
+    @Test
+    @WithAnonymousUser
+    void givenTooOldLastEventId_whenResumingFeed_thenSendReset() throws Exception {
+        // when
+        MvcResult result = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/changes")
+                        .header("Last-Event-ID", "1"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // then
+        List<Map<String, String>> events = awaitEvents(result, 1);
+        assertEquals("reset", events.get(0).get("event"));
+    }
+
+    /**
+     * Given books created, updated and deleted after a change sequence,
+     * When syncing the delta from that sequence, page by page then from the returned one
+     * Then, it should return each book once with its latest state, the deleted ids, and nothing more afterwards
+     */
+    @Test
+    @WithAnonymousUser
+    void givenBooksWrittenAndDeleted_whenSyncingDelta_thenReturnLatestChangesOnce() throws Exception {
+        // given
+        long since = changeLog.stable();
+        BookEntity kept = repository.save(BookEntity.builder().title("Nana").author("Émile Zola").price(BigDecimal.ONE).build());
+        BookEntity deleted = repository.save(BookEntity.builder().title("Germinal").author("Émile Zola").price(BigDecimal.ONE).build());
+        repository.delete(deleted);
+        kept.setTitle("Nana (2nd edition)");
+        repository.save(kept);
+
+        // when/then
+        MvcResult first = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/changes")
+                        .param("since", String.valueOf(since))
+                        .param("size", "1")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed", empty()))
+                .andExpect(jsonPath("$.deleted", contains(deleted.getId())))
+                .andExpect(jsonPath("$.hasMore", is(true)))
+                .andReturn();
+        long until = objectMapper.readTree(first.getResponse().getContentAsString()).get("until").asLong();
+
+        MvcResult second = mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/changes")
+                        .param("since", String.valueOf(until))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed[*].id", contains(kept.getId())))
+                .andExpect(jsonPath("$.changed[0].title", is("Nana (2nd edition)")))
+                .andExpect(jsonPath("$.deleted", empty()))
+                .andExpect(jsonPath("$.hasMore", is(false)))
+                .andReturn();
+        until = objectMapper.readTree(second.getResponse().getContentAsString()).get("until").asLong();
+
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/changes")
+                        .param("since", String.valueOf(until))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.changed", empty()))
+                .andExpect(jsonPath("$.deleted", empty()))
+                .andExpect(jsonPath("$.until", is((int) until)));
+    }
+
+    /**
+     * Given books deleted in bulk along with an unknown id,
+     * When syncing the delta, then again once more changes than the retention pushed it behind the horizon
+     * Then, it should number one change per id, then prune the tombstones and answer gone but for a full sync
+     */
+    @Test
+    @WithMockUser(username = "admin", roles = {"ADMIN"})
+    void givenBooksDeletedInBulk_whenFallingBehindHorizon_thenPruneAndAnswerGone() throws Exception {
+        // given
+        BookEntity first = repository.save(BookEntity.builder().title("Nana").author("Émile Zola").price(BigDecimal.ONE).build());
+        BookEntity second = repository.save(BookEntity.builder().title("Germinal").author("Émile Zola").price(BigDecimal.ONE).build());
+        long since = changeLog.stable();
+
+        mockMvc.perform(post(BOOKS_CONTROLLER_URI + "/bulk/delete")
+                        .content(objectMapper.writeValueAsString(BookBulkDeleteDto.builder()
+                                .ids(List.of(first.getId(), second.getId(), second.getId() + 1000))
+                                .build()))
+                        .contentType(MediaType.APPLICATION_JSON))
+                .andExpect(jsonPath("$.affected", is(2)));
+
+        // when/then
+        assertEquals(since + 3, changeLog.stable());
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/changes")
+                        .param("since", String.valueOf(since))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.deleted", contains(first.getId(), second.getId())));
+
+        changeLog.reserve(1000);
+        changeLog.prune();
+
+        assertTrue(tombstoneRepository.findChanged(since, Long.MAX_VALUE, Limit.of(10)).isEmpty());
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/changes")
+                        .param("since", String.valueOf(since))
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isGone());
+        mockMvc.perform(get(BOOKS_CONTROLLER_URI + "/changes")
+                        .param("since", "0")
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk());
+    }
+
+    /**
+     * Waits for the given number of events on the stream and parses them, heartbeat comments left out.
+     */
+    private static List<Map<String, String>> awaitEvents(MvcResult result, int count) throws Exception {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (true) {
+            List<Map<String, String>> events = new ArrayList<>();
+            for (String block : result.getResponse().getContentAsString(StandardCharsets.UTF_8).split("\n\n")) {
+                Map<String, String> event = new HashMap<>();
+                for (String line : block.split("\n")) {
+                    int colon = line.indexOf(':');
+                    if (colon > 0) {
+                        event.put(line.substring(0, colon), line.substring(colon + 1));
+                    }
+                }
+                if (event.containsKey("event")) {
+                    events.add(event);
+                }
+            }
+
+            if (events.size() >= count) {
+                return events;
+            }
+            assertTrue(System.currentTimeMillis() < deadline, "only " + events.size() + " events received");
+            Thread.sleep(20);
+        }
+    }
+
+    private double cacheGets(String result) {
+        return meterRegistry.get("cache.gets")
+                .tag("cache", CacheConfig.BOOKS_CACHE)
+                .tag("result", result)
+                .functionCounter()
+                .count();
+    }
+
+    @Nested
+    @TestPropertySource(properties = "books.pagination.unpaged=true")
+    class Unpaged {
+
+        // the nested class runs with its own context, so it needs its own MockMvc, repository and services
+
+        @Autowired
+        private MockMvc mockMvc;
+
+        @Autowired
+        private BookRepository repository;
+
+        @Autowired
+        private IBookService bookService;
+
+        @Autowired
+        private IBookSnapshotService snapshotService;
+
+        /**
+         * Given the unpaged listing enabled and a list of books persited,
+         * When calling the get all without paging parameters
+         * Then, it should return a list of books
+         */
+        @Test
+        @WithAnonymousUser
+        void givenListsPersisted_whenGettingAll_thenReturnListOfBooks() throws Exception {
+            // given
+            Double price = 123.0;
+            BookEntity entity = repository.save(BookEntity.builder()
+                    .title("title")
+                    .author("author")
+                    .price(BigDecimal.valueOf(price))
+                    .build());
+            BookEntity entity2 = repository.save(BookEntity.builder()
+                    .title("title2")
+                    .author("author2")
+                    .price(BigDecimal.valueOf(price + 1))
+                    .build());
+
+            // when
+            ResultActions result = mockMvc.perform(get(BOOKS_CONTROLLER_URI));
+
+            // then
+            result.andExpect(status().isOk())
+                    .andExpect(jsonPath("$[0].id", allOf(notNullValue(), is(entity.getId()))))
+                    .andExpect(jsonPath("$[0].title", equalTo(entity.getTitle())))
+                    .andExpect(jsonPath("$[0].author", equalTo(entity.getAuthor())))
+                    .andExpect(jsonPath("$[0].price", is(price)))
+                    .andExpect(jsonPath("$[1].id", allOf(notNullValue(), is(entity2.getId()))))
+                    .andExpect(jsonPath("$[1].title", equalTo(entity2.getTitle())))
+                    .andExpect(jsonPath("$[1].author", equalTo(entity2.getAuthor())))
+                    .andExpect(jsonPath("$[1].price", is(price + 1)))
+            ;
+        }
+
+        /**
+         * Given the unpaged listing enabled and books written,
+         * When calling the get all once the background snapshot caught up, accepting gzip
+         * Then, it should send the gzipped snapshot of the current books
+         */
+        @Test
+        @WithAnonymousUser
+        void givenBooksWritten_whenGettingAllGzipped_thenSendCurrentSnapshot() throws Exception {
+            // given
+            BookEntity entity = repository.save(BookEntity.builder().title("Germinal").author("Émile Zola").price(BigDecimal.TEN).build());
+            BookEntity entity2 = repository.save(BookEntity.builder().title("Nana").author("Émile Zola").price(BigDecimal.ONE).build());
+
+            long deadline = System.currentTimeMillis() + 10_000;
+            Optional<BookSnapshot> snapshot;
+            while ((snapshot = snapshotService.getSnapshot(bookService.getCatalogVersion())).isEmpty()) {
+                assertTrue(System.currentTimeMillis() < deadline, "snapshot not rebuilt in time");
+                Thread.sleep(20);
+            }
+            snapshotService.release(snapshot.get());
+
+            // when
+            MvcResult result = mockMvc.perform(get(BOOKS_CONTROLLER_URI)
+                            .header(HttpHeaders.ACCEPT_ENCODING, "gzip"))
+                    .andExpect(status().isOk())
+                    .andExpect(header().string(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                    .andExpect(header().string(HttpHeaders.ETAG, "\"books-" + bookService.getCatalogVersion() + "-gz\""))
+                    .andReturn();
+
+            // then
+            byte[] json;
+            try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(result.getResponse().getContentAsByteArray()))) {
+                json = in.readAllBytes();
+            }
+            List<Integer> ids = new ArrayList<>();
+            objectMapper.readTree(json).forEach(book -> ids.add(book.get("id").asInt()));
+            assertTrue(ids.containsAll(List.of(entity.getId(), entity2.getId())), ids::toString);
+        }
     }
 }
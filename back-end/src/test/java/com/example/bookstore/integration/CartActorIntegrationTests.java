@@ -0,0 +1,103 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.entities.CartEntity;
+import com.example.bookstore.entities.UserEntity;
+import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.respositories.CartRepository;
+import com.example.bookstore.respositories.UserRepository;
+import com.example.bookstore.services.ICartService;
+import com.example.bookstore.services.impls.CartActorServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+@SpringBootTest(properties = {
+        "carts.mode=actor",
+        "spring.datasource.url=jdbc:h2:mem:bookstore-actor"
+})
+@ActiveProfiles("tests")
+class CartActorIntegrationTests {
+
+    @Autowired
+    private CartRepository repository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ICartService service;
+
+    @BeforeEach
+    void beforeEach() {
+        repository.deleteAll();
+        userRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    /**
+     * Given the actor mode and threads adding to two carts, not yet created, all at once
+     * When each of them adds a quantity of 1
+     * Then, it should end with all the adds in their carts, none lost and none retried
+     */
+    @Test
+    void givenActorMode_whenAddingConcurrently_thenEndWithAllOfThem() throws Exception {
+        // given
+        for (String username : List.of("first", "second")) {
+            userRepository.save(UserEntity.builder()
+                    .username(username)
+                    .password("password")
+                    .role("ROLE_USER")
+                    .build());
+        }
+
+        BookEntity bookEntity = bookRepository.save(BookEntity.builder()
+                .title("title")
+                .author("author")
+                .price(BigDecimal.valueOf(10))
+                .build());
+
+        assertInstanceOf(CartActorServiceImpl.class, service);
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // when
+        List<Future<CartEntity>> adds = new ArrayList<>();
+        try {
+            for (int i = 0; i < threads; i++) {
+                String username = i % 2 == 0 ? "first" : "second";
+                adds.add(executor.submit(() -> {
+                    start.await();
+                    return service.addItem(username, bookEntity.getId(), 1);
+                }));
+            }
+            start.countDown();
+            for (Future<CartEntity> add : adds) {
+                add.get(1, TimeUnit.MINUTES);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // then
+        for (String username : List.of("first", "second")) {
+            CartEntity cartEntity = service.getCart(username);
+            assertEquals(threads / 2, cartEntity.getItems().get(bookEntity.getId()).getQuantity());
+        }
+        assertEquals(2, repository.count());
+    }
+}
@@ -1,5 +1,7 @@
 package com.example.bookstore.integration;
 
+import com.example.bookstore.dtos.CartOperationDto;
+import com.example.bookstore.dtos.CartOperationsDto;
 import com.example.bookstore.entities.BookEntity;
 import com.example.bookstore.entities.CartEntity;
 import com.example.bookstore.entities.CartItemEntity;
@@ -7,12 +9,19 @@ import com.example.bookstore.entities.UserEntity;
 import com.example.bookstore.respositories.BookRepository;
 import com.example.bookstore.respositories.CartRepository;
 import com.example.bookstore.respositories.UserRepository;
+import com.example.bookstore.services.ICartService;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithAnonymousUser;
 import org.springframework.security.test.context.support.WithMockUser;
 import org.springframework.test.context.ActiveProfiles;
@@ -20,9 +29,15 @@ import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.test.web.servlet.ResultActions;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.IntStream;
 
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
@@ -47,6 +62,12 @@ class CartControllerIntegrationTests {
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private ICartService service;
+
     private static final String CART_CONTROLLER_URI = "/api/v1/cart";
 
     @BeforeEach
@@ -482,4 +503,297 @@ class CartControllerIntegrationTests {
         ;
     }
 
+    /**
+     * Given a cart holding a book and operations adding, setting and removing books,
+     * When updating the cart items, once with an unknown book among them
+     * Then, it should apply all of them, and none of them when a book is unknown
+     */
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void givenOperations_whenUpdatingItems_thenApplyAllOrNone() throws Exception {
+        // given
+        UserEntity userEntity = userRepository.save(UserEntity.builder()
+                .username("user")
+                .password("password")
+                .role("ROLE_USER")
+                .build());
+
+        List<BookEntity> books = bookRepository.saveAll(IntStream.rangeClosed(1, 3)
+                .mapToObj(i -> BookEntity.builder().title("title" + i).author("author").price(BigDecimal.TEN).build())
+                .toList());
+
+        CartEntity cartEntity = CartEntity.builder().user(userEntity).build();
+        cartEntity.addItem(CartItemEntity.builder().book(books.get(0)).quantity(1).build());
+        repository.save(cartEntity);
+
+        CartOperationsDto operations = CartOperationsDto.builder().operations(List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.REMOVE).bookId(books.get(0).getId()).build(),
+                CartOperationDto.builder().op(CartOperationDto.Type.ADD).bookId(books.get(1).getId()).quantity(2).build(),
+                CartOperationDto.builder().op(CartOperationDto.Type.SET).bookId(books.get(2).getId()).quantity(3).build()
+        )).build();
+        CartOperationsDto withUnknownBook = CartOperationsDto.builder().operations(List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.SET).bookId(books.get(1).getId()).quantity(0).build(),
+                CartOperationDto.builder().op(CartOperationDto.Type.ADD).bookId(books.get(2).getId() + 1000).quantity(1).build()
+        )).build();
+
+        // when
+        ResultActions result = mockMvc.perform(post(CART_CONTROLLER_URI + "/items")
+                .content(objectMapper.writeValueAsString(operations))
+                .contentType(MediaType.APPLICATION_JSON));
+        ResultActions rejected = mockMvc.perform(post(CART_CONTROLLER_URI + "/items")
+                .content(objectMapper.writeValueAsString(withUnknownBook))
+                .contentType(MediaType.APPLICATION_JSON));
+
+        // then
+        result.andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].book.title", containsInAnyOrder("title2", "title3")))
+                .andExpect(jsonPath("$.items[*].quantity", containsInAnyOrder(2, 3)))
+        ;
+        rejected.andExpect(status().isNotFound());
+        mockMvc.perform(get(CART_CONTROLLER_URI))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[*].book.title", containsInAnyOrder("title2", "title3")))
+        ;
+    }
+
+    /**
+     * Given a cart holding several books,
+     * When getting the cart and checking it out
+     * Then, it should run a single statement whatever the number of items: the cart joined by username, the user
+     * being authenticated already
+     */
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void givenCartWithSeveralItems_whenGettingAndCheckingOut_thenRunOneStatement() throws Exception {
+        // given
+        UserEntity userEntity = userRepository.save(UserEntity.builder()
+                .username("user")
+                .password("password")
+                .role("ROLE_USER")
+                .build());
+
+        List<BookEntity> books = bookRepository.saveAll(IntStream.rangeClosed(1, 5)
+                .mapToObj(i -> BookEntity.builder().title("title" + i).author("author").price(BigDecimal.TEN).build())
+                .toList());
+
+        CartEntity cartEntity = CartEntity.builder().user(userEntity).build();
+        books.forEach(book -> cartEntity.addItem(CartItemEntity.builder().book(book).quantity(1).build()));
+        repository.save(cartEntity);
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            // when
+            statistics.clear();
+            ResultActions cart = mockMvc.perform(get(CART_CONTROLLER_URI));
+            long cartStatements = statistics.getPrepareStatementCount();
+
+            statistics.clear();
+            ResultActions checkout = mockMvc.perform(post(CART_CONTROLLER_URI + "/checkout"));
+            long checkoutStatements = statistics.getPrepareStatementCount();
+
+            // then
+            cart.andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(5)))
+                    .andExpect(jsonPath("$.items[*].book.title", hasItem("title5")));
+            checkout.andExpect(status().isOk())
+                    .andExpect(jsonPath("$.total", is(50.0)));
+            assertEquals(1, cartStatements);
+            assertEquals(1, checkoutStatements);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    /**
+     * Given a user without a cart, then with one
+     * When getting the cart and checking it out
+     * Then, it should never write: the empty cart is not stored, the cart is created by the first change only
+     */
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void givenCartOrNot_whenGettingAndCheckingOut_thenNeverWrite() throws Exception {
+        // given
+        userRepository.save(UserEntity.builder()
+                .username("user")
+                .password("password")
+                .role("ROLE_USER")
+                .build());
+        BookEntity bookEntity = bookRepository.save(BookEntity.builder()
+                .title("title")
+                .author("author")
+                .price(BigDecimal.TEN)
+                .build());
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            // when
+            statistics.clear();
+            mockMvc.perform(get(CART_CONTROLLER_URI))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.username", is("user")))
+                    .andExpect(jsonPath("$.items", hasSize(0)));
+            mockMvc.perform(post(CART_CONTROLLER_URI + "/checkout"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(0)));
+            long emptyStatements = statistics.getPrepareStatementCount();
+            long emptyWrites = statistics.getEntityInsertCount() + statistics.getEntityUpdateCount()
+                    + statistics.getEntityDeleteCount();
+            long emptyCarts = repository.count();
+
+            mockMvc.perform(post(CART_CONTROLLER_URI + "/item/" + bookEntity.getId() + "/quantity/1"))
+                    .andExpect(status().isOk());
+            long createdCarts = repository.count();
+
+            statistics.clear();
+            mockMvc.perform(get(CART_CONTROLLER_URI))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(1)));
+            mockMvc.perform(post(CART_CONTROLLER_URI + "/checkout"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(1)));
+            long cartWrites = statistics.getEntityInsertCount() + statistics.getEntityUpdateCount()
+                    + statistics.getEntityDeleteCount();
+
+            // then
+            assertEquals(2, emptyStatements);
+            assertEquals(0, emptyWrites);
+            assertEquals(0, emptyCarts);
+            assertEquals(1, createdCarts);
+            assertEquals(0, cartWrites);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    /**
+     * Given a cart holding a book,
+     * When adding more of that book, then another book
+     * Then, it should run two statements for each: the upsert of the line and the joined cart, the books being
+     * checked in the cache. The ids of the lines are drawn from the sequence 50 at a time, so the odd fetch of the
+     * sequence is not counted
+     */
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void givenCreatedCart_whenAddingItems_thenRunTwoStatements() throws Exception {
+        // given
+        UserEntity userEntity = userRepository.save(UserEntity.builder()
+                .username("user")
+                .password("password")
+                .role("ROLE_USER")
+                .build());
+
+        List<BookEntity> books = bookRepository.saveAll(IntStream.rangeClosed(1, 2)
+                .mapToObj(i -> BookEntity.builder().title("title" + i).author("author").price(BigDecimal.TEN).build())
+                .toList());
+
+        CartEntity cartEntity = CartEntity.builder().user(userEntity).build();
+        cartEntity.addItem(CartItemEntity.builder().book(books.get(0)).quantity(1).build());
+        repository.save(cartEntity);
+        books.forEach(book -> bookRepository.findById(book.getId()));
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        try {
+            // when
+            long lineIds = lineIds();
+            statistics.clear();
+            ResultActions more = mockMvc.perform(post(CART_CONTROLLER_URI + "/item/" + books.get(0).getId() + "/quantity/2"));
+            long moreStatements = statistics.getPrepareStatementCount() - (lineIds() - lineIds > 0 ? 1 : 0);
+
+            lineIds = lineIds();
+            statistics.clear();
+            ResultActions other = mockMvc.perform(post(CART_CONTROLLER_URI + "/item/" + books.get(1).getId() + "/quantity/1"));
+            long otherStatements = statistics.getPrepareStatementCount() - (lineIds() - lineIds > 0 ? 1 : 0);
+
+            // then
+            more.andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(1)))
+                    .andExpect(jsonPath("$.items[0].quantity", is(3)));
+            other.andExpect(status().isOk())
+                    .andExpect(jsonPath("$.items", hasSize(2)))
+                    .andExpect(jsonPath("$.items[1].book.title", is("title2")));
+            assertEquals(2, moreStatements);
+            assertEquals(2, otherStatements);
+        } finally {
+            statistics.setStatisticsEnabled(false);
+        }
+    }
+
+    /**
+     * Given N threads adding the same book to the same cart, not yet created, all at once, with the retry budget
+     * of the local profile
+     * When each of them adds a quantity of 1
+     * Then, every add should either be written or refused with a concurrency failure (a 409), and the quantity
+     * should be the number of adds written: none of them is lost, whatever the budget
+     */
+    @Test
+    void givenConcurrentAdds_whenAddingOneEach_thenWriteOrRefuseEachOfThem() throws Exception {
+        // given
+        UserEntity userEntity = userRepository.save(UserEntity.builder()
+                .username("user")
+                .password("password")
+                .role("ROLE_USER")
+                .build());
+
+        BookEntity bookEntity = bookRepository.save(BookEntity.builder()
+                .title("title")
+                .author("author")
+                .price(BigDecimal.valueOf(10))
+                .build());
+
+        int threads = 16;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+
+        // when
+        List<Future<Boolean>> adds = new ArrayList<>();
+        int written = 0;
+        int refused = 0;
+        try {
+            for (int i = 0; i < threads; i++) {
+                adds.add(executor.submit(() -> {
+                    start.await();
+                    try {
+                        service.addItem("user", bookEntity.getId(), 1);
+                        return true;
+                    } catch (ConcurrencyFailureException e) {
+                        return false;
+                    }
+                }));
+            }
+            start.countDown();
+            for (Future<Boolean> add : adds) {
+                if (add.get(1, TimeUnit.MINUTES)) {
+                    written++;
+                } else {
+                    refused++;
+                }
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // then
+        CartEntity cartEntity = repository.findByUser(userEntity).orElseThrow();
+        assertEquals(threads, written + refused);
+        assertTrue(written > 0);
+        assertEquals(1, cartEntity.getItems().size());
+        assertEquals(written, cartEntity.getItems().get(bookEntity.getId()).getQuantity());
+        assertEquals(1, repository.count());
+    }
+
+    /**
+     * The next value of the sequence of the cart line ids, which moves once per 50 ids handed out.
+     */
+    private long lineIds() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            return ((Number) entityManager.createNativeQuery("select BASE_VALUE from INFORMATION_SCHEMA.SEQUENCES"
+                    + " where SEQUENCE_NAME = 'CART_ITEMS_SEQ'").getSingleResult()).longValue();
+        } finally {
+            entityManager.close();
+        }
+    }
 }
@@ -0,0 +1,101 @@
+package com.example.bookstore.integration;
+
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.entities.UserEntity;
+import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.respositories.CartRepository;
+import com.example.bookstore.respositories.UserRepository;
+import com.example.bookstore.services.ICartService;
+import com.example.bookstore.services.impls.CartWriteBehindServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.security.test.context.support.WithMockUser;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.math.BigDecimal;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@SpringBootTest(properties = {
+        "carts.mode=write-behind",
+        "spring.datasource.url=jdbc:h2:mem:bookstore-write-behind"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("tests")
+class CartWriteBehindIntegrationTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private CartRepository repository;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    @Autowired
+    private ICartService service;
+
+    private static final String CART_CONTROLLER_URI = "/api/v1/cart";
+
+    @BeforeEach
+    void beforeEach() {
+        repository.deleteAll();
+        userRepository.deleteAll();
+        bookRepository.deleteAll();
+    }
+
+    /**
+     * Given the write-behind mode and several changes to a cart,
+     * When reading the cart, then checking it out
+     * Then, it should serve the changes from memory and write them only at checkout
+     */
+    @Test
+    @WithMockUser(username = "user", roles = {"USER"})
+    void givenWriteBehindMode_whenChangingAndCheckingOut_thenWriteAtCheckout() throws Exception {
+        // given
+        UserEntity userEntity = userRepository.save(UserEntity.builder()
+                .username("user")
+                .password("password")
+                .role("ROLE_USER")
+                .build());
+
+        BookEntity bookEntity = bookRepository.save(BookEntity.builder()
+                .title("title")
+                .author("author")
+                .price(BigDecimal.valueOf(10))
+                .build());
+
+        assertInstanceOf(CartWriteBehindServiceImpl.class, service);
+
+        mockMvc.perform(post(CART_CONTROLLER_URI + "/item/" + bookEntity.getId() + "/quantity/2"))
+                .andExpect(status().isOk());
+        mockMvc.perform(post(CART_CONTROLLER_URI + "/item/" + bookEntity.getId() + "/quantity/3"))
+                .andExpect(status().isOk());
+
+        // when
+        mockMvc.perform(get(CART_CONTROLLER_URI))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].quantity", is(5)));
+        assertTrue(repository.findByUser(userEntity).isEmpty());
+
+        // then
+        mockMvc.perform(post(CART_CONTROLLER_URI + "/checkout"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items", hasSize(1)))
+                .andExpect(jsonPath("$.total", is(50.0)));
+        assertEquals(5, repository.findByUser(userEntity).orElseThrow()
+                .getItems().get(bookEntity.getId()).getQuantity());
+    }
+}
@@ -0,0 +1,235 @@
+package com.example.bookstore.respositories;
+
+import com.example.bookstore.changes.BookChangeLog;
+import com.example.bookstore.dtos.BookFilterDto;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.specifications.BookSpecifications;
+import jakarta.persistence.EntityManager;
+import org.hibernate.Session;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.jpa.domain.Specification;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs the catalog queries as the application does, then asks H2 for the plan of the very SQL they produced.
+ */
+@DataJpaTest(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.example.bookstore.respositories.BookQueryPlanTest$RecordingStatementInspector")
+@Import(BookChangeLog.class)
+@ActiveProfiles("tests")
+class BookQueryPlanTest {
+
+    @Autowired
+    private BookRepository repository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    public static class RecordingStatementInspector implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+
+    @BeforeEach
+    void beforeEach() {
+        repository.deleteAll();
+        entityManager.flush();
+        RecordingStatementInspector.STATEMENTS.clear();
+    }
+
+    /**
+     * Given a filter on the exact author,
+     * When scrolling the projections
+     * Then, it should read a range of the author index
+     */
+    @Test
+    void givenAuthorFilter_whenScrolling_thenUseAuthorIndex() {
+        // given
+        BookFilterDto filter = BookFilterDto.builder().author("Hugo").build();
+
+        // when
+        String sql = scroll(filter, Sort.by("id"));
+
+        // then
+        assertUsesIndex("IDX_BOOKS_AUTHOR_ID", plan(sql, "Hugo", 21));
+    }
+
+    /**
+     * Given a filter on the author prefix sorted by author,
+     * When scrolling the projections
+     * Then, it should read a range of the author index, already sorted
+     */
+    @Test
+    void givenAuthorPrefixFilter_whenScrolling_thenUseAuthorIndex() {
+        // given
+        BookFilterDto filter = BookFilterDto.builder().authorPrefix("Hu").build();
+
+        // when
+        String sql = scroll(filter, Sort.by("author", "id"));
+
+        // then
+        String plan = plan(sql, "Hu%", 21);
+        assertUsesIndex("IDX_BOOKS_AUTHOR_ID", plan);
+        assertTrue(plan.contains("index sorted"), plan);
+    }
+
+    /**
+     * Given a filter on the title prefix sorted by title,
+     * When scrolling the projections
+     * Then, it should read a range of the title index, already sorted
+     */
+    @Test
+    void givenTitlePrefixFilter_whenScrolling_thenUseTitleIndex() {
+        // given
+        BookFilterDto filter = BookFilterDto.builder().titlePrefix("Les").build();
+
+        // when
+        String sql = scroll(filter, Sort.by("title", "id"));
+
+        // then
+        String plan = plan(sql, "Les%", 21);
+        assertUsesIndex("IDX_BOOKS_TITLE_ID", plan);
+        assertTrue(plan.contains("index sorted"), plan);
+    }
+
+    /**
+     * Given a cursor deep into the books sorted by title,
+     * When scrolling the next window
+     * Then, it should seek to the cursor in the title index instead of scanning the rows before it
+     */
+    @Test
+    void givenDeepCursor_whenScrolling_thenSeekTitleIndex() {
+        // given
+        List<BookEntity> books = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            books.add(BookEntity.builder()
+                    .title("Book %03d".formatted(i))
+                    .author("Author")
+                    .price(BigDecimal.TEN)
+                    .build());
+        }
+        books = repository.saveAll(books);
+        entityManager.flush();
+        BookEntity cursor = books.get(400);
+        KeysetScrollPosition position = ScrollPosition.of(Map.of("title", cursor.getTitle(), "id", cursor.getId()),
+                ScrollPosition.Direction.FORWARD);
+
+        // when
+        String sql = scroll(null, position, Sort.by("title", "id"));
+
+        // then
+        String plan = analyze(sql, cursor.getTitle(), cursor.getTitle(), cursor.getTitle(), cursor.getId(), 21);
+        assertUsesIndex("IDX_BOOKS_TITLE_ID", plan);
+        Matcher scanCount = Pattern.compile("scanCount: (\\d+)").matcher(plan);
+        assertTrue(scanCount.find(), plan);
+        assertTrue(Integer.parseInt(scanCount.group(1)) <= 22, plan);
+    }
+
+    /**
+     * Given a price range sorted by price,
+     * When scrolling the projections
+     * Then, it should read a range of the price index, already sorted
+     */
+    @Test
+    void givenPriceRange_whenScrolling_thenUsePriceIndex() {
+        // given
+        BookFilterDto filter = BookFilterDto.builder()
+                .minPrice(BigDecimal.ONE)
+                .maxPrice(BigDecimal.TEN)
+                .build();
+
+        // when
+        String sql = scroll(filter, Sort.by("price", "id"));
+
+        // then
+        String plan = plan(sql, BigDecimal.ONE, BigDecimal.TEN, 21);
+        assertUsesIndex("IDX_BOOKS_PRICE_ID", plan);
+        assertTrue(plan.contains("index sorted"), plan);
+    }
+
+    /**
+     * Given a change sequence,
+     * When reading the books changed since then
+     * Then, it should read a range of the change sequence index
+     */
+    @Test
+    void givenChangeSeq_whenFindingChanged_thenUseChangeSeqIndex() {
+        // given
+        RecordingStatementInspector.STATEMENTS.clear();
+
+        // when
+        repository.findChanged(10, 20, Limit.of(21));
+
+        // then
+        List<String> statements = RecordingStatementInspector.STATEMENTS;
+        assertEquals(1, statements.size(), statements::toString);
+        assertUsesIndex("IDX_BOOKS_CHANGE_SEQ", plan(statements.get(0), 10L, 20L, 21));
+    }
+
+    private String scroll(BookFilterDto filter, Sort sort) {
+        return scroll(BookSpecifications.matching(filter), ScrollPosition.keyset(), sort);
+    }
+
+    private String scroll(Specification<BookEntity> specification, KeysetScrollPosition position, Sort sort) {
+        RecordingStatementInspector.STATEMENTS.clear();
+        repository.findDtosBy(specification, position, sort, Limit.of(20));
+
+        List<String> statements = RecordingStatementInspector.STATEMENTS;
+        assertEquals(1, statements.size(), statements::toString);
+        return statements.get(0);
+    }
+
+    private String plan(String sql, Object... parameters) {
+        return explain("EXPLAIN ", sql, parameters);
+    }
+
+    private String analyze(String sql, Object... parameters) {
+        return explain("EXPLAIN ANALYZE ", sql, parameters);
+    }
+
+    private String explain(String explain, String sql, Object... parameters) {
+        return entityManager.unwrap(Session.class).doReturningWork(connection -> {
+            try (PreparedStatement statement = connection.prepareStatement(explain + sql)) {
+                for (int i = 0; i < parameters.length; i++) {
+                    statement.setObject(i + 1, parameters[i]);
+                }
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    resultSet.next();
+                    return resultSet.getString(1);
+                }
+            }
+        });
+    }
+
+    private static void assertUsesIndex(String index, String plan) {
+        assertTrue(plan.contains(index), plan);
+        assertFalse(plan.contains("tableScan"), plan);
+    }
+}
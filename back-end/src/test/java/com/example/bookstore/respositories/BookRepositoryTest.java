@@ -1,26 +1,49 @@
 package com.example.bookstore.respositories;
 
+import com.example.bookstore.changes.BookChangeLog;
+import com.example.bookstore.dtos.BookDto;
+import com.example.bookstore.dtos.BookFilterDto;
 import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.entities.BookTombstoneEntity;
+import com.example.bookstore.facets.BookFacets;
+import com.example.bookstore.specifications.BookSpecifications;
+import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.SessionImplementor;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
+import org.springframework.data.jpa.domain.Specification;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
 import java.util.Comparator;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
+@Import(BookChangeLog.class)
 @ActiveProfiles("tests")
 class BookRepositoryTest {
 
     @Autowired
     private BookRepository repository;
 
+    @Autowired
+    private EntityManager entityManager;
+
+    @Autowired
+    private BookTombstoneRepository tombstoneRepository;
+
     @BeforeEach
     void beforeEach() {
         repository.deleteAll();
@@ -148,6 +171,94 @@ class BookRepositoryTest {
         assertEquals("title2", list.get(1).getTitle());
     }
 
+    /**
+     * Given some books persisted,
+     * When scrolling through their projections sorted by author then id,
+     * Then, it should return windows in that order without managing any entity.
+     */
+    @Test
+    void givenBooksPersisted_whenScrollingProjections_thenReturnDtoWindowsWithoutManagedEntities() {
+        // given
+        BookEntity first = repository.save(BookEntity.builder().title("title1").author("b").price(BigDecimal.ONE).build());
+        BookEntity second = repository.save(BookEntity.builder().title("title2").author("a").price(BigDecimal.ONE).build());
+        BookEntity third = repository.save(BookEntity.builder().title("title3").author("b").price(BigDecimal.TEN).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        Sort sort = Sort.by("author", "id");
+
+        // when
+        Window<BookDto> firstWindow = repository.findDtosBy(null, ScrollPosition.keyset(), sort, Limit.of(2));
+        Window<BookDto> secondWindow = repository.findDtosBy(null, (KeysetScrollPosition) firstWindow.positionAt(1), sort, Limit.of(2));
+        List<BookDto> all = repository.findAllDtos();
+
+        // then
+        assertEquals(List.of(second.getId(), first.getId()), firstWindow.map(BookDto::getId).getContent());
+        assertTrue(firstWindow.hasNext());
+        assertEquals(List.of(third.getId()), secondWindow.map(BookDto::getId).getContent());
+        assertFalse(secondWindow.hasNext());
+        assertEquals(0, BigDecimal.TEN.compareTo(secondWindow.getContent().get(0).getPrice()));
+        assertEquals(List.of(first.getId(), second.getId(), third.getId()), all.stream().map(BookDto::getId).toList());
+        assertEquals(0, entityManager.unwrap(SessionImplementor.class).getPersistenceContext().getNumberOfManagedEntities());
+    }
+
+    /**
+     * Given books by several authors,
+     * When scrolling the projections filtered by author prefix and price range, sorted by descending title,
+     * Then, it should return only the matching books, in that order, the wildcards of the prefix taken literally.
+     */
+    @Test
+    void givenBooksPersisted_whenScrollingFilteredProjections_thenReturnMatchingBooksInOrder() {
+        // given
+        BookEntity miserables = repository.save(BookEntity.builder().title("Les Misérables").author("Hugo").price(new BigDecimal("12.50")).build());
+        BookEntity notreDame = repository.save(BookEntity.builder().title("Notre-Dame de Paris").author("Hugo").price(new BigDecimal("9.90")).build());
+        repository.save(BookEntity.builder().title("Feuilles d'automne").author("Hugo").price(new BigDecimal("30.00")).build());
+        repository.save(BookEntity.builder().title("Germinal").author("Zola").price(new BigDecimal("10.00")).build());
+        repository.save(BookEntity.builder().title("Percent").author("H%go").price(new BigDecimal("10.00")).build());
+        entityManager.flush();
+        entityManager.clear();
+
+        Specification<BookEntity> specification = BookSpecifications.matching(BookFilterDto.builder()
+                .authorPrefix("Hu")
+                .minPrice(new BigDecimal("5"))
+                .maxPrice(new BigDecimal("20"))
+                .build());
+        Sort sort = Sort.by(Sort.Direction.DESC, "title", "id");
+
+        // when
+        Window<BookDto> firstWindow = repository.findDtosBy(specification, ScrollPosition.keyset(), sort, Limit.of(1));
+        Window<BookDto> secondWindow = repository.findDtosBy(specification, (KeysetScrollPosition) firstWindow.positionAt(0), sort, Limit.of(1));
+        Window<BookDto> wildcard = repository.findDtosBy(BookSpecifications.authorStartsWith("H%"), ScrollPosition.keyset(), sort, Limit.of(10));
+
+        // then
+        assertEquals(List.of(notreDame.getId()), firstWindow.map(BookDto::getId).getContent());
+        assertTrue(firstWindow.hasNext());
+        assertEquals(List.of(miserables.getId()), secondWindow.map(BookDto::getId).getContent());
+        assertFalse(secondWindow.hasNext());
+        assertEquals(List.of("Percent"), wildcard.map(BookDto::getTitle).getContent());
+    }
+
+    /**
+     * Given some books persisted,
+     * When streaming all of them,
+     * Then, it should return every book in id order.
+     */
+    @Test
+    void givenBooksPersisted_whenStreamingAll_thenReturnBooksInIdOrder() {
+        // given
+        BookEntity first = repository.save(BookEntity.builder().title("title1").author("author1").price(BigDecimal.ONE).build());
+        BookEntity second = repository.save(BookEntity.builder().title("title2").author("author2").price(BigDecimal.ONE).build());
+
+        // when
+        List<Integer> ids;
+        try (Stream<BookEntity> stream = repository.streamAll()) {
+            ids = stream.map(BookEntity::getId).toList();
+        }
+
+        // then
+        assertEquals(List.of(first.getId(), second.getId()), ids);
+    }
+
     /**
      * Given a BookEntity to be updated,
      * When calling save method
@@ -208,4 +319,113 @@ class BookRepositoryTest {
         assertNotNull(actual);
         assertFalse(actual.isPresent());
     }
+
+    /**
+     * Given persisted books,
+     * When setting, scaling the price and deleting in bulk
+     * Then, it should affect only the selected books, bump their version and number them by rank from the base
+     */
+    @Test
+    void givenBooksPersisted_whenUpdatingAndDeletingInBulk_thenAffectSelectedBooks() {
+        // given
+        BookEntity a = repository.save(BookEntity.builder().title("a").author("author1").price(new BigDecimal("10.00")).build());
+        BookEntity b = repository.save(BookEntity.builder().title("b").author("author1").price(new BigDecimal("20.00")).build());
+        BookEntity c = repository.save(BookEntity.builder().title("c").author("author2").price(new BigDecimal("30.00")).build());
+
+        // when
+        List<Integer> ids = repository.findIdsByAuthor("author1");
+        int scaled = repository.scalePriceByIdIn(ids, new BigDecimal("1.5"), 1000);
+        int set = repository.updatePriceByIdIn(List.of(c.getId()), new BigDecimal("5.00"), 2000);
+        int deleted = repository.deleteByIdIn(List.of(b.getId()));
+
+        // then
+        assertEquals(2, ids.size());
+        assertEquals(2, scaled);
+        assertEquals(1, set);
+        assertEquals(1, deleted);
+
+        BookEntity actualA = repository.findById(a.getId()).orElseThrow();
+        BookEntity actualC = repository.findById(c.getId()).orElseThrow();
+        assertEquals(0, new BigDecimal("15").compareTo(actualA.getPrice()));
+        assertEquals(a.getVersion() + 1, actualA.getVersion());
+        assertEquals(1001, actualA.getChangeSeq());
+        assertEquals(0, new BigDecimal("5").compareTo(actualC.getPrice()));
+        assertEquals(2001, actualC.getChangeSeq());
+        assertFalse(repository.existsById(b.getId()));
+    }
+
+    /**
+     * Given books saved then updated,
+     * When reading the books changed since a sequence
+     * Then, it should return the books written after it in change order, each with its latest number
+     */
+    @Test
+    void givenBooksWritten_whenFindingChanged_thenReturnThemInChangeOrder() {
+        // given
+        BookEntity a = repository.saveAndFlush(BookEntity.builder().title("a").author("author").price(BigDecimal.ONE).build());
+        BookEntity b = repository.saveAndFlush(BookEntity.builder().title("b").author("author").price(BigDecimal.ONE).build());
+        long created = b.getChangeSeq();
+
+        a.setTitle("a2");
+        a = repository.saveAndFlush(a);
+
+        // when
+        List<BookEntity> all = repository.findChanged(0, Long.MAX_VALUE, Limit.of(10));
+        List<BookEntity> since = repository.findChanged(created, Long.MAX_VALUE, Limit.of(10));
+
+        // then
+        assertTrue(a.getChangeSeq() > created);
+        assertEquals(List.of(b.getId(), a.getId()), all.stream().map(BookEntity::getId).toList());
+        assertEquals(List.of(a.getId()), since.stream().map(BookEntity::getId).toList());
+    }
+
+    /**
+     * Given books of several authors and prices,
+     * When counting the facets of the books matching a filter
+     * Then, it should count the matching books per author and per price range
+     */
+    @Test
+    void givenBooksPersisted_whenCountingFilteredFacets_thenCountMatchingBooks() {
+        // given
+        repository.save(BookEntity.builder().title("Les Misérables").author("Victor Hugo").price(new BigDecimal("5.00")).build());
+        repository.save(BookEntity.builder().title("Notre-Dame de Paris").author("Victor Hugo").price(new BigDecimal("10.00")).build());
+        repository.save(BookEntity.builder().title("Les Rougon-Macquart").author("Émile Zola").price(new BigDecimal("25.00")).build());
+        repository.save(BookEntity.builder().title("Germinal").author("Émile Zola").price(new BigDecimal("8.00")).build());
+
+        Specification<BookEntity> specification = BookSpecifications.matching(BookFilterDto.builder().titlePrefix("Les").build());
+
+        // when
+        BookFacets actual = repository.countFacetsBy(specification, List.of(BigDecimal.TEN, new BigDecimal("20")), 1);
+        BookFacets all = repository.countFacetsBy(null, List.of(BigDecimal.TEN, new BigDecimal("20")), 10);
+
+        // then
+        assertEquals(2, actual.getTotal());
+        assertEquals(1, actual.getAuthors().size());
+        assertEquals("Victor Hugo", actual.getAuthors().get(0).getValue()); // ties broken by author
+        assertEquals(List.of(1L, 0L, 1L), actual.getPrices().stream().map(BookFacets.Bucket::getCount).toList());
+
+        assertEquals(4, all.getTotal());
+        assertEquals(List.of(2L, 2L), all.getAuthors().stream().map(BookFacets.Count::getCount).toList());
+        assertEquals(List.of(2L, 1L, 1L), all.getPrices().stream().map(BookFacets.Bucket::getCount).toList());
+    }
+
+    /**
+     * Given a persisted book,
+     * When deleting it
+     * Then, it should leave a tombstone numbered after the book's last write
+     */
+    @Test
+    void givenBookPersisted_whenDeleting_thenLeaveTombstone() {
+        // given
+        BookEntity saved = repository.saveAndFlush(BookEntity.builder().title("a").author("author").price(BigDecimal.ONE).build());
+
+        // when
+        repository.delete(saved);
+        repository.flush();
+
+        // then
+        List<BookTombstoneEntity> actual = tombstoneRepository.findChanged(saved.getChangeSeq(), Long.MAX_VALUE, Limit.of(10));
+        assertEquals(1, actual.size());
+        assertEquals(saved.getId(), actual.get(0).getBookId());
+    }
 }
@@ -1,5 +1,6 @@
 package com.example.bookstore.respositories;
 
+import com.example.bookstore.changes.BookChangeLog;
 import com.example.bookstore.entities.BookEntity;
 import com.example.bookstore.entities.CartEntity;
 import com.example.bookstore.entities.CartItemEntity;
@@ -8,16 +9,18 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
-import java.util.ArrayList;
-import java.util.List;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
+@Import(BookChangeLog.class)
 @ActiveProfiles("tests")
 class CartRepositoryTest {
 
@@ -85,9 +88,9 @@ class CartRepositoryTest {
                 .quantity(4)
                 .build();
 
-        List<CartItemEntity> cartItems = new ArrayList<>();
-        cartItems.add(cartItemEntity);
-        cartItems.add(cartItemEntity2);
+        Map<Integer, CartItemEntity> cartItems = new LinkedHashMap<>();
+        cartItems.put(bookEntity.getId(), cartItemEntity);
+        cartItems.put(bookEntity2.getId(), cartItemEntity2);
 
         CartEntity entity = CartEntity.builder()
                 .user(userEntity)
@@ -152,8 +155,8 @@ class CartRepositoryTest {
                 .quantity(2)
                 .build();
 
-        List<CartItemEntity> cartItems = new ArrayList<>();
-        cartItems.add(cartItemEntity);
+        Map<Integer, CartItemEntity> cartItems = new LinkedHashMap<>();
+        cartItems.put(bookEntity.getId(), cartItemEntity);
 
         CartEntity cart = repository.save(CartEntity.builder()
                 .user(userEntity)
@@ -1,10 +1,12 @@
 package com.example.bookstore.respositories;
 
+import com.example.bookstore.changes.BookChangeLog;
 import com.example.bookstore.entities.UserEntity;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.util.Optional;
@@ -12,6 +14,7 @@ import java.util.Optional;
 import static org.junit.jupiter.api.Assertions.*;
 
 @DataJpaTest
+@Import(BookChangeLog.class)
 @ActiveProfiles("tests")
 class UserRepositoryTest {
 
@@ -0,0 +1,132 @@
+package com.example.bookstore.services;
+
+import com.example.bookstore.dtos.BookImportReportDto;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.imports.BookImportRow;
+import com.example.bookstore.services.impls.BookImportServiceImpl;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("tests")
+class BookImportServiceTest {
+
+    @InjectMocks
+    private BookImportServiceImpl service;
+
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void beforeEach() {
+        ReflectionTestUtils.setField(service, "batchSize", 2);
+    }
+
+    /**
+     * Given the test objects to support the tests,
+     * When starting to test
+     * Then, it should assert that all of them are not null
+     */
+    @Test
+    void givenTestObjects_whenTesting_thenAssertNotNull() {
+        assertNotNull(service);
+        assertNotNull(entityManager);
+        assertNotNull(transactionManager);
+    }
+
+    /**
+     * Given valid and invalid rows,
+     * When importing
+     * Then, it should persist the valid ones in batches, clearing the persistence context after each, and report the others
+     */
+    @Test
+    void givenRows_whenImporting_thenPersistInBatchesAndReportInvalidRows() {
+        // given
+        List<BookImportRow> rows = List.of(
+                BookImportRow.valid(1, book("a")),
+                BookImportRow.invalid(2, "title: must not be blank"),
+                BookImportRow.valid(3, book("b")),
+                BookImportRow.valid(4, book("c"))
+        );
+
+        // when
+        BookImportReportDto actual = service.importBooks(rows.iterator());
+
+        // then
+        assertEquals(4, actual.getReceived());
+        assertEquals(3, actual.getImported());
+        assertEquals(1, actual.getErrors().size());
+        assertEquals(2, actual.getErrors().get(0).getLine());
+        assertEquals("title: must not be blank", actual.getErrors().get(0).getError());
+
+        verify(entityManager, times(3)).persist(any(BookEntity.class));
+        verify(entityManager, times(2)).flush();
+        verify(entityManager, times(2)).clear();
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    /**
+     * Given a batch rejected by the database because of one of its rows,
+     * When importing
+     * Then, it should retry the rows one by one and only report the faulty one
+     */
+    @Test
+    void givenBatchRejected_whenImporting_thenRetryRowByRowAndReportFaultyRow() {
+        // given
+        List<String> flushed = new ArrayList<>();
+        List<String> pending = new ArrayList<>();
+        doAnswer(invocation -> pending.add(((BookEntity) invocation.getArgument(0)).getTitle()))
+                .when(entityManager).persist(any(BookEntity.class));
+        doAnswer(invocation -> {
+            boolean faulty = pending.contains("faulty");
+            List<String> batch = new ArrayList<>(pending);
+            pending.clear();
+            if (faulty) {
+                throw new PersistenceException("value too long");
+            }
+            return flushed.addAll(batch);
+        }).when(entityManager).flush();
+
+        List<BookImportRow> rows = List.of(
+                BookImportRow.valid(1, book("a")),
+                BookImportRow.valid(2, book("faulty"))
+        );
+
+        // when
+        BookImportReportDto actual = service.importBooks(rows.iterator());
+
+        // then
+        assertEquals(2, actual.getReceived());
+        assertEquals(1, actual.getImported());
+        assertEquals(List.of("a"), flushed);
+        assertEquals(2, actual.getErrors().get(0).getLine());
+        assertEquals("value too long", actual.getErrors().get(0).getError());
+        verify(transactionManager, times(2)).rollback(any());
+        verify(entityManager, never()).persist(argThat(book -> ((BookEntity) book).getId() != null));
+    }
+
+    private static BookEntity book(String title) {
+        return BookEntity.builder().title(title).author("author").price(BigDecimal.ONE).build();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.bookstore.services;
+
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.events.BookChangedEvent;
+import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.services.impls.BookSearchServiceImpl;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("tests")
+class BookSearchServiceTest {
+
+    @InjectMocks
+    private BookSearchServiceImpl service;
+
+    @Mock
+    private IBookService bookService;
+
+    @Mock
+    private BookRepository repository;
+
+    /**
+     * Given the test objects to support the tests,
+     * When starting to test
+     * Then, it should assert that all of them are not null
+     */
+    @Test
+    void givenTestObjects_whenTesting_thenAssertNotNull() {
+        assertNotNull(service);
+        assertNotNull(bookService);
+        assertNotNull(repository);
+    }
+
+    /**
+     * Given books in the database,
+     * When rebuilding the index and searching
+     * Then, it should return the matching books in ranking order
+     */
+    @Test
+    void givenBooksInDatabase_whenRebuildingAndSearching_thenReturnRankedBooks() {
+        // given
+        BookEntity hugo = BookEntity.builder().id(1).title("Les Misérables").author("Victor Hugo").price(BigDecimal.ONE).build();
+        BookEntity paris = BookEntity.builder().id(2).title("Notre-Dame de Paris").author("Victor Hugo").price(BigDecimal.TEN).build();
+
+        doAnswer(invocation -> {
+            Consumer<BookEntity> consumer = invocation.getArgument(0);
+            consumer.accept(hugo);
+            consumer.accept(paris);
+            return null;
+        }).when(bookService).streamBooks(any());
+
+        // the repository returns the books in its own order
+        doReturn(List.of(hugo, paris)).when(repository).findAllById(List.of(2, 1));
+
+        service.rebuild();
+
+        // when
+        Page<BookEntity> actual = service.search("paris hugo", false, PageRequest.of(0, 10));
+
+        // then
+        assertEquals(2, actual.getTotalElements());
+        assertEquals(List.of(paris, hugo), actual.getContent());
+    }
+
+    /**
+     * Given book changes,
+     * When searching
+     * Then, it should reflect the created, updated and deleted books
+     */
+    @Test
+    void givenBookChanges_whenSearching_thenReflectChanges() {
+        // given
+        service.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.CREATED, 1, "Germinal", "Zola", BigDecimal.ONE));
+        service.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.CREATED, 2, "Nana", "Zola", BigDecimal.ONE));
+        service.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.UPDATED, 1, "L'Assommoir", "Zola", BigDecimal.ONE));
+        service.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.DELETED, 2, "Nana", "Zola", BigDecimal.ONE));
+
+        doReturn(List.of()).when(repository).findAllById(any());
+
+        // when
+        Page<BookEntity> germinal = service.search("germinal", false, PageRequest.of(0, 10));
+        Page<BookEntity> zola = service.search("zola", false, PageRequest.of(0, 10));
+
+        // then
+        assertEquals(0, germinal.getTotalElements());
+        assertEquals(1, zola.getTotalElements());
+        verify(repository, times(1)).findAllById(List.of(1));
+    }
+
+    /**
+     * Given an indexed catalog, and a book created while the index is rebuilt
+     * When searching during and after the rebuild
+     * Then, it should keep serving the current index meanwhile, and find the book created once it is swapped in
+     */
+    @Test
+    void givenBookCreatedDuringRebuild_whenSearching_thenServeCurrentIndexThenReplayChange() {
+        // given
+        BookEntity germinal = BookEntity.builder().id(1).title("Germinal").author("Zola").price(BigDecimal.ONE).build();
+        Page<?>[] during = new Page<?>[1];
+        doAnswer(invocation -> {
+            invocation.<Consumer<BookEntity>>getArgument(0).accept(germinal);
+            return null;
+        }).doAnswer(invocation -> {
+            during[0] = service.search("zola", false, PageRequest.of(0, 10));
+            service.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.CREATED, 2, "Nana", "Zola", BigDecimal.ONE));
+            invocation.<Consumer<BookEntity>>getArgument(0).accept(germinal);
+            return null;
+        }).when(bookService).streamBooks(any());
+        doReturn(List.of()).when(repository).findAllById(any());
+        service.rebuild();
+
+        // when
+        service.rebuild();
+        Page<BookEntity> after = service.search("zola", false, PageRequest.of(0, 10));
+
+        // then
+        assertEquals(1, during[0].getTotalElements());
+        assertEquals(2, after.getTotalElements());
+    }
+}
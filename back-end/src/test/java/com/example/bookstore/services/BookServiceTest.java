@@ -1,25 +1,49 @@
 package com.example.bookstore.services;
 
+import com.example.bookstore.changes.BookChangeLog;
+import com.example.bookstore.changes.BookDelta;
+import com.example.bookstore.dtos.BookDto;
+import com.example.bookstore.dtos.BookFilterDto;
 import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.events.BookBulkChangedEvent;
+import com.example.bookstore.events.BookChangedEvent;
+import com.example.bookstore.exceptions.BadRequestException;
+import com.example.bookstore.exceptions.GoneException;
 import com.example.bookstore.exceptions.NotFoundException;
+import com.example.bookstore.entities.BookTombstoneEntity;
 import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.respositories.BookTombstoneRepository;
+import com.example.bookstore.respositories.CartRepository;
 import com.example.bookstore.services.impls.BookServiceImpl;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.KeysetScrollPosition;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.ScrollPosition;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.domain.Window;
 import org.springframework.test.context.ActiveProfiles;
 
 import java.math.BigDecimal;
 import java.util.ArrayList;
-import java.util.Comparator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -32,6 +56,32 @@ class BookServiceTest {
     @Mock
     private BookRepository repository;
 
+    @Mock
+    private EntityManager entityManager;
+
+    @Mock
+    private CartRepository cartRepository;
+
+    @Mock
+    private ApplicationEventPublisher publisher;
+
+    @Mock
+    private BookChangeLog changeLog;
+
+    @Mock
+    private BookTombstoneRepository tombstoneRepository;
+
+    @Mock
+    private CacheManager cacheManager;
+
+    @Mock
+    private IBookIdFilterService idFilter;
+
+    @BeforeEach
+    void beforeEach() {
+        lenient().doReturn(true).when(idFilter).mightExist(any());
+    }
+
     /**
      * Given the test objects to support the tests,
      * When starting to test
@@ -121,40 +171,67 @@ class BookServiceTest {
     }
 
     /**
-     * Given some books persisted,
-     * When calling the getBooks,
-     * Then, it should return a list with all the books.
+     * Given an id the filter knows no book has,
+     * When calling the getBook and the getBookVersion methods
+     * Then, it should throw a NotFoundException without querying the database
      */
     @Test
-    void givenBooksPersisted_whenCallingGetBooks_thenReturnBooks() {
+    void givenUnknownId_whenCallingGetBook_thenThrowNotFoundExceptionWithoutQuery() {
         // given
-        List<BookEntity> list = new ArrayList<>();
+        Integer unknownId = 404;
+        doReturn(false).when(idFilter).mightExist(unknownId);
 
-        list.add(BookEntity.builder()
-                .title("title1")
-                .author("author1")
-                .price(BigDecimal.valueOf(123))
-                .build());
+        // when/then
+        NotFoundException actual = assertThrows(NotFoundException.class, () -> service.getBook(unknownId));
+        assertThrows(NotFoundException.class, () -> service.getBookVersion(unknownId));
+        assertEquals(0, actual.getStackTrace().length);
+        verifyNoInteractions(repository);
+    }
 
-        list.add(BookEntity.builder()
-                .title("title2")
-                .author("author2")
-                .price(BigDecimal.valueOf(321))
-                .build());
+    /**
+     * Given a keyset position and a page size,
+     * When calling the getBookDtos page method,
+     * Then, it should scroll the projections in the given order with the page size as limit.
+     */
+    @Test
+    void givenPositionAndSize_whenCallingGetBookDtosPage_thenReturnWindow() {
+        // given
+        KeysetScrollPosition position = ScrollPosition.forward(Map.of("id", 1));
+        BookDto dto = new BookDto(2, "title2", "author2", BigDecimal.ONE);
+        Window<BookDto> window = Window.from(List.of(dto), i -> ScrollPosition.forward(Map.of("id", 2)), false);
 
-        doReturn(list).when(repository).findAll();
+        doReturn(window).when(repository).findDtosBy(any(), eq(position), eq(Sort.by("id")), eq(Limit.of(1)));
 
         // when
-        List<BookEntity> listActual = service.getBooks();
+        Window<BookDto> actual = service.getBookDtos(new BookFilterDto(), position, Sort.by("id"), 1);
 
         // then
-        assertNotNull(list);
+        assertEquals(List.of(dto), actual.getContent());
+        assertFalse(actual.hasNext());
+    }
+
+    /**
+     * Given some books persisted,
+     * When streaming the books,
+     * Then, it should hand every book to the consumer and detach it afterwards.
+     */
+    @Test
+    void givenBooksPersisted_whenStreamingBooks_thenConsumeAndDetachEachBook() {
+        // given
+        BookEntity first = BookEntity.builder().id(1).title("title1").author("author1").price(BigDecimal.ONE).build();
+        BookEntity second = BookEntity.builder().id(2).title("title2").author("author2").price(BigDecimal.TEN).build();
+
+        doReturn(Stream.of(first, second)).when(repository).streamAll();
 
-        list.sort(Comparator.comparing(BookEntity::getTitle));
+        List<BookEntity> consumed = new ArrayList<>();
 
-        assertEquals(2, listActual.size());
-        assertEquals("title1", listActual.get(0).getTitle());
-        assertEquals("title2", listActual.get(1).getTitle());
+        // when
+        service.streamBooks(consumed::add);
+
+        // then
+        assertEquals(List.of(first, second), consumed);
+        verify(entityManager, times(1)).detach(first);
+        verify(entityManager, times(1)).detach(second);
     }
 
     /**
@@ -194,6 +271,64 @@ class BookServiceTest {
         assertEquals(toUpdate.getPrice(), actual.getPrice());
     }
 
+    /**
+     * Given a persisted book and a book to update it with,
+     * When calling updateBook method
+     * Then, it should save it with the version of the persisted book
+     */
+    @Test
+    void givenBookToUpdate_whenUpdatingBook_thenSaveWithPersistedVersion() {
+        // given
+        BookEntity saved = BookEntity.builder().id(1).title("title1").author("author1").version(5).build();
+        BookEntity toUpdate = BookEntity.builder().title("title2").author("author2").build();
+
+        doReturn(Optional.of(saved)).when(repository).findById(1);
+        doAnswer(invocation -> invocation.getArgument(0)).when(repository).save(any(BookEntity.class));
+
+        // when
+        BookEntity actual = service.updateBook(1, toUpdate);
+
+        // then
+        assertEquals(1, actual.getId());
+        assertEquals(5, actual.getVersion());
+    }
+
+    /**
+     * Given a valid and an invalid id,
+     * When calling getBookVersion method
+     * Then, it should return the version or throw not found exception
+     */
+    @Test
+    void givenIds_whenGettingBookVersion_thenReturnVersionOrThrowNotFoundException() {
+        // given
+        doReturn(Optional.of(7L)).when(repository).findVersionById(1);
+        doReturn(Optional.empty()).when(repository).findVersionById(2);
+
+        // when
+        long actual = service.getBookVersion(1);
+
+        // then
+        assertEquals(7L, actual);
+        assertThrows(NotFoundException.class, () -> service.getBookVersion(2));
+    }
+
+    /**
+     * Given a book change,
+     * When getting the catalog version
+     * Then, it should have been bumped
+     */
+    @Test
+    void givenBookChange_whenGettingCatalogVersion_thenReturnBumpedVersion() {
+        // given
+        long before = service.getCatalogVersion();
+
+        // when
+        service.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.UPDATED, 1, "title", "author", BigDecimal.ONE));
+
+        // then
+        assertEquals(before + 1, service.getCatalogVersion());
+    }
+
     /**
      * Given a Book to be updated and an invalid id,
      * When calling updateBook method
@@ -261,4 +396,172 @@ class BookServiceTest {
         verify(repository, times(1)).findById(anyInt());
         verify(repository, times(0)).deleteById(anyInt());
     }
-}
\ No newline at end of file
+
+    /**
+     * Given ids of cached, uncached and missing books, one of them repeated,
+     * When calling getBooksByIds method
+     * Then, it should load only the uncached ones in one query, cache them and return the books in the order of the ids
+     */
+    @Test
+    void givenIds_whenGettingBooksByIds_thenLoadUncachedOnesAndKeepOrder() {
+        // given
+        Cache cache = mock(Cache.class);
+        BookEntity cached = BookEntity.builder().id(3).title("cached").build();
+        BookEntity loaded = BookEntity.builder().id(1).title("loaded").build();
+
+        doReturn(cache).when(cacheManager).getCache("books");
+        doReturn(cached).when(cache).get(3, BookEntity.class);
+        doReturn(List.of(loaded)).when(repository).findAllById(List.of(1, 2));
+
+        // when
+        List<BookEntity> actual = service.getBooksByIds(List.of(3, 1, 2, 3));
+
+        // then
+        assertEquals(List.of(cached, loaded), actual);
+        verify(repository, times(1)).findAllById(List.of(1, 2));
+        verify(cache, times(1)).putIfAbsent(1, loaded);
+        verify(repository, never()).findById(anyInt());
+    }
+
+    /**
+     * Given an author,
+     * When calling deleteBooks method
+     * Then, it should delete the books of the author and their cart items in bulk and publish their ids
+     */
+    @Test
+    void givenAuthor_whenDeletingBooks_thenDeleteInBulkAndPublishIds() {
+        // given
+        doReturn(List.of(1, 2)).when(repository).findIdsByAuthor("author");
+        doReturn(2).when(repository).deleteByIdIn(List.of(1, 2));
+        doReturn(10L).when(changeLog).reserveBase(List.of(1, 2));
+
+        // when
+        int actual = service.deleteBooks(null, "author");
+
+        // then
+        assertEquals(2, actual);
+        verify(changeLog, times(1)).tombstoneAll(List.of(1, 2), 10L);
+        verify(cartRepository, times(1)).deleteItemsByBookIdIn(List.of(1, 2));
+        verify(publisher, times(1)).publishEvent(argThat((Object event) -> event instanceof BookBulkChangedEvent bulk
+                && bulk.getType() == BookChangedEvent.Type.DELETED
+                && bulk.getIds().equals(List.of(1, 2))));
+    }
+
+    /**
+     * Given ids and a price factor,
+     * When calling updateBooksPrice method
+     * Then, it should scale the prices of the distinct ids in bulk
+     */
+    @Test
+    void givenIdsAndPriceFactor_whenUpdatingBooksPrice_thenScalePricesInBulk() {
+        // given
+        BigDecimal factor = new BigDecimal("1.1");
+        doReturn(2).when(repository).scalePriceByIdIn(eq(List.of(1, 2)), eq(factor), anyLong());
+
+        // when
+        int actual = service.updateBooksPrice(List.of(1, 2, 1), null, null, factor);
+
+        // then
+        assertEquals(2, actual);
+        verify(repository, never()).updatePriceByIdIn(any(), any(), anyLong());
+        verify(publisher, times(1)).publishEvent(any(BookBulkChangedEvent.class));
+    }
+
+    /**
+     * Given an author without books,
+     * When calling updateBooksPrice method
+     * Then, it should not run any update
+     */
+    @Test
+    void givenAuthorWithoutBooks_whenUpdatingBooksPrice_thenDoNothing() {
+        // given
+        doReturn(List.of()).when(repository).findIdsByAuthor("nobody");
+
+        // when
+        int actual = service.updateBooksPrice(null, "nobody", BigDecimal.ONE, null);
+
+        // then
+        assertEquals(0, actual);
+        verify(repository, never()).updatePriceByIdIn(any(), any(), anyLong());
+        verifyNoInteractions(publisher);
+    }
+
+    /**
+     * Given ambiguous or missing filters and prices,
+     * When calling the bulk methods
+     * Then, it should throw bad request exception
+     */
+    @Test
+    void givenAmbiguousArguments_whenCallingBulkMethods_thenThrowBadRequestException() {
+        assertThrows(BadRequestException.class, () -> service.deleteBooks(null, null));
+        assertThrows(BadRequestException.class, () -> service.deleteBooks(List.of(1), "author"));
+        assertThrows(BadRequestException.class, () -> service.updateBooksPrice(List.of(1), null, null, null));
+        assertThrows(BadRequestException.class, () -> service.updateBooksPrice(List.of(1), null, BigDecimal.ONE, BigDecimal.TEN));
+    }
+
+    /**
+     * Given books and tombstones changed after a sequence,
+     * When calling getBookChanges method with a smaller size
+     * Then, it should merge them in change order and stop at the last returned change
+     */
+    @Test
+    void givenChangesBeyondSize_whenGettingBookChanges_thenMergeInOrderAndReturnHasMore() {
+        // given
+        BookEntity first = BookEntity.builder().id(1).changeSeq(11).build();
+        BookEntity third = BookEntity.builder().id(3).changeSeq(13).build();
+        BookTombstoneEntity second = new BookTombstoneEntity(2, 12);
+
+        doReturn(20L).when(changeLog).stable();
+        doReturn(List.of(first, third)).when(repository).findChanged(10, 20, Limit.of(3));
+        doReturn(List.of(second)).when(tombstoneRepository).findChanged(10, 20, Limit.of(3));
+
+        // when
+        BookDelta actual = service.getBookChanges(10, 2);
+
+        // then
+        assertEquals(List.of(first), actual.getChanged());
+        assertEquals(List.of(2), actual.getDeleted());
+        assertEquals(12, actual.getUntil());
+        assertTrue(actual.isHasMore());
+    }
+
+    /**
+     * Given every change fitting in the size,
+     * When calling getBookChanges method
+     * Then, it should return all of them up to the stable sequence
+     */
+    @Test
+    void givenChangesWithinSize_whenGettingBookChanges_thenReturnUntilStable() {
+        // given
+        BookEntity book = BookEntity.builder().id(1).changeSeq(11).build();
+
+        doReturn(20L).when(changeLog).stable();
+        doReturn(List.of(book)).when(repository).findChanged(10, 20, Limit.of(3));
+        doReturn(List.of()).when(tombstoneRepository).findChanged(10, 20, Limit.of(3));
+
+        // when
+        BookDelta actual = service.getBookChanges(10, 2);
+
+        // then
+        assertEquals(List.of(book), actual.getChanged());
+        assertTrue(actual.getDeleted().isEmpty());
+        assertEquals(20, actual.getUntil());
+        assertFalse(actual.isHasMore());
+    }
+
+    /**
+     * Given a change sequence behind the horizon of the change log,
+     * When calling getBookChanges method
+     * Then, it should throw a GoneException without reading the changes
+     */
+    @Test
+    void givenSinceBehindHorizon_whenGettingBookChanges_thenThrowGoneException() {
+        // given
+        doReturn(100L).when(changeLog).horizon();
+
+        // when/then
+        assertThrows(GoneException.class, () -> service.getBookChanges(10, 2));
+        verify(repository, never()).findChanged(anyLong(), anyLong(), any());
+        verify(tombstoneRepository, never()).findChanged(anyLong(), anyLong(), any());
+    }
+}
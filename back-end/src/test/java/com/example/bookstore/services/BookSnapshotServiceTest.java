@@ -0,0 +1,205 @@
+package com.example.bookstore.services;
+
+import com.example.bookstore.dtos.BookDto;
+import com.example.bookstore.services.impls.BookSnapshotServiceImpl;
+import com.example.bookstore.snapshots.BookSnapshot;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.context.ActiveProfiles;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("tests")
+class BookSnapshotServiceTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private IBookService bookService;
+
+    @TempDir
+    private Path directory;
+
+    private BookSnapshotServiceImpl service;
+
+    @BeforeEach
+    void beforeEach() throws IOException {
+        // disabled, so that nothing is rebuilt in the background behind the tests
+        service = new BookSnapshotServiceImpl(bookService, objectMapper, false, directory.toString(),
+                Duration.ZERO);
+    }
+
+    /**
+     * Given the catalog at some version,
+     * When rebuilding the snapshot
+     * Then, it should write the books as JSON, plain and gzipped, tagged with that version
+     */
+    @Test
+    void givenCatalog_whenRebuilding_thenWriteJsonAndGzip() throws IOException {
+        // given
+        List<BookDto> books = List.of(
+                new BookDto(1, "Germinal", "Émile Zola", new BigDecimal("10.00")),
+                new BookDto(2, "Nana", "Émile Zola", new BigDecimal("8.50")));
+        doReturn(5L).when(bookService).getCatalogVersion();
+        doReturn(books).when(bookService).getBookDtos();
+
+        // when
+        service.rebuild();
+        Optional<BookSnapshot> actual = service.getSnapshot(5L);
+
+        // then
+        assertTrue(actual.isPresent());
+        BookSnapshot snapshot = actual.get();
+        byte[] json = Files.readAllBytes(snapshot.getJson());
+        assertEquals(objectMapper.writeValueAsString(books), new String(json, StandardCharsets.UTF_8));
+        assertEquals(json.length, snapshot.getJsonLength());
+        assertEquals(Files.size(snapshot.getGzip()), snapshot.getGzipLength());
+        try (InputStream in = new GZIPInputStream(Files.newInputStream(snapshot.getGzip()))) {
+            assertArrayEquals(json, in.readAllBytes());
+        }
+    }
+
+    /**
+     * Given a snapshot of an older catalog version,
+     * When asking for the current version
+     * Then, it should return nothing
+     */
+    @Test
+    void givenOutdatedSnapshot_whenGettingCurrentVersion_thenReturnEmpty() {
+        // given
+        doReturn(5L).when(bookService).getCatalogVersion();
+        doReturn(List.of()).when(bookService).getBookDtos();
+        service.rebuild();
+
+        // when
+        Optional<BookSnapshot> actual = service.getSnapshot(6L);
+
+        // then
+        assertTrue(actual.isEmpty());
+    }
+
+    /**
+     * Given snapshots rebuilt after successive catalog changes, sent and released,
+     * When rebuilding again
+     * Then, it should keep the files of the snapshot just replaced and delete the older ones
+     */
+    @Test
+    void givenSuccessiveVersions_whenRebuilding_thenKeepOnlyLastTwoSnapshots() {
+        // given
+        doReturn(List.of()).when(bookService).getBookDtos();
+        doReturn(1L).when(bookService).getCatalogVersion();
+        service.rebuild();
+        BookSnapshot first = service.getSnapshot(1L).orElseThrow();
+        service.release(first);
+        doReturn(2L).when(bookService).getCatalogVersion();
+        service.rebuild();
+        BookSnapshot second = service.getSnapshot(2L).orElseThrow();
+        service.release(second);
+
+        // when
+        doReturn(3L).when(bookService).getCatalogVersion();
+        service.rebuild();
+
+        // then
+        assertFalse(Files.exists(first.getJson()));
+        assertFalse(Files.exists(first.getGzip()));
+        assertTrue(Files.exists(second.getJson()));
+        assertTrue(Files.exists(second.getGzip()));
+        assertTrue(service.getSnapshot(3L).isPresent());
+    }
+
+    /**
+     * Given a snapshot released right after being handed over to the connector, and replaced
+     * When rebuilding again within the grace period
+     * Then, it should keep its files for the connector to send them
+     */
+    @Test
+    void givenSnapshotRetiredRecently_whenRebuilding_thenKeepItForGracePeriod() throws IOException {
+        // given
+        service = new BookSnapshotServiceImpl(bookService, objectMapper, false, directory.toString(),
+                Duration.ofHours(1));
+        doReturn(List.of()).when(bookService).getBookDtos();
+        doReturn(1L).when(bookService).getCatalogVersion();
+        service.rebuild();
+        BookSnapshot handedOver = service.getSnapshot(1L).orElseThrow();
+        service.release(handedOver);
+        doReturn(2L).when(bookService).getCatalogVersion();
+        service.rebuild();
+
+        // when
+        doReturn(3L).when(bookService).getCatalogVersion();
+        service.rebuild();
+
+        // then
+        assertTrue(Files.exists(handedOver.getJson()));
+        assertTrue(Files.exists(handedOver.getGzip()));
+    }
+
+    /**
+     * Given a snapshot of the current catalog version,
+     * When rebuilding again
+     * Then, it should not load the books again
+     */
+    @Test
+    void givenCurrentSnapshot_whenRebuilding_thenSkip() {
+        // given
+        doReturn(5L).when(bookService).getCatalogVersion();
+        doReturn(List.of()).when(bookService).getBookDtos();
+        service.rebuild();
+
+        // when
+        service.rebuild();
+
+        // then
+        verify(bookService, times(1)).getBookDtos();
+    }
+
+    /**
+     * Given a snapshot still being sent while the catalog changes twice,
+     * When rebuilding again once it is released
+     * Then, it should keep its files as long as it is held, then delete them
+     */
+    @Test
+    void givenSnapshotBeingSent_whenRebuilding_thenKeepItUntilReleased() {
+        // given
+        doReturn(List.of()).when(bookService).getBookDtos();
+        doReturn(1L).when(bookService).getCatalogVersion();
+        service.rebuild();
+        BookSnapshot sending = service.getSnapshot(1L).orElseThrow();
+
+        doReturn(2L).when(bookService).getCatalogVersion();
+        service.rebuild();
+        doReturn(3L).when(bookService).getCatalogVersion();
+        service.rebuild();
+        assertTrue(Files.exists(sending.getJson()));
+        assertTrue(Files.exists(sending.getGzip()));
+
+        // when
+        service.release(sending);
+        doReturn(4L).when(bookService).getCatalogVersion();
+        service.rebuild();
+
+        // then
+        assertFalse(Files.exists(sending.getJson()));
+        assertFalse(Files.exists(sending.getGzip()));
+        assertFalse(sending.retain());
+    }
+}
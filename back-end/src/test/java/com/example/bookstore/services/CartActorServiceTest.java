@@ -0,0 +1,310 @@
+package com.example.bookstore.services;
+
+import com.example.bookstore.dtos.CartOperationDto;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.entities.CartEntity;
+import com.example.bookstore.entities.UserEntity;
+import com.example.bookstore.exceptions.NotFoundException;
+import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.respositories.CartRepository;
+import com.example.bookstore.respositories.UserRepository;
+import com.example.bookstore.services.impls.CartActorServiceImpl;
+import com.example.bookstore.services.impls.CartServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("tests")
+class CartActorServiceTest {
+
+    private CartActorServiceImpl service;
+
+    @Mock
+    private CartRepository repository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private IBookIdFilterService bookIdFilter;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * The carts as stored, per username.
+     */
+    private final Map<String, CartEntity> stored = new ConcurrentHashMap<>();
+
+    /**
+     * Holds the cart of the user "busy" while being read, and with it the only thread of the service.
+     */
+    private final CountDownLatch busy = new CountDownLatch(1);
+
+    private final BookEntity first = BookEntity.builder().id(1).title("first").price(BigDecimal.ONE).build();
+
+    private final BookEntity second = BookEntity.builder().id(2).title("second").price(BigDecimal.TEN).build();
+
+    @BeforeEach
+    void beforeEach() {
+        service = new CartActorServiceImpl(cartService(), transactionManager, 1, 100,
+                Duration.ofSeconds(10));
+
+        lenient().doReturn(true).when(bookIdFilter).mightExist(any());
+        lenient().doAnswer(invocation -> Optional.of(UserEntity.builder().username(invocation.getArgument(0)).build()))
+                .when(userRepository).findById(any());
+        lenient().doAnswer(invocation -> {
+            String username = invocation.getArgument(0);
+            if ("busy".equals(username)) {
+                busy.await();
+            }
+            return Optional.ofNullable(stored.get(username));
+        }).when(repository).findByUserUsername(any());
+        lenient().doAnswer(invocation -> {
+            CartEntity cart = invocation.getArgument(0);
+            stored.put(cart.getUser().getUsername(), cart);
+            return cart;
+        }).when(repository).save(any());
+        lenient().doAnswer(invocation -> List.of(first, second).stream()
+                        .filter(book -> invocation.<List<Integer>>getArgument(0).contains(book.getId()))
+                        .toList())
+                .when(bookRepository).findAllById(any());
+        lenient().doAnswer(invocation -> List.of(first, second).stream()
+                        .filter(book -> book.getId().equals(invocation.getArgument(0)))
+                        .findFirst())
+                .when(bookRepository).findById(any());
+    }
+
+    @AfterEach
+    void afterEach() throws InterruptedException {
+        busy.countDown();
+        service.shutdown();
+    }
+
+    /**
+     * Given operations queued on a cart while the service is busy
+     * When the service gets to the cart
+     * Then, it should apply them in order in one transaction and answer each of them with the cart written
+     */
+    @Test
+    void givenOperationsQueuedMeanwhile_whenProcessing_thenWriteThemAtOnce() throws Exception {
+        // given
+        CompletableFuture<CartEntity> blocker = CompletableFuture.supplyAsync(() -> service.getCart("busy"));
+        verify(repository, timeout(10_000)).findByUserUsername("busy");
+        CompletableFuture<CartEntity> add = CompletableFuture.supplyAsync(() -> service.addItem("user", 1, 2));
+        queued("user", 1);
+        CompletableFuture<CartEntity> set = CompletableFuture.supplyAsync(() -> service.updateItems("user", List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.SET).bookId(1).quantity(5).build(),
+                CartOperationDto.builder().op(CartOperationDto.Type.ADD).bookId(2).quantity(1).build())));
+        queued("user", 2);
+
+        // when
+        busy.countDown();
+
+        // then
+        blocker.get(10, TimeUnit.SECONDS);
+        assertSame(add.get(10, TimeUnit.SECONDS), set.get(10, TimeUnit.SECONDS));
+        assertEquals(List.of("first:5", "second:1"), lines(stored.get("user")));
+        verify(transactionManager, times(1)).commit(any());
+        verify(bookRepository, times(1)).findAllById(List.of(1, 2));
+    }
+
+    /**
+     * Given operations queued together, one of them adding a book which does not exist
+     * When the service gets to the cart
+     * Then, it should reject that one only, running the others on their own
+     */
+    @Test
+    void givenFaultyOperationQueuedWithOthers_whenProcessing_thenRejectItOnly() throws Exception {
+        // given
+        CompletableFuture<CartEntity> blocker = CompletableFuture.supplyAsync(() -> service.getCart("busy"));
+        verify(repository, timeout(10_000)).findByUserUsername("busy");
+        CompletableFuture<CartEntity> good = CompletableFuture.supplyAsync(() -> service.addItem("user", 1, 1));
+        queued("user", 1);
+        CompletableFuture<CartEntity> faulty = CompletableFuture.supplyAsync(() -> service.addItem("user", 404, 1));
+        queued("user", 2);
+
+        // when
+        busy.countDown();
+
+        // then
+        blocker.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("first:1"), lines(good.get(10, TimeUnit.SECONDS)));
+        CompletionException thrown = assertThrows(CompletionException.class, faulty::join);
+        assertInstanceOf(NotFoundException.class, thrown.getCause());
+        assertEquals(List.of("first:1"), lines(stored.get("user")));
+        verify(bookRepository, times(1)).findAllById(List.of(1, 404));
+    }
+
+    /**
+     * Given a cart holding a book, and the service busy
+     * When removing the book
+     * Then, it should queue the removal and apply it in turn
+     */
+    @Test
+    void givenBusyService_whenDeletingItem_thenQueueIt() throws Exception {
+        // given
+        service.addItem("user", 1, 2);
+        CompletableFuture<CartEntity> blocker = CompletableFuture.supplyAsync(() -> service.getCart("busy"));
+        verify(repository, timeout(10_000)).findByUserUsername("busy");
+
+        // when
+        CompletableFuture<CartEntity> delete = CompletableFuture.supplyAsync(() -> service.deleteItem("user", 1));
+        queued("user", 1);
+        busy.countDown();
+
+        // then
+        blocker.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of(), lines(delete.get(10, TimeUnit.SECONDS)));
+        assertEquals(List.of(), lines(stored.get("user")));
+    }
+
+    /**
+     * Given a book which does not exist
+     * When removing it from a cart
+     * Then, it should throw a NotFoundException without queueing anything
+     */
+    @Test
+    void givenUnknownBook_whenDeletingItem_thenThrowNotFoundException() {
+        // when/then
+        assertThrows(NotFoundException.class, () -> service.deleteItem("user", 404));
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(service, "mailboxes")).isEmpty());
+        verify(repository, never()).findByUserUsername(any());
+    }
+
+    /**
+     * Given a user without a cart
+     * When only removing books from it
+     * Then, it should answer an empty cart without creating it
+     */
+    @Test
+    void givenNoCart_whenOnlyRemoving_thenDoNotCreateCart() {
+        // when
+        CartEntity cart = service.updateItems("user", List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.REMOVE).bookId(1).build()));
+
+        // then
+        assertEquals(List.of(), lines(cart));
+        assertNull(cart.getId());
+        assertFalse(stored.containsKey("user"));
+        verify(repository, never()).save(any());
+    }
+
+    /**
+     * Given a command queued behind a cart busy for longer than the timeout
+     * When the caller gives up waiting
+     * Then, it should be answered with a concurrency failure, as the command holding the cart, and the command
+     * skipped once the cart is free
+     */
+    @Test
+    void givenBusyCart_whenTimingOut_thenFailAndSkipCommand() throws Exception {
+        // given
+        service.shutdown();
+        service = new CartActorServiceImpl(cartService(), transactionManager, 1, 100,
+                Duration.ofMillis(100));
+        CompletableFuture<CartEntity> blocker = CompletableFuture.supplyAsync(() -> service.getCart("busy"));
+        verify(repository, timeout(10_000)).findByUserUsername("busy");
+
+        // when
+        assertThrows(ConcurrencyFailureException.class, () -> service.addItem("busy", 1, 1));
+        busy.countDown();
+
+        // then
+        ExecutionException thrown = assertThrows(ExecutionException.class, () -> blocker.get(10, TimeUnit.SECONDS));
+        assertInstanceOf(ConcurrencyFailureException.class, thrown.getCause());
+        assertEquals(List.of("first:1"), lines(service.addItem("user", 1, 1)));
+        assertFalse(stored.containsKey("busy"));
+    }
+
+    /**
+     * Given a service shut down
+     * When queueing an operation
+     * Then, it should fail at once rather than wait for a run which never comes, and the next one as well
+     */
+    @Test
+    void givenShutDown_whenQueueing_thenFailAtOnce() throws Exception {
+        // given
+        busy.countDown();
+        service.shutdown();
+
+        // when/then
+        assertThrows(RejectedExecutionException.class, () -> service.addItem("user", 1, 1));
+        assertThrows(RejectedExecutionException.class, () -> service.getCart("user"));
+        assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(service, "mailboxes")).isEmpty());
+    }
+
+    /**
+     * Given a run failing with an error
+     * When queueing operations on the cart
+     * Then, it should fail the command of that run only, and go on with the next ones
+     */
+    @Test
+    void givenErrorInRun_whenQueueing_thenFailItsCommandOnly() {
+        // given
+        doThrow(new StackOverflowError()).doAnswer(invocation -> Optional.ofNullable(stored.get("broken")))
+                .when(repository).findByUserUsername("broken");
+
+        // when/then
+        assertThrows(StackOverflowError.class, () -> service.getCart("broken"));
+        assertEquals(List.of("first:2"), lines(service.addItem("broken", 1, 2)));
+    }
+
+    /**
+     * Waits until the given number of commands are queued for the user.
+     */
+    private void queued(String username, int count) throws InterruptedException {
+        Map<?, ?> mailboxes = (Map<?, ?>) ReflectionTestUtils.getField(service, "mailboxes");
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            Object mailbox = mailboxes.get(username);
+            if (mailbox != null && ((Collection<?>) ReflectionTestUtils.getField(mailbox, "queue")).size() >= count) {
+                return;
+            }
+            Thread.sleep(1);
+        }
+        fail("Commands not queued for " + username);
+    }
+
+    private CartServiceImpl cartService() {
+        CartServiceImpl cartService = new CartServiceImpl(repository, userRepository, bookRepository, bookIdFilter,
+                transactionManager);
+        ReflectionTestUtils.setField(cartService, "maxAttempts", 1);
+        ReflectionTestUtils.setField(cartService, "backoff", Duration.ofMillis(1));
+        return cartService;
+    }
+
+    private static List<String> lines(CartEntity cart) {
+        return cart.getItems().values().stream()
+                .map(item -> item.getBook().getTitle() + ":" + item.getQuantity())
+                .toList();
+    }
+}
@@ -1,22 +1,33 @@
 package com.example.bookstore.services;
 
+import com.example.bookstore.dtos.CartOperationDto;
 import com.example.bookstore.entities.BookEntity;
 import com.example.bookstore.entities.CartEntity;
 import com.example.bookstore.entities.CartItemEntity;
 import com.example.bookstore.entities.UserEntity;
+import com.example.bookstore.exceptions.BadRequestException;
 import com.example.bookstore.exceptions.NotFoundException;
 import com.example.bookstore.respositories.BookRepository;
 import com.example.bookstore.respositories.CartRepository;
 import com.example.bookstore.respositories.UserRepository;
 import com.example.bookstore.services.impls.CartServiceImpl;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.ConcurrencyFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -39,6 +50,19 @@ class CartServiceTest {
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private IBookIdFilterService bookIdFilter;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void beforeEach() {
+        ReflectionTestUtils.setField(service, "maxAttempts", 3);
+        ReflectionTestUtils.setField(service, "backoff", Duration.ofMillis(1));
+        lenient().doReturn(true).when(bookIdFilter).mightExist(any());
+    }
+
     /**
      * Given the test objects to support the tests,
      * When starting to test
@@ -64,6 +88,7 @@ class CartServiceTest {
         Integer bookId = 1;
         Integer quantity = 2;
 
+        doReturn(Optional.of(BookEntity.builder().id(bookId).build())).when(bookRepository).findById(bookId);
         doReturn(Optional.empty()).when(userRepository).findById(anyString());
 
         // when/then
@@ -82,22 +107,29 @@ class CartServiceTest {
         Integer bookId = 1;
         Integer quantity = 2;
 
-        UserEntity userEntity = UserEntity.builder()
-                .username(username)
-                .password("password")
-                .role("ROLE_USER")
-                .build();
-
-        CartEntity entity = CartEntity.builder()
-                .user(userEntity)
-                .build();
-
-        doReturn(Optional.of(userEntity)).when(userRepository).findById(anyString());
-        doReturn(Optional.of(entity)).when(repository).findByUser(any(UserEntity.class));
         doReturn(Optional.empty()).when(bookRepository).findById(anyInt());
 
         // when/then
         assertThrows(NotFoundException.class, () -> service.addItem(username, bookId, quantity));
+        verifyNoInteractions(repository);
+    }
+
+    /**
+     * Given a book id the filter knows no book has
+     * When adding item into the cart
+     * Then, it should throw a NotFoundException without looking the book up
+     */
+    @Test
+    void givenUnknownBookId_whenAddingItems_thenThrowNotFoundExceptionWithoutQuery() {
+        // given
+        String username = "user";
+        Integer bookId = 404;
+
+        doReturn(false).when(bookIdFilter).mightExist(bookId);
+
+        // when/then
+        assertThrows(NotFoundException.class, () -> service.addItem(username, bookId, 1));
+        verifyNoInteractions(bookRepository, repository, userRepository);
     }
 
     /**
@@ -126,7 +158,7 @@ class CartServiceTest {
                 .build();
 
         doReturn(Optional.of(userEntity)).when(userRepository).findById(anyString());
-        doReturn(Optional.empty()).when(repository).findByUser(any(UserEntity.class));
+        doReturn(Optional.empty()).when(repository).findByUserUsername(anyString());
         doAnswer(invocationOnMock -> {
             CartEntity arg = invocationOnMock.getArgument(0);
             arg.setId(1);
@@ -141,8 +173,8 @@ class CartServiceTest {
         assertNotNull(actual);
         assertEquals(userEntity.getUsername(), actual.getUser().getUsername());
         assertEquals(1, actual.getItems().size());
-        assertEquals(quantity, actual.getItems().get(0).getQuantity());
-        assertEquals(bookEntity.getTitle(), actual.getItems().get(0).getBook().getTitle());
+        assertEquals(quantity, actual.getItems().get(bookEntity.getId()).getQuantity());
+        assertEquals(bookEntity.getTitle(), actual.getItems().get(bookEntity.getId()).getBook().getTitle());
     }
 
     /**
@@ -182,8 +214,7 @@ class CartServiceTest {
 
         cartEntity.addItem(cartItemEntity);
 
-        doReturn(Optional.of(userEntity)).when(userRepository).findById(anyString());
-        doReturn(Optional.of(cartEntity)).when(repository).findByUser(any(UserEntity.class));
+        doReturn(Optional.of(cartEntity)).when(repository).findByUserUsername(anyString());
         doReturn(Optional.of(bookEntity)).when(bookRepository).findById(anyInt());
         doAnswer(invocationOnMock -> {
             CartEntity arg = invocationOnMock.getArgument(0);
@@ -199,8 +230,8 @@ class CartServiceTest {
         assertNotNull(actual);
         assertEquals(userEntity.getUsername(), actual.getUser().getUsername());
         assertEquals(cartEntity.getItems().size(), actual.getItems().size());
-        assertEquals(quantityAlreadyAdded + quantity, actual.getItems().get(0).getQuantity());
-        assertEquals(bookEntity.getTitle(), actual.getItems().get(0).getBook().getTitle());
+        assertEquals(quantityAlreadyAdded + quantity, actual.getItems().get(bookEntity.getId()).getQuantity());
+        assertEquals(bookEntity.getTitle(), actual.getItems().get(bookEntity.getId()).getBook().getTitle());
     }
 
     /**
@@ -239,8 +270,7 @@ class CartServiceTest {
 
         cartEntity.addItem(cartItemEntity);
 
-        doReturn(Optional.of(userEntity)).when(userRepository).findById(anyString());
-        doReturn(Optional.of(cartEntity)).when(repository).findByUser(any(UserEntity.class));
+        doReturn(Optional.of(cartEntity)).when(repository).findByUserUsername(anyString());
         doReturn(Optional.of(bookEntity)).when(bookRepository).findById(anyInt());
         doAnswer(invocationOnMock -> {
             CartEntity arg = invocationOnMock.getArgument(0);
@@ -294,8 +324,7 @@ class CartServiceTest {
 
         cartEntity.addItem(cartItemEntity);
 
-        doReturn(Optional.of(userEntity)).when(userRepository).findById(anyString());
-        doReturn(Optional.of(cartEntity)).when(repository).findByUser(any(UserEntity.class));
+        doReturn(Optional.of(cartEntity)).when(repository).findByUserUsername(anyString());
         doReturn(Optional.of(bookEntity)).when(bookRepository).findById(anyInt());
         doAnswer(invocationOnMock -> {
             CartEntity arg = invocationOnMock.getArgument(0);
@@ -311,8 +340,8 @@ class CartServiceTest {
         assertNotNull(actual);
         assertEquals(userEntity.getUsername(), actual.getUser().getUsername());
         assertEquals(cartEntity.getItems().size(), actual.getItems().size());
-        assertEquals(quantityAlreadyAdded, actual.getItems().get(0).getQuantity());
-        assertEquals(bookEntity.getTitle(), actual.getItems().get(0).getBook().getTitle());
+        assertEquals(quantityAlreadyAdded, actual.getItems().get(bookEntity.getId()).getQuantity());
+        assertEquals(bookEntity.getTitle(), actual.getItems().get(bookEntity.getId()).getBook().getTitle());
     }
 
     /**
@@ -350,8 +379,7 @@ class CartServiceTest {
 
         cartEntity.addItem(cartItemEntity);
 
-        doReturn(Optional.of(userEntity)).when(userRepository).findById(anyString());
-        doReturn(Optional.of(cartEntity)).when(repository).findByUser(any(UserEntity.class));
+        doReturn(Optional.of(cartEntity)).when(repository).findByUserUsername(anyString());
 
 
         // when
@@ -361,43 +389,383 @@ class CartServiceTest {
         assertNotNull(actual);
         assertEquals(userEntity.getUsername(), actual.getUser().getUsername());
         assertEquals(cartEntity.getItems().size(), actual.getItems().size());
-        assertEquals(quantityAlreadyAdded, actual.getItems().get(0).getQuantity());
-        assertEquals(bookEntity.getTitle(), actual.getItems().get(0).getBook().getTitle());
+        assertEquals(quantityAlreadyAdded, actual.getItems().get(bookEntity.getId()).getQuantity());
+        assertEquals(bookEntity.getTitle(), actual.getItems().get(bookEntity.getId()).getBook().getTitle());
     }
 
 
     /**
      * Given a not yet created cart for a user
      * When getting the cart
-     * Then, return a new cart without items
+     * Then, return an empty cart without storing it
      */
     @Test
     void givenNotYetCreatedCart_whenGettingCart_thenReturnNewCart() {
         // given
         String username = "user";
 
-        UserEntity userEntity = UserEntity.builder()
-                .username(username)
-                .password("password")
-                .role("ROLE_USER")
-                .build();
-
-
-        doReturn(Optional.of(userEntity)).when(userRepository).findById(anyString());
-        doReturn(Optional.empty()).when(repository).findByUser(any(UserEntity.class));
-        doAnswer(invocationOnMock -> {
-            CartEntity arg = invocationOnMock.getArgument(0);
-            arg.setId(1);
-            return arg;
-        }).when(repository).save(any(CartEntity.class));
+        doReturn(Optional.empty()).when(repository).findByUserUsername(anyString());
 
         // when
         CartEntity actual = service.getCart(username);
 
         // then
         assertNotNull(actual);
-        assertEquals(userEntity.getUsername(), actual.getUser().getUsername());
+        assertNull(actual.getId());
+        assertEquals(username, actual.getUser().getUsername());
         assertEquals(0, actual.getItems().size());
+        verify(repository, never()).save(any());
+        verifyNoInteractions(userRepository);
+    }
+
+    /**
+     * Given a cart holding two books and operations adding, setting and removing books
+     * When updating the items
+     * Then, it should load all the books added at once, apply the operations in order and save the cart once
+     */
+    @Test
+    void givenOperations_whenUpdatingItems_thenApplyThemInOrderAndSaveOnce() {
+        // given
+        UserEntity userEntity = UserEntity.builder().username("user").build();
+        BookEntity first = BookEntity.builder().id(1).title("first").price(BigDecimal.ONE).build();
+        BookEntity second = BookEntity.builder().id(2).title("second").price(BigDecimal.ONE).build();
+        BookEntity third = BookEntity.builder().id(3).title("third").price(BigDecimal.ONE).build();
+
+        CartEntity cartEntity = CartEntity.builder().user(userEntity).build();
+        cartEntity.addItem(CartItemEntity.builder().book(first).quantity(1).build());
+        cartEntity.addItem(CartItemEntity.builder().book(second).quantity(5).build());
+
+        doReturn(Optional.of(cartEntity)).when(repository).findByUserUsername("user");
+        doReturn(List.of(first, third)).when(bookRepository).findAllById(List.of(1, 3));
+        doAnswer(invocation -> invocation.getArgument(0)).when(repository).save(any(CartEntity.class));
+
+        List<CartOperationDto> operations = List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.ADD).bookId(1).quantity(2).build(),
+                CartOperationDto.builder().op(CartOperationDto.Type.REMOVE).bookId(2).build(),
+                CartOperationDto.builder().op(CartOperationDto.Type.ADD).bookId(3).quantity(1).build(),
+                CartOperationDto.builder().op(CartOperationDto.Type.SET).bookId(3).quantity(4).build(),
+                CartOperationDto.builder().op(CartOperationDto.Type.REMOVE).bookId(9).build());
+
+        // when
+        CartEntity actual = service.updateItems("user", operations);
+
+        // then
+        assertEquals(List.of("first:3", "third:4"), actual.getItems().values().stream()
+                .map(item -> item.getBook().getTitle() + ":" + item.getQuantity())
+                .toList());
+        verify(bookRepository, times(1)).findAllById(any());
+        verify(bookRepository, never()).findById(any());
+        verify(repository, times(1)).save(cartEntity);
+    }
+
+    /**
+     * Given operations adding an unknown book or without a quantity
+     * When updating the items
+     * Then, it should reject the whole batch without saving the cart
+     */
+    @Test
+    void givenUnknownBookOrMissingQuantity_whenUpdatingItems_thenRejectBatch() {
+        // given
+        UserEntity userEntity = UserEntity.builder().username("user").build();
+        BookEntity first = BookEntity.builder().id(1).title("first").price(BigDecimal.ONE).build();
+
+        doReturn(Optional.of(CartEntity.builder().user(userEntity).build()))
+                .when(repository).findByUserUsername("user");
+        doReturn(List.of(first)).when(bookRepository).findAllById(List.of(1, 404));
+
+        List<CartOperationDto> unknown = List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.ADD).bookId(1).quantity(1).build(),
+                CartOperationDto.builder().op(CartOperationDto.Type.SET).bookId(404).quantity(1).build());
+        List<CartOperationDto> noQuantity = List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.ADD).bookId(1).build());
+
+        // when/then
+        assertThrows(NotFoundException.class, () -> service.updateItems("user", unknown));
+        assertThrows(BadRequestException.class, () -> service.updateItems("user", noQuantity));
+        verify(repository, never()).save(any());
+    }
+
+    /**
+     * Given a cart changed concurrently once
+     * When adding an item
+     * Then, it should read the cart again and retry in a new transaction
+     */
+    @Test
+    void givenConcurrentChange_whenAddingItems_thenRetryFromFreshCart() {
+        // given
+        UserEntity userEntity = UserEntity.builder().username("user").build();
+        BookEntity bookEntity = BookEntity.builder().id(1).title("title").price(BigDecimal.ONE).build();
+
+        doAnswer(invocation -> Optional.of(CartEntity.builder().user(userEntity).build()))
+                .when(repository).findByUserUsername("user");
+        doReturn(Optional.of(bookEntity)).when(bookRepository).findById(1);
+        doThrow(new ObjectOptimisticLockingFailureException(CartEntity.class, 1))
+                .doAnswer(invocation -> invocation.getArgument(0))
+                .when(repository).save(any(CartEntity.class));
+
+        // when
+        CartEntity actual = service.addItem("user", 1, 1);
+
+        // then
+        assertEquals(1, actual.getItems().get(1).getQuantity());
+        verify(repository, times(2)).findByUserUsername("user");
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
+    }
+
+    /**
+     * Given a cart changed concurrently at every attempt
+     * When updating the items
+     * Then, it should give up with the conflict once the attempts are spent
+     */
+    @Test
+    void givenConcurrentChangeEveryTime_whenUpdatingItems_thenThrowConflictAfterMaxAttempts() {
+        // given
+        UserEntity userEntity = UserEntity.builder().username("user").build();
+
+        doAnswer(invocation -> Optional.of(CartEntity.builder().user(userEntity).build()))
+                .when(repository).findByUserUsername("user");
+        doThrow(new ObjectOptimisticLockingFailureException(CartEntity.class, 1))
+                .when(repository).save(any(CartEntity.class));
+
+        List<CartOperationDto> operations = List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.REMOVE).bookId(1).build());
+
+        // when/then
+        assertThrows(ObjectOptimisticLockingFailureException.class, () -> service.updateItems("user", operations));
+        verify(repository, times(3)).save(any(CartEntity.class));
+        verify(transactionManager, times(3)).rollback(any());
+    }
+
+    /**
+     * Given a cart created concurrently by another change of the user
+     * When updating the items
+     * Then, it should retry on the violation of the unique user of the carts, then update the cart created
+     */
+    @Test
+    void givenCartCreatedConcurrently_whenUpdatingItems_thenRetryOnUniqueUser() {
+        // given
+        UserEntity userEntity = UserEntity.builder().username("user").build();
+        CartEntity created = CartEntity.builder().user(userEntity).build();
+        BookEntity book = BookEntity.builder().id(1).title("first").price(BigDecimal.ONE).build();
+
+        doReturn(Optional.empty()).doReturn(Optional.of(created)).when(repository).findByUserUsername("user");
+        doReturn(Optional.of(userEntity)).when(userRepository).findById("user");
+        doReturn(List.of(book)).when(bookRepository).findAllById(List.of(1));
+        doThrow(violation("Unique index or primary key violation: \"PUBLIC.UK_CARTS_USERNAME_INDEX_3 ON"
+                + " PUBLIC.CARTS(USERNAME NULLS FIRST) VALUES ( /* 1 */ 'user' )\"", "23505"))
+                .doAnswer(invocation -> invocation.getArgument(0))
+                .when(repository).save(any(CartEntity.class));
+
+        List<CartOperationDto> operations = List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.ADD).bookId(1).quantity(1).build());
+
+        // when
+        CartEntity actual = service.updateItems("user", operations);
+
+        // then
+        assertSame(created, actual);
+        verify(transactionManager, times(1)).rollback(any());
+        verify(transactionManager, times(1)).commit(any());
     }
 
+    /**
+     * Given a change violating a constraint which no concurrent change explains
+     * When updating the items
+     * Then, it should throw the violation at once, without retrying
+     */
+    @Test
+    void givenOtherViolation_whenUpdatingItems_thenThrowItWithoutRetrying() {
+        // given
+        UserEntity userEntity = UserEntity.builder().username("user").build();
+
+        doReturn(Optional.of(CartEntity.builder().user(userEntity).build()))
+                .when(repository).findByUserUsername("user");
+        doThrow(violation("NULL not allowed for column \"QUANTITY\"", "23502"))
+                .when(repository).save(any(CartEntity.class));
+
+        List<CartOperationDto> operations = List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.REMOVE).bookId(1).build());
+
+        // when/then
+        assertThrows(DataIntegrityViolationException.class, () -> service.updateItems("user", operations));
+        verify(repository, times(1)).save(any(CartEntity.class));
+    }
+
+    /**
+     * Given carts created concurrently at every attempt
+     * When updating the items
+     * Then, it should give up with a concurrency failure once the attempts are spent
+     */
+    @Test
+    void givenCartCreatedConcurrentlyEveryTime_whenUpdatingItems_thenThrowConcurrencyFailure() {
+        // given
+        doReturn(Optional.of(UserEntity.builder().username("user").build())).when(userRepository).findById("user");
+        doThrow(violation("duplicate key value violates unique constraint \"uk_carts_username\"", "23505"))
+                .when(repository).save(any(CartEntity.class));
+
+        List<CartOperationDto> operations = List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.ADD).bookId(1).quantity(1).build());
+
+        // when/then
+        assertThrows(ConcurrencyFailureException.class, () -> service.updateItems("user", operations));
+        verify(repository, times(3)).save(any(CartEntity.class));
+    }
+
+    /**
+     * Given a user without a cart
+     * When only removing books from it
+     * Then, it should return an empty cart without creating it
+     */
+    @Test
+    void givenNoCart_whenOnlyRemovingItems_thenDoNotCreateCart() {
+        // given
+        doReturn(Optional.empty()).when(repository).findByUserUsername("user");
+
+        List<CartOperationDto> operations = List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.REMOVE).bookId(1).build());
+
+        // when
+        CartEntity actual = service.updateItems("user", operations);
+
+        // then
+        assertTrue(actual.getItems().isEmpty());
+        verify(userRepository, never()).findById(any());
+        verify(repository, never()).save(any(CartEntity.class));
+    }
+
+    /**
+     * Given a cart already created
+     * When adding item into the cart
+     * Then, it should check the book, upsert the line and read the cart back, without loading the user
+     */
+    @Test
+    void givenCreatedCart_whenAddingItems_thenUpsertLineAndReadCartBack() {
+        // given
+        UserEntity userEntity = UserEntity.builder().username("user").build();
+        CartEntity cartEntity = CartEntity.builder().user(userEntity).build();
+
+        doReturn(Optional.of(BookEntity.builder().id(1).build())).when(bookRepository).findById(1);
+        doReturn(1).when(repository).upsertItem("user", 1, 2);
+        doReturn(Optional.of(cartEntity)).when(repository).findByUserUsername("user");
+
+        // when
+        CartEntity actual = service.addItem("user", 1, 2);
+
+        // then
+        assertSame(cartEntity, actual);
+        verify(repository, never()).save(any());
+        verify(userRepository, never()).findById(any());
+        verify(bookRepository, times(1)).findById(1);
+    }
+
+    /**
+     * Given a book which the id filter still lets through but which was deleted
+     * When adding item into the cart
+     * Then, it should throw a NotFoundException without upserting nor retrying
+     */
+    @Test
+    void givenDeletedBook_whenAddingItems_thenThrowNotFoundExceptionWithoutUpsert() {
+        // given
+        doReturn(Optional.empty()).when(bookRepository).findById(1);
+
+        // when/then
+        assertThrows(NotFoundException.class, () -> service.addItem("user", 1, 2));
+        verify(repository, never()).upsertItem(any(), any(), any());
+        verify(transactionManager, times(1)).rollback(any());
+    }
+
+    /**
+     * Given a book deleted between its check and the upsert of the line
+     * When adding item into the cart
+     * Then, it should turn the violation of the book foreign key into a NotFoundException, without retrying
+     */
+    @Test
+    void givenBookDeletedMeanwhile_whenAddingItems_thenThrowNotFoundExceptionWithoutRetrying() {
+        // given
+        doReturn(Optional.of(BookEntity.builder().id(1).build())).when(bookRepository).findById(1);
+        doThrow(violation("Referential integrity constraint violation: \"FK_CART_ITEMS_BOOK: PUBLIC.CART_ITEMS"
+                + " FOREIGN KEY(BOOK_ID) REFERENCES PUBLIC.BOOKS(ID) (1)\"", "23506"))
+                .when(repository).upsertItem("user", 1, 2);
+
+        // when/then
+        assertThrows(NotFoundException.class, () -> service.addItem("user", 1, 2));
+        verify(repository, times(1)).upsertItem("user", 1, 2);
+        verify(transactionManager, times(1)).rollback(any());
+    }
+
+    /**
+     * Given a cart already created
+     * When getting the cart, removing an item or updating the items
+     * Then, it should read the cart by the username alone, without looking the user up
+     */
+    @Test
+    void givenCreatedCart_whenUsingCart_thenReadItByUsernameWithoutLoadingUser() {
+        // given
+        UserEntity userEntity = UserEntity.builder().username("user").build();
+        BookEntity bookEntity = BookEntity.builder().id(1).title("title").price(BigDecimal.ONE).build();
+
+        doAnswer(invocation -> Optional.of(CartEntity.builder().user(userEntity).build()))
+                .when(repository).findByUserUsername("user");
+        doReturn(Optional.of(bookEntity)).when(bookRepository).findById(1);
+        doAnswer(invocation -> invocation.getArgument(0)).when(repository).save(any(CartEntity.class));
+
+        List<CartOperationDto> operations = List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.REMOVE).bookId(1).build());
+
+        // when
+        service.getCart("user");
+        service.deleteItem("user", 1);
+        service.updateItems("user", operations);
+
+        // then
+        verify(repository, times(3)).findByUserUsername("user");
+        verifyNoInteractions(userRepository);
+    }
+
+    /**
+     * Given a not yet created cart for a user
+     * When checking out
+     * Then, it should answer an empty cart, the cart being created by its first change only
+     */
+    @Test
+    void givenNotYetCreatedCart_whenCheckingOut_thenReturnEmptyCartWithoutStoringIt() {
+        // given
+        doReturn(Optional.empty()).when(repository).findByUserUsername("user");
+
+        // when
+        CartEntity actual = service.checkout("user");
+
+        // then
+        assertTrue(actual.getItems().isEmpty());
+        verify(repository, never()).save(any());
+    }
+
+    /**
+     * Given a not yet created cart for a user
+     * When deleting a book from the cart
+     * Then, it should answer an empty cart, removing alone not creating it
+     */
+    @Test
+    void givenNotYetCreatedCart_whenDeletingBookFromCart_thenReturnEmptyCartWithoutStoringIt() {
+        // given
+        BookEntity bookEntity = BookEntity.builder().id(1).title("title").author("author").price(BigDecimal.TEN).build();
+
+        doReturn(Optional.empty()).when(repository).findByUserUsername("user");
+        doReturn(Optional.of(bookEntity)).when(bookRepository).findById(1);
+
+        // when
+        CartEntity actual = service.deleteItem("user", 1);
+
+        // then
+        assertNull(actual.getId());
+        assertEquals("user", actual.getUser().getUsername());
+        assertTrue(actual.getItems().isEmpty());
+        verify(repository, never()).save(any());
+        verifyNoInteractions(userRepository);
+    }
+
+    private static DataIntegrityViolationException violation(String message, String sqlState) {
+        return new DataIntegrityViolationException("save", new SQLException(message, sqlState));
+    }
 }
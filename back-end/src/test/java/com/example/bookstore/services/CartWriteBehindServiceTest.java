@@ -0,0 +1,333 @@
+package com.example.bookstore.services;
+
+import com.example.bookstore.dtos.CartOperationDto;
+import com.example.bookstore.entities.BookEntity;
+import com.example.bookstore.entities.CartEntity;
+import com.example.bookstore.entities.UserEntity;
+import com.example.bookstore.events.BookBulkChangedEvent;
+import com.example.bookstore.events.BookChangedEvent;
+import com.example.bookstore.respositories.BookRepository;
+import com.example.bookstore.respositories.CartRepository;
+import com.example.bookstore.respositories.UserRepository;
+import com.example.bookstore.services.impls.CartServiceImpl;
+import com.example.bookstore.services.impls.CartWriteBehindServiceImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@ActiveProfiles("tests")
+class CartWriteBehindServiceTest {
+
+    private CartWriteBehindServiceImpl service;
+
+    @Mock
+    private CartRepository repository;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private BookRepository bookRepository;
+
+    @Mock
+    private IBookIdFilterService bookIdFilter;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    /**
+     * The carts as stored, per username.
+     */
+    private final Map<String, CartEntity> stored = new ConcurrentHashMap<>();
+
+    private final BookEntity first = BookEntity.builder().id(1).title("first").price(BigDecimal.ONE).build();
+
+    private final BookEntity second = BookEntity.builder().id(2).title("second").price(BigDecimal.TEN).build();
+
+    @BeforeEach
+    void beforeEach() {
+        CartServiceImpl cartService = new CartServiceImpl(repository, userRepository, bookRepository, bookIdFilter,
+                transactionManager);
+        service = new CartWriteBehindServiceImpl(cartService, bookRepository, transactionManager,
+                Duration.ofHours(1), Duration.ofHours(1), 2);
+
+        lenient().doReturn(true).when(bookIdFilter).mightExist(any());
+        lenient().doAnswer(invocation -> Optional.of(UserEntity.builder().username(invocation.getArgument(0)).build()))
+                .when(userRepository).findById(any());
+        lenient().doAnswer(invocation -> Optional.ofNullable(stored.get(invocation.<String>getArgument(0))))
+                .when(repository).findByUserUsername(any());
+        lenient().doAnswer(invocation -> {
+            CartEntity cart = invocation.getArgument(0);
+            stored.put(cart.getUser().getUsername(), cart);
+            return cart;
+        }).when(repository).save(any());
+        lenient().doReturn(Optional.of(first)).when(bookRepository).findById(1);
+        lenient().doReturn(Optional.of(second)).when(bookRepository).findById(2);
+        lenient().doReturn(first).when(bookRepository).getReferenceById(1);
+        lenient().doReturn(second).when(bookRepository).getReferenceById(2);
+    }
+
+    @AfterEach
+    void afterEach() throws InterruptedException {
+        service.shutdown();
+    }
+
+    /**
+     * Given many changes to a cart,
+     * When reading the cart and flushing
+     * Then, it should read the changes from memory and write the cart once, only when it changed
+     */
+    @Test
+    void givenManyChanges_whenFlushing_thenWriteCartOnce() {
+        // given
+        service.addItem("user", 1, 1);
+        service.addItem("user", 1, 2);
+        service.addItem("user", 2, 1);
+        service.updateItems("user", List.of(
+                CartOperationDto.builder().op(CartOperationDto.Type.SET).bookId(2).quantity(5).build()));
+        CartEntity actual = service.getCart("user");
+
+        // when
+        clearInvocations(repository);
+        service.flush();
+        service.flush();
+
+        // then
+        assertEquals(List.of("first:3", "second:5"), lines(actual));
+        assertEquals(List.of("first:3", "second:5"), lines(stored.get("user")));
+        verify(repository, times(1)).findByUserUsername(any());
+        verify(bookRepository, never()).findAllById(any());
+    }
+
+    /**
+     * Given a user without a cart,
+     * When reading the cart, checking it out and flushing
+     * Then, it should answer an empty cart without creating it
+     */
+    @Test
+    void givenNoCart_whenReadingAndFlushing_thenCreateNothing() {
+        // when
+        CartEntity actual = service.getCart("user");
+        CartEntity checkout = service.checkout("user");
+        service.flush();
+
+        // then
+        assertTrue(actual.getItems().isEmpty());
+        assertTrue(checkout.getItems().isEmpty());
+        assertFalse(stored.containsKey("user"));
+        verify(repository, never()).save(any());
+    }
+
+    /**
+     * Given a user without a cart,
+     * When removing a book from it and flushing
+     * Then, it should leave the cart unchanged and create nothing
+     */
+    @Test
+    void givenNoCart_whenRemovingAndFlushing_thenCreateNothing() {
+        // when
+        CartEntity actual = service.deleteItem("user", 1);
+        service.flush();
+
+        // then
+        assertTrue(actual.getItems().isEmpty());
+        assertFalse(stored.containsKey("user"));
+        verify(repository, never()).save(any());
+    }
+
+    /**
+     * Given carts holding books,
+     * When one book is updated alone and the other in bulk
+     * Then, it should read them again once each and show their new prices in the carts
+     */
+    @Test
+    void givenCartsHoldingBooks_whenBooksUpdated_thenRefreshThem() {
+        // given
+        service.addItem("a", 1, 1);
+        service.addItem("a", 2, 1);
+        service.addItem("b", 1, 1);
+        BookEntity firstUpdated = BookEntity.builder().id(1).title("first").price(BigDecimal.valueOf(2)).build();
+        BookEntity secondUpdated = BookEntity.builder().id(2).title("second").price(BigDecimal.ONE).build();
+        doReturn(List.of(firstUpdated)).when(bookRepository).findAllById(Set.of(1));
+        doReturn(List.of(secondUpdated)).when(bookRepository).findAllById(Set.of(2));
+
+        // when
+        service.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.UPDATED, 1, "first", null,
+                BigDecimal.valueOf(2)));
+        service.onBooksChanged(new BookBulkChangedEvent(BookChangedEvent.Type.UPDATED, List.of(2, 3)));
+
+        // then
+        assertEquals(List.of(BigDecimal.valueOf(2), BigDecimal.ONE), prices(service.getCart("a")));
+        assertEquals(List.of(BigDecimal.valueOf(2)), prices(service.getCart("b")));
+    }
+
+    /**
+     * Given a cart changed in memory,
+     * When checking it out
+     * Then, it should write it before reading it back from the database
+     */
+    @Test
+    void givenChangedCart_whenCheckingOut_thenWriteAndReadItBack() {
+        // given
+        service.addItem("user", 1, 2);
+        service.deleteItem("user", 1);
+        service.addItem("user", 2, 1);
+
+        // when
+        CartEntity actual = service.checkout("user");
+
+        // then
+        assertSame(stored.get("user"), actual);
+        assertEquals(List.of("second:1"), lines(actual));
+    }
+
+    /**
+     * Given more carts than the memory can hold,
+     * When loading one more
+     * Then, it should write and drop the least recently used ones on the flushing thread, and load one back when
+     * used again
+     */
+    @Test
+    void givenMoreCartsThanCapacity_whenLoadingOneMore_thenWriteAndDropOldest() throws Exception {
+        // given
+        service.addItem("a", 1, 1);
+        Thread.sleep(5);
+        service.addItem("b", 1, 2);
+        Thread.sleep(5);
+
+        // when
+        service.addItem("c", 1, 3);
+        flusher();
+
+        // then
+        assertEquals(List.of("first:1"), lines(stored.get("a")));
+        assertEquals(List.of("first:2"), lines(stored.get("b")));
+
+        clearInvocations(repository);
+        assertEquals(List.of("first:2"), lines(service.addItem("a", 1, 1)));
+        verify(repository, times(1)).findByUserUsername(any());
+    }
+
+    /**
+     * Given a cart being written by a flush
+     * When changing another cart, and checking out the one being written
+     * Then, it should change the other cart meanwhile, and check the cart out once its write is over
+     */
+    @Test
+    void givenCartBeingWritten_whenUsingOthers_thenWaitForThatCartOnly() throws Exception {
+        // given
+        CountDownLatch saving = new CountDownLatch(1);
+        CountDownLatch written = new CountDownLatch(1);
+        doAnswer(invocation -> {
+            CartEntity cart = invocation.getArgument(0);
+            if ("a".equals(cart.getUser().getUsername()) && written.getCount() > 0) {
+                saving.countDown();
+                written.await();
+            }
+            stored.put(cart.getUser().getUsername(), cart);
+            return cart;
+        }).when(repository).save(any());
+        service.addItem("a", 1, 1);
+        CompletableFuture<Void> flush = CompletableFuture.runAsync(service::flush);
+        assertTrue(saving.await(10, TimeUnit.SECONDS));
+
+        // when
+        CartEntity other = service.addItem("b", 2, 1);
+        CompletableFuture<CartEntity> checkout = CompletableFuture.supplyAsync(() -> service.checkout("a"));
+
+        // then
+        assertEquals(List.of("second:1"), lines(other));
+        assertFalse(checkout.isDone());
+        written.countDown();
+        flush.get(10, TimeUnit.SECONDS);
+        assertEquals(List.of("first:1"), lines(checkout.get(10, TimeUnit.SECONDS)));
+    }
+
+    /**
+     * Given carts holding a book,
+     * When the book is deleted and another one updated
+     * Then, it should leave the carts in memory, the updated one staying
+     */
+    @Test
+    void givenCartsHoldingBook_whenBookDeleted_thenRemoveItFromCarts() {
+        // given
+        service.addItem("a", 1, 1);
+        service.addItem("a", 2, 1);
+        service.addItem("b", 1, 1);
+
+        // when
+        service.onBookChanged(new BookChangedEvent(BookChangedEvent.Type.DELETED, 1, "first", null, BigDecimal.ONE));
+        service.onBooksChanged(new BookBulkChangedEvent(BookChangedEvent.Type.UPDATED, List.of(2)));
+
+        // then
+        assertEquals(List.of("second:1"), lines(service.getCart("a")));
+        assertTrue(service.getCart("b").getItems().isEmpty());
+    }
+
+    /**
+     * Given a cart whose user was deleted meanwhile, and another cart
+     * When flushing twice
+     * Then, it should write the other cart, and drop the changes of the first one rather than fail every flush
+     */
+    @Test
+    void givenCartOfDeletedUser_whenFlushing_thenWriteOthersAndDropIt() {
+        // given
+        doReturn(Optional.empty()).when(userRepository).findById("ghost");
+        service.addItem("ghost", 1, 1);
+        service.addItem("user", 1, 2);
+
+        // when
+        service.flush();
+        clearInvocations(userRepository, repository);
+        service.flush();
+
+        // then
+        assertEquals(List.of("first:2"), lines(stored.get("user")));
+        assertFalse(stored.containsKey("ghost"));
+        verifyNoInteractions(userRepository);
+        verify(repository, never()).save(any());
+        assertTrue(service.getCart("ghost").getItems().isEmpty());
+    }
+
+    /**
+     * Waits for the work handed to the flushing thread so far.
+     */
+    private void flusher() throws Exception {
+        ((ExecutorService) ReflectionTestUtils.getField(service, "executor")).submit(() -> { }).get();
+    }
+
+    private static List<BigDecimal> prices(CartEntity cart) {
+        return cart.getItems().values().stream()
+                .map(item -> item.getBook().getPrice())
+                .toList();
+    }
+
+    private static List<String> lines(CartEntity cart) {
+        return cart.getItems().values().stream()
+                .map(item -> item.getBook().getTitle() + ":" + item.getQuantity())
+                .toList();
+    }
+}